@@ -0,0 +1,253 @@
+package datawave.ingest.protobuf;
+
+import java.util.Arrays;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Decodes the offsets, skips and scores of a serialized {@link TermWeight.Info} straight from its bytes into primitive arrays, without building the message or
+ * boxing the values. The arrays are reused from one decode to the next, so one instance can decode every term frequency entry of a scan.
+ * <p>
+ * Both the unpacked encoding written by {@link TermWeight.Info} and the packed encoding of repeated fields are accepted, and unknown fields are skipped.
+ * {@link #encode(int[], int)} writes the offsets of an info in the unpacked encoding, for ingest to serialize term frequencies without a builder.
+ * <p>
+ * This class is not thread safe.
+ */
+public class TermWeightOffsets {
+    
+    private static final int TERM_OFFSET_FIELD = 3;
+    private static final int PREV_SKIPS_FIELD = 4;
+    private static final int SCORE_FIELD = 5;
+    private static final int ZERO_OFFSET_MATCH_FIELD = 6;
+    
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_FIXED64 = 1;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRETYPE_FIXED32 = 5;
+    
+    private int[] offsets = new int[16];
+    private int[] prevSkips = new int[16];
+    private int[] scores = new int[16];
+    private int offsetCount = 0;
+    private int prevSkipsCount = 0;
+    private int scoreCount = 0;
+    private boolean zeroOffsetMatch = TermWeightPosition.DEFAULT_ZERO_OFFSET_MATCH;
+    
+    private byte[] buffer;
+    private int position;
+    
+    /**
+     * Serialize a {@link TermWeight.Info} holding only term offsets, producing the same bytes as the message built with those offsets
+     *
+     * @param offsets
+     *            the offsets, in the order they are to be stored
+     * @param count
+     *            the number of offsets to take from the array
+     * @return the serialized info
+     */
+    public static byte[] encode(int[] offsets, int count) {
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            size += 1 + varintSize(offsets[i]);
+        }
+        byte[] bytes = new byte[size];
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            bytes[pos++] = TERM_OFFSET_FIELD << 3 | WIRETYPE_VARINT;
+            // written as an unsigned 32 bit varint, as the builder writes a uint32
+            int value = offsets[i];
+            while ((value & ~0x7F) != 0) {
+                bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[pos++] = (byte) value;
+        }
+        return bytes;
+    }
+    
+    private static int varintSize(int value) {
+        if ((value & (~0 << 7)) == 0) {
+            return 1;
+        } else if ((value & (~0 << 14)) == 0) {
+            return 2;
+        } else if ((value & (~0 << 21)) == 0) {
+            return 3;
+        } else if ((value & (~0 << 28)) == 0) {
+            return 4;
+        }
+        return 5;
+    }
+    
+    /**
+     * Decode a serialized {@link TermWeight.Info}, replacing whatever was decoded before
+     *
+     * @param bytes
+     *            the serialized info
+     * @throws InvalidProtocolBufferException
+     *             if the bytes are not a valid info
+     */
+    public void decode(byte[] bytes) throws InvalidProtocolBufferException {
+        decode(bytes, 0, bytes.length);
+    }
+    
+    /**
+     * Decode a serialized {@link TermWeight.Info}, replacing whatever was decoded before
+     *
+     * @param bytes
+     *            the buffer holding the serialized info
+     * @param start
+     *            the position of the info in the buffer
+     * @param length
+     *            the length of the info
+     * @throws InvalidProtocolBufferException
+     *             if the bytes are not a valid info
+     */
+    public void decode(byte[] bytes, int start, int length) throws InvalidProtocolBufferException {
+        offsetCount = 0;
+        prevSkipsCount = 0;
+        scoreCount = 0;
+        zeroOffsetMatch = TermWeightPosition.DEFAULT_ZERO_OFFSET_MATCH;
+        
+        buffer = bytes;
+        position = start;
+        int end = start + length;
+        try {
+            while (position < end) {
+                int tag = (int) readVarint(end);
+                int field = tag >>> 3;
+                int wireType = tag & 0x7;
+                if (field == 0) {
+                    throw new InvalidProtocolBufferException("Protocol message contained an invalid tag (zero).");
+                }
+                if (field >= TERM_OFFSET_FIELD && field <= SCORE_FIELD && (wireType == WIRETYPE_VARINT || wireType == WIRETYPE_LENGTH_DELIMITED)) {
+                    if (wireType == WIRETYPE_VARINT) {
+                        add(field, (int) readVarint(end));
+                    } else {
+                        int packedEnd = limit(end);
+                        while (position < packedEnd) {
+                            add(field, (int) readVarint(packedEnd));
+                        }
+                    }
+                } else if (field == ZERO_OFFSET_MATCH_FIELD && wireType == WIRETYPE_VARINT) {
+                    zeroOffsetMatch = (readVarint(end) != 0);
+                } else {
+                    skipField(wireType, end);
+                }
+            }
+        } finally {
+            buffer = null;
+        }
+    }
+    
+    /**
+     * @return the number of offsets decoded
+     */
+    public int size() {
+        return offsetCount;
+    }
+    
+    public int getOffset(int i) {
+        return offsets[i];
+    }
+    
+    /**
+     * @param i
+     * @return the skips before the i'th offset, or {@link TermWeightPosition#DEFAULT_PREV_SKIPS} if the skips do not line up with the offsets
+     */
+    public int getPrevSkips(int i) {
+        // offsets, skips, and scores are linked by index so the counts must match
+        return (prevSkipsCount == offsetCount ? prevSkips[i] : TermWeightPosition.DEFAULT_PREV_SKIPS);
+    }
+    
+    /**
+     * @param i
+     * @return the score of the i'th offset, or {@link TermWeightPosition#DEFAULT_SCORE} if the scores do not line up with the offsets
+     */
+    public int getScore(int i) {
+        return (scoreCount == offsetCount ? scores[i] : TermWeightPosition.DEFAULT_SCORE);
+    }
+    
+    public boolean getZeroOffsetMatch() {
+        return zeroOffsetMatch;
+    }
+    
+    private void add(int field, int value) {
+        switch (field) {
+            case TERM_OFFSET_FIELD:
+                offsets = ensureCapacity(offsets, offsetCount);
+                offsets[offsetCount++] = value;
+                break;
+            case PREV_SKIPS_FIELD:
+                prevSkips = ensureCapacity(prevSkips, prevSkipsCount);
+                prevSkips[prevSkipsCount++] = value;
+                break;
+            default:
+                scores = ensureCapacity(scores, scoreCount);
+                scores[scoreCount++] = value;
+                break;
+        }
+    }
+    
+    private static int[] ensureCapacity(int[] values, int count) {
+        return (count < values.length ? values : Arrays.copyOf(values, values.length * 2));
+    }
+    
+    private void skipField(int wireType, int end) throws InvalidProtocolBufferException {
+        switch (wireType) {
+            case WIRETYPE_VARINT:
+                readVarint(end);
+                break;
+            case WIRETYPE_FIXED64:
+                skip(8, end);
+                break;
+            case WIRETYPE_LENGTH_DELIMITED:
+                position = limit(end);
+                break;
+            case WIRETYPE_FIXED32:
+                skip(4, end);
+                break;
+            default:
+                // groups are not used by the term weight message
+                throw new InvalidProtocolBufferException("Protocol message tag had invalid wire type.");
+        }
+    }
+    
+    /**
+     * Read the length of a length delimited field
+     *
+     * @return the end of the field
+     */
+    private int limit(int end) throws InvalidProtocolBufferException {
+        long length = readVarint(end);
+        if (length < 0 || length > end - position) {
+            throw truncated();
+        }
+        return position + (int) length;
+    }
+    
+    private void skip(int length, int end) throws InvalidProtocolBufferException {
+        if (length > end - position) {
+            throw truncated();
+        }
+        position += length;
+    }
+    
+    private long readVarint(int end) throws InvalidProtocolBufferException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= end) {
+                throw truncated();
+            }
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidProtocolBufferException("CodedInputStream encountered a malformed varint.");
+    }
+    
+    private static InvalidProtocolBufferException truncated() {
+        return new InvalidProtocolBufferException("While parsing a protocol message, the input ended unexpectedly in the middle of a field.");
+    }
+}
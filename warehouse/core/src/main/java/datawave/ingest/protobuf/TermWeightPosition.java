@@ -173,6 +173,15 @@ public class TermWeightPosition implements Comparable<TermWeightPosition> {
             return this;
         }
         
+        public Builder setTermWeightOffsets(TermWeightOffsets offsets, int i) {
+            setOffset(offsets.getOffset(i));
+            setPrevSkips(offsets.getPrevSkips(i));
+            setScore(offsets.getScore(i));
+            setZeroOffsetMatch(offsets.getZeroOffsetMatch());
+            
+            return this;
+        }
+        
         public TermWeightPosition build() {
             return new TermWeightPosition(this);
         }
@@ -0,0 +1,103 @@
+package datawave.ingest.protobuf;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+public class TermWeightOffsetsTest {
+    
+    private static void assertDecoded(TermWeight.Info info, TermWeightOffsets offsets) {
+        Assert.assertEquals(info.getTermOffsetCount(), offsets.size());
+        TermWeightPosition.Builder expected = new TermWeightPosition.Builder();
+        TermWeightPosition.Builder actual = new TermWeightPosition.Builder();
+        for (int i = 0; i < info.getTermOffsetCount(); i++) {
+            TermWeightPosition expectedPosition = expected.setTermWeightOffsetInfo(info, i).build();
+            TermWeightPosition actualPosition = actual.setTermWeightOffsets(offsets, i).build();
+            Assert.assertEquals(expectedPosition.toString(), actualPosition.toString());
+            expected.reset();
+            actual.reset();
+        }
+        Assert.assertEquals(info.getZeroOffsetMatch(), offsets.getZeroOffsetMatch());
+    }
+    
+    @Test
+    public void testDecode() throws Exception {
+        TermWeight.Info info = TermWeight.Info.newBuilder().addTermOffset(3).addTermOffset(300).addTermOffset(70000).addPrevSkips(0).addPrevSkips(2)
+                        .addPrevSkips(1).addScore(12).addScore(1234567).addScore(0).setZeroOffsetMatch(false).build();
+        
+        TermWeightOffsets offsets = new TermWeightOffsets();
+        offsets.decode(info.toByteArray());
+        assertDecoded(info, offsets);
+        Assert.assertEquals(70000, offsets.getOffset(2));
+        Assert.assertEquals(2, offsets.getPrevSkips(1));
+        Assert.assertEquals(1234567, offsets.getScore(1));
+        
+        // the buffers are reused, and the skips and scores are ignored when they do not line up with the offsets
+        info = TermWeight.Info.newBuilder().addTermOffset(5).addTermOffset(6).addPrevSkips(1).build();
+        offsets.decode(info.toByteArray());
+        assertDecoded(info, offsets);
+        Assert.assertEquals(TermWeightPosition.DEFAULT_PREV_SKIPS, offsets.getPrevSkips(0));
+        Assert.assertEquals(TermWeightPosition.DEFAULT_SCORE, offsets.getScore(1));
+        Assert.assertTrue(offsets.getZeroOffsetMatch());
+        
+        offsets.decode(new byte[0]);
+        Assert.assertEquals(0, offsets.size());
+    }
+    
+    @Test
+    public void testGrowBuffers() throws Exception {
+        TermWeight.Info.Builder builder = TermWeight.Info.newBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.addTermOffset(i * 3).addPrevSkips(i % 3).addScore(i);
+        }
+        TermWeight.Info info = builder.build();
+        
+        TermWeightOffsets offsets = new TermWeightOffsets();
+        offsets.decode(info.toByteArray());
+        assertDecoded(info, offsets);
+    }
+    
+    @Test
+    public void testPackedAndUnknownFields() throws Exception {
+        // termOffset packed [1, 150], an unknown varint field 7, prevSkips unpacked 0 and 1, an unknown length delimited field 8
+        byte[] bytes = new byte[] {26, 3, 1, (byte) 150, 1, 56, 5, 32, 0, 32, 1, 66, 2, 9, 9};
+        TermWeightOffsets offsets = new TermWeightOffsets();
+        offsets.decode(bytes);
+        Assert.assertEquals(2, offsets.size());
+        Assert.assertEquals(1, offsets.getOffset(0));
+        Assert.assertEquals(150, offsets.getOffset(1));
+        Assert.assertEquals(0, offsets.getPrevSkips(0));
+        Assert.assertEquals(1, offsets.getPrevSkips(1));
+        Assert.assertEquals(TermWeightPosition.DEFAULT_SCORE, offsets.getScore(0));
+        
+        assertDecoded(TermWeight.Info.parseFrom(bytes), offsets);
+    }
+    
+    @Test
+    public void testEncode() throws Exception {
+        int[] values = new int[] {0, 1, 127, 128, 16383, 16384, 2097152, 268435456, Integer.MAX_VALUE, -1, 42};
+        TermWeight.Info.Builder builder = TermWeight.Info.newBuilder();
+        for (int value : values) {
+            builder.addTermOffset(value);
+        }
+        Assert.assertArrayEquals(builder.build().toByteArray(), TermWeightOffsets.encode(values, values.length));
+        
+        // only the first count offsets are written
+        byte[] bytes = TermWeightOffsets.encode(values, 4);
+        TermWeight.Info info = TermWeight.Info.newBuilder().addTermOffset(0).addTermOffset(1).addTermOffset(127).addTermOffset(128).build();
+        Assert.assertArrayEquals(info.toByteArray(), bytes);
+        TermWeightOffsets offsets = new TermWeightOffsets();
+        offsets.decode(bytes);
+        Assert.assertEquals(4, offsets.size());
+        Assert.assertEquals(128, offsets.getOffset(3));
+        
+        Assert.assertEquals(0, TermWeightOffsets.encode(values, 0).length);
+    }
+    
+    @Test(expected = InvalidProtocolBufferException.class)
+    public void testTruncated() throws Exception {
+        byte[] bytes = TermWeight.Info.newBuilder().addTermOffset(300).build().toByteArray();
+        new TermWeightOffsets().decode(bytes, 0, bytes.length - 1);
+    }
+}
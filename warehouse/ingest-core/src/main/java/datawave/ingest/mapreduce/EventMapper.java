@@ -43,18 +43,24 @@ import datawave.util.time.TraceStopwatch;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Value;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.CounterGroup;
 import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.log4j.Logger;
 import org.apache.log4j.NDC;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -65,7 +71,13 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -77,9 +89,11 @@ import java.util.concurrent.TimeUnit;
  * is within the window, then the map will parse the Event into a map of field names and field values, the map method will call the process() method on each
  * DataTypeHandler implementation that has been configured for the Type of Event.
  *
- * This class no longer supports processing events in a multi-threaded fashion as that was proven to NOT be beneficial in the long run (i.e. The bulk of the
- * time is spent in the ContextWriter which is synchronized. Also multithreading mean potentially more memory use which we should already be maximizing per
- * machine in the hadoop map-reduce cluster.)
+ * By default the events are processed by the map thread alone, as the bulk of the time for most data types is spent in the ContextWriter. For data types whose
+ * handlers are expensive, such as those tokenizing content, EVENT_PROCESSING_THREADS may be set to run the handlers on a bounded pool of threads. Each thread
+ * has its own handlers, and the output and counters of each event are buffered and then written by the map thread in the order the events were read, so the
+ * ContextWriter is only ever used by the map thread. This uses more memory per mapper, bounded by EVENT_PROCESSING_QUEUE_SIZE, and is not available when
+ * ingest metrics are enabled.
  *
  *
  *
@@ -126,6 +140,17 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     
     public static final String ID_FILTER_FSTS = "ingest.event.mapper.id.filter.fsts";
     
+    /**
+     * The number of threads which run the handlers on the events of a mapper. When not greater than 1, the events are processed by the map thread.
+     */
+    public static final String EVENT_PROCESSING_THREADS = "ingest.event.mapper.processing.threads";
+    
+    /**
+     * The number of events which may be waiting to be processed or written when processing on multiple threads, four per thread by default. Once reached, the
+     * map thread waits for the oldest event to be processed.
+     */
+    public static final String EVENT_PROCESSING_QUEUE_SIZE = "ingest.event.mapper.processing.queue.size";
+    
     protected Map<String,List<DataTypeHandler<K1>>> typeMap = new HashMap<>();
     
     /**
@@ -159,6 +184,8 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     private MetricsService<K2,V2> metricsService;
     private ReusableMetricsLabels metricsLabels;
     
+    private EventProcessingPool processingPool = null;
+    
     /**
      * Set up the datatype handlers
      */
@@ -264,6 +291,17 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         
         validators = ArrayListMultimap.create();
         
+        int processingThreads = context.getConfiguration().getInt(EVENT_PROCESSING_THREADS, 1);
+        if (processingThreads > 1) {
+            if (metricsEnabled) {
+                log.warn("Ingest metrics are not collected from multiple threads, processing events on the map thread");
+            } else {
+                int queueSize = Math.max(context.getConfiguration().getInt(EVENT_PROCESSING_QUEUE_SIZE, 4 * processingThreads), processingThreads);
+                processingPool = new EventProcessingPool(processingThreads, queueSize, context.getConfiguration());
+                log.info("Processing events with " + processingThreads + " threads and a queue of " + queueSize);
+            }
+        }
+        
         if (null != split) {
             if (filterConf.getBoolean(FILE_NAME_COUNTERS, true)) {
                 getCounter(context, IngestInput.FILE_NAME.name(), split.getPath().toString()).increment(1);
@@ -278,7 +316,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             log.info("EventMapper configured. Bulk Ingest = true");
             log.info("EventMapper configured with the following filters: " + getDataTypeFilterClassNames());
         }
-        
+    
     }
     
     /**
@@ -290,69 +328,91 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         // Do not load the type twice
         if (!typeMap.containsKey(typeStr)) {
             
-            typeMap.put(typeStr, new ArrayList<>());
-            
             long myInterval = context.getConfiguration().getLong(typeStr + "." + DISCARD_INTERVAL, interval);
             
             dataTypeDiscardIntervalCache.put(typeStr, myInterval);
             
             log.info("Setting up type: " + typeStr + " with interval " + myInterval);
             
-            if (!TypeRegistry.getTypeNames().contains(typeStr)) {
-                log.warn("Attempted to load configuration for a type that does not exist in the registry: " + typeStr);
-            } else {
-                Type t = TypeRegistry.getType(typeStr);
-                String fieldValidators = context.getConfiguration().get(typeStr + FieldValidator.FIELD_VALIDATOR_NAMES);
-                
-                if (fieldValidators != null) {
-                    String[] validatorClasses = StringUtils.split(fieldValidators, ",");
-                    for (String validatorClass : validatorClasses) {
-                        try {
-                            Class<? extends FieldValidator> clazz = Class.forName(validatorClass).asSubclass(FieldValidator.class);
-                            FieldValidator validator = clazz.newInstance();
-                            validator.init(t, context.getConfiguration());
-                            validators.put(typeStr, validator);
-                        } catch (ClassNotFoundException e) {
-                            log.error("Error finding validator " + validatorClass, e);
-                        } catch (InstantiationException | IllegalAccessException e) {
-                            log.error("Error creating validator " + validatorClass, e);
-                        }
+            List<DataTypeHandler<K1>> handlers = createHandlers(typeStr, context.getConfiguration(), reporter, validators);
+            for (DataTypeHandler<K1> h : handlers) {
+                // Create a counter initialized to zero for all handler types.
+                getCounter(context, IngestOutput.ROWS_CREATED.name(), h.getClass().getSimpleName()).increment(0);
+            }
+            typeMap.put(typeStr, handlers);
+            
+            log.info("EventMapper configured with the following handlers for " + typeStr + ": " + handlers);
+        }
+        
+        return typeMap.get(typeStr);
+    }
+    
+    /**
+     * Create and set up the data type handlers for a given type name, adding the type's field validators to the validators given.
+     *
+     * @param typeStr
+     *            the type name
+     * @param conf
+     *            the job configuration
+     * @param handlerReporter
+     *            the reporter for the counters of the handlers' setup
+     * @param typeValidators
+     *            the validators, by type name
+     * @return the data type handlers
+     */
+    private List<DataTypeHandler<K1>> createHandlers(String typeStr, Configuration conf, StatusReporter handlerReporter,
+                    Multimap<String,FieldValidator> typeValidators) {
+        List<DataTypeHandler<K1>> handlers = new ArrayList<>();
+        if (!TypeRegistry.getTypeNames().contains(typeStr)) {
+            log.warn("Attempted to load configuration for a type that does not exist in the registry: " + typeStr);
+        } else {
+            Type t = TypeRegistry.getType(typeStr);
+            String fieldValidators = conf.get(typeStr + FieldValidator.FIELD_VALIDATOR_NAMES);
+            
+            if (fieldValidators != null) {
+                String[] validatorClasses = StringUtils.split(fieldValidators, ",");
+                for (String validatorClass : validatorClasses) {
+                    try {
+                        Class<? extends FieldValidator> clazz = Class.forName(validatorClass).asSubclass(FieldValidator.class);
+                        FieldValidator validator = clazz.newInstance();
+                        validator.init(t, conf);
+                        typeValidators.put(typeStr, validator);
+                    } catch (ClassNotFoundException e) {
+                        log.error("Error finding validator " + validatorClass, e);
+                    } catch (InstantiationException | IllegalAccessException e) {
+                        log.error("Error creating validator " + validatorClass, e);
                     }
                 }
-                
-                String[] handlerClassNames = t.getDefaultDataTypeHandlers();
-                
-                if (handlerClassNames != null) {
-                    for (String handlerClassName : handlerClassNames) {
-                        log.info("Configuring handler: " + handlerClassName);
-                        try {
-                            @SuppressWarnings("unchecked")
-                            Class<? extends DataTypeHandler<K1>> clazz = (Class<? extends DataTypeHandler<K1>>) Class.forName(handlerClassName);
-                            DataTypeHandler<K1> h = clazz.newInstance();
-                            // Create a counter initialized to zero for all handler types.
-                            getCounter(context, IngestOutput.ROWS_CREATED.name(), h.getClass().getSimpleName()).increment(0);
-                            // Trick here. Set the data.name parameter to type T, then call setup on the DataTypeHandler
-                            Configuration clone = new Configuration(context.getConfiguration());
-                            clone.set(DataTypeHelper.Properties.DATA_NAME, t.typeName());
-                            // Use the StandaloneReporter and StandaloneTaskAttemptContext for the Handlers. Because the StandaloneTaskAttemptContext
-                            // is a subclass of TaskInputOutputContext and TaskAttemptContext is not. We are using this to record the counters during
-                            // processing. We will need to add the counters in the StandaloneReporter to the Map.Context in the close call.
-                            // TaskAttemptContext newContext = new TaskAttemptContext(clone, context.getTaskAttemptID());
-                            StandaloneTaskAttemptContext<K1,V1,K2,V2> newContext = new StandaloneTaskAttemptContext<>(clone, reporter);
-                            h.setup(newContext);
-                            typeMap.get(typeStr).add(h);
-                        } catch (ClassNotFoundException e) {
-                            log.error("Error finding DataTypeHandler " + handlerClassName, e);
-                        } catch (InstantiationException | IllegalAccessException e) {
-                            log.error("Error creating DataTypeHandler " + handlerClassName, e);
-                        }
+            }
+            
+            String[] handlerClassNames = t.getDefaultDataTypeHandlers();
+            
+            if (handlerClassNames != null) {
+                for (String handlerClassName : handlerClassNames) {
+                    log.info("Configuring handler: " + handlerClassName);
+                    try {
+                        @SuppressWarnings("unchecked")
+                        Class<? extends DataTypeHandler<K1>> clazz = (Class<? extends DataTypeHandler<K1>>) Class.forName(handlerClassName);
+                        DataTypeHandler<K1> h = clazz.newInstance();
+                        // Trick here. Set the data.name parameter to type T, then call setup on the DataTypeHandler
+                        Configuration clone = new Configuration(conf);
+                        clone.set(DataTypeHelper.Properties.DATA_NAME, t.typeName());
+                        // Use the StandaloneReporter and StandaloneTaskAttemptContext for the Handlers. Because the StandaloneTaskAttemptContext
+                        // is a subclass of TaskInputOutputContext and TaskAttemptContext is not. We are using this to record the counters during
+                        // processing. We will need to add the counters in the StandaloneReporter to the Map.Context in the close call.
+                        // TaskAttemptContext newContext = new TaskAttemptContext(clone, context.getTaskAttemptID());
+                        StandaloneTaskAttemptContext<K1,V1,K2,V2> newContext = new StandaloneTaskAttemptContext<>(clone, handlerReporter);
+                        h.setup(newContext);
+                        handlers.add(h);
+                    } catch (ClassNotFoundException e) {
+                        log.error("Error finding DataTypeHandler " + handlerClassName, e);
+                    } catch (InstantiationException | IllegalAccessException e) {
+                        log.error("Error creating DataTypeHandler " + handlerClassName, e);
                     }
                 }
             }
-            log.info("EventMapper configured with the following handlers for " + typeStr + ": " + typeMap.get(typeStr));
         }
-        
-        return typeMap.get(typeStr);
+        return handlers;
     }
     
     private List<String> getDataTypeFilterClassNames() {
@@ -426,6 +486,11 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
                 log.info("Purging event from the " + errorSummary.getTableName() + " table");
             
             try {
+                // Write the events read before this one first, so that the output stays in order
+                if (processingPool != null) {
+                    processingPool.drain(context);
+                }
+                
                 // Load error dataType into typeMap
                 loadDataType(TypeRegistry.ERROR_PREFIX, context);
                 
@@ -438,7 +503,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
                     NDC.push(origFiles.iterator().next());
                     reprocessedNDCPush = true;
                 }
-                
+            
             } catch (Exception e) {
                 contextWriter.rollback();
                 log.error("Failed to clean event from error table.  Terminating map", e);
@@ -485,6 +550,19 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             context.progress();
         }
         
+        if (processingPool != null) {
+            try {
+                // the handlers are run by a processing thread, and the output is written by a later call to map or by cleanup
+                processingPool.submit(key, value, context);
+            } finally {
+                if (reprocessedNDCPush) {
+                    NDC.pop();
+                }
+            }
+            offset++;
+            return;
+        }
+        
         Multimap<String,NormalizedContentInterface> fields = HashMultimap.create();
         try {
             processEvent(key, value, handlers, fields, context);
@@ -492,42 +570,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             // Rollback anything written for this event
             contextWriter.rollback();
             
-            // Fail job on constraint violations
-            if (e instanceof ConstraintChecker.ConstraintViolationException) {
-                throw ((RuntimeException) e);
-            }
-            
-            // ensure they know we are still working on it
-            context.progress();
-            
-            // log error
-            log.error("Runtime exception processing event", e);
-            
-            // now lets dump to the errors table
-            // first set the exception on the event if not a field normalization error in which case the fields contain the errors
-            if (!(e instanceof FieldNormalizationError)) {
-                value.setAuxData(e);
-            }
-            for (DataTypeHandler<K1> handler : loadDataType(TypeRegistry.ERROR_PREFIX, context)) {
-                if (log.isTraceEnabled())
-                    log.trace("executing handler: " + handler.getClass().getName());
-                try {
-                    executeHandler(key, value, fields, handler, context);
-                    context.progress();
-                } catch (Exception e2) {
-                    // This is a real bummer, we had a critical exception attempting to throw the event into the error table.
-                    // lets terminate this job
-                    log.error("Failed to process error data handlers for an event", e2);
-                    throw new IOException("Failed to process error data handlers for an event", e2);
-                }
-            }
-            
-            // now create some counters
-            getCounter(context, IngestProcess.RUNTIME_EXCEPTION).increment(1);
-            List<String> exceptions = getExceptionSynopsis(e);
-            for (String exception : exceptions) {
-                getCounter(context, IngestProcess.RUNTIME_EXCEPTION.name(), exception).increment(1);
-            }
+            handleProcessingError(key, value, fields, e, context);
         } finally {
             // Remove ORIG_FILE from NDC that was populated by reprocessing events from the error tables
             if (reprocessedNDCPush) {
@@ -552,6 +595,62 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         }
     }
     
+    /**
+     * Send an event which failed processing to the error handlers, once anything written for it has been rolled back.
+     *
+     * @param key
+     *            The key of the map process
+     * @param value
+     *            The event
+     * @param fields
+     *            The last set of fields parsed from the event
+     * @param e
+     *            The exception thrown processing the event
+     * @param context
+     *            The context
+     * @throws IOException
+     *             if the error handlers fail
+     */
+    private void handleProcessingError(K1 key, RawRecordContainer value, Multimap<String,NormalizedContentInterface> fields, Exception e, Context context)
+                    throws IOException, InterruptedException {
+        // Fail job on constraint violations
+        if (e instanceof ConstraintChecker.ConstraintViolationException) {
+            throw ((RuntimeException) e);
+        }
+        
+        // ensure they know we are still working on it
+        context.progress();
+        
+        // log error
+        log.error("Runtime exception processing event", e);
+        
+        // now lets dump to the errors table
+        // first set the exception on the event if not a field normalization error in which case the fields contain the errors
+        if (!(e instanceof FieldNormalizationError)) {
+            value.setAuxData(e);
+        }
+        for (DataTypeHandler<K1> handler : loadDataType(TypeRegistry.ERROR_PREFIX, context)) {
+            if (log.isTraceEnabled())
+                log.trace("executing handler: " + handler.getClass().getName());
+            try {
+                executeHandler(key, value, fields, handler, context);
+                context.progress();
+            } catch (Exception e2) {
+                // This is a real bummer, we had a critical exception attempting to throw the event into the error table.
+                // lets terminate this job
+                log.error("Failed to process error data handlers for an event", e2);
+                throw new IOException("Failed to process error data handlers for an event", e2);
+            }
+        }
+        
+        // now create some counters
+        getCounter(context, IngestProcess.RUNTIME_EXCEPTION).increment(1);
+        List<String> exceptions = getExceptionSynopsis(e);
+        for (String exception : exceptions) {
+            getCounter(context, IngestProcess.RUNTIME_EXCEPTION.name(), exception).increment(1);
+        }
+    }
+    
     /**
      * Get an exception synopsis that is suitable as a counter. We want at a minimum the exception name and a useful location. A useful location is defined as
      * the highest location that is in the datawave.ingest package
@@ -605,8 +704,19 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     @Override
     public void cleanup(Context context) throws IOException, InterruptedException {
         
+        // Write the events still being processed, and gather the handlers of the processing threads
+        List<Map<String,List<DataTypeHandler<K1>>>> typeMaps = new ArrayList<>();
+        typeMaps.add(typeMap);
+        if (processingPool != null) {
+            processingPool.drain(context);
+            processingPool.shutdown();
+            for (EventProcessingPool.Worker worker : processingPool.workers) {
+                typeMaps.add(worker.typeMap);
+            }
+        }
+        
         // Write the metadata to the output
-        for (List<DataTypeHandler<K1>> handlers : typeMap.values()) {
+        for (List<DataTypeHandler<K1>> handlers : getHandlers(typeMaps)) {
             for (DataTypeHandler<K1> h : handlers)
                 if (h.getMetadata() != null) {
                     try {
@@ -625,17 +735,26 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         // cleanup the context writer
         contextWriter.cleanup(context);
         
-        for (List<DataTypeHandler<K1>> handlers : typeMap.values()) {
+        for (List<DataTypeHandler<K1>> handlers : getHandlers(typeMaps)) {
             for (DataTypeHandler<K1> h : handlers)
                 h.close(context);
         }
         typeMap.clear();
         
         // Add the counters from the standalone reporter to this context.
-        Counters counters = reporter.getCounters();
-        for (CounterGroup cg : counters) {
-            for (Counter c : cg) {
-                getCounter(context, cg.getName(), c.getName()).increment(c.getValue());
+        List<Counters> reporterCounters = new ArrayList<>();
+        reporterCounters.add(reporter.getCounters());
+        if (processingPool != null) {
+            for (EventProcessingPool.Worker worker : processingPool.workers) {
+                reporterCounters.add(worker.setupReporter.getCounters());
+            }
+            processingPool = null;
+        }
+        for (Counters counters : reporterCounters) {
+            for (CounterGroup cg : counters) {
+                for (Counter c : cg) {
+                    getCounter(context, cg.getName(), c.getName()).increment(c.getValue());
+                }
             }
         }
         
@@ -647,6 +766,14 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         }
     }
     
+    private List<List<DataTypeHandler<K1>>> getHandlers(List<Map<String,List<DataTypeHandler<K1>>>> typeMaps) {
+        List<List<DataTypeHandler<K1>>> handlers = new ArrayList<>();
+        for (Map<String,List<DataTypeHandler<K1>>> map : typeMaps) {
+            handlers.addAll(map.values());
+        }
+        return handlers;
+    }
+    
     /**
      * This is where we apply a list of handlers to an event.
      *
@@ -664,6 +791,26 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
      */
     public void processEvent(K1 key, RawRecordContainer value, List<DataTypeHandler<K1>> handlers, Multimap<String,NormalizedContentInterface> fields,
                     Context context) throws Exception {
+        processEvent(key, value, handlers, validators, fields, offset, context, contextWriter);
+    }
+    
+    /**
+     * Apply a list of handlers to an event, writing the output to the given context writer. The processing threads call this with their own validators,
+     * context and context writer.
+     *
+     * @param validators
+     *            The field validators, by type name
+     * @param eventOffset
+     *            The offset of the event in the split, recorded with the sequence file name
+     * @param context
+     *            The context for the handlers and counters
+     * @param writer
+     *            The context writer for the output of the handlers
+     * @see #processEvent(Object, RawRecordContainer, List, Multimap, Context)
+     */
+    protected void processEvent(K1 key, RawRecordContainer value, List<DataTypeHandler<K1>> handlers, Multimap<String,FieldValidator> validators,
+                    Multimap<String,NormalizedContentInterface> fields, long eventOffset, TaskInputOutputContext<K1,V1,K2,V2> context,
+                    ContextWriter<K2,V2> writer) throws Exception {
         IngestHelperInterface previousHelper = null;
         
         for (DataTypeHandler<K1> handler : handlers) {
@@ -688,7 +835,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             if (null == previousHelper || !previousHelper.getClass().getName().equals(thisHelper.getClass().getName())) {
                 fields.clear();
                 Throwable e = null;
-                for (Map.Entry<String,NormalizedContentInterface> entry : getFields(value, handler).entries()) {
+                for (Map.Entry<String,NormalizedContentInterface> entry : getFields(value, handler, eventOffset).entries()) {
                     // noinspection ThrowableResultOfMethodCallIgnored
                     if (entry.getValue().getError() != null) {
                         e = entry.getValue().getError();
@@ -716,7 +863,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
                 validator.validate(value, fields);
             }
             
-            executeHandler(key, value, fields, handler, context);
+            executeHandler(key, value, fields, handler, context, writer);
             
             context.progress();
         }
@@ -731,6 +878,10 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
     }
     
     public Multimap<String,NormalizedContentInterface> getFields(RawRecordContainer value, DataTypeHandler<K1> handler) throws Exception {
+        return getFields(value, handler, offset);
+    }
+    
+    private Multimap<String,NormalizedContentInterface> getFields(RawRecordContainer value, DataTypeHandler<K1> handler, long eventOffset) throws Exception {
         Multimap<String,NormalizedContentInterface> newFields;
         // Parse the event into its field names and field values using the DataTypeHandler's BaseIngestHelper object.
         newFields = handler.getHelper(value.getDataType()).getEventFields(value);
@@ -774,7 +925,7 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             if (null != seqFileName) {
                 StringBuilder seqFile = new StringBuilder(seqFileName);
                 
-                seqFile.append(SRC_FILE_DEL).append(offset);
+                seqFile.append(SRC_FILE_DEL).append(eventOffset);
                 
                 if (null != splitStart) {
                     seqFile.append(SRC_FILE_DEL).append(splitStart);
@@ -797,9 +948,14 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
         return newFields;
     }
     
-    @SuppressWarnings("unchecked")
     public void executeHandler(K1 key, RawRecordContainer event, Multimap<String,NormalizedContentInterface> fields, DataTypeHandler<K1> handler,
                     Context context) throws Exception {
+        executeHandler(key, event, fields, handler, context, contextWriter);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void executeHandler(K1 key, RawRecordContainer event, Multimap<String,NormalizedContentInterface> fields, DataTypeHandler<K1> handler,
+                    TaskInputOutputContext<K1,V1,K2,V2> context, ContextWriter<K2,V2> writer) throws Exception {
         long count = 0;
         
         TraceStopwatch handlerTimer = null;
@@ -821,11 +977,11 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
                 getCounter(context, IngestInput.EVENT_FATAL_ERROR).increment(1);
                 getCounter(context, IngestInput.EVENT_FATAL_ERROR.name(), "NullMultiMap").increment(1);
             } else {
-                contextWriter.write(r, context);
+                writer.write(r, context);
                 count = r.size();
             }
         } else {
-            count = ((ExtendedDataTypeHandler<K1,K2,V2>) handler).process(key, event, fields, context, contextWriter);
+            count = ((ExtendedDataTypeHandler<K1,K2,V2>) handler).process(key, event, fields, context, writer);
             if (count == -1) {
                 getCounter(context, IngestInput.EVENT_FATAL_ERROR).increment(1);
                 getCounter(context, IngestInput.EVENT_FATAL_ERROR.name(), "NegOneCount").increment(1);
@@ -851,12 +1007,264 @@ public class EventMapper<K1,V1 extends RawRecordContainer,K2,V2> extends StatsDE
             metricsLabels.put("handler", handler.getClass().getName());
             metricsService.collect(Metric.MILLIS_IN_HANDLER, metricsLabels.get(), fields, handlerTime);
             
-            if (contextWriter instanceof KeyValueCountingContextWriter) {
-                ((KeyValueCountingContextWriter) contextWriter).writeMetrics(event, fields, handler);
+            if (writer instanceof KeyValueCountingContextWriter) {
+                ((KeyValueCountingContextWriter) writer).writeMetrics(event, fields, handler);
+            }
+        }
+    }
+    
+    /**
+     * Runs the handlers on the events of this mapper with a fixed number of threads. The handlers keep state between events and are not safe to share, so each
+     * thread sets up its own handlers and validators. The output and counters of each event are buffered by the thread processing it, and written to the
+     * context by the map thread in the order the events were submitted.
+     */
+    private class EventProcessingPool {
+        private final Configuration conf;
+        private final int queueSize;
+        private final ExecutorService executor;
+        private final AtomicInteger threadCount = new AtomicInteger();
+        
+        // the events submitted and not yet written, oldest first
+        private final ArrayDeque<Future<ProcessedEvent>> pending = new ArrayDeque<>();
+        
+        private final List<Worker> workers = Collections.synchronizedList(new ArrayList<>());
+        private final ThreadLocal<Worker> worker = ThreadLocal.withInitial(() -> {
+            Worker w = new Worker();
+            workers.add(w);
+            return w;
+        });
+        
+        EventProcessingPool(int threads, int queueSize, Configuration conf) {
+            this.conf = conf;
+            this.queueSize = queueSize;
+            this.executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "event-processor-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        
+        /**
+         * Submit an event to be processed, writing any events already processed. If the queue is full, this waits for the oldest event to be processed.
+         */
+        @SuppressWarnings("unchecked")
+        void submit(K1 key, V1 value, Context context) throws IOException, InterruptedException {
+            // the record reader may reuse the key and value for the next event
+            K1 keyCopy = (key instanceof Writable ? (K1) WritableUtils.clone((Writable) key, conf) : key);
+            List<String> handlerTypes;
+            if (!value.fatalError()) {
+                handlerTypes = Arrays.asList(value.getDataType().typeName(), TypeRegistry.ALL_PREFIX);
+            } else if (!value.ignorableError()) {
+                handlerTypes = Collections.singletonList(TypeRegistry.ERROR_PREFIX);
+            } else {
+                handlerTypes = Collections.emptyList();
+            }
+            pending.add(executor.submit(new ProcessedEvent(keyCopy, value.copy(), handlerTypes, offset, NDC.cloneStack())));
+            
+            while (!pending.isEmpty() && (pending.size() > queueSize || pending.peek().isDone())) {
+                write(pending.remove(), context);
+            }
+        }
+        
+        /**
+         * Wait for every event submitted to be processed, and write them
+         */
+        void drain(Context context) throws IOException, InterruptedException {
+            while (!pending.isEmpty()) {
+                write(pending.remove(), context);
+            }
+        }
+        
+        void shutdown() throws InterruptedException {
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Waiting for the event processing threads to terminate");
+            }
+        }
+        
+        /**
+         * Write the output and counters of a processed event, or send it to the error handlers as {@link EventMapper#map} would had it failed
+         */
+        private void write(Future<ProcessedEvent> future, Context context) throws IOException, InterruptedException {
+            ProcessedEvent event;
+            try {
+                event = future.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to process an event", e.getCause());
+            }
+            
+            // the counters go straight to the context, as any statsd client was sent them by the processing thread
+            for (CounterGroup cg : event.counters) {
+                for (Counter c : cg) {
+                    context.getCounter(cg.getName(), c.getName()).increment(c.getValue());
+                }
+            }
+            
+            Exception error = event.error;
+            try {
+                if (error == null) {
+                    try {
+                        contextWriter.write(event.output, context);
+                    } catch (Exception e) {
+                        // Rollback anything written for this event
+                        contextWriter.rollback();
+                        error = e;
+                    }
+                }
+                if (error != null) {
+                    handleProcessingError(event.key, event.value, event.fields, error, context);
+                }
+            } finally {
+                contextWriter.commit(context);
+                context.progress();
+            }
+            
+            getCounter(context, IngestOutput.EVENTS_PROCESSED.name(), event.value.getDataType().typeName().toUpperCase()).increment(1);
+        }
+        
+        /**
+         * The handlers, validators and context of one processing thread
+         */
+        private class Worker {
+            private final Map<String,List<DataTypeHandler<K1>>> typeMap = new HashMap<>();
+            private final Multimap<String,FieldValidator> validators = ArrayListMultimap.create();
+            private final StandaloneStatusReporter setupReporter = new StandaloneStatusReporter();
+            private final EventStatusReporter eventReporter = new EventStatusReporter();
+            // created once, as the context copies the configuration
+            private final StandaloneTaskAttemptContext<K1,V1,K2,V2> context = new StandaloneTaskAttemptContext<>(conf, eventReporter);
+            
+            List<DataTypeHandler<K1>> getHandlers(List<String> handlerTypes) {
+                List<DataTypeHandler<K1>> handlers = new ArrayList<>();
+                for (String typeStr : handlerTypes) {
+                    List<DataTypeHandler<K1>> typeHandlers = typeMap.get(typeStr);
+                    if (typeHandlers == null) {
+                        typeHandlers = createHandlers(typeStr, conf, setupReporter, validators);
+                        typeMap.put(typeStr, typeHandlers);
+                    }
+                    handlers.addAll(typeHandlers);
+                }
+                return handlers;
+            }
+        }
+        
+        /**
+         * An event, processed by a processing thread into its output and counters, or the exception thrown processing it
+         */
+        private class ProcessedEvent implements Callable<ProcessedEvent> {
+            private final K1 key;
+            private final RawRecordContainer value;
+            private final List<String> handlerTypes;
+            private final long eventOffset;
+            private final Stack<?> ndc;
+            
+            private final Multimap<String,NormalizedContentInterface> fields = HashMultimap.create();
+            private final Multimap<BulkIngestKey,Value> output = ArrayListMultimap.create();
+            private Counters counters;
+            private Exception error;
+            
+            ProcessedEvent(K1 key, RawRecordContainer value, List<String> handlerTypes, long eventOffset, Stack<?> ndc) {
+                this.key = key;
+                this.value = value;
+                this.handlerTypes = handlerTypes;
+                this.eventOffset = eventOffset;
+                this.ndc = ndc;
+            }
+            
+            @Override
+            public ProcessedEvent call() {
+                Worker w = worker.get();
+                // the sequence file name is taken from the NDC of the map thread
+                NDC.inherit(ndc);
+                try {
+                    processEvent(key, value, w.getHandlers(handlerTypes), w.validators, fields, eventOffset, w.context, new BufferingContextWriter<>(output));
+                } catch (Exception e) {
+                    output.clear();
+                    error = e;
+                } finally {
+                    counters = w.eventReporter.reset();
+                    NDC.remove();
+                }
+                return this;
             }
         }
     }
     
+    /**
+     * Collects the output of an event in memory, to be written to the context by the map thread
+     */
+    private static class BufferingContextWriter<OK,OV> implements ContextWriter<OK,OV> {
+        private final Multimap<BulkIngestKey,Value> output;
+        
+        BufferingContextWriter(Multimap<BulkIngestKey,Value> output) {
+            this.output = output;
+        }
+        
+        @Override
+        public void setup(Configuration conf, boolean outputTableCounters) {}
+        
+        @Override
+        public void write(BulkIngestKey key, Value value, TaskInputOutputContext<?,?,OK,OV> context) {
+            output.put(key, value);
+        }
+        
+        @Override
+        public void write(Multimap<BulkIngestKey,Value> entries, TaskInputOutputContext<?,?,OK,OV> context) {
+            output.putAll(entries);
+        }
+        
+        @Override
+        public void commit(TaskInputOutputContext<?,?,OK,OV> context) {}
+        
+        @Override
+        public void rollback() {
+            output.clear();
+        }
+        
+        @Override
+        public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) {}
+    }
+    
+    /**
+     * Collects the counters of one event at a time, so that they are added to the map context when the event is written
+     */
+    private static class EventStatusReporter extends StatusReporter {
+        private Counters counters = new Counters();
+        
+        /**
+         * @return the counters since the last reset
+         */
+        Counters reset() {
+            Counters eventCounters = counters;
+            counters = new Counters();
+            return eventCounters;
+        }
+        
+        @Override
+        public Counter getCounter(Enum<?> name) {
+            return counters.findCounter(name);
+        }
+        
+        @Override
+        public Counter getCounter(String group, String name) {
+            return counters.findCounter(group, name);
+        }
+        
+        @Override
+        public void progress() {
+            // the map thread reports progress as the events are written
+        }
+        
+        @Override
+        public void setStatus(String status) {
+            // do nothing
+        }
+        
+        @Override
+        public float getProgress() {
+            return 0;
+        }
+    }
+    
     public ContextWriter<K2,V2> getContextWriter() {
         return this.contextWriter;
     }
@@ -0,0 +1,72 @@
+package datawave.ingest.mapreduce.handler.shard.content;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of term offsets held in a primitive array. It may be handed to anything expecting a list of offsets, but the tokenizers add to it and the
+ * term frequency writers read from it without boxing.
+ */
+public class OffsetArray extends AbstractList<Integer> implements RandomAccess {
+    
+    private int[] offsets;
+    private int size = 0;
+    
+    public OffsetArray() {
+        this(4);
+    }
+    
+    public OffsetArray(int capacity) {
+        this.offsets = new int[Math.max(capacity, 1)];
+    }
+    
+    /**
+     * Append an offset
+     *
+     * @param offset
+     */
+    public void add(int offset) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = offset;
+        modCount++;
+    }
+    
+    @Override
+    public boolean add(Integer offset) {
+        add(offset.intValue());
+        return true;
+    }
+    
+    public int getInt(int i) {
+        if (i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        return offsets[i];
+    }
+    
+    @Override
+    public Integer get(int i) {
+        return getInt(i);
+    }
+    
+    /**
+     * @return the backing array, of which the first {@link #size()} entries are the offsets
+     */
+    public int[] array() {
+        return offsets;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+}
@@ -0,0 +1,249 @@
+package datawave.ingest.mapreduce.handler.shard.content;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import datawave.ingest.mapreduce.handler.shard.content.BoundedOffsetQueue.OffsetList;
+
+/**
+ * A bounded offset queue which, like the {@link BoundedOffsetQueue}, gives up the term with the fewest offsets when the queue is full. The offsets of each term
+ * are held in an {@link OffsetArray}, and the terms are kept in a heap of primitive records rather than re-ordered on every offset added, so adding an offset
+ * costs a logarithmic rather than a linear amount of time and allocates nothing once the term has been seen. This keeps the tokenization of large documents
+ * from being dominated by the offset cache.
+ */
+public class TermOffsetQueue implements OffsetQueue<Integer> {
+    
+    private final int maxNumOffsets;
+    
+    private final Map<TermAndZone,Entry> entries;
+    
+    // the entries by slot, with the slots freed by evicted entries reused
+    private Entry[] slots = new Entry[16];
+    private int numSlots = 0;
+    private int[] freeSlots = new int[16];
+    private int numFreeSlots = 0;
+    
+    // a min heap of (number of offsets << 32 | slot) records, one added each time an entry grows. Records whose count no longer matches their entry are stale
+    // and are dropped as they reach the top.
+    private long[] heap = new long[16];
+    private int heapSize = 0;
+    
+    // The current size of the queue in terms of offsets (i.e. not in terms of keys)
+    private int numOffsets = 0;
+    
+    public TermOffsetQueue(int maxNumOffsets) {
+        this.maxNumOffsets = maxNumOffsets;
+        this.entries = new HashMap<>(Math.max(16, maxNumOffsets / 10));
+    }
+    
+    @Override
+    public int size() {
+        return numOffsets;
+    }
+    
+    public int getCapacity() {
+        return maxNumOffsets;
+    }
+    
+    @Override
+    public OffsetList<Integer> addOffset(TermAndZone termAndZone, Integer offset) {
+        return addOffset(termAndZone, offset.intValue());
+    }
+    
+    /**
+     * Add an offset. If this addition pushes the queue past its limit, then the entry with the fewest offsets is removed and returned.
+     *
+     * @param termAndZone
+     * @param offset
+     * @return The removed overflow entry, whose offsets are an {@link OffsetArray}. Null if the queue is not full yet.
+     */
+    public OffsetList<Integer> addOffset(TermAndZone termAndZone, int offset) {
+        Entry entry = entries.get(termAndZone);
+        if (entry == null) {
+            entry = new Entry(termAndZone, allocateSlot());
+            slots[entry.slot] = entry;
+            entries.put(termAndZone, entry);
+        }
+        entry.offsets.add(offset);
+        push(entry);
+        
+        numOffsets++;
+        if (numOffsets > maxNumOffsets) {
+            Entry smallest = pollSmallest();
+            remove(smallest);
+            OffsetList<Integer> list = new OffsetList<>();
+            list.termAndZone = smallest.termAndZone;
+            list.offsets = smallest.offsets;
+            return list;
+        } else {
+            return null;
+        }
+    }
+    
+    @Override
+    public void clear() {
+        entries.clear();
+        Arrays.fill(slots, 0, numSlots, null);
+        numSlots = 0;
+        numFreeSlots = 0;
+        heapSize = 0;
+        numOffsets = 0;
+    }
+    
+    @Override
+    public boolean containsKey(TermAndZone termAndZone) {
+        return entries.containsKey(termAndZone);
+    }
+    
+    @Override
+    public List<Integer> getOffsets(TermAndZone termAndZone) {
+        Entry entry = entries.get(termAndZone);
+        return (entry == null ? null : entry.offsets);
+    }
+    
+    @Override
+    public Iterable<OffsetList<Integer>> offsets() {
+        return () -> {
+            final Iterator<Entry> it = entries.values().iterator();
+            final OffsetList<Integer> offsets = new OffsetList<>();
+            return new Iterator<OffsetList<Integer>>() {
+                private Entry current;
+                
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+                
+                @Override
+                public OffsetList<Integer> next() {
+                    current = it.next();
+                    offsets.offsets = current.offsets;
+                    offsets.termAndZone = current.termAndZone;
+                    return offsets;
+                }
+                
+                @Override
+                public void remove() {
+                    it.remove();
+                    release(current);
+                }
+            };
+        };
+    }
+    
+    private void remove(Entry entry) {
+        entries.remove(entry.termAndZone);
+        release(entry);
+    }
+    
+    /**
+     * Give up the slot and offsets of an entry already removed from the map
+     */
+    private void release(Entry entry) {
+        slots[entry.slot] = null;
+        if (numFreeSlots == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, numFreeSlots * 2);
+        }
+        freeSlots[numFreeSlots++] = entry.slot;
+        numOffsets -= entry.offsets.size();
+    }
+    
+    private int allocateSlot() {
+        if (numFreeSlots > 0) {
+            return freeSlots[--numFreeSlots];
+        }
+        if (numSlots == slots.length) {
+            slots = Arrays.copyOf(slots, numSlots * 2);
+        }
+        return numSlots++;
+    }
+    
+    /**
+     * Remove the entry with the fewest offsets from the heap. A stale record whose count matches the current count of the entry now in its slot is as good as
+     * that entry's own record, as every live entry has a record for its current count.
+     */
+    private Entry pollSmallest() {
+        while (true) {
+            long record = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(0);
+            Entry entry = slots[(int) record];
+            if (entry != null && entry.offsets.size() == (int) (record >>> 32)) {
+                return entry;
+            }
+        }
+    }
+    
+    private void push(Entry entry) {
+        if (heapSize == heap.length) {
+            if (heapSize > 2 * entries.size()) {
+                compact();
+            } else {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+            }
+        }
+        heap[heapSize] = record(entry);
+        siftUp(heapSize++);
+    }
+    
+    /**
+     * Replace the heap with one current record per entry
+     */
+    private void compact() {
+        heapSize = 0;
+        for (Entry entry : entries.values()) {
+            heap[heapSize++] = record(entry);
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+    
+    private static long record(Entry entry) {
+        return ((long) entry.offsets.size() << 32) | entry.slot;
+    }
+    
+    private void siftUp(int i) {
+        long record = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= record) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = record;
+    }
+    
+    private void siftDown(int i) {
+        long record = heap[i];
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (record <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = record;
+    }
+    
+    private static class Entry {
+        private final TermAndZone termAndZone;
+        private final int slot;
+        private final OffsetArray offsets = new OffsetArray();
+        
+        Entry(TermAndZone termAndZone, int slot) {
+            this.termAndZone = termAndZone;
+            this.slot = slot;
+        }
+    }
+}
@@ -27,14 +27,14 @@ import datawave.ingest.mapreduce.handler.DataTypeHandler;
 import datawave.ingest.mapreduce.handler.ExtendedDataTypeHandler;
 import datawave.ingest.mapreduce.handler.shard.AbstractColumnBasedHandler;
 import datawave.ingest.mapreduce.handler.shard.ShardedDataTypeHandler;
-import datawave.ingest.mapreduce.handler.shard.content.BoundedOffsetQueue;
 import datawave.ingest.mapreduce.handler.shard.content.BoundedOffsetQueue.OffsetList;
 import datawave.ingest.mapreduce.handler.shard.content.ContentIndexCounters;
-import datawave.ingest.mapreduce.handler.shard.content.OffsetQueue;
+import datawave.ingest.mapreduce.handler.shard.content.OffsetArray;
 import datawave.ingest.mapreduce.handler.shard.content.TermAndZone;
+import datawave.ingest.mapreduce.handler.shard.content.TermOffsetQueue;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.ingest.mapreduce.job.writer.ContextWriter;
-import datawave.ingest.protobuf.TermWeight;
+import datawave.ingest.protobuf.TermWeightOffsets;
 import datawave.ingest.protobuf.Uid;
 import datawave.util.TextUtil;
 
@@ -55,6 +55,7 @@ import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 import org.apache.hadoop.util.bloom.BloomFilter;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.infinispan.commons.util.Base64;
 
 import com.google.common.collect.Multimap;
@@ -128,7 +129,7 @@ public abstract class ExtendedContentIndexingColumnBasedHandler<KEYIN,KEYOUT,VAL
     protected ExtendedContentDataTypeHelper dataTypeHelper = null;
     
     protected ContentIndexCounters counters = null;
-    protected OffsetQueue<Integer> tokenOffsetCache = null;
+    protected TermOffsetQueue tokenOffsetCache = null;
     protected Set<String> zones = new HashSet<>();
     
     protected boolean eventReplaceMalformedUTF8 = false;
@@ -153,6 +154,9 @@ public abstract class ExtendedContentIndexingColumnBasedHandler<KEYIN,KEYOUT,VAL
     
     protected TokenizationHelper tokenHelper = null;
     
+    // the offsets of a term written without the token offset cache, reused from one term to the next
+    private final int[] singleOffset = new int[1];
+    
     @Override
     public void setup(TaskAttemptContext context) {
         super.setup(context);
@@ -202,8 +206,8 @@ public abstract class ExtendedContentIndexingColumnBasedHandler<KEYIN,KEYOUT,VAL
             }
         }
         // The tokens offsets queue is a bounded priority queue that will allow us to cache the
-        // highest cardinality offsets up to a predetermined max size
-        tokenOffsetCache = new BoundedOffsetQueue<>(tokenHelper.getTokenOffsetCacheMaxSize());
+        // highest cardinality offsets up to a predetermined max size, holding the offsets as primitives
+        tokenOffsetCache = new TermOffsetQueue(tokenHelper.getTokenOffsetCacheMaxSize());
         
         stopWords = tokenHelper.getStopWords();
         
@@ -365,8 +369,8 @@ public abstract class ExtendedContentIndexingColumnBasedHandler<KEYIN,KEYOUT,VAL
                     counters.incrementValue(ContentIndexCounters.TOKENIZER_OFFSET_CACHE_POSITIONS_OVERFLOWED, overflow.offsets.size(), reporter);
                 }
             } else {
-                createTermFrequencyIndex(event, contextWriter, context, this.shardId, nfv, Arrays.asList(position), fieldVisibility,
-                                this.ingestHelper.getDeleteMode());
+                singleOffset[0] = position;
+                createTermFrequencyIndex(event, contextWriter, context, this.shardId, nfv, singleOffset, 1, fieldVisibility, this.ingestHelper.getDeleteMode());
             }
         }
     }
@@ -661,6 +665,22 @@ public abstract class ExtendedContentIndexingColumnBasedHandler<KEYIN,KEYOUT,VAL
         }
     }
     
+    /**
+     * Test whether a token is empty or all whitespace from the term attribute's buffer, so that the tokenizers need not create a string for tokens they skip.
+     * 
+     * @param termAttr
+     * @return true if the term is blank
+     */
+    protected static boolean isBlank(CharTermAttribute termAttr) {
+        char[] buffer = termAttr.buffer();
+        for (int i = 0; i < termAttr.length(); i++) {
+            if (!Character.isWhitespace(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     // Used to indicate that there was a case where the tokenizer took too
     // long.
     public static class TokenizerTimeoutException extends IOException {
@@ -723,11 +743,39 @@ public abstract class ExtendedContentIndexingColumnBasedHandler<KEYIN,KEYOUT,VAL
                     TaskInputOutputContext<KEYIN,? extends RawRecordContainer,KEYOUT,VALUEOUT> context, byte[] shardId, NormalizedFieldAndValue nfv,
                     List<Integer> offsets, byte[] visibility, boolean deleteMode) throws IOException, InterruptedException {
         
-        TermWeight.Info.Builder builder = TermWeight.Info.newBuilder();
-        for (Integer offset : offsets) {
-            builder.addTermOffset(offset);
+        if (offsets instanceof OffsetArray) {
+            // the offsets of the token offset cache, which need no copying
+            createTermFrequencyIndex(event, contextWriter, context, shardId, nfv, ((OffsetArray) offsets).array(), offsets.size(), visibility, deleteMode);
+        } else {
+            int[] array = new int[offsets.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = offsets.get(i);
+            }
+            createTermFrequencyIndex(event, contextWriter, context, shardId, nfv, array, array.length, visibility, deleteMode);
         }
-        Value value = new Value(builder.build().toByteArray());
+    }
+    
+    /**
+     * Creates a Term Frequency index key in the "tf" column family, serializing the offsets directly rather than through a TermWeight builder.
+     * 
+     * @param event
+     * @param contextWriter
+     * @param context
+     * @param shardId
+     * @param nfv
+     * @param offsets
+     * @param count
+     *            the number of offsets to take from the array
+     * @param visibility
+     * @param deleteMode
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    protected void createTermFrequencyIndex(RawRecordContainer event, ContextWriter<KEYOUT,VALUEOUT> contextWriter,
+                    TaskInputOutputContext<KEYIN,? extends RawRecordContainer,KEYOUT,VALUEOUT> context, byte[] shardId, NormalizedFieldAndValue nfv,
+                    int[] offsets, int count, byte[] visibility, boolean deleteMode) throws IOException, InterruptedException {
+        
+        Value value = new Value(TermWeightOffsets.encode(offsets, count));
         
         StringBuilder colq = new StringBuilder(this.eventDataTypeName.length() + this.eventUid.length() + nfv.getIndexedFieldName().length()
                         + nfv.getIndexedFieldValue().length() + 3);
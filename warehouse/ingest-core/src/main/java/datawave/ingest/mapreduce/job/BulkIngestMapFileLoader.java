@@ -18,6 +18,11 @@ import org.apache.accumulo.core.client.impl.MasterClient;
 import org.apache.accumulo.core.client.impl.Tables;
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.master.thrift.MasterClientService.Iface;
 import org.apache.accumulo.core.master.thrift.MasterMonitorInfo;
 import org.apache.accumulo.core.master.thrift.TableInfo;
@@ -31,6 +36,7 @@ import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.SequenceFile.Writer;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.GzipCodec;
 import org.apache.hadoop.mapreduce.Counters;
@@ -53,20 +59,30 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * A processor whose job is to watch for completed Bulk Ingest jobs and bring the map files produced by them online in accumulo. This class attempts to bring
  * multiple map files online at once if many jobs have completed, and also attempts to throttle itself to prevent queuing up too many major compactions on the
  * various tablet servers.
+ * <p>
+ * With {@code -pipeline}, job directories are instead loaded by a {@link LoadPipeline}, which overlaps the loading of several directories and throttles the
+ * imports of each table by that table's own compaction backlog.
  */
 public final class BulkIngestMapFileLoader implements Runnable {
     private static Logger log = Logger.getLogger(BulkIngestMapFileLoader.class);
@@ -78,12 +94,22 @@ public final class BulkIngestMapFileLoader implements Runnable {
     private static int MAJC_WAIT_TIMEOUT = 0;// 2 * 60 * 1000;
     private static int SHUTDOWN_PORT = 24111;
     private static boolean FIFO = true;
+    private static boolean PIPELINED = false;
+    // the compactions of a table allowed before the pipeline waits to import into it, defaulting to the majcThreshold
+    private static int TABLE_MAJC_THRESHOLD = -1;
+    private static int MAJC_REFRESH_TIME = 5000;
+    private static int IMPORT_THREADS = 8;
     
     public static final String COMPLETE_FILE_MARKER = "job.complete";
     public static final String LOADING_FILE_MARKER = "job.loading";
     public static final String FAILED_FILE_MARKER = "job.failed";
     public static final String ATTEMPT_FILE_MARKER = "job.load.attempt.failed.do.not.delete";
     public static final String INPUT_FILES_MARKER = "job.paths";
+    // the base directory of the query ivarator result cache (see IvaratorResultCache) to invalidate after a table is loaded
+    public static final String IVARATOR_RESULT_CACHE_DIR = "ivarator.result.cache.dir";
+    // the markers of the ivarator result cache, touched for each row imported or for the entire table if the rows cannot be determined
+    public static final String IVARATOR_RESULT_CACHE_INVALIDATIONS_DIR = "invalidations";
+    public static final String IVARATOR_RESULT_CACHE_BULK_IMPORT_MARKER = "bulk.import";
     private static String cleanUpScript;
     
     private Path workDir;
@@ -111,7 +137,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
         ArrayList<String[]> properties = new ArrayList<>();
         
         if (args.length < 6) {
-            log.error("usage: BulkIngestMapFileLoader hdfsWorkDir jobDirPattern instanceName zooKeepers username password [-sleepTime sleepTime] [-majcThreshold threshold] [-majcCheckInterval count] [-majcDelay majcDelay] [-seqFileHdfs seqFileSystemUri] [-srcHdfs srcFileSystemURI] [-destHdfs destFileSystemURI] [-jt jobTracker] [-shutdownPort portNum] confFile [{confFile}]");
+            log.error("usage: BulkIngestMapFileLoader hdfsWorkDir jobDirPattern instanceName zooKeepers username password [-sleepTime sleepTime] [-majcThreshold threshold] [-majcCheckInterval count] [-majcDelay majcDelay] [-seqFileHdfs seqFileSystemUri] [-srcHdfs srcFileSystemURI] [-destHdfs destFileSystemURI] [-jt jobTracker] [-shutdownPort portNum] [-pipeline] [-tableMajcThreshold threshold] confFile [{confFile}]");
             System.exit(-1);
         }
         
@@ -273,6 +299,20 @@ public final class BulkIngestMapFileLoader implements Runnable {
                 } else if ("-fifo".equalsIgnoreCase(args[i])) {
                     FIFO = true;
                     log.info("Changing processing order to FIFO");
+                } else if ("-pipeline".equalsIgnoreCase(args[i])) {
+                    PIPELINED = true;
+                    log.info("Loading job directories in a pipeline");
+                } else if ("-tableMajcThreshold".equalsIgnoreCase(args[i])) {
+                    if (i + 2 > args.length) {
+                        log.error("-tableMajcThreshold must be followed by the maximum number of major compactions of a table allowed before waiting");
+                        System.exit(-2);
+                    }
+                    try {
+                        TABLE_MAJC_THRESHOLD = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        log.error("-tableMajcThreshold must be followed by the maximum number of major compactions of a table allowed before waiting", e);
+                        System.exit(-2);
+                    }
                 } else if (args[i].startsWith("-")) {
                     int index = args[i].indexOf('=', 1);
                     if (index < 0) {
@@ -303,6 +343,11 @@ public final class BulkIngestMapFileLoader implements Runnable {
         log.info("Using " + jobtracker + " as the jobtracker");
         log.info("Using " + SHUTDOWN_PORT + " as the shutdown port");
         log.info("Using " + (FIFO ? "FIFO" : "LIFO") + " processing order");
+        if (PIPELINED) {
+            IMPORT_THREADS = numBulkThreads;
+            log.info("Will wait to import into a table if it has more than " + getTableMajcThreshold() + " running or queued major compactions.");
+            log.info("Importing up to " + IMPORT_THREADS + " job directories at once");
+        }
         
         for (String[] s : properties) {
             conf.set(s[0], s[1]);
@@ -377,6 +422,17 @@ public final class BulkIngestMapFileLoader implements Runnable {
     @Override
     public void run() {
         log.info("Starting process to monitor map files.");
+        if (PIPELINED) {
+            try {
+                CompactionAdmission admission = new CompactionAdmission(this::getMajorCompactionCounts, getTableMajcThreshold(), MAJC_REFRESH_TIME);
+                new LoadPipeline(IMPORT_THREADS, mapFilesDir -> bringMapFilesOnline(mapFilesDir, admission)).run();
+            } finally {
+                log.info("Shutting down executor service");
+                executor.shutdown();
+            }
+            log.info("Bulk map file loader shutting down.");
+            return;
+        }
         long lastOnlineTime = 0;
         long lastLoadMessageTime = 0;
         int fsAccessFailures = 0;
@@ -600,6 +656,19 @@ public final class BulkIngestMapFileLoader implements Runnable {
     
     private int getMajorCompactionCount() {
         int majC = 0;
+        for (int tableMajC : getMajorCompactionCounts().values()) {
+            majC += tableMajC;
+        }
+        return majC;
+    }
+    
+    /**
+     * Get the number of major compactions running or queued for each table
+     * 
+     * @return the number of compactions by table id, empty if the stats could not be retrieved
+     */
+    private Map<String,Integer> getMajorCompactionCounts() {
+        Map<String,Integer> majCs = new HashMap<>();
         
         ZooKeeperInstance instance = new ZooKeeperInstance(ClientConfiguration.loadDefault().withInstance(instanceName).withZkHosts(zooKeepers));
         
@@ -610,8 +679,7 @@ public final class BulkIngestMapFileLoader implements Runnable {
             Map<String,TableInfo> tableStats = mmi.getTableMap();
             
             for (java.util.Map.Entry<String,TableInfo> e : tableStats.entrySet()) {
-                majC += e.getValue().getMajors().getQueued();
-                majC += e.getValue().getMajors().getRunning();
+                majCs.put(e.getKey(), e.getValue().getMajors().getQueued() + e.getValue().getMajors().getRunning());
             }
         } catch (Exception e) {
             // Accumulo API changed, catch exception for now until we redeploy
@@ -623,7 +691,11 @@ public final class BulkIngestMapFileLoader implements Runnable {
             }
         }
         
-        return majC;
+        return majCs;
+    }
+    
+    private static int getTableMajcThreshold() {
+        return (TABLE_MAJC_THRESHOLD > 0 ? TABLE_MAJC_THRESHOLD : MAJC_THRESHOLD);
     }
     
     /**
@@ -658,6 +730,18 @@ public final class BulkIngestMapFileLoader implements Runnable {
      * tables for which map files are to be loaded. Under those directories should be "part-XXXXX" directories which in turn contain the map/index files.
      */
     public void bringMapFilesOnline(Path mapFilesDir) throws IOException, AccumuloException, AccumuloSecurityException, TableNotFoundException {
+        bringMapFilesOnline(mapFilesDir, null);
+    }
+    
+    /**
+     * Brings all map files in {@code mapFilesDir} online in accumulo, waiting for admission before importing into each table
+     * 
+     * @param mapFilesDir
+     * @param admission
+     *            the admission of imports by the compaction backlog of their tables, or null to import without waiting
+     */
+    private void bringMapFilesOnline(Path mapFilesDir, CompactionAdmission admission) throws IOException, AccumuloException, AccumuloSecurityException,
+                    TableNotFoundException {
         log.info("Bringing all mapFiles under " + mapFilesDir + " online.");
         
         // By now the map files should be on the local filesystem
@@ -732,6 +816,9 @@ public final class BulkIngestMapFileLoader implements Runnable {
                 
                 priority = tablePriorities.get(stat.getPath().getName());
             }
+            if (admission != null) {
+                admission.await(tableName, tableIds.get(tableName));
+            }
             imports.push(startImport(mapFilesDir, tableName, tableDir, tops));
         }
         
@@ -761,6 +848,72 @@ public final class BulkIngestMapFileLoader implements Runnable {
         return runnable;
     }
     
+    /**
+     * Get the rows of the map files in a directory. Each file is read from its first row to its last by seeking past one row at a time, so that only about a
+     * block per row is read rather than the entire file.
+     * 
+     * @param fs
+     *            the file system of the map files
+     * @param dir
+     *            the directory holding the map files
+     * @param conf
+     * @return the rows
+     * @throws IOException
+     */
+    static Set<String> getMapFileRows(FileSystem fs, Path dir, Configuration conf) throws IOException {
+        Set<String> rows = new TreeSet<>();
+        for (FileStatus file : fs.listStatus(dir)) {
+            if (!file.isFile()) {
+                continue;
+            }
+            FileSKVIterator reader = FileOperations.getInstance().newReaderBuilder().forFile(file.getPath().toString(), fs, conf)
+                            .withTableConfiguration(AccumuloConfiguration.getDefaultConfiguration()).build();
+            try {
+                Key firstKey = reader.getFirstKey();
+                if (firstKey == null) {
+                    continue;
+                }
+                Text lastRow = reader.getLastKey().getRow();
+                Text row = firstKey.getRow();
+                rows.add(row.toString());
+                while (row.compareTo(lastRow) < 0) {
+                    reader.seek(new Range(new Key(row).followingKey(PartialKey.ROW), true, null, false), Collections.emptySet(), false);
+                    if (!reader.hasTop()) {
+                        break;
+                    }
+                    row = reader.getTopKey().getRow();
+                    rows.add(row.toString());
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Touch the invalidation marker of each imported row in the table's ivarator result cache, so that the cached query results computed for those rows before
+     * the import are no longer used. The results cached for the other rows of the table remain valid.
+     * 
+     * @param cacheDir
+     *            the ivarator result cache directory of the table
+     * @param rows
+     *            the rows imported, or null to invalidate the entire table
+     * @param conf
+     * @throws IOException
+     */
+    static void invalidateIvaratorResultCache(Path cacheDir, Set<String> rows, Configuration conf) throws IOException {
+        FileSystem fs = cacheDir.getFileSystem(conf);
+        Path invalidations = new Path(cacheDir, IVARATOR_RESULT_CACHE_INVALIDATIONS_DIR);
+        if (rows == null) {
+            fs.create(new Path(invalidations, IVARATOR_RESULT_CACHE_BULK_IMPORT_MARKER), true).close();
+        } else {
+            for (String row : rows) {
+                fs.create(new Path(invalidations, row), true).close();
+            }
+        }
+    }
+    
     public class ImportRunnable implements Runnable {
         private boolean complete = false;
         private String tableName;
@@ -818,10 +971,17 @@ public final class BulkIngestMapFileLoader implements Runnable {
                 }
                 fileSystem.mkdirs(failuresPath);
                 
+                // the map files are moved into the table by the import, so find the cached rows they affect beforehand
+                Path cacheDir = getIvaratorResultCacheDir();
+                Set<String> cachedRows = (cacheDir == null ? null : getIvaratorResultCacheRows(fileSystem));
+                
                 // import the directory
                 log.info("Bringing Map Files online for " + tableName);
                 tops.importDirectory(tableName, tableDir.toString(), failuresDir, false);
                 log.info("Completed bringing map files online for " + tableName);
+                if (cacheDir != null) {
+                    invalidateIvaratorResultCache(cacheDir, cachedRows);
+                }
                 validateComplete();
             } catch (Exception e) {
                 log.error("Error importing files into table " + tableName + " from directory " + mapFilesDir, e);
@@ -838,6 +998,44 @@ public final class BulkIngestMapFileLoader implements Runnable {
             collapseDirectory(tableDir);
         }
         
+        /**
+         * @return the ivarator result cache directory of the table, null if the table has no cache
+         */
+        private Path getIvaratorResultCacheDir() {
+            String cacheDir = conf.get(IVARATOR_RESULT_CACHE_DIR);
+            if (cacheDir == null || cacheDir.isEmpty()) {
+                return null;
+            }
+            Path tableCacheDir = new Path(cacheDir, tableName);
+            try {
+                return (tableCacheDir.getFileSystem(conf).exists(tableCacheDir) ? tableCacheDir : null);
+            } catch (Exception e) {
+                // assume there is a cache to invalidate
+                log.warn("Unable to check for the ivarator result cache " + tableCacheDir + " of " + tableName, e);
+                return tableCacheDir;
+            }
+        }
+        
+        /**
+         * @return the rows of the map files being imported, null if they could not be read
+         */
+        private Set<String> getIvaratorResultCacheRows(FileSystem fileSystem) {
+            try {
+                return getMapFileRows(fileSystem, tableDir, fileSystem.getConf());
+            } catch (Exception e) {
+                log.warn("Unable to read the rows of " + tableDir + ", invalidating the entire ivarator result cache of " + tableName, e);
+                return null;
+            }
+        }
+        
+        private void invalidateIvaratorResultCache(Path cacheDir, Set<String> rows) {
+            try {
+                BulkIngestMapFileLoader.invalidateIvaratorResultCache(cacheDir, rows, conf);
+            } catch (Exception e) {
+                log.error("Failed to invalidate the ivarator result cache " + cacheDir + " for " + tableName, e);
+            }
+        }
+        
         private void collapseDirectory(Path dir) throws IOException {
             // collapse any subdirectories, and then collapse those to the top level
             FileSystem fileSystem = FileSystem.get(srcHdfs, new Configuration());
@@ -904,6 +1102,264 @@ public final class BulkIngestMapFileLoader implements Runnable {
         }
     }
     
+    /**
+     * Loads job directories in three stages connected by bounded queues, so that the directories of an ingest burst are loaded concurrently rather than one
+     * after another. The discovery stage, on the thread of {@link #run()}, takes ownership of completed job directories and copies them to the destination file
+     * system. The import stage brings the map files of several directories online at once, each waiting for its tables to be admitted by their compaction
+     * backlog. The cleanup stage verifies and cleans up the directories, or marks them failed, and writes the stats. When the queues are full the earlier
+     * stages wait, so no more directories are claimed than can be worked on.
+     */
+    class LoadPipeline {
+        private final LoadJob END = new LoadJob(null);
+        
+        private final int importThreads;
+        private final MapFilesImporter importer;
+        private final BlockingQueue<LoadJob> importQueue;
+        private final BlockingQueue<LoadJob> cleanupQueue;
+        private final AtomicInteger importersRunning;
+        
+        /**
+         * @param importThreads
+         *            the number of job directories to import at once
+         * @param importer
+         *            brings the map files of a job directory online
+         */
+        LoadPipeline(int importThreads, MapFilesImporter importer) {
+            this.importThreads = Math.max(importThreads, 1);
+            this.importer = importer;
+            this.importQueue = new ArrayBlockingQueue<>(this.importThreads);
+            this.cleanupQueue = new ArrayBlockingQueue<>(this.importThreads);
+            this.importersRunning = new AtomicInteger(this.importThreads);
+        }
+        
+        public void run() {
+            ExecutorService importers = Executors.newFixedThreadPool(importThreads);
+            for (int i = 0; i < importThreads; i++) {
+                importers.submit(this::importJobs);
+            }
+            Thread cleaner = new Thread(this::cleanUpJobs, "map-file-cleanup");
+            cleaner.start();
+            try {
+                discoverJobs();
+            } finally {
+                // the directories already claimed are loaded before shutting down, so that none are left marked as loading
+                for (int i = 0; i < importThreads; i++) {
+                    put(importQueue, END);
+                }
+                importers.shutdown();
+                while (cleaner.isAlive()) {
+                    try {
+                        cleaner.join();
+                    } catch (InterruptedException e) {
+                        log.warn("Interrupted while waiting for the job directories to be cleaned up.", e);
+                    }
+                }
+            }
+        }
+        
+        private void discoverJobs() {
+            while (running) {
+                boolean claimed = false;
+                try {
+                    for (Path srcJobDirectory : getJobDirectories()) {
+                        if (!running)
+                            break;
+                        // take ownership of the job directory if we can
+                        if (takeOwnershipJobDirectory(srcJobDirectory)) {
+                            claimed = true;
+                            LoadJob job = new LoadJob(srcJobDirectory);
+                            log.info("Started processing " + job.getMapFilesDir());
+                            try {
+                                // copy the data if needed
+                                job.dstJobDirectory = distCpDirectory(srcJobDirectory);
+                                job.workingHdfs = destHdfs;
+                            } catch (Exception e) {
+                                job.exception = e;
+                            }
+                            put(importQueue, job);
+                        }
+                    }
+                } catch (Exception e) {
+                    log.error("Error: " + e.getMessage(), e);
+                }
+                // look again right away while there are directories to load
+                if (!claimed && running) {
+                    sleep();
+                }
+            }
+        }
+        
+        private void importJobs() {
+            for (LoadJob job = take(importQueue); job != END; job = take(importQueue)) {
+                if (job.exception == null) {
+                    try {
+                        importer.importMapFiles(job.getMapFilesDir());
+                    } catch (Exception e) {
+                        job.exception = e;
+                    }
+                }
+                put(cleanupQueue, job);
+            }
+            if (importersRunning.decrementAndGet() == 0) {
+                put(cleanupQueue, END);
+            }
+        }
+        
+        private void cleanUpJobs() {
+            int fsAccessFailures = 0;
+            for (LoadJob job = take(cleanupQueue); job != END; job = take(cleanupQueue)) {
+                Path mapFilesDir = job.getMapFilesDir();
+                reporter.getCounter("MapFileLoader.StartTimes", job.srcJobDirectory.getName()).increment(job.startTime);
+                try {
+                    if (job.exception != null) {
+                        throw job.exception;
+                    }
+                    
+                    // ensure everything got loaded
+                    verifyNothingLeftBehind(mapFilesDir);
+                    
+                    cleanUpJobDirectory(mapFilesDir);
+                    log.info("Finished processing " + mapFilesDir + ", duration (sec): " + ((System.currentTimeMillis() - job.startTime) / 1000));
+                } catch (Exception e) {
+                    log.error("Failed to process " + mapFilesDir, e);
+                    boolean marked = markJobDirectoryFailed(job.workingHdfs, job.dstJobDirectory);
+                    if (!marked) {
+                        ++fsAccessFailures;
+                        if (fsAccessFailures >= 3) {
+                            log.error("Too many failures updating marker files.  Exiting...");
+                            shutdown();
+                        } else {
+                            log.warn("Failed to mark " + job.dstJobDirectory + " as failed. Sleeping in case this was a transient failure.");
+                            try {
+                                Thread.sleep(FAILURE_SLEEP_TIME);
+                            } catch (InterruptedException ie) {
+                                log.warn("Interrupted while sleeping.", ie);
+                            }
+                        }
+                    }
+                }
+                try {
+                    writeStats(new Path[] {job.srcJobDirectory});
+                } catch (IOException e) {
+                    log.error("Error: " + e.getMessage(), e);
+                }
+            }
+        }
+        
+        private void put(BlockingQueue<LoadJob> queue, LoadJob job) {
+            while (true) {
+                try {
+                    queue.put(job);
+                    return;
+                } catch (InterruptedException e) {
+                    // the job directory has been claimed, so it must be passed on
+                    log.warn("Interrupted while queueing " + job.srcJobDirectory, e);
+                }
+            }
+        }
+        
+        private LoadJob take(BlockingQueue<LoadJob> queue) {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    log.warn("Interrupted while waiting for a job directory.", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Brings the map files of a job directory online for the {@link LoadPipeline}
+     */
+    interface MapFilesImporter {
+        void importMapFiles(Path mapFilesDir) throws Exception;
+    }
+    
+    /**
+     * A job directory passing through the {@link LoadPipeline}
+     */
+    private class LoadJob {
+        private final Path srcJobDirectory;
+        private final long startTime = System.currentTimeMillis();
+        private Path dstJobDirectory;
+        private URI workingHdfs = srcHdfs;
+        private Exception exception = null;
+        
+        private LoadJob(Path srcJobDirectory) {
+            this.srcJobDirectory = srcJobDirectory;
+            this.dstJobDirectory = srcJobDirectory;
+        }
+        
+        private Path getMapFilesDir() {
+            // the map files directory of the destination, in case it moved filesystems
+            return new Path(dstJobDirectory, "mapFiles");
+        }
+    }
+    
+    /**
+     * Admits imports into a table while the table has fewer running or queued major compactions than the table threshold. The counts are retrieved from the
+     * master at most once per refresh interval, and shared by all of the import threads.
+     */
+    class CompactionAdmission {
+        private final Supplier<Map<String,Integer>> counts;
+        private final int threshold;
+        private final long refreshTime;
+        private Map<String,Integer> majCs = Collections.emptyMap();
+        private long lastRefreshTime = 0;
+        
+        /**
+         * @param counts
+         *            the number of major compactions running or queued for each table, by table id
+         * @param threshold
+         *            the number of compactions of a table at which imports into it wait
+         * @param refreshTime
+         *            the time in milliseconds between retrievals of the counts
+         */
+        CompactionAdmission(Supplier<Map<String,Integer>> counts, int threshold, long refreshTime) {
+            this.counts = counts;
+            this.threshold = threshold;
+            this.refreshTime = refreshTime;
+        }
+        
+        /**
+         * Wait until the table's compaction backlog is below the threshold, or the loader is shutting down
+         * 
+         * @param tableName
+         * @param tableId
+         */
+        public void await(String tableName, String tableId) {
+            long lastMessageTime = 0;
+            while (running) {
+                int majC = getMajorCompactionCount(tableId);
+                if (majC < threshold) {
+                    return;
+                }
+                if (System.currentTimeMillis() - lastMessageTime > (5 * 60 * 1000)) {
+                    lastMessageTime = System.currentTimeMillis();
+                    log.info("Waiting for the " + majC + " compactions running or queued for " + tableName + " to decrease before importing into it.");
+                }
+                try {
+                    Thread.sleep(refreshTime);
+                } catch (InterruptedException e) {
+                    log.warn("Interrupted while waiting to import into " + tableName, e);
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        
+        private synchronized int getMajorCompactionCount(String tableId) {
+            long now = System.currentTimeMillis();
+            if (now - lastRefreshTime >= refreshTime) {
+                majCs = counts.get();
+                lastRefreshTime = now;
+            }
+            Integer majC = majCs.get(tableId);
+            return (majC == null ? 0 : majC);
+        }
+    }
+    
     /**
      * Verify there are no RFiles left behind. If there are, then we need to throw an exception to ensure we fail this bulk load and the directory is not
      * removed.
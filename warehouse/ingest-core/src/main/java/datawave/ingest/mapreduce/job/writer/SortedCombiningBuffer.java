@@ -0,0 +1,232 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Multimap;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.util.IndexedSortable;
+import org.apache.hadoop.util.QuickSort;
+
+/**
+ * A buffer of BulkIngestKey/Value pairs held serialized in one byte array, in the manner of the map output buffer of a hadoop map task, rather than as objects
+ * in a Multimap. The buffer is full once it holds a given number of bytes or entries. When flushed, the entries are sorted by their serialized keys and each
+ * run of equal keys is passed to a {@link RunWriter} with all of its values, so that they may be combined before they are written. The runs may also be
+ * combined in place by a {@link RunCombiner}, which frees up the buffer without writing anything.
+ */
+public class SortedCombiningBuffer implements IndexedSortable {
+    
+    private static final WritableComparator comparator = new BulkIngestKey.Comparator();
+    
+    private static final int INITIAL_BYTES = 64 * 1024;
+    private static final int INITIAL_ENTRIES = 1024;
+    
+    private final int maxBytes;
+    private final int maxEntries;
+    
+    private DataOutputBuffer buffer;
+    
+    // the start of each entry and the length of its key. The value follows the key as a vint length and its bytes
+    private int[] starts = new int[INITIAL_ENTRIES];
+    private int[] keyLengths = new int[INITIAL_ENTRIES];
+    private int size = 0;
+    
+    /**
+     * Receives the entries of a buffer as it is flushed
+     */
+    public interface RunWriter {
+        /**
+         * @param key
+         *            the key of the run
+         * @param values
+         *            the values written with the key, in the order they were added
+         */
+        void write(BulkIngestKey key, List<Value> values) throws IOException, InterruptedException;
+    }
+    
+    /**
+     * Reduces the values of a run of equal keys when a buffer is combined
+     */
+    public interface RunCombiner {
+        /**
+         * @param key
+         *            the key of the run
+         * @param values
+         *            the values written with the key, in the order they were added
+         * @return the entries that replace the run
+         */
+        Multimap<BulkIngestKey,Value> combine(BulkIngestKey key, List<Value> values) throws IOException, InterruptedException;
+    }
+    
+    /**
+     * @param maxBytes
+     *            the number of bytes of serialized entries at which the buffer is full
+     * @param maxEntries
+     *            the number of entries at which the buffer is full
+     */
+    public SortedCombiningBuffer(int maxBytes, int maxEntries) {
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.buffer = new DataOutputBuffer(Math.min(maxBytes, INITIAL_BYTES));
+    }
+    
+    public void add(BulkIngestKey key, Value value) throws IOException {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            keyLengths = Arrays.copyOf(keyLengths, size * 2);
+        }
+        int start = buffer.getLength();
+        key.write(buffer);
+        starts[size] = start;
+        keyLengths[size] = buffer.getLength() - start;
+        WritableUtils.writeVInt(buffer, value.getSize());
+        buffer.write(value.get(), 0, value.getSize());
+        size++;
+    }
+    
+    public boolean isFull() {
+        return size >= maxEntries || buffer.getLength() >= maxBytes;
+    }
+    
+    public boolean isHalfFull() {
+        return size >= maxEntries / 2 || buffer.getLength() >= maxBytes / 2;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * @return the number of entries in the buffer
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return the number of bytes of serialized entries in the buffer
+     */
+    public int getByteCount() {
+        return buffer.getLength();
+    }
+    
+    /**
+     * Sort the entries and pass each run of equal keys to the writer, emptying the buffer
+     *
+     * @param writer
+     *            the writer of the runs
+     * @return the number of runs written
+     */
+    public int flush(RunWriter writer) throws IOException, InterruptedException {
+        if (size == 0) {
+            return 0;
+        }
+        new QuickSort().sort(this, 0, size);
+        int runs = writeRuns(buffer.getData(), starts, keyLengths, size, writer);
+        clear();
+        return runs;
+    }
+    
+    /**
+     * Sort the entries and replace each run of equal keys with the entries the combiner reduces it to. Runs of one entry are kept as they are.
+     *
+     * @param combiner
+     *            the combiner of the runs
+     */
+    public void combine(RunCombiner combiner) throws IOException, InterruptedException {
+        if (size == 0) {
+            return;
+        }
+        new QuickSort().sort(this, 0, size);
+        
+        // read the sorted entries while the combined ones are added to a new buffer
+        DataOutputBuffer sorted = buffer;
+        int[] sortedStarts = starts;
+        int[] sortedKeyLengths = keyLengths;
+        int sortedSize = size;
+        buffer = new DataOutputBuffer(Math.min(maxBytes, INITIAL_BYTES));
+        starts = new int[INITIAL_ENTRIES];
+        keyLengths = new int[INITIAL_ENTRIES];
+        size = 0;
+        
+        writeRuns(sorted.getData(), sortedStarts, sortedKeyLengths, sortedSize, (key, values) -> {
+            if (values.size() > 1) {
+                for (Map.Entry<BulkIngestKey,Value> entry : combiner.combine(key, values).entries()) {
+                    add(entry.getKey(), entry.getValue());
+                }
+            } else {
+                add(key, values.get(0));
+            }
+        });
+    }
+    
+    private static int writeRuns(byte[] bytes, int[] starts, int[] keyLengths, int size, RunWriter writer) throws IOException, InterruptedException {
+        DataInputBuffer in = new DataInputBuffer();
+        int runs = 0;
+        int runStart = 0;
+        while (runStart < size) {
+            int runEnd = runStart + 1;
+            while (runEnd < size && comparator.compare(bytes, starts[runStart], keyLengths[runStart], bytes, starts[runEnd], keyLengths[runEnd]) == 0) {
+                runEnd++;
+            }
+            
+            BulkIngestKey key = new BulkIngestKey();
+            in.reset(bytes, starts[runStart], keyLengths[runStart]);
+            key.readFields(in);
+            
+            List<Value> values = new ArrayList<>(runEnd - runStart);
+            for (int i = runStart; i < runEnd; i++) {
+                values.add(getValue(bytes, starts[i] + keyLengths[i]));
+            }
+            writer.write(key, values);
+            
+            runs++;
+            runStart = runEnd;
+        }
+        return runs;
+    }
+    
+    public void clear() {
+        buffer.reset();
+        size = 0;
+    }
+    
+    private static Value getValue(byte[] bytes, int offset) throws IOException {
+        int length = WritableComparator.readVInt(bytes, offset);
+        offset += WritableUtils.decodeVIntSize(bytes[offset]);
+        return new Value(Arrays.copyOfRange(bytes, offset, offset + length), false);
+    }
+    
+    private int compareKeys(int i, int j) {
+        byte[] bytes = buffer.getData();
+        return comparator.compare(bytes, starts[i], keyLengths[i], bytes, starts[j], keyLengths[j]);
+    }
+    
+    /**
+     * Compare entries by key, and then by the order they were added so that the values of a run keep that order
+     */
+    @Override
+    public int compare(int i, int j) {
+        int result = compareKeys(i, j);
+        return (result != 0 ? result : Integer.compare(starts[i], starts[j]));
+    }
+    
+    @Override
+    public void swap(int i, int j) {
+        int start = starts[i];
+        starts[i] = starts[j];
+        starts[j] = start;
+        int keyLength = keyLengths[i];
+        keyLengths[i] = keyLengths[j];
+        keyLengths[j] = keyLength;
+    }
+}
@@ -3,7 +3,6 @@ package datawave.ingest.mapreduce.job.writer;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -18,8 +17,9 @@ import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 
 /**
  * This is a caching context writer that will cache the entries for a table and will only actually flush entries once that cache is full. The cache will be
- * aggregated as the entries are received. This cache will cache values across calls to commit, which means that entries are aggregated across events (see
- * EventMapper contextWriter commit calls).
+ * aggregated as it fills: the entries are held serialized in a {@link SortedCombiningBuffer}, and when it fills they are sorted and the values of each key are
+ * reduced by the combiner. The cache is only written if that leaves it at least half full. This cache will cache values across calls to commit, which means
+ * that entries are aggregated across events (see EventMapper contextWriter commit calls).
  * 
  */
 public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestKey,Value> implements ChainedContextWriter<BulkIngestKey,Value> {
@@ -41,8 +41,14 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
     // entries
     public static final String TABLES_TO_CACHE_SUFFIX = ".table.context.writer.cache";
     
+    // the maximum size in bytes of the cache of each table
+    public static final String CACHE_MAX_BYTES = "ingest.table.caching.context.writer.cache.bytes";
+    public static final int DEFAULT_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+    
+    private int cacheMaxBytes = DEFAULT_CACHE_MAX_BYTES;
+    
     // This is the cache
-    private final Map<Text,Multimap<BulkIngestKey,Value>> aggregatedCache = new HashMap<>();
+    private final Map<Text,SortedCombiningBuffer> aggregatedCache = new HashMap<>();
     
     // This is the combiner used to aggregate values
     private CachingContextWriter combinerCache = new CachingContextWriter();
@@ -68,6 +74,8 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
         // Configure the combiner
         combiner.setup(conf);
         
+        cacheMaxBytes = conf.getInt(CACHE_MAX_BYTES, DEFAULT_CACHE_MAX_BYTES);
+        
         // get the tables to cache configuration
         for (Map.Entry<String,String> prop : conf) {
             if (prop.getKey().endsWith(TABLES_TO_CACHE_SUFFIX)) {
@@ -131,11 +139,9 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
     
     private void flushAll(TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException, InterruptedException {
         // pass all of the data through the delegate and clear the cache
-        for (Map.Entry<Text,Multimap<BulkIngestKey,Value>> entries : aggregatedCache.entrySet()) {
+        for (Map.Entry<Text,SortedCombiningBuffer> entries : aggregatedCache.entrySet()) {
             if (!entries.getValue().isEmpty()) {
-                getCounter(context, FLUSHED_BUFFER_TOTAL, entries.getKey().toString()).increment(entries.getValue().size());
-                getCounter(context, FLUSHED_BUFFER_COUNTER, entries.getKey().toString()).increment(1);
-                contextWriter.write(entries.getValue(), context);
+                flush(entries.getKey(), entries.getValue(), context);
             }
         }
         aggregatedCache.clear();
@@ -143,49 +149,68 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
     
     private void cache(BulkIngestKey key, Collection<Value> values, TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException,
                     InterruptedException {
-        List<Value> valueList = new ArrayList<>();
-        valueList.addAll(values);
-        
-        Multimap<BulkIngestKey,Value> entries = aggregatedCache.get(key.getTableName());
-        if (entries != null) {
-            valueList.addAll(entries.removeAll(key));
-        } else {
-            entries = HashMultimap.create();
+        SortedCombiningBuffer entries = aggregatedCache.get(key.getTableName());
+        if (entries == null) {
+            entries = new SortedCombiningBuffer(cacheMaxBytes, tableCacheConf.get(key.getTableName()));
             aggregatedCache.put(key.getTableName(), entries);
         }
-        
-        // reduce the entries as needed
-        if (valueList.size() > 1) {
-            entries.putAll(key, reduceValues(key, valueList, context));
-        } else {
-            entries.putAll(key, valueList);
+        for (Value value : values) {
+            entries.add(key, value);
         }
         
-        // now flush this tables cache if needed
-        if (entries.size() >= tableCacheConf.get(key.getTableName())) {
-            // register that we overran the cache for this table
-            getCounter(context, FLUSHED_BUFFER_TOTAL, key.getTableName().toString()).increment(entries.size());
-            getCounter(context, FLUSHED_BUFFER_COUNTER, key.getTableName().toString()).increment(1);
-            contextWriter.write(entries, context);
-            aggregatedCache.remove(key.getTableName());
+        // now combine the runs of equal keys in this tables cache, and flush it if that does not bring it back down to half full. Combining only until the
+        // cache is just under full would leave it to be sorted again on nearly every write.
+        if (entries.isFull()) {
+            entries.combine((runKey, runValues) -> reduceValues(runKey, runValues, context));
+            if (entries.isHalfFull()) {
+                flush(key.getTableName(), entries, context);
+            }
         }
     }
     
+    /**
+     * Reduce the values of each key in a table's cache, and pass them through the delegate
+     * 
+     * @param tableName
+     * @param entries
+     * @param context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void flush(Text tableName, SortedCombiningBuffer entries, TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException,
+                    InterruptedException {
+        long[] written = {0};
+        entries.flush((key, values) -> {
+            if (values.size() > 1) {
+                Multimap<BulkIngestKey,Value> reduced = reduceValues(key, values, context);
+                contextWriter.write(reduced, context);
+                written[0] += reduced.size();
+            } else {
+                contextWriter.write(key, values.get(0), context);
+                written[0]++;
+            }
+        });
+        
+        // register that we flushed the cache for this table
+        getCounter(context, FLUSHED_BUFFER_TOTAL, tableName.toString()).increment(written[0]);
+        getCounter(context, FLUSHED_BUFFER_COUNTER, tableName.toString()).increment(1);
+    }
+    
     /**
      * Reduce the list of values for a key.
      * 
      * @param key
      * @param values
      * @param context
-     * @return the reduced collection of values
+     * @return the reduced entries, which may have a different key than the one given, as when deduping by timestamp
      * @throws IOException
      * @throws InterruptedException
      */
-    private Collection<Value> reduceValues(BulkIngestKey key, Collection<Value> values, TaskInputOutputContext<?,?,BulkIngestKey,Value> context)
+    private Multimap<BulkIngestKey,Value> reduceValues(BulkIngestKey key, List<Value> values, TaskInputOutputContext<?,?,BulkIngestKey,Value> context)
                     throws IOException, InterruptedException {
         combiner.doReduce(key, values, context);
         try {
-            return combinerCache.getValues(key);
+            return combinerCache.getEntries();
         } finally {
             combinerCache.clear();
         }
@@ -206,6 +231,10 @@ public class TableCachingContextWriter extends AbstractContextWriter<BulkIngestK
             return reduced.get(key);
         }
         
+        public Multimap<BulkIngestKey,Value> getEntries() {
+            return reduced;
+        }
+        
         public void clear() {
             reduced = HashMultimap.create();
         }
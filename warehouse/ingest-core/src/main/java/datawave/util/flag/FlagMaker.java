@@ -15,6 +15,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
@@ -48,6 +49,9 @@ import datawave.util.flag.processor.FlagDistributor;
 import datawave.util.flag.processor.SimpleFlagDistributor;
 import datawave.util.flag.processor.SizeValidator;
 import datawave.util.flag.processor.UnusableFileException;
+import datawave.util.flag.watcher.HdfsInotifyWatcher;
+import datawave.util.flag.watcher.InputFileWatcher;
+import datawave.util.flag.watcher.LocalFileWatcher;
 
 import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.commons.lang.mutable.MutableInt;
@@ -92,6 +96,8 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
     protected ExecutorService executor;
     private final FlagMakerConfig fmc;
     private FlagDistributor fd;
+    // the candidate input files, when driven by file events rather than listing the folders each cycle
+    private InputFileIndex index;
     private volatile boolean running = true;
     private FlagSocket flagSocket;
     private final DecimalFormat df = new DecimalFormat("#0.00");
@@ -212,7 +218,12 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
             while (running) {
                 try {
                     processFlags();
-                    Thread.sleep(fmc.getSleepMilliSecs());
+                    if (index != null) {
+                        // wake as soon as files are closed, but still cycle to create flags whose timeout has passed
+                        index.await(fmc.getSleepMilliSecs());
+                    } else {
+                        Thread.sleep(fmc.getSleepMilliSecs());
+                    }
                 } catch (Exception ex) {
                     log.error("An unexpected exception occurred. Exiting", ex);
                     running = false;
@@ -220,7 +231,7 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
             }
         } finally {
             executor.shutdown();
-            
+            closeIndex();
         }
         log.info("FlagMaker Exiting.");
     }
@@ -232,55 +243,109 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
     protected void processFlags() throws IOException {
         FileSystem fs = getHadoopFS();
         log.trace("Querying for files on {}", fs.getUri().toString());
+        updateIndex(fs);
         for (FlagDataTypeConfig fc : fmc.getFlagConfigs()) {
             long startTime = System.currentTimeMillis();
             String dataName = fc.getDataName();
             fd.setup(fc);
             log.trace("Checking for files for {}", dataName);
             
-            for (String folder : fc.getFolder()) {
-                String folderPattern = folder + "/" + fmc.getFilePattern();
-                log.trace("searching for {} files in {}", dataName, folderPattern);
-                FileStatus[] files = fs.globStatus(new Path(folderPattern));
-                if (files == null || files.length == 0) {
-                    log.trace("files: {}", (files == null ? "null" : files.length));
-                    continue;
+            if (index != null) {
+                for (Map.Entry<String,Collection<FileStatus>> files : index.getFiles(fc).entrySet()) {
+                    log.trace("{} indexed {} files in {}", dataName, files.getValue().size(), files.getKey());
+                    addInputFiles(files.getKey(), files.getValue());
                 }
-                
-                // pull the base directory off of the folder
-                if (folder.startsWith(fmc.getBaseHDFSDir())) {
-                    log.trace("Removing base directory off folder {}", folder);
-                    folder = folder.substring(fmc.getBaseHDFSDir().length());
-                    log.trace("Adjusted folder: {}", folder);
-                    
-                    if (folder.startsWith(File.separator)) {
-                        folder = folder.substring(File.separator.length());
-                        log.trace("Removed separator: {}", folder);
-                    }
-                }
-                
-                // add the files
-                for (FileStatus status : files) {
-                    if (status.isDir()) {
-                        log.warn("Skipping subdirectory {}", status.getPath());
-                    } else {
-                        try {
-                            fd.addInputFile(new InputFile(folder, status.getPath(), status.getBlockSize(), status.getLen(), getTimestamp(status.getPath(),
-                                            status.getModificationTime())));
-                        } catch (UnusableFileException e) {
-                            log.warn("Skipping unusable file " + status.getPath(), e);
-                        }
+            } else {
+                for (String folder : fc.getFolder()) {
+                    String folderPattern = folder + "/" + fmc.getFilePattern();
+                    log.trace("searching for {} files in {}", dataName, folderPattern);
+                    FileStatus[] files = fs.globStatus(new Path(folderPattern));
+                    if (files == null || files.length == 0) {
+                        log.trace("files: {}", (files == null ? "null" : files.length));
+                        continue;
                     }
+                    addInputFiles(folder, Arrays.asList(files));
                 }
             }
             
             while (fd.hasNext(shouldOnlyCreateFullFlags(fc)) && running) {
                 initStats(startTime);
-                writeFlagFile(fc, fd.next(this));
+                Collection<InputFile> inFiles = fd.next(this);
+                writeFlagFile(fc, inFiles);
+                if (index != null) {
+                    index.remove(inFiles);
+                }
             }
         }
     }
     
+    /**
+     * Add the files found in a folder to the flag distributor
+     * 
+     * @param folder
+     *            the absolute folder
+     * @param files
+     */
+    private void addInputFiles(String folder, Collection<FileStatus> files) {
+        // pull the base directory off of the folder
+        if (folder.startsWith(fmc.getBaseHDFSDir())) {
+            log.trace("Removing base directory off folder {}", folder);
+            folder = folder.substring(fmc.getBaseHDFSDir().length());
+            log.trace("Adjusted folder: {}", folder);
+            
+            if (folder.startsWith(File.separator)) {
+                folder = folder.substring(File.separator.length());
+                log.trace("Removed separator: {}", folder);
+            }
+        }
+        
+        // add the files
+        for (FileStatus status : files) {
+            if (status.isDir()) {
+                log.warn("Skipping subdirectory {}", status.getPath());
+            } else {
+                try {
+                    fd.addInputFile(new InputFile(folder, status.getPath(), status.getBlockSize(), status.getLen(), getTimestamp(status.getPath(),
+                                    status.getModificationTime())));
+                } catch (UnusableFileException e) {
+                    log.warn("Skipping unusable file " + status.getPath(), e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Bring the index of input files up to date when driven by file events. The index is built by listing the folders once the watcher has started, so that no
+     * file closed after the listing is missed.
+     * 
+     * @param fs
+     */
+    private void updateIndex(FileSystem fs) throws IOException {
+        if (index != null) {
+            index.update();
+        } else if (!"none".equals(fmc.getFileWatcherType())) {
+            InputFileWatcher watcher;
+            if ("hdfs".equals(fmc.getFileWatcherType())) {
+                watcher = new HdfsInotifyWatcher(fs);
+            } else {
+                watcher = new LocalFileWatcher(Paths.get(fs.makeQualified(new Path(fmc.getBaseHDFSDir())).toUri()));
+            }
+            index = new InputFileIndex(fs, watcher, fmc.getFlagConfigs(), fmc.getFilePattern());
+            index.rebuild();
+        }
+    }
+    
+    private void closeIndex() {
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                log.warn("Unable to close the file watcher", e);
+            }
+            index = null;
+        }
+    }
+    
     private boolean shouldOnlyCreateFullFlags(FlagDataTypeConfig fc) {
         return !hasTimeoutOccurred(fc) || isBacklogExcessive(fc);
     }
@@ -715,6 +780,11 @@ public class FlagMaker implements Runnable, Observer, SizeValidator {
             throw new IllegalArgumentException("Invalid Distributor type provided: " + dtype + ". Must be one of the following: simple|date|folderdate");
         }
         
+        String wtype = fmc.getFileWatcherType();
+        if (wtype == null || !wtype.matches("(none|hdfs|local)")) {
+            throw new IllegalArgumentException("Invalid File Watcher type provided: " + wtype + ". Must be one of the following: none|hdfs|local");
+        }
+        
         if ("simple".equals(dtype)) {
             fd = new SimpleFlagDistributor();
         } else if ("date".equals(dtype)) {
@@ -0,0 +1,278 @@
+package datawave.util.flag;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import datawave.util.flag.config.FlagDataTypeConfig;
+import datawave.util.flag.watcher.InputFileWatcher;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.GlobPattern;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The candidate input files of each folder of each flag data type, kept current from the events of an {@link InputFileWatcher} rather than by listing the
+ * folders each cycle. The index is built with one listing of the folders, and listed again only when the watcher reports that it missed events. A file is
+ * indexed under a folder when the path beneath the folder matches the file pattern, as it would be by a listing.
+ */
+public class InputFileIndex implements Closeable {
+    
+    private static final Logger log = LoggerFactory.getLogger(InputFileIndex.class);
+    
+    private final FileSystem fs;
+    private final InputFileWatcher watcher;
+    private final String filePattern;
+    // one pattern per path component of the file pattern
+    private final Pattern[] components;
+    private final List<Folder> folders = new ArrayList<>();
+    
+    /**
+     * @param fs
+     *            the file system holding the input files
+     * @param watcher
+     *            the watcher of the file system, which must be started before the index is built
+     * @param flagConfigs
+     *            the flag data types, with their folders already made absolute
+     * @param filePattern
+     *            the glob matched by the input files beneath each folder
+     */
+    public InputFileIndex(FileSystem fs, InputFileWatcher watcher, List<FlagDataTypeConfig> flagConfigs, String filePattern) {
+        this.fs = fs;
+        this.watcher = watcher;
+        this.filePattern = filePattern;
+        String[] globs = filePattern.split("/");
+        this.components = new Pattern[globs.length];
+        for (int i = 0; i < globs.length; i++) {
+            components[i] = GlobPattern.compile(globs[i]);
+        }
+        for (FlagDataTypeConfig fc : flagConfigs) {
+            for (String folder : fc.getFolder()) {
+                folders.add(new Folder(fc, folder, fs.makeQualified(new Path(folder))));
+            }
+        }
+    }
+    
+    /**
+     * List every folder, replacing the files indexed
+     */
+    public void rebuild() throws IOException {
+        int count = 0;
+        for (Folder folder : folders) {
+            folder.files.clear();
+            FileStatus[] files = fs.globStatus(new Path(folder.folder + "/" + filePattern));
+            if (files != null) {
+                for (FileStatus status : files) {
+                    if (!status.isDirectory()) {
+                        folder.files.put(status.getPath(), status);
+                    }
+                }
+                count += folder.files.size();
+            }
+        }
+        log.info("Indexed {} input files in {} folders", count, folders.size());
+    }
+    
+    /**
+     * Apply the events available now
+     *
+     * @return true if any events were applied
+     */
+    public boolean update() throws IOException {
+        try {
+            return apply(watcher.poll());
+        } catch (InputFileWatcher.MissedEventsException e) {
+            log.warn("Rebuilding the input file index: {}", e.getMessage());
+            rebuild();
+            return true;
+        }
+    }
+    
+    /**
+     * Wait up to the timeout for events, applying those which arrive along with any others available then
+     *
+     * @param timeoutMillis
+     * @return true if any events were applied
+     */
+    public boolean await(long timeoutMillis) throws IOException, InterruptedException {
+        try {
+            return apply(watcher.poll(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (InputFileWatcher.MissedEventsException e) {
+            log.warn("Rebuilding the input file index: {}", e.getMessage());
+            rebuild();
+            return true;
+        }
+    }
+    
+    /**
+     * Get the files indexed for a flag data type
+     *
+     * @param fc
+     * @return the files indexed under each folder of the data type, by folder
+     */
+    public Map<String,Collection<FileStatus>> getFiles(FlagDataTypeConfig fc) {
+        Map<String,Collection<FileStatus>> files = new LinkedHashMap<>();
+        for (Folder folder : folders) {
+            if (folder.fc == fc) {
+                files.put(folder.folder, Collections.unmodifiableCollection(folder.files.values()));
+            }
+        }
+        return files;
+    }
+    
+    /**
+     * Remove files which have been flagged, without waiting for the watcher to report them moved
+     *
+     * @param inFiles
+     */
+    public void remove(Collection<InputFile> inFiles) {
+        for (InputFile inFile : inFiles) {
+            remove(fs.makeQualified(inFile.getPath()));
+        }
+    }
+    
+    /**
+     * @return the number of files indexed
+     */
+    public int size() {
+        int size = 0;
+        for (Folder folder : folders) {
+            size += folder.files.size();
+        }
+        return size;
+    }
+    
+    private boolean apply(List<InputFileWatcher.Event> events) throws IOException {
+        if (events.isEmpty()) {
+            return false;
+        }
+        // only the last event of each path matters, as the file system is consulted for the files closed
+        Map<Path,Boolean> changes = new LinkedHashMap<>();
+        for (InputFileWatcher.Event event : events) {
+            Path path = fs.makeQualified(event.getPath());
+            changes.remove(path);
+            changes.put(path, event.isRemoved());
+        }
+        for (Map.Entry<Path,Boolean> change : changes.entrySet()) {
+            if (change.getValue()) {
+                remove(change.getKey());
+            } else {
+                add(change.getKey());
+            }
+        }
+        log.trace("Applied {} file events, {} input files indexed", events.size(), size());
+        return true;
+    }
+    
+    private void add(Path path) throws IOException {
+        List<Folder> matches = getFolders(path);
+        if (matches.isEmpty() && !isBeneathFolder(path)) {
+            return;
+        }
+        FileStatus status;
+        try {
+            status = fs.getFileStatus(path);
+        } catch (FileNotFoundException e) {
+            // already moved or removed, which will be reported by a later event
+            remove(path);
+            return;
+        }
+        if (status.isDirectory()) {
+            // a directory renamed into place, so index the files beneath it
+            RemoteIterator<LocatedFileStatus> files = fs.listFiles(path, true);
+            while (files.hasNext()) {
+                LocatedFileStatus file = files.next();
+                for (Folder folder : getFolders(file.getPath())) {
+                    folder.files.put(file.getPath(), file);
+                }
+            }
+        } else {
+            for (Folder folder : matches) {
+                folder.files.put(path, status);
+            }
+        }
+    }
+    
+    private void remove(Path path) {
+        boolean removed = false;
+        for (Folder folder : folders) {
+            removed |= (folder.files.remove(path) != null);
+        }
+        if (!removed && isBeneathFolder(path)) {
+            // possibly a directory, so remove any files beneath it
+            String prefix = path.toString() + "/";
+            for (Folder folder : folders) {
+                for (Iterator<Path> it = folder.files.keySet().iterator(); it.hasNext();) {
+                    if (it.next().toString().startsWith(prefix)) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the folders under which a path would be listed
+     */
+    private List<Folder> getFolders(Path path) {
+        Path parent = path;
+        for (int i = components.length - 1; i >= 0; i--) {
+            if (parent == null || !components[i].matcher(parent.getName()).matches()) {
+                return Collections.emptyList();
+            }
+            parent = parent.getParent();
+        }
+        List<Folder> matches = new ArrayList<>(1);
+        for (Folder folder : folders) {
+            if (folder.path.equals(parent)) {
+                matches.add(folder);
+            }
+        }
+        return matches;
+    }
+    
+    private boolean isBeneathFolder(Path path) {
+        String name = path.toString();
+        for (Folder folder : folders) {
+            if (name.startsWith(folder.path.toString() + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+    
+    /**
+     * A folder of a flag data type and the files indexed under it
+     */
+    private static class Folder {
+        private final FlagDataTypeConfig fc;
+        private final String folder;
+        private final Path path;
+        private final Map<Path,FileStatus> files = new LinkedHashMap<>();
+        
+        Folder(FlagDataTypeConfig fc, String folder, Path path) {
+            this.fc = fc;
+            this.folder = folder;
+            this.path = path;
+        }
+    }
+}
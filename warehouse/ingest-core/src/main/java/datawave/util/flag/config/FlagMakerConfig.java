@@ -34,6 +34,8 @@ public class FlagMakerConfig {
     private String filePattern = "2*/*/*/*";
     // default to simple. valid values are simple|date|folderdate
     private String distributorType = "simple";
+    // default to listing the folders each cycle. valid values are none|hdfs|local, where hdfs follows the namenode's inotify stream and local is for testing
+    private String fileWatcherType = "none";
     // default timeout
     private long timeoutMilliSecs = (5L * DateUtils.A_MINUTE);
     // default sleep between cycles
@@ -79,6 +81,14 @@ public class FlagMakerConfig {
         this.distributorType = distributorType;
     }
     
+    public String getFileWatcherType() {
+        return fileWatcherType;
+    }
+    
+    public void setFileWatcherType(String fileWatcherType) {
+        this.fileWatcherType = fileWatcherType;
+    }
+    
     public String getFilePattern() {
         return filePattern;
     }
@@ -230,6 +240,7 @@ public class FlagMakerConfig {
         result.append("flagFileDirectory: " + this.getFlagFileDirectory() + "\n");
         result.append("filePattern: " + this.getFilePattern() + "\n");
         result.append("distributorType: " + this.getDistributorType() + "\n");
+        result.append("fileWatcherType: " + this.getFileWatcherType() + "\n");
         result.append("timeoutMilliSecs: " + this.getTimeoutMilliSecs() + "\n");
         result.append("sleepMilliSecs: " + this.getSleepMilliSecs() + "\n");
         result.append("flagCountThreshold: " + this.getFlagCountThreshold() + "\n");
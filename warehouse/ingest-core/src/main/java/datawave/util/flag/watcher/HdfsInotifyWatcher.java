@@ -0,0 +1,93 @@
+package datawave.util.flag.watcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSInotifyEventInputStream;
+import org.apache.hadoop.hdfs.client.HdfsAdmin;
+import org.apache.hadoop.hdfs.inotify.Event;
+import org.apache.hadoop.hdfs.inotify.EventBatch;
+import org.apache.hadoop.hdfs.inotify.MissingEventsException;
+
+/**
+ * Watches HDFS through the namenode's inotify stream. A file is reported when it is closed or renamed into place, so a file is never reported while it is
+ * still being written. Reading the inotify stream requires HDFS superuser privileges.
+ */
+public class HdfsInotifyWatcher implements InputFileWatcher {
+    
+    private final FileSystem fs;
+    private final DFSInotifyEventInputStream stream;
+    
+    /**
+     * Start watching from the current transaction of the namenode
+     *
+     * @param fs
+     *            the HDFS file system to watch
+     */
+    public HdfsInotifyWatcher(FileSystem fs) throws IOException {
+        this.fs = fs;
+        this.stream = new HdfsAdmin(fs.getUri(), fs.getConf()).getInotifyEventStream();
+    }
+    
+    @Override
+    public List<InputFileWatcher.Event> poll() throws IOException {
+        List<InputFileWatcher.Event> events = new ArrayList<>();
+        try {
+            drain(stream.poll(), events);
+        } catch (MissingEventsException e) {
+            throw new MissedEventsException("Missed inotify events", e);
+        }
+        return events;
+    }
+    
+    @Override
+    public List<InputFileWatcher.Event> poll(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        List<InputFileWatcher.Event> events = new ArrayList<>();
+        try {
+            drain(stream.poll(timeout, unit), events);
+        } catch (MissingEventsException e) {
+            throw new MissedEventsException("Missed inotify events", e);
+        }
+        return events;
+    }
+    
+    /**
+     * Convert the batch and any further batches available now
+     */
+    private void drain(EventBatch batch, List<InputFileWatcher.Event> events) throws IOException, MissingEventsException {
+        while (batch != null) {
+            for (Event event : batch.getEvents()) {
+                switch (event.getEventType()) {
+                    case CLOSE:
+                        events.add(InputFileWatcher.Event.closed(qualify(((Event.CloseEvent) event).getPath())));
+                        break;
+                    case RENAME:
+                        Event.RenameEvent rename = (Event.RenameEvent) event;
+                        events.add(InputFileWatcher.Event.removed(qualify(rename.getSrcPath())));
+                        events.add(InputFileWatcher.Event.closed(qualify(rename.getDstPath())));
+                        break;
+                    case UNLINK:
+                        events.add(InputFileWatcher.Event.removed(qualify(((Event.UnlinkEvent) event).getPath())));
+                        break;
+                    default:
+                        // files are created and appended to before they are closed, and metadata changes do not affect the input files
+                        break;
+                }
+            }
+            batch = stream.poll();
+        }
+    }
+    
+    private Path qualify(String path) {
+        return fs.makeQualified(new Path(path));
+    }
+    
+    @Override
+    public void close() {
+        // the inotify stream holds no resources of its own
+    }
+}
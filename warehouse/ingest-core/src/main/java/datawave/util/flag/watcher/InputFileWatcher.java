@@ -0,0 +1,81 @@
+package datawave.util.flag.watcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Reports the files which are completed or removed on a file system, so that the flag maker may keep its candidate input files current without listing the
+ * input folders each cycle.
+ */
+public interface InputFileWatcher extends Closeable {
+    
+    /**
+     * Get the events available now, without waiting
+     *
+     * @return the events in the order they occurred, empty if there are none
+     * @throws MissedEventsException
+     *             if events were lost, in which case the input folders must be listed again
+     */
+    List<Event> poll() throws IOException;
+    
+    /**
+     * Wait up to the timeout for events
+     *
+     * @param timeout
+     * @param unit
+     * @return the events in the order they occurred, empty if there were none before the timeout
+     * @throws MissedEventsException
+     *             if events were lost, in which case the input folders must be listed again
+     */
+    List<Event> poll(long timeout, TimeUnit unit) throws IOException, InterruptedException;
+    
+    /**
+     * A file or directory which was completed, renamed into place, or removed
+     */
+    class Event {
+        private final Path path;
+        private final boolean removed;
+        
+        private Event(Path path, boolean removed) {
+            this.path = path;
+            this.removed = removed;
+        }
+        
+        public static Event closed(Path path) {
+            return new Event(path, false);
+        }
+        
+        public static Event removed(Path path) {
+            return new Event(path, true);
+        }
+        
+        public Path getPath() {
+            return path;
+        }
+        
+        public boolean isRemoved() {
+            return removed;
+        }
+        
+        @Override
+        public String toString() {
+            return (removed ? "removed " : "closed ") + path;
+        }
+    }
+    
+    /**
+     * Thrown when the watcher could not keep up with the file system and events were dropped
+     */
+    class MissedEventsException extends IOException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        public MissedEventsException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package datawave.util.flag.watcher;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory tree on the local file system with a {@link WatchService}, for testing the event driven flag maker without a namenode. The local file
+ * system has no close event, so a file is reported each time it is created or modified. Files should be renamed into place once written, as they are by the
+ * ingest pipeline, or a partially written file may be flagged.
+ */
+public class LocalFileWatcher implements InputFileWatcher {
+    
+    private final WatchService watchService;
+    private final Map<WatchKey,Path> directories = new HashMap<>();
+    
+    /**
+     * @param root
+     *            the directory under which files are watched
+     */
+    public LocalFileWatcher(Path root) throws IOException {
+        this.watchService = root.getFileSystem().newWatchService();
+        register(root, null);
+    }
+    
+    @Override
+    public List<Event> poll() throws IOException {
+        List<Event> events = new ArrayList<>();
+        drain(watchService.poll(), events);
+        return events;
+    }
+    
+    @Override
+    public List<Event> poll(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        List<Event> events = new ArrayList<>();
+        drain(watchService.poll(timeout, unit), events);
+        return events;
+    }
+    
+    /**
+     * Convert the events of the key and of any further keys signalled now
+     */
+    private void drain(WatchKey key, List<Event> events) throws IOException {
+        boolean overflow = false;
+        while (key != null) {
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+                Path child = directory.resolve((Path) event.context());
+                if (event.kind() == ENTRY_DELETE) {
+                    events.add(Event.removed(toHadoopPath(child)));
+                } else if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    if (event.kind() == ENTRY_CREATE) {
+                        // files may have been written to the new directory before it was registered
+                        register(child, events);
+                    }
+                } else if (event.kind() == ENTRY_CREATE || event.kind() == ENTRY_MODIFY) {
+                    events.add(Event.closed(toHadoopPath(child)));
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+            key = watchService.poll();
+        }
+        if (overflow) {
+            throw new MissedEventsException("The watch service overflowed", null);
+        }
+    }
+    
+    /**
+     * Watch the directory and every directory beneath it
+     *
+     * @param directory
+     * @param events
+     *            the events to which the files found are added, or null to not report them
+     */
+    private void register(Path directory, final List<Event> events) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (events != null && attrs.isRegularFile()) {
+                    events.add(Event.closed(toHadoopPath(file)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    private static org.apache.hadoop.fs.Path toHadoopPath(Path path) {
+        return new org.apache.hadoop.fs.Path("file", null, path.toAbsolutePath().toString());
+    }
+    
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -12,9 +12,14 @@ import datawave.ingest.mapreduce.job.metrics.Metric;
 import datawave.ingest.mapreduce.job.metrics.MetricsConfiguration;
 import datawave.ingest.mapreduce.job.metrics.TestEventCountMetricsReceiver;
 import datawave.ingest.mapreduce.job.writer.ContextWriter;
+import datawave.ingest.metric.IngestOutput;
+import datawave.ingest.metric.IngestProcess;
+import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.StatusReporter;
 import org.apache.hadoop.mrunit.mapreduce.MapDriver;
 import org.junit.Before;
 import org.junit.Test;
@@ -23,6 +28,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class EventMapperTest {
@@ -41,6 +50,8 @@ public class EventMapperTest {
         conf = driver.getConfiguration();
         conf.setClass(EventMapper.CONTEXT_WRITER_CLASS, TestContextWriter.class, ContextWriter.class);
         
+        // start from an empty registry, as some tests register their own types
+        TypeRegistry.reset();
         Type type = new Type("file", null, null, new String[] {SimpleDataTypeHandler.class.getName()}, 10, null);
         TypeRegistry registry = TypeRegistry.getInstance(conf);
         registry.put(type.typeName(), type);
@@ -137,6 +148,74 @@ public class EventMapperTest {
         assertEquals(4, written.size());
     }
     
+    @Test
+    public void shouldWriteEventsProcessedOnMultipleThreads() throws IOException {
+        conf.setInt(EventMapper.EVENT_PROCESSING_THREADS, 4);
+        conf.setInt(EventMapper.EVENT_PROCESSING_QUEUE_SIZE, 4);
+        registerType(SlowOrFailingDataTypeHandler.class);
+        
+        // more events than the queue holds, so that the map thread waits on the processing threads. The earlier events take longer to process, so they
+        // finish out of order.
+        for (int i = 0; i < 10; i++) {
+            driver.addInput(new LongWritable(i), withRawData("delay " + (10 - i) * 5));
+        }
+        driver.run();
+        
+        Multimap<BulkIngestKey,Value> written = TestContextWriter.getWritten();
+        
+        // every event is written, each with the offset it was read at, in the order the events were read
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), getOrigFileOffsets(written, SimpleDataTypeHandler.TABLE));
+        assertEquals(10, driver.getCounters().findCounter(IngestOutput.EVENTS_PROCESSED.name(), "FILE").getValue());
+    }
+    
+    @Test
+    public void shouldSendFailedEventsToErrorHandlersOnMultipleThreads() throws IOException {
+        conf.setInt(EventMapper.EVENT_PROCESSING_THREADS, 4);
+        conf.setInt(EventMapper.EVENT_PROCESSING_QUEUE_SIZE, 4);
+        registerType(SlowOrFailingDataTypeHandler.class);
+        TypeRegistry.getInstance(conf).put(TypeRegistry.ERROR_PREFIX,
+                        new Type(TypeRegistry.ERROR_PREFIX, null, null, new String[] {ErrorDataTypeHandler.class.getName()}, 10, null));
+        
+        for (int i = 0; i < 6; i++) {
+            driver.addInput(new LongWritable(i), withRawData(i == 2 ? "fail" : "delay 0"));
+        }
+        driver.run();
+        
+        Multimap<BulkIngestKey,Value> written = TestContextWriter.getWritten();
+        
+        // the failed event is handed to the error handlers with the fields parsed by the processing thread, and none of its own output is written
+        assertEquals(Arrays.asList(0L, 1L, 3L, 4L, 5L), getOrigFileOffsets(written, SimpleDataTypeHandler.TABLE));
+        assertEquals(Collections.singletonList(2L), getOrigFileOffsets(written, ErrorDataTypeHandler.TABLE));
+        assertEquals(1, driver.getCounters().findCounter(IngestProcess.RUNTIME_EXCEPTION).getValue());
+        assertEquals(6, driver.getCounters().findCounter(IngestOutput.EVENTS_PROCESSED.name(), "FILE").getValue());
+    }
+    
+    private void registerType(Class<?> handlerClass) {
+        Type type = new Type("file", null, null, new String[] {handlerClass.getName()}, 10, null);
+        TypeRegistry.getInstance(conf).put(type.typeName(), type);
+    }
+    
+    private RawRecordContainer withRawData(String rawData) {
+        RawRecordContainer copy = record.copy();
+        copy.setRawData(rawData.getBytes());
+        return copy;
+    }
+    
+    /**
+     * @return the offsets recorded in the ORIG_FILE entries written to a table, in the order they were written
+     */
+    private List<Long> getOrigFileOffsets(Multimap<BulkIngestKey,Value> written, Text table) {
+        List<Long> offsets = new ArrayList<>();
+        for (Map.Entry<BulkIngestKey,Value> entry : written.entries()) {
+            if (entry.getKey().getTableName().equals(table)
+                            && entry.getKey().getKey().getColumnFamily().toString().equals(EventMapper.SEQUENCE_FILE_FIELDNAME)) {
+                // the sequence file name, then the offset
+                offsets.add(Long.parseLong(entry.getKey().getKey().getColumnQualifier().toString().split("\\|")[1]));
+            }
+        }
+        return offsets;
+    }
+    
     private Map.Entry<BulkIngestKey,Value> getMetric(Multimap<BulkIngestKey,Value> written) {
         return getFieldEntry(written, Metric.EVENT_COUNT.toString());
     }
@@ -155,4 +234,43 @@ public class EventMapperTest {
         return null;
     }
     
+    /**
+     * Sleeps for the number of milliseconds given by a "delay" event, and fails a "fail" event
+     */
+    public static class SlowOrFailingDataTypeHandler<IK> extends SimpleDataTypeHandler<IK> {
+        
+        @Override
+        public Multimap<BulkIngestKey,Value> processBulk(IK key, RawRecordContainer event, Multimap<String,NormalizedContentInterface> fields,
+                        StatusReporter reporter) {
+            String rawData = new String(event.getRawData());
+            if (rawData.equals("fail")) {
+                throw new IllegalStateException("Failing event " + key);
+            }
+            try {
+                Thread.sleep(Long.parseLong(rawData.substring("delay ".length())));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return super.processBulk(key, event, fields, reporter);
+        }
+    }
+    
+    /**
+     * Writes the ORIG_FILE of each failed event to an errors table
+     */
+    public static class ErrorDataTypeHandler<IK> extends SimpleDataTypeHandler<IK> {
+        
+        public static final Text TABLE = new Text("errors");
+        
+        @Override
+        public Multimap<BulkIngestKey,Value> processBulk(IK key, RawRecordContainer event, Multimap<String,NormalizedContentInterface> fields,
+                        StatusReporter reporter) {
+            Multimap<BulkIngestKey,Value> pairs = HashMultimap.create();
+            for (NormalizedContentInterface origFile : fields.get(EventMapper.SEQUENCE_FILE_FIELDNAME)) {
+                pairs.put(new BulkIngestKey(TABLE, new Key("error", EventMapper.SEQUENCE_FILE_FIELDNAME, origFile.getEventFieldValue())),
+                                new Value(new byte[0]));
+            }
+            return pairs;
+        }
+    }
 }
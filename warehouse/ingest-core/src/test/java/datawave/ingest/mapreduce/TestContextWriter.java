@@ -1,6 +1,6 @@
 package datawave.ingest.mapreduce;
 
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 import datawave.ingest.mapreduce.job.BulkIngestKey;
 import datawave.ingest.mapreduce.job.writer.ContextWriter;
@@ -17,7 +17,7 @@ import java.io.IOException;
  */
 public class TestContextWriter<OK,OV> implements ContextWriter<OK,OV> {
     
-    private static final Multimap<BulkIngestKey,Value> written = HashMultimap.create();
+    private static final Multimap<BulkIngestKey,Value> written = LinkedHashMultimap.create();
     
     public TestContextWriter() {
         synchronized (written) {
@@ -52,7 +52,7 @@ public class TestContextWriter<OK,OV> implements ContextWriter<OK,OV> {
     public void cleanup(TaskInputOutputContext<?,?,OK,OV> context) throws IOException, InterruptedException {}
     
     /**
-     * @return All entries written to this context.
+     * @return All entries written to this context, in the order they were written.
      */
     public static Multimap<BulkIngestKey,Value> getWritten() {
         return written;
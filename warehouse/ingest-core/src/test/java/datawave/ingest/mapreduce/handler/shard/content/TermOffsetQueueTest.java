@@ -0,0 +1,99 @@
+package datawave.ingest.mapreduce.handler.shard.content;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import datawave.ingest.mapreduce.handler.shard.content.BoundedOffsetQueue.OffsetList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TermOffsetQueueTest {
+    
+    @Test
+    public void testAddOffset() {
+        TermOffsetQueue uut = new TermOffsetQueue(20);
+        
+        for (int offset = 0; offset < uut.getCapacity(); offset++) {
+            TermAndZone taz = new TermAndZone(String.format("term-%d:zone-%d", offset, offset));
+            Assert.assertNull("AddOffset unexpectedly returned an offset list", uut.addOffset(taz, offset));
+        }
+        
+        TermAndZone taz = new TermAndZone(String.format("term-%d:zone-%d", 0, 0));
+        int count = uut.getCapacity() - 1;
+        for (int offset = 0; offset < count; offset++) {
+            OffsetList<Integer> ol = uut.addOffset(taz, (offset + uut.getCapacity()));
+            Assert.assertNotNull("AddOffset failed to return an offset list", ol);
+            Assert.assertEquals(1, ol.size());
+        }
+        
+        OffsetList<Integer> ol = uut.addOffset(taz, (2 * uut.getCapacity()));
+        Assert.assertNotNull("AddOffset failed to return an offset list", ol);
+        Assert.assertEquals(taz, ol.termAndZone);
+        Assert.assertEquals("AddOffset returned a OffsetList with an unexpected number of offsets.", 21, ol.offsets.size());
+        Assert.assertEquals(0, ((OffsetArray) ol.offsets).getInt(0));
+        Assert.assertEquals(40, ((OffsetArray) ol.offsets).getInt(20));
+        Assert.assertEquals("AddOffset failed to correctly update the number of elements in the Queue", 0, uut.size());
+        Assert.assertFalse(uut.containsKey(taz));
+    }
+    
+    @Test
+    public void testOffsetsAndClear() {
+        TermOffsetQueue uut = new TermOffsetQueue(100);
+        TermAndZone a = new TermAndZone("a", "BODY");
+        TermAndZone b = new TermAndZone("b", "BODY");
+        uut.addOffset(a, 1);
+        uut.addOffset(b, 2);
+        uut.addOffset(a, 3);
+        Assert.assertEquals(3, uut.size());
+        Assert.assertEquals(Arrays.asList(1, 3), uut.getOffsets(a));
+        Assert.assertNull(uut.getOffsets(new TermAndZone("c", "BODY")));
+        
+        Map<TermAndZone,List<Integer>> offsets = new HashMap<>();
+        for (OffsetList<Integer> list : uut.offsets()) {
+            offsets.put(list.termAndZone, new ArrayList<>(list.offsets));
+        }
+        Assert.assertEquals(Arrays.asList(1, 3), offsets.get(a));
+        Assert.assertEquals(Arrays.asList(2), offsets.get(b));
+        
+        uut.clear();
+        Assert.assertEquals(0, uut.size());
+        Assert.assertFalse(uut.containsKey(a));
+        Assert.assertNull(uut.addOffset(b, 4));
+        Assert.assertEquals(Arrays.asList(4), uut.getOffsets(b));
+    }
+    
+    @Test
+    public void testEvictsFewestOffsets() {
+        Random random = new Random(1234);
+        TermOffsetQueue uut = new TermOffsetQueue(500);
+        Map<TermAndZone,Integer> expected = new HashMap<>();
+        int added = 0;
+        int evicted = 0;
+        for (int offset = 0; offset < 100000; offset++) {
+            // a skewed distribution of terms, as in text
+            TermAndZone taz = new TermAndZone("term" + (int) Math.abs(random.nextGaussian() * 300), "BODY");
+            expected.merge(taz, 1, Integer::sum);
+            added++;
+            
+            OffsetList<Integer> overflow = uut.addOffset(taz, offset);
+            if (overflow != null) {
+                int fewest = Integer.MAX_VALUE;
+                for (int size : expected.values()) {
+                    fewest = Math.min(fewest, size);
+                }
+                Assert.assertEquals(fewest, overflow.size());
+                Assert.assertEquals(expected.remove(overflow.termAndZone).intValue(), overflow.size());
+                evicted += overflow.size();
+            }
+            Assert.assertEquals(added - evicted, uut.size());
+        }
+        for (Map.Entry<TermAndZone,Integer> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getValue().intValue(), uut.getOffsets(entry.getKey()).size());
+        }
+    }
+}
@@ -12,9 +12,16 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
 
 import datawave.common.test.integration.IntegrationTest;
 import datawave.common.test.logging.CommonTestAppender;
@@ -27,6 +34,11 @@ import datawave.ingest.input.reader.LongLineEventRecordReader;
 
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
 import org.apache.accumulo.core.client.impl.Credentials;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVWriter;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
@@ -48,6 +60,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.contrib.java.lang.system.ExpectedSystemExit;
 import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
 import org.powermock.api.easymock.PowerMock;
 import org.powermock.reflect.Whitebox;
 
@@ -68,6 +81,9 @@ public class BulkIngestMapFileLoaderTest {
     @Rule
     public final ExpectedSystemExit exit = ExpectedSystemExit.none();
     
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
     @Test
     public void testShutdownPortAlreadyInUse() throws IOException {
         exit.expectSystemExitWithStatus(-3);
@@ -778,7 +794,88 @@ public class BulkIngestMapFileLoaderTest {
         } finally {
             
             BulkIngestMapFileLoaderTest.logger.info("testMainWithMissingMajCThreshold completed.");
+        
+        }
+    }
+    
+    @Test
+    public void testMainWithBadTableMajCThreshold() throws IOException, InterruptedException {
+        
+        BulkIngestMapFileLoaderTest.logger.info("testMainWithBadTableMajCThreshold called...");
+        
+        try {
+            
+            List<String> cmdList = ProcessUtils.buildApplicationCommandLine(BulkIngestMapFileLoader.class.getName(), systemProperties, false);
+            
+            for (int counter = 0; counter < 6; counter++) {
+                
+                cmdList.add(String.format("%d", counter));
+            }
+            
+            cmdList.add("-tableMajcThreshold");
+            cmdList.add("hello, world");
+            
+            String[] cmdArray = ProcessUtils.convertCommandLine(cmdList);
+            
+            Map<String,String> newEnvironment = new HashMap<>();
+            List<String> dropFromEnvironment = new ArrayList<>();
+            File workingDirectory = new File(System.getProperty("user.dir"));
+            
+            Process proc = ProcessUtils.runInstance(cmdArray, newEnvironment, dropFromEnvironment, workingDirectory);
+            
+            int procResults = proc.waitFor();
+            
+            Assert.assertEquals("BulkIngestMapLoader#main failed to return the expected value.", ProcessUtils.SYSTEM_EXIT_MINUS_TWO, procResults);
+            
+            List<String> stdOut = ProcessUtils.getStandardOutDumps(proc);
+            
+            Assert.assertTrue("BulkIngestMapLoader#main failed to generate the expected error message",
+                            processOutputContains(stdOut, "-tableMajcThreshold must be followed by the maximum number of major compactions of a table allowed before waiting"));
+        
+        } finally {
             
+            BulkIngestMapFileLoaderTest.logger.info("testMainWithBadTableMajCThreshold completed.");
+        
+        }
+    }
+    
+    @Test
+    public void testMainWithMissingTableMajCThreshold() throws IOException, InterruptedException {
+        
+        BulkIngestMapFileLoaderTest.logger.info("testMainWithMissingTableMajCThreshold called...");
+        
+        try {
+            
+            List<String> cmdList = ProcessUtils.buildApplicationCommandLine(BulkIngestMapFileLoader.class.getName(), systemProperties, false);
+            
+            for (int counter = 0; counter < 6; counter++) {
+                
+                cmdList.add(String.format("%d", counter));
+            }
+            
+            cmdList.add("-tableMajcThreshold");
+            
+            String[] cmdArray = ProcessUtils.convertCommandLine(cmdList);
+            
+            Map<String,String> newEnvironment = new HashMap<>();
+            List<String> dropFromEnvironment = new ArrayList<>();
+            File workingDirectory = new File(System.getProperty("user.dir"));
+            
+            Process proc = ProcessUtils.runInstance(cmdArray, newEnvironment, dropFromEnvironment, workingDirectory);
+            
+            int procResults = proc.waitFor();
+            
+            Assert.assertEquals("BulkIngestMapLoader#main failed to return the expected value.", ProcessUtils.SYSTEM_EXIT_MINUS_TWO, procResults);
+            
+            List<String> stdOut = ProcessUtils.getStandardOutDumps(proc);
+            
+            Assert.assertTrue("BulkIngestMapLoader#main failed to generate the expected error message",
+                            processOutputContains(stdOut, "-tableMajcThreshold must be followed by the maximum number of major compactions of a table allowed before waiting"));
+        
+        } finally {
+            
+            BulkIngestMapFileLoaderTest.logger.info("testMainWithMissingTableMajCThreshold completed.");
+        
         }
     }
     
@@ -2696,4 +2793,192 @@ public class BulkIngestMapFileLoaderTest {
         }
         
     }
+    
+    @Test
+    public void testIvaratorResultCacheInvalidatedForImportedRows() throws Exception {
+        Configuration conf = new Configuration();
+        FileSystem fs = FileSystem.getLocal(conf);
+        
+        // map files for two of the four shards of the day
+        Path tableDir = new Path(temporaryFolder.newFolder("shard").toURI());
+        writeMapFile(fs, new Path(tableDir, "I0000000.rf"), conf, "20190101_0", "20190101_3");
+        writeMapFile(fs, new Path(tableDir, "I0000001.rf"), conf, "20190101_3");
+        Set<String> rows = BulkIngestMapFileLoader.getMapFileRows(fs, tableDir, conf);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("20190101_0", "20190101_3")), rows);
+        
+        // results were cached for every shard before the import
+        Path cacheDir = new Path(temporaryFolder.newFolder("cache").toURI());
+        long cached = System.currentTimeMillis() - 60 * 1000L;
+        BulkIngestMapFileLoader.invalidateIvaratorResultCache(cacheDir, rows, conf);
+        
+        Assert.assertFalse(isIvaratorResultCacheValid(fs, cacheDir, "20190101_0", cached));
+        Assert.assertTrue(isIvaratorResultCacheValid(fs, cacheDir, "20190101_1", cached));
+        Assert.assertTrue(isIvaratorResultCacheValid(fs, cacheDir, "20190101_2", cached));
+        Assert.assertFalse(isIvaratorResultCacheValid(fs, cacheDir, "20190101_3", cached));
+        
+        // if the rows are unknown then the entire table is invalidated
+        BulkIngestMapFileLoader.invalidateIvaratorResultCache(cacheDir, null, conf);
+        Assert.assertFalse(isIvaratorResultCacheValid(fs, cacheDir, "20190101_1", cached));
+    }
+    
+    @Test
+    public void testPipelineFinishesClaimedJobDirectoriesOnShutdown() throws Exception {
+        File workDir = temporaryFolder.newFolder("pipeline");
+        for (int i = 0; i < 3; i++) {
+            createJobDirectory(workDir, "job" + i);
+        }
+        BulkIngestMapFileLoader uut = createPipelineLoader(workDir);
+        
+        CountDownLatch release = new CountDownLatch(1);
+        Set<String> imported = Collections.synchronizedSet(new TreeSet<>());
+        BulkIngestMapFileLoader.LoadPipeline pipeline = uut.new LoadPipeline(1, mapFilesDir -> {
+            release.await();
+            imported.add(mapFilesDir.getParent().getName());
+        });
+        
+        Object sleepTime = Whitebox.getInternalState(BulkIngestMapFileLoader.class, "SLEEP_TIME");
+        Whitebox.setInternalState(BulkIngestMapFileLoader.class, "SLEEP_TIME", 100);
+        try {
+            Thread thread = new Thread(pipeline::run);
+            thread.start();
+            
+            // one directory is importing, one is queued for import, and the discovery stage is waiting to queue the last
+            waitFor("the job directories to be claimed", () -> countFiles(workDir, BulkIngestMapFileLoader.LOADING_FILE_MARKER) == 3);
+            uut.shutdown();
+            release.countDown();
+            
+            thread.join(30000);
+            Assert.assertFalse("The pipeline failed to shut down", thread.isAlive());
+        } finally {
+            Whitebox.setInternalState(BulkIngestMapFileLoader.class, "SLEEP_TIME", sleepTime);
+        }
+        
+        // every claimed directory was loaded and cleaned up, so none are left marked as loading
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("job0", "job1", "job2")), imported);
+        Assert.assertEquals(0, countFiles(workDir, BulkIngestMapFileLoader.LOADING_FILE_MARKER));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertFalse(new File(workDir, "job" + i).exists());
+        }
+    }
+    
+    @Test
+    public void testPipelineMarksFailedImportFailed() throws Exception {
+        File workDir = temporaryFolder.newFolder("pipeline");
+        File loaded = createJobDirectory(workDir, "job0");
+        File failed = createJobDirectory(workDir, "job1");
+        BulkIngestMapFileLoader uut = createPipelineLoader(workDir);
+        
+        BulkIngestMapFileLoader.LoadPipeline pipeline = uut.new LoadPipeline(2, mapFilesDir -> {
+            if (mapFilesDir.getParent().getName().equals(failed.getName())) {
+                throw new IOException("Failed to import " + mapFilesDir);
+            }
+        });
+        
+        Object sleepTime = Whitebox.getInternalState(BulkIngestMapFileLoader.class, "SLEEP_TIME");
+        Whitebox.setInternalState(BulkIngestMapFileLoader.class, "SLEEP_TIME", 100);
+        try {
+            Thread thread = new Thread(pipeline::run);
+            thread.start();
+            
+            waitFor("the job directories to be cleaned up",
+                            () -> !loaded.exists() && new File(failed, BulkIngestMapFileLoader.FAILED_FILE_MARKER).exists());
+            uut.shutdown();
+            
+            thread.join(30000);
+            Assert.assertFalse("The pipeline failed to shut down", thread.isAlive());
+        } finally {
+            Whitebox.setInternalState(BulkIngestMapFileLoader.class, "SLEEP_TIME", sleepTime);
+        }
+        
+        // the failed directory is left in place with its map files, marked failed rather than loading
+        Assert.assertTrue(new File(failed, "mapFiles").exists());
+        Assert.assertFalse(new File(failed, BulkIngestMapFileLoader.LOADING_FILE_MARKER).exists());
+        Assert.assertFalse(new File(failed, BulkIngestMapFileLoader.COMPLETE_FILE_MARKER).exists());
+    }
+    
+    @Test
+    public void testCompactionAdmissionWaitsOnlyForBusyTable() throws Exception {
+        BulkIngestMapFileLoader uut = createPipelineLoader(temporaryFolder.getRoot());
+        
+        // the running plus queued compactions of each table, by table id
+        Map<String,Integer> majCs = new ConcurrentHashMap<>();
+        majCs.put("1", 5);
+        majCs.put("2", 4);
+        BulkIngestMapFileLoader.CompactionAdmission admission = uut.new CompactionAdmission(() -> new HashMap<>(majCs), 5, 10);
+        
+        Thread busy = new Thread(() -> admission.await("busy", "1"));
+        busy.start();
+        busy.join(500);
+        Assert.assertTrue("An import into a table at the threshold was admitted", busy.isAlive());
+        
+        // the other tables, including those without compactions, are admitted while the busy table waits
+        admission.await("quiet", "2");
+        admission.await("idle", "3");
+        Assert.assertTrue(busy.isAlive());
+        
+        majCs.put("1", 4);
+        busy.join(30000);
+        Assert.assertFalse("An import into a table below the threshold was not admitted", busy.isAlive());
+    }
+    
+    private static BulkIngestMapFileLoader createPipelineLoader(File workDir) {
+        return new BulkIngestMapFileLoader(workDir.getAbsolutePath(), "job*", "localhost", "localhost", new Credentials("user", new PasswordToken("pass")),
+                        FILE_SYSTEM_URI, FILE_SYSTEM_URI, FILE_SYSTEM_URI, "localhost", new HashMap<>(), new Configuration(), 0);
+    }
+    
+    // a completed job directory with no map files and no input files to mark loaded
+    private static File createJobDirectory(File workDir, String name) throws IOException {
+        File jobDir = new File(workDir, name);
+        Assert.assertTrue(new File(jobDir, "mapFiles").mkdirs());
+        Assert.assertTrue(new File(jobDir, BulkIngestMapFileLoader.INPUT_FILES_MARKER).createNewFile());
+        Assert.assertTrue(new File(jobDir, BulkIngestMapFileLoader.COMPLETE_FILE_MARKER).createNewFile());
+        return jobDir;
+    }
+    
+    private static int countFiles(File dir, String name) {
+        int count = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    count += countFiles(file, name);
+                } else if (file.getName().equals(name)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    private static void waitFor(String description, BooleanSupplier condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Timed out waiting for " + description, System.currentTimeMillis() < timeout);
+            Thread.sleep(10);
+        }
+    }
+    
+    private static void writeMapFile(FileSystem fs, Path file, Configuration conf, String... rows) throws IOException {
+        FileSKVWriter writer = FileOperations.getInstance().newWriterBuilder().forFile(file.toString(), fs, conf)
+                        .withTableConfiguration(AccumuloConfiguration.getDefaultConfiguration()).build();
+        writer.startDefaultLocalityGroup();
+        for (String row : rows) {
+            for (int i = 0; i < 1000; i++) {
+                writer.append(new Key(row, "fi\0FIELD", String.format("value%04d\0datatype\0uid", i)), new Value(new byte[0]));
+            }
+        }
+        writer.close();
+    }
+    
+    // a cached result is valid if it completed after the table and row invalidation markers were last touched (see IvaratorResultCache)
+    private static boolean isIvaratorResultCacheValid(FileSystem fs, Path cacheDir, String row, long completed) throws IOException {
+        Path invalidations = new Path(cacheDir, BulkIngestMapFileLoader.IVARATOR_RESULT_CACHE_INVALIDATIONS_DIR);
+        Path tableMarker = new Path(invalidations, BulkIngestMapFileLoader.IVARATOR_RESULT_CACHE_BULK_IMPORT_MARKER);
+        for (Path marker : new Path[] {tableMarker, new Path(invalidations, row)}) {
+            if (fs.exists(marker) && fs.getFileStatus(marker).getModificationTime() > completed) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,138 @@
+package datawave.ingest.mapreduce.job.writer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SortedCombiningBufferTest {
+    
+    private static BulkIngestKey key(String table, String row, long timestamp) {
+        return new BulkIngestKey(new Text(table), new Key(new Text(row), new Text("cf"), new Text("cq"), new Text("vis"), timestamp));
+    }
+    
+    private static Value value(String value) {
+        return new Value(value.getBytes());
+    }
+    
+    @Test
+    public void testFlushSortsAndGroupsRuns() throws Exception {
+        SortedCombiningBuffer buffer = new SortedCombiningBuffer(1024 * 1024, 100);
+        buffer.add(key("shardIndex", "b", 1), value("1"));
+        buffer.add(key("shardIndex", "a", 1), value("2"));
+        buffer.add(key("shardIndex", "b", 1), value("3"));
+        buffer.add(key("shardIndex", "a", 2), value("4"));
+        buffer.add(key("shardIndex", "b", 1), value("5"));
+        Assert.assertEquals(5, buffer.size());
+        
+        List<BulkIngestKey> keys = new ArrayList<>();
+        List<List<String>> values = new ArrayList<>();
+        int runs = buffer.flush((key, run) -> {
+            keys.add(key);
+            List<String> strings = new ArrayList<>();
+            for (Value value : run) {
+                strings.add(value.toString());
+            }
+            values.add(strings);
+        });
+        
+        // in key order, with the more recent timestamp first, and the values of a run in the order added
+        Assert.assertEquals(3, runs);
+        Assert.assertEquals(Arrays.asList(key("shardIndex", "a", 2), key("shardIndex", "a", 1), key("shardIndex", "b", 1)), keys);
+        Assert.assertEquals(Arrays.asList(Arrays.asList("4"), Arrays.asList("2"), Arrays.asList("1", "3", "5")), values);
+        
+        Assert.assertTrue(buffer.isEmpty());
+        Assert.assertEquals(0, buffer.getByteCount());
+    }
+    
+    @Test
+    public void testFullByEntries() throws Exception {
+        SortedCombiningBuffer buffer = new SortedCombiningBuffer(1024 * 1024, 3);
+        buffer.add(key("shardIndex", "a", 1), value("1"));
+        buffer.add(key("shardIndex", "a", 1), value("1"));
+        Assert.assertFalse(buffer.isFull());
+        buffer.add(key("shardIndex", "a", 1), value("1"));
+        Assert.assertTrue(buffer.isFull());
+    }
+    
+    @Test
+    public void testFullByBytes() throws Exception {
+        SortedCombiningBuffer buffer = new SortedCombiningBuffer(100, Integer.MAX_VALUE);
+        buffer.add(key("shardIndex", "a", 1), value("1"));
+        Assert.assertFalse(buffer.isFull());
+        buffer.add(key("shardIndex", "a", 1), new Value(new byte[100]));
+        Assert.assertTrue(buffer.isFull());
+    }
+    
+    @Test
+    public void testCombine() throws Exception {
+        SortedCombiningBuffer buffer = new SortedCombiningBuffer(1024 * 1024, 6);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(key("shardIndex", "b", 1), value(Integer.toString(i)));
+        }
+        buffer.add(key("shardIndex", "a", 1), value("x"));
+        Assert.assertTrue(buffer.isFull());
+        
+        // each run is replaced by what the combiner returns, which may have a different key
+        List<Integer> runSizes = new ArrayList<>();
+        buffer.combine((key, run) -> {
+            runSizes.add(run.size());
+            StringBuilder combined = new StringBuilder();
+            for (Value value : run) {
+                combined.append(value);
+            }
+            Multimap<BulkIngestKey,Value> entries = HashMultimap.create();
+            entries.put(key("shardIndex", "b", 2), value(combined.toString()));
+            return entries;
+        });
+        Assert.assertEquals(Arrays.asList(5), runSizes);
+        Assert.assertEquals(2, buffer.size());
+        Assert.assertFalse(buffer.isHalfFull());
+        
+        // the buffer may be added to and combined again
+        buffer.add(key("shardIndex", "a", 1), value("y"));
+        Assert.assertTrue(buffer.isHalfFull());
+        
+        List<BulkIngestKey> keys = new ArrayList<>();
+        List<List<String>> values = new ArrayList<>();
+        buffer.flush((key, run) -> {
+            keys.add(key);
+            List<String> strings = new ArrayList<>();
+            for (Value value : run) {
+                strings.add(value.toString());
+            }
+            values.add(strings);
+        });
+        Assert.assertEquals(Arrays.asList(key("shardIndex", "a", 1), key("shardIndex", "b", 2)), keys);
+        Assert.assertEquals(Arrays.asList(Arrays.asList("x", "y"), Arrays.asList("01234")), values);
+    }
+    
+    @Test
+    public void testManyEntries() throws Exception {
+        SortedCombiningBuffer buffer = new SortedCombiningBuffer(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        for (int i = 0; i < 5000; i++) {
+            buffer.add(key("shardIndex", String.format("%04d", (i * 7) % 1000), 1), value(Integer.toString(i)));
+        }
+        
+        List<BulkIngestKey> keys = new ArrayList<>();
+        int[] entries = {0};
+        buffer.flush((key, run) -> {
+            keys.add(key);
+            entries[0] += run.size();
+        });
+        Assert.assertEquals(1000, keys.size());
+        Assert.assertEquals(5000, entries[0]);
+        for (int i = 1; i < keys.size(); i++) {
+            Assert.assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+        }
+    }
+}
@@ -153,6 +153,32 @@ public class FlagMakerTest {
         assertEquals(0, cleanCnt);
     }
     
+    /**
+     * Test of processFlags driven by file events rather than listing the folders each cycle
+     */
+    @Test
+    public void testProcessFlagsWithFileWatcher() throws Exception {
+        File f = setUpFlagDir();
+        fmc.setFileWatcherType("local");
+        FlagMaker instance = new TestWrappedFlagMaker(fmc);
+        // the first cycle indexes the empty base directory
+        instance.processFlags();
+        assertEquals(0, f.listFiles().length);
+        
+        // two days, 5 files each day, two folders in fmc = 20 files, which are only found through the watcher
+        createTestFiles(2, 5);
+        long end = System.currentTimeMillis() + 30000;
+        while (f.listFiles().length < 2 && System.currentTimeMillis() < end) {
+            Thread.sleep(100);
+            instance.processFlags();
+        }
+        assertEquals("Incorrect files.  Expected 2 but got " + f.listFiles().length + ": " + Arrays.toString(f.listFiles()), 2, f.listFiles().length);
+        
+        // the flagged files were removed from the index, so no more flags are made
+        instance.processFlags();
+        assertEquals("Incorrect files.  Expected 2 but got " + f.listFiles().length + ": " + Arrays.toString(f.listFiles()), 2, f.listFiles().length);
+    }
+    
     /**
      * Test of time stamps of the flag files
      */
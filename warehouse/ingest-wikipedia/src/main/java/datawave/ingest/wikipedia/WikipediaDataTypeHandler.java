@@ -3,7 +3,6 @@ package datawave.ingest.wikipedia;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.Arrays;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -245,17 +244,17 @@ public class WikipediaDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> extends ExtendedCon
             wikiTokenizer.reset();
             
             while (wikiTokenizer.incrementToken()) {
-                String term = termAttr.toString();
-                
                 // getting the next token can take a long time depending on the compexity of the data...
                 // so lets report progress to hadoop on each round
                 if (context != null)
                     context.progress();
                 
-                if (StringUtils.isBlank(term)) {
+                // test the reused term buffer, only creating a string for the terms kept
+                if (isBlank(termAttr)) {
                     context.getCounter("Tokenization", "Blank tokens (null, empty, or whitespace)").increment(1l);
                     continue;
                 }
+                String term = termAttr.toString();
                 
                 processTerm(event, position, term, null, context, contextWriter, fieldName, fieldNameToken, reporter);
                 
@@ -517,7 +516,7 @@ public class WikipediaDataTypeHandler<KEYIN,KEYOUT,VALUEOUT> extends ExtendedCon
                     counters.incrementValue(ContentIndexCounters.TOKENIZER_OFFSET_CACHE_POSITIONS_OVERFLOWED, overflow.offsets.size(), reporter);
                 }
             } else {
-                createTermFrequencyIndex(event, contextWriter, context, this.shardId, nfv, Arrays.asList(position), fieldVisibility, false);
+                createTermFrequencyIndex(event, contextWriter, context, this.shardId, nfv, new int[] {position}, 1, fieldVisibility, false);
             }
         }
     }
@@ -0,0 +1,103 @@
+package datawave.query.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.composite.CompositeSeeker;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the {@link CompositeSeeker} against the string based {@link StringCompositeSeeker} it replaced. Every shard index key of a composite field is
+ * checked against a range which bounds each component, and a seek key is computed for each key out of range, as the {@code CompositeSeekingIterator} does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CompositeSeekerBenchmark {
+    
+    private static final String SEPARATOR = new String(Character.toChars(Character.MAX_CODE_POINT));
+    
+    @Param({"2", "3"})
+    public int components;
+    
+    @Param({"100000"})
+    public int keys;
+    
+    private List<String> fields;
+    private List<Key> shardIndexKeys;
+    private Range range;
+    
+    private CompositeSeeker.ShardIndexCompositeSeeker byteSeeker;
+    private StringCompositeSeeker.ShardIndexCompositeSeeker stringSeeker;
+    
+    @Setup
+    public void setup() {
+        fields = new ArrayList<>(components);
+        for (int i = 0; i < components; i++) {
+            fields.add("FIELD" + i);
+        }
+        
+        // each component takes one of `width` values, and the range accepts the middle half of them for every component
+        int width = (int) Math.ceil(Math.pow(keys, 1.0 / components));
+        shardIndexKeys = new ArrayList<>(keys);
+        for (int k = 0; k < keys; k++) {
+            String[] values = new String[components];
+            for (int i = components - 1, n = k; i >= 0; i--, n /= width) {
+                values[i] = String.format("value%05d", n % width);
+            }
+            shardIndexKeys.add(new Key(new Text(String.join(SEPARATOR, values)), new Text("20190101_0"), new Text("datatype")));
+        }
+        
+        String[] start = new String[components];
+        String[] end = new String[components];
+        Arrays.fill(start, String.format("value%05d", width / 4));
+        Arrays.fill(end, String.format("value%05d", width * 3 / 4));
+        range = new Range(new Key(new Text(String.join(SEPARATOR, start))), true, new Key(new Text(String.join(SEPARATOR, end))), true);
+        
+        byteSeeker = new CompositeSeeker.ShardIndexCompositeSeeker(fields, SEPARATOR, Collections.emptyMap());
+        stringSeeker = new StringCompositeSeeker.ShardIndexCompositeSeeker(fields, SEPARATOR, Collections.emptyMap());
+    }
+    
+    @Benchmark
+    public void byteSeeker(Blackhole blackhole) {
+        for (Key key : shardIndexKeys) {
+            if (byteSeeker.isKeyInRange(key, range)) {
+                blackhole.consume(key);
+            } else {
+                blackhole.consume(byteSeeker.nextSeekKey(key, range));
+            }
+        }
+    }
+    
+    @Benchmark
+    public void stringSeeker(Blackhole blackhole) {
+        for (Key key : shardIndexKeys) {
+            if (stringSeeker.isKeyInRange(key, range)) {
+                blackhole.consume(key);
+            } else {
+                blackhole.consume(stringSeeker.nextSeekKey(key, range));
+            }
+        }
+    }
+}
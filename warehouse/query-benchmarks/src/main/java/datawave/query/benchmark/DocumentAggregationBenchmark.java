@@ -0,0 +1,87 @@
+package datawave.query.benchmark;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.attributes.Document;
+import datawave.query.function.KeyToDocumentData;
+import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.util.TypeMetadata;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Measures the two halves of event aggregation in the shard table evaluation path: {@link KeyToDocumentData} gathering the raw event keys for a document
+ * from the source, and {@link Document#consumeRawData} turning those keys into typed attributes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DocumentAggregationBenchmark {
+    
+    @Param({"10", "100", "1000"})
+    public int fieldsPerEvent;
+    
+    private ShardTableFixture fixture;
+    private KeyToDocumentData keyToDocumentData;
+    private TypeMetadata typeMetadata;
+    private List<Key> documentKeys;
+    private DocumentData documentData;
+    private int next = 0;
+    
+    @Setup
+    public void setup() throws Exception {
+        fixture = new ShardTableFixture(100, fieldsPerEvent, 50).load();
+        keyToDocumentData = new KeyToDocumentData(new SortedMapIterator(fixture.getData()));
+        typeMetadata = fixture.getTypeMetadata();
+        documentKeys = fixture.getDocumentKeys();
+        documentData = keyToDocumentData.apply(Maps.immutableEntry(documentKeys.get(0), new Document())).getKey();
+    }
+    
+    private Key nextDocumentKey() {
+        Key key = documentKeys.get(next);
+        next = (next + 1) % documentKeys.size();
+        return key;
+    }
+    
+    @Benchmark
+    public Entry<DocumentData,Document> keyToDocumentData() {
+        return keyToDocumentData.apply(Maps.immutableEntry(nextDocumentKey(), new Document()));
+    }
+    
+    @Benchmark
+    public Document consumeRawData() {
+        Set<Key> docKeys = new HashSet<>(documentData.getDocKeys());
+        Document document = new Document(documentData.getKey(), true);
+        return document.consumeRawData(documentData.getKey(), docKeys, documentData.getData().iterator(), typeMetadata, null, false, false, null);
+    }
+    
+    @Benchmark
+    public void aggregateAndConsume(Blackhole blackhole) {
+        Entry<DocumentData,Document> entry = keyToDocumentData.apply(Maps.immutableEntry(nextDocumentKey(), new Document()));
+        DocumentData data = entry.getKey();
+        blackhole.consume(entry.getValue().consumeRawData(data.getKey(), data.getDocKeys(), data.getData().iterator(), typeMetadata, null, false, false,
+                        null));
+    }
+}
@@ -0,0 +1,86 @@
+package datawave.query.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.attributes.Document;
+import datawave.query.function.deserializer.KryoDocumentDeserializer;
+import datawave.query.function.serializer.KryoDocumentSerializer;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Measures the tablet server side {@link KryoDocumentSerializer} and the web tier side {@link KryoDocumentDeserializer}, with and without compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DocumentSerializationBenchmark {
+    
+    @Param({"10", "100", "1000"})
+    public int fieldsPerEvent;
+    
+    @Param({"false", "true"})
+    public boolean compress;
+    
+    @Param({"false", "true"})
+    public boolean reducedResponse;
+    
+    private KryoDocumentSerializer serializer;
+    private KryoDocumentDeserializer deserializer;
+    private List<Entry<Key,Document>> documents;
+    private List<Entry<Key,Value>> serialized;
+    private int next = 0;
+    
+    @Setup
+    public void setup() throws Exception {
+        ShardTableFixture fixture = new ShardTableFixture(100, fieldsPerEvent, 50).load();
+        serializer = new KryoDocumentSerializer(reducedResponse, compress);
+        deserializer = new KryoDocumentDeserializer();
+        
+        documents = new ArrayList<>();
+        serialized = new ArrayList<>();
+        List<Key> documentKeys = fixture.getDocumentKeys();
+        List<Document> aggregated = fixture.getDocuments();
+        for (int i = 0; i < documentKeys.size(); i++) {
+            Entry<Key,Document> document = Maps.immutableEntry(documentKeys.get(i), aggregated.get(i));
+            documents.add(document);
+            serialized.add(serializer.apply(document));
+        }
+    }
+    
+    private int nextIndex() {
+        int index = next;
+        next = (next + 1) % documents.size();
+        return index;
+    }
+    
+    @Benchmark
+    public Entry<Key,Value> serialize() {
+        return serializer.apply(documents.get(nextIndex()));
+    }
+    
+    @Benchmark
+    public Entry<Key,Document> deserialize() {
+        return deserializer.apply(serialized.get(nextIndex()));
+    }
+}
@@ -0,0 +1,80 @@
+package datawave.query.benchmark;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.attributes.Document;
+import datawave.query.function.JexlEvaluation;
+import datawave.query.jexl.DatawaveJexlContext;
+import datawave.query.jexl.DefaultArithmetic;
+import datawave.query.jexl.HitListArithmetic;
+import datawave.query.util.Tuple3;
+
+import org.apache.accumulo.core.data.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building a {@link DatawaveJexlContext} from an aggregated {@link Document} and evaluating the query script against it, which is the per-document
+ * cost paid inside the {@code QueryIterator} evaluation pipeline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JexlEvaluationBenchmark {
+    
+    @Param({"FIELD_0 == 'value1'", "FIELD_0 == 'value1' || FIELD_1 == 'value2'", "FIELD_0 =~ 'value1.*' && !(FIELD_2 == 'value3')",
+            "FIELD_0 == 'value1' && filter:includeRegex(FIELD_1, 'value.*')"})
+    public String query;
+    
+    @Param({"false", "true"})
+    public boolean hitList;
+    
+    @Param({"10", "100"})
+    public int fieldsPerEvent;
+    
+    private JexlEvaluation evaluation;
+    private Set<String> queryFields;
+    private List<Key> documentKeys;
+    private List<Document> documents;
+    private int next = 0;
+    
+    @Setup
+    public void setup() throws Exception {
+        ShardTableFixture fixture = new ShardTableFixture(100, fieldsPerEvent, 10).load();
+        documentKeys = fixture.getDocumentKeys();
+        documents = fixture.getDocuments();
+        
+        queryFields = new HashSet<>();
+        for (int field = 0; field < fixture.getFieldsPerEvent(); field++) {
+            queryFields.add(ShardTableFixture.fieldName(field));
+        }
+        
+        evaluation = new JexlEvaluation(query, hitList ? new HitListArithmetic() : new DefaultArithmetic());
+    }
+    
+    @Benchmark
+    public boolean evaluate() {
+        Key documentKey = documentKeys.get(next);
+        Document document = documents.get(next);
+        next = (next + 1) % documents.size();
+        
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        document.visit(queryFields, context);
+        return evaluation.apply(new Tuple3<>(documentKey, document, context));
+    }
+}
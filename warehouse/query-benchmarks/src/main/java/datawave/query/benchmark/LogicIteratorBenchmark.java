@@ -0,0 +1,93 @@
+package datawave.query.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.iterator.NestedIterator;
+import datawave.query.iterator.logic.AndIterator;
+import datawave.query.iterator.logic.OrIterator;
+
+import org.apache.accumulo.core.data.Key;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the leapfrogging merge joins in {@link AndIterator} and {@link OrIterator}. Term {@code i} matches every {@code (i + 1) * stride}th document in the
+ * shard, so intersections become sparser as more terms are added while unions become denser.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LogicIteratorBenchmark {
+    
+    @Param({"2", "8", "32"})
+    public int terms;
+    
+    @Param({"100000"})
+    public int documents;
+    
+    @Param({"1", "7"})
+    public int stride;
+    
+    private List<List<Key>> termKeys;
+    
+    @Setup
+    public void setup() {
+        termKeys = new ArrayList<>(terms);
+        for (int term = 0; term < terms; term++) {
+            int step = (term + 1) * stride;
+            List<Key> keys = new ArrayList<>(documents / step + 1);
+            for (int doc = 0; doc < documents; doc += step) {
+                keys.add(new Key(ShardTableFixture.SHARD, ShardTableFixture.DATATYPE + '\0' + ShardTableFixture.uid(doc)));
+            }
+            termKeys.add(keys);
+        }
+    }
+    
+    private List<NestedIterator<Key>> leaves() {
+        List<NestedIterator<Key>> leaves = new ArrayList<>(terms);
+        for (List<Key> keys : termKeys) {
+            leaves.add(new SortedKeyListIterator(keys));
+        }
+        return leaves;
+    }
+    
+    private static void drain(NestedIterator<Key> iterator, Blackhole blackhole) {
+        iterator.initialize();
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+    
+    @Benchmark
+    public void and(Blackhole blackhole) {
+        drain(new AndIterator<>(leaves()), blackhole);
+    }
+    
+    @Benchmark
+    public void or(Blackhole blackhole) {
+        drain(new OrIterator<>(leaves(), true), blackhole);
+    }
+    
+    @Benchmark
+    public void andWithNegation(Blackhole blackhole) {
+        List<NestedIterator<Key>> leaves = leaves();
+        List<NestedIterator<Key>> excludes = new ArrayList<>(1);
+        excludes.add(leaves.remove(leaves.size() - 1));
+        drain(new AndIterator<>(leaves, excludes), blackhole);
+    }
+}
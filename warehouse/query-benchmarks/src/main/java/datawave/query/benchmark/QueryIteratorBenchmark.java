@@ -0,0 +1,102 @@
+package datawave.query.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import datawave.query.Constants;
+import datawave.query.iterator.QueryIterator;
+import datawave.query.iterator.QueryOptions;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * End to end measurement of a single shard scan through the {@link QueryIterator} against the in-memory Accumulo. This covers field index lookups (when not a
+ * full table scan), event aggregation, JEXL evaluation and kryo serialization of the returned documents.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class QueryIteratorBenchmark {
+    
+    @Param({"FIELD_0 == 'value1'", "FIELD_0 == 'value1' && FIELD_1 == 'value2'", "FIELD_0 == 'value1' || FIELD_1 == 'value2'"})
+    public String query;
+    
+    @Param({"false", "true"})
+    public boolean fullTableScan;
+    
+    @Param({"false", "true"})
+    public boolean serialPipeline;
+    
+    @Param({"1000"})
+    public int numEvents;
+    
+    @Param({"20"})
+    public int fieldsPerEvent;
+    
+    private ShardTableFixture fixture;
+    private IteratorSetting setting;
+    
+    @Setup
+    public void setup() throws Exception {
+        fixture = new ShardTableFixture(numEvents, fieldsPerEvent, 50).load();
+        
+        StringBuilder indexedFields = new StringBuilder();
+        for (int field = 0; field < fieldsPerEvent; field++) {
+            if (field > 0) {
+                indexedFields.append(',');
+            }
+            indexedFields.append(ShardTableFixture.fieldName(field));
+        }
+        
+        setting = new IteratorSetting(50, QueryIterator.class);
+        setting.addOption(QueryOptions.QUERY, query);
+        setting.addOption(QueryOptions.QUERY_ID, QueryIteratorBenchmark.class.getSimpleName());
+        setting.addOption(QueryOptions.DISABLE_EVALUATION, "false");
+        setting.addOption(QueryOptions.REDUCED_RESPONSE, "false");
+        setting.addOption(Constants.RETURN_TYPE, "kryo");
+        setting.addOption(QueryOptions.FULL_TABLE_SCAN_ONLY, Boolean.toString(fullTableScan));
+        setting.addOption(QueryOptions.INDEX_ONLY_FIELDS, "");
+        setting.addOption(QueryOptions.INDEXED_FIELDS, indexedFields.toString());
+        setting.addOption(QueryOptions.START_TIME, "0");
+        setting.addOption(QueryOptions.END_TIME, Long.toString(Long.MAX_VALUE));
+        setting.addOption(QueryOptions.POSTPROCESSING_CLASSES, "");
+        setting.addOption(QueryOptions.INCLUDE_GROUPING_CONTEXT, "false");
+        setting.addOption(QueryOptions.NON_INDEXED_DATATYPES, "");
+        setting.addOption(QueryOptions.CONTAINS_INDEX_ONLY_TERMS, "false");
+        setting.addOption(QueryOptions.TYPE_METADATA, fixture.getTypeMetadata().toString());
+        setting.addOption(QueryOptions.SERIAL_EVALUATION_PIPELINE, Boolean.toString(serialPipeline));
+    }
+    
+    @Benchmark
+    public void scanShard(Blackhole blackhole) throws Exception {
+        Scanner scanner = fixture.getConnector().createScanner(ShardTableFixture.SHARD_TABLE_NAME, ShardTableFixture.AUTHS);
+        try {
+            scanner.setRange(new Range(ShardTableFixture.SHARD));
+            scanner.addScanIterator(setting);
+            for (Map.Entry<Key,Value> entry : scanner) {
+                blackhole.consume(entry);
+            }
+        } finally {
+            scanner.close();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package datawave.query.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.query.attributes.Document;
+import datawave.query.function.KeyToDocumentData;
+import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.util.TypeMetadata;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Builds a synthetic shard table inside an {@link InMemoryInstance} so that the benchmarks exercise the same key layout that the tablet servers see. Each
+ * event field is written as an event key ({@code datatype\0uid : FIELD\0value}) and as a field index key ({@code fi\0FIELD : value\0datatype\0uid}).
+ */
+public class ShardTableFixture {
+    
+    public static final String SHARD_TABLE_NAME = "shard";
+    public static final String SHARD = "20190101_0";
+    public static final String DATATYPE = "test";
+    public static final String VISIBILITY = "PUBLIC";
+    public static final Authorizations AUTHS = new Authorizations(VISIBILITY);
+    public static final long TIMESTAMP = 1546300800000L;
+    
+    private static final String NULL = "\0";
+    
+    private final int numEvents;
+    private final int fieldsPerEvent;
+    private final int valuesPerField;
+    
+    private Connector connector;
+    private final SortedMap<Key,Value> data = new TreeMap<>();
+    private final List<Key> documentKeys = new ArrayList<>();
+    
+    /**
+     * @param numEvents
+     *            the number of events to write into the shard
+     * @param fieldsPerEvent
+     *            the number of distinct fields on each event; fields are named {@code FIELD_0 .. FIELD_n}
+     * @param valuesPerField
+     *            the cardinality of each field across the shard
+     */
+    public ShardTableFixture(int numEvents, int fieldsPerEvent, int valuesPerField) {
+        this.numEvents = numEvents;
+        this.fieldsPerEvent = fieldsPerEvent;
+        this.valuesPerField = valuesPerField;
+    }
+    
+    public ShardTableFixture load() throws Exception {
+        InMemoryInstance instance = new InMemoryInstance(ShardTableFixture.class.getName() + '-' + System.nanoTime());
+        connector = instance.getConnector("root", new PasswordToken(""));
+        connector.securityOperations().changeUserAuthorizations("root", AUTHS);
+        connector.tableOperations().create(SHARD_TABLE_NAME);
+        
+        BatchWriterConfig config = new BatchWriterConfig().setMaxLatency(1, TimeUnit.SECONDS).setMaxMemory(16L * 1024L * 1024L).setMaxWriteThreads(1);
+        BatchWriter writer = connector.createBatchWriter(SHARD_TABLE_NAME, config);
+        ColumnVisibility cv = new ColumnVisibility(VISIBILITY);
+        Value empty = new Value(new byte[0]);
+        try {
+            for (int event = 0; event < numEvents; event++) {
+                String uid = uid(event);
+                Mutation m = new Mutation(SHARD);
+                for (int field = 0; field < fieldsPerEvent; field++) {
+                    String fieldName = fieldName(field);
+                    String value = value(event, field);
+                    m.put(DATATYPE + NULL + uid, fieldName + NULL + value, cv, TIMESTAMP, empty);
+                    m.put("fi" + NULL + fieldName, value + NULL + DATATYPE + NULL + uid, cv, TIMESTAMP, empty);
+                }
+                writer.addMutation(m);
+                documentKeys.add(new Key(SHARD, DATATYPE + NULL + uid, "", VISIBILITY, TIMESTAMP));
+            }
+        } finally {
+            writer.close();
+        }
+        
+        Scanner scanner = connector.createScanner(SHARD_TABLE_NAME, AUTHS);
+        for (Map.Entry<Key,Value> entry : scanner) {
+            data.put(entry.getKey(), entry.getValue());
+        }
+        scanner.close();
+        return this;
+    }
+    
+    public static String uid(int event) {
+        return String.format("-abcdef.-123456.%08d", event);
+    }
+    
+    public static String fieldName(int field) {
+        return "FIELD_" + field;
+    }
+    
+    public String value(int event, int field) {
+        return "value" + ((event + field) % valuesPerField);
+    }
+    
+    public Connector getConnector() {
+        return connector;
+    }
+    
+    /**
+     * @return a copy-free view of the scanned shard table, suitable for backing a {@code SortedMapIterator}
+     */
+    public SortedMap<Key,Value> getData() {
+        return Collections.unmodifiableSortedMap(data);
+    }
+    
+    /**
+     * @return the document keys ({@code shard, datatype\0uid}) of every event in the fixture, in sorted order
+     */
+    public List<Key> getDocumentKeys() {
+        return Collections.unmodifiableList(documentKeys);
+    }
+    
+    public int getFieldsPerEvent() {
+        return fieldsPerEvent;
+    }
+    
+    public TypeMetadata getTypeMetadata() {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        for (int field = 0; field < fieldsPerEvent; field++) {
+            typeMetadata.put(fieldName(field), DATATYPE, LcNoDiacriticsType.class.getName());
+        }
+        return typeMetadata;
+    }
+    
+    /**
+     * Aggregates every event in the fixture into a {@link Document} the same way the evaluation pipeline does.
+     *
+     * @return one document per event, in document key order
+     */
+    public List<Document> getDocuments() {
+        TypeMetadata typeMetadata = getTypeMetadata();
+        KeyToDocumentData keyToDocumentData = new KeyToDocumentData(new SortedMapIterator(data));
+        List<Document> documents = new ArrayList<>(documentKeys.size());
+        for (Key documentKey : documentKeys) {
+            Map.Entry<DocumentData,Document> entry = keyToDocumentData.apply(Maps.immutableEntry(documentKey, new Document()));
+            DocumentData documentData = entry.getKey();
+            documents.add(entry.getValue().consumeRawData(documentData.getKey(), documentData.getDocKeys(), documentData.getData().iterator(),
+                            typeMetadata, null, false, false, null));
+        }
+        return documents;
+    }
+}
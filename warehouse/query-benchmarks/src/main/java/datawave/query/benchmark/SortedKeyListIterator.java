@@ -0,0 +1,68 @@
+package datawave.query.benchmark;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import datawave.query.attributes.Document;
+import datawave.query.iterator.NestedIterator;
+
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * A leaf {@link NestedIterator} over a pre-sorted list of document keys. This stands in for an {@code IndexIteratorBridge} so that the logic iterators can be
+ * measured without the cost of the underlying field index scan; {@link #move(Key)} uses a binary search so that seeks behave like they would against a real
+ * source.
+ */
+public class SortedKeyListIterator implements NestedIterator<Key> {
+    private static final Document EMPTY_DOCUMENT = new Document();
+    
+    private final List<Key> keys;
+    private int offset = 0;
+    
+    public SortedKeyListIterator(List<Key> keys) {
+        this.keys = keys;
+    }
+    
+    @Override
+    public void initialize() {
+        offset = 0;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return offset < keys.size();
+    }
+    
+    @Override
+    public Key next() {
+        return keys.get(offset++);
+    }
+    
+    @Override
+    public Key move(Key minimum) {
+        int index = Collections.binarySearch(keys.subList(offset, keys.size()), minimum);
+        offset += index < 0 ? -(index + 1) : index;
+        return hasNext() ? next() : null;
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("This iterator does not support remove.");
+    }
+    
+    @Override
+    public Collection<NestedIterator<Key>> leaves() {
+        return Collections.<NestedIterator<Key>> singletonList(this);
+    }
+    
+    @Override
+    public Collection<NestedIterator<Key>> children() {
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public Document document() {
+        return EMPTY_DOCUMENT;
+    }
+}
@@ -13,7 +13,10 @@ import datawave.query.iterator.profile.SourceTrackingIterator;
 import datawave.query.predicate.TimeFilter;
 import datawave.query.util.TypeMetadata;
 import datawave.query.util.sortedset.HdfsBackedSortedSet;
+import datawave.query.util.sortedset.KeyValueByteCodec;
 import datawave.query.util.sortedset.KeyValueSerializable;
+import datawave.query.util.sortedset.MappedFileBackedSortedSet;
+import datawave.query.util.sortedset.PersistableSortedSet;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.PartialKey;
@@ -23,6 +26,7 @@ import org.apache.accumulo.core.iterators.IterationInterruptedException;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.accumulo.core.security.Authorizations;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
@@ -30,9 +34,11 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -75,6 +81,14 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         private long scanThreshold = 10000;
         private int hdfsBackedSetBufferSize = 10000;
         private int maxOpenFiles = 100;
+        private String sortedSetBackend = HDFS_SORTED_SET_BACKEND;
+        private String localCacheDir = null;
+        private int offHeapBufferSize = MappedFileBackedSortedSet.DEFAULT_BUFFER_SIZE;
+        private String queryId = null;
+        private String scheduler = FIFO_IVARATOR_SCHEDULER;
+        private int schedulerWeight = 1;
+        private int maxConcurrentFills = 0;
+        private IvaratorResultCache resultCache = null;
         private boolean sortedUIDs = true;
         protected QuerySpanCollector querySpanCollector = null;
         protected volatile boolean collectTimingDetails = false;
@@ -146,6 +160,46 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             return self();
         }
         
+        public B withSortedSetBackend(String sortedSetBackend) {
+            this.sortedSetBackend = sortedSetBackend;
+            return self();
+        }
+        
+        public B withLocalCacheDir(String localCacheDir) {
+            this.localCacheDir = localCacheDir;
+            return self();
+        }
+        
+        public B withOffHeapBufferSize(int offHeapBufferSize) {
+            this.offHeapBufferSize = offHeapBufferSize;
+            return self();
+        }
+        
+        public B withQueryId(String queryId) {
+            this.queryId = queryId;
+            return self();
+        }
+        
+        public B withScheduler(String scheduler) {
+            this.scheduler = scheduler;
+            return self();
+        }
+        
+        public B withSchedulerWeight(int schedulerWeight) {
+            this.schedulerWeight = schedulerWeight;
+            return self();
+        }
+        
+        public B withMaxConcurrentFills(int maxConcurrentFills) {
+            this.maxConcurrentFills = maxConcurrentFills;
+            return self();
+        }
+        
+        public B withResultCache(IvaratorResultCache resultCache) {
+            this.resultCache = resultCache;
+            return self();
+        }
+        
         public B withFileSystem(FileSystem fs) {
             this.fs = fs;
             return self();
@@ -199,6 +253,12 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     public static final String NULL_BYTE = Constants.NULL_BYTE_STRING;
     public static final String ONE_BYTE = "\u0001";
     public static final PartialKey DEFAULT_RETURN_KEY_TYPE = PartialKey.ROW_COLFAM;
+    // the sorted set implementations that can back the ivarator results
+    public static final String HDFS_SORTED_SET_BACKEND = "hdfs";
+    public static final String MAPPED_SORTED_SET_BACKEND = "mapped";
+    // the ways the fill tasks can be scheduled on the shared ivarator thread pool
+    public static final String FIFO_IVARATOR_SCHEDULER = "fifo";
+    public static final String FAIR_IVARATOR_SCHEDULER = "fair";
     // This iterator should have no seek column families. This is because all filtering is done by the bounding FI ranges,
     // the timefilter, and the datatype filters.
     // We do not want the underlying iterators to filter keys so that we can check the bounds in this iterator as quickly
@@ -248,6 +308,39 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     // the max number of files to open simultaneously during a merge source
     private final int maxOpenFiles;
     
+    // the sorted set backend, either hdfs or mapped
+    private String sortedSetBackend = HDFS_SORTED_SET_BACKEND;
+    
+    // the local directory under which the mapped sorted sets are stored
+    private String localCacheDir = null;
+    
+    // the number of off-heap bytes to buffer in a mapped sorted set before spilling to disk
+    private int offHeapBufferSize = MappedFileBackedSortedSet.DEFAULT_BUFFER_SIZE;
+    
+    // the query id, used to group the fill tasks when using the fair scheduler
+    private String queryId = null;
+    
+    // the fill task scheduler, either fifo or fair
+    private String scheduler = FIFO_IVARATOR_SCHEDULER;
+    
+    // the number of fill tasks dispatched per turn when using the fair scheduler
+    private int schedulerWeight = 1;
+    
+    // the maximum number of concurrent fill tasks for this query when using the fair scheduler
+    private int maxConcurrentFills = 0;
+    
+    // the cross query result cache, null if disabled
+    private IvaratorResultCache resultCache = null;
+    
+    // the lazily computed result cache key, empty if these results cannot be cached
+    private String resultCacheKey = null;
+    
+    // were the current row's results read from the result cache
+    private boolean reusedCachedResults = false;
+    
+    // when this iterator started filling the current row's set, 0 if the set was filled elsewhere (e.g. by a previous scan of this query)
+    private long rowFillStartTime = 0;
+    
     // the current top key
     private Key topKey = null;
     // the current top value
@@ -262,7 +355,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
     private SortedKeyValueIterator<Key,Value> fiSource = null;
     
     // the hdfs backed sorted set
-    private HdfsBackedSortedSet<KeyValueSerializable> set = null;
+    private PersistableSortedSet<KeyValueSerializable> set = null;
     // a thread safe wrapper around the sorted set used by the scan threads
     private SortedSet<KeyValueSerializable> threadSafeSet = null;
     // the iterator (merge sort) of key values once the sorted set has been filled
@@ -334,6 +427,14 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                         builder.hdfsBackedSetBufferSize, builder.maxRangeSplit, builder.maxOpenFiles, builder.fs, builder.uniqueDir, builder.queryLock,
                         builder.allowDirReuse, builder.returnKeyType, builder.sortedUIDs, builder.compositeMetadata, builder.compositeSeekThreshold,
                         builder.typeMetadata);
+        this.sortedSetBackend = builder.sortedSetBackend;
+        this.localCacheDir = builder.localCacheDir;
+        this.offHeapBufferSize = builder.offHeapBufferSize;
+        this.queryId = builder.queryId;
+        this.scheduler = builder.scheduler;
+        this.schedulerWeight = builder.schedulerWeight;
+        this.maxConcurrentFills = builder.maxConcurrentFills;
+        this.resultCache = builder.resultCache;
     }
     
     @SuppressWarnings("hiding")
@@ -399,6 +500,17 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         this.scanTimeout = other.scanTimeout;
         this.hdfsBackedSetBufferSize = other.hdfsBackedSetBufferSize;
         this.maxOpenFiles = other.maxOpenFiles;
+        this.sortedSetBackend = other.sortedSetBackend;
+        this.localCacheDir = other.localCacheDir;
+        this.offHeapBufferSize = other.offHeapBufferSize;
+        this.queryId = other.queryId;
+        this.scheduler = other.scheduler;
+        this.schedulerWeight = other.schedulerWeight;
+        this.maxConcurrentFills = other.maxConcurrentFills;
+        this.resultCache = other.resultCache;
+        this.resultCacheKey = other.resultCacheKey;
+        this.reusedCachedResults = other.reusedCachedResults;
+        this.rowFillStartTime = other.rowFillStartTime;
         
         this.set = other.set;
         this.keyValues = other.keyValues;
@@ -723,6 +835,7 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 
                 if (this.keyValues == null) {
                     this.keyValues = this.threadSafeSet.iterator();
+                    publishToResultCache();
                 }
             }
             
@@ -743,6 +856,12 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         String sourceRow = this.fiRow.toString();
         setupRowBasedHdfsBackedSet(sourceRow);
         
+        // nothing to scan if another query already computed this row
+        if (this.reusedCachedResults) {
+            moveToNextRow();
+            return;
+        }
+        
         // for each range, fork off a runnable
         List<Future<?>> futures = new ArrayList<>(boundingFiRanges.size());
         if (log.isDebugEnabled()) {
@@ -1049,7 +1168,13 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
             }
         };
         
-        return IteratorThreadPoolManager.executeIvarator(runnable, DatawaveFieldIndexCachingIteratorJexl.this + " in " + boundingFiRange);
+        String taskName = DatawaveFieldIndexCachingIteratorJexl.this + " in " + boundingFiRange;
+        if (FAIR_IVARATOR_SCHEDULER.equalsIgnoreCase(scheduler)) {
+            // group the tasks by query, falling back on the unique dir which is query specific
+            String group = (queryId != null ? queryId : String.valueOf(uniqueDir));
+            return IteratorThreadPoolManager.executeIvarator(runnable, taskName, group, schedulerWeight, maxConcurrentFills);
+        }
+        return IteratorThreadPoolManager.executeIvarator(runnable, taskName);
         
     }
     
@@ -1073,17 +1198,70 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         return new Path(this.uniqueDir, row);
     }
     
+    /**
+     * Get the local directory for a specific row, used by the mapped sorted set backend. This mirrors the unique dir path under the local cache dir.
+     * 
+     * @param row
+     * @return the local row dir
+     */
+    protected File getLocalRowDir(String row) {
+        String cacheDir = (this.localCacheDir == null ? System.getProperty("java.io.tmpdir") : this.localCacheDir);
+        return new File(new File(cacheDir, this.uniqueDir.toUri().getPath()), row);
+    }
+    
+    /**
+     * Are we using the local memory mapped sorted set backend
+     * 
+     * @return true if mapped
+     */
+    protected boolean isMappedBackend() {
+        return MAPPED_SORTED_SET_BACKEND.equalsIgnoreCase(this.sortedSetBackend);
+    }
+    
     /**
      * Clear out the current row based hdfs backed set
      * 
      * @throws IOException
      */
     protected void clearRowBasedHdfsBackedSet() throws IOException {
+        if (this.set instanceof MappedFileBackedSortedSet) {
+            closeMappedSet((MappedFileBackedSortedSet<KeyValueSerializable>) this.set, this.currentRow);
+        }
         this.keyValues = null;
         this.currentRow = null;
         this.set = null;
     }
     
+    /**
+     * Delete the files of a local set and release its off-heap buffer and mappings. This is only done by the owner of the row, as a deep copy shares the set
+     * and takes ownership of it, and an ivarator rebuilt mid row takes ownership of the same local dir. The local dirs live outside of the query's unique dir,
+     * so nothing else will remove them.
+     *
+     * @param mappedSet
+     * @param row
+     */
+    private void closeMappedSet(MappedFileBackedSortedSet<KeyValueSerializable> mappedSet, String row) {
+        try {
+            if (row == null || !this.setControl.hasOwnership(row, this)) {
+                return;
+            }
+        } catch (IOException e) {
+            log.warn("Unable to determine ownership of " + row + ", leaving " + mappedSet.getDirectory() + " in place", e);
+            return;
+        }
+        // any fill threads add through the synchronized set, so close under its lock
+        synchronized (this.threadSafeSet) {
+            mappedSet.clear();
+            mappedSet.close();
+        }
+        // remove the local unique dir once the last row has been removed
+        File uniqueLocalDir = mappedSet.getDirectory().getParentFile();
+        String[] remaining = uniqueLocalDir.list();
+        if (remaining != null && remaining.length == 0 && !uniqueLocalDir.delete()) {
+            log.debug("Failed to delete " + uniqueLocalDir);
+        }
+    }
+    
     /**
      * This will setup the set for the specified range. This will attempt to reuse precomputed and persisted sets if we are allowed to.
      * 
@@ -1097,6 +1275,28 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         }
         
         try {
+            // first see if we can reuse the results of another query
+            this.reusedCachedResults = false;
+            String cacheKey = getResultCacheKey();
+            if (cacheKey != null) {
+                Path entryDir = resultCache.getEntryDir(cacheKey, row);
+                if (resultCache.isValid(entryDir, row)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Reusing cached ivarator results in " + entryDir + " for " + this);
+                    }
+                    // ensure we never need to compact (i.e. write) within the shared entry
+                    int maxFiles = Math.max(maxOpenFiles, resultCache.getFileCount(entryDir));
+                    this.set = new HdfsBackedSortedSet<>(null, hdfsBackedSetBufferSize, resultCache.getFileSystem(), entryDir, maxFiles);
+                    this.threadSafeSet = Collections.synchronizedSortedSet(this.set);
+                    this.currentRow = row;
+                    this.keyValues = this.set.iterator();
+                    this.reusedCachedResults = true;
+                    resultCache.touch(entryDir);
+                    scannedKeys.set(0);
+                    return;
+                }
+            }
+            
             // get the row specific dir
             Path rowDir = getRowDir(row);
             
@@ -1113,17 +1313,28 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
                 this.createdRowDir = false;
             }
             
-            this.set = new HdfsBackedSortedSet<>(null, hdfsBackedSetBufferSize, fs, rowDir, maxOpenFiles);
+            if (isMappedBackend()) {
+                // the control files stay in the unique dir, however the sorted runs are only local to this server
+                this.set = new MappedFileBackedSortedSet<>(new KeyValueByteCodec(), offHeapBufferSize, getLocalRowDir(row), maxOpenFiles);
+                if (!allowDirReuse) {
+                    this.set.clear();
+                }
+            } else {
+                this.set = new HdfsBackedSortedSet<>(null, hdfsBackedSetBufferSize, fs, rowDir, maxOpenFiles);
+            }
             this.threadSafeSet = Collections.synchronizedSortedSet(this.set);
             this.currentRow = row;
             this.setControl.takeOwnership(row, this);
             
             // if this set is not marked as complete (meaning completely filled AND persisted), then we cannot trust the contents and we need to recompute.
-            if (!this.setControl.isCompleteAndPersisted(row)) {
+            // a local set may have been completed on another server in which case we will not find the persisted data here.
+            if (!this.setControl.isCompleteAndPersisted(row) || (isMappedBackend() && !this.set.hasPersistedData())) {
                 this.set.clear();
                 this.keyValues = null;
+                this.rowFillStartTime = System.currentTimeMillis();
             } else {
                 this.keyValues = this.set.iterator();
+                this.rowFillStartTime = 0;
             }
             
             // reset the keyValues counter as we have a new set here
@@ -1133,6 +1344,90 @@ public abstract class DatawaveFieldIndexCachingIteratorJexl extends WrappingIter
         }
     }
     
+    /**
+     * Get the term used as part of the result cache key. This must uniquely and stably identify the keys matched by this ivarator for a given field and
+     * filters.
+     * 
+     * @return the normalized term, or null if the results of this ivarator cannot be cached
+     */
+    protected String getResultCacheTerm() {
+        return null;
+    }
+    
+    /**
+     * Get the result cache key for this ivarator. The key covers the field, term, filters and the authorizations of the scan.
+     * 
+     * @return the key, or null if the results cannot be cached
+     */
+    protected String getResultCacheKey() {
+        if (resultCache == null || isMappedBackend() || !sortedUIDs) {
+            return null;
+        }
+        if (resultCacheKey == null) {
+            resultCacheKey = "";
+            String term = getResultCacheTerm();
+            String datatypes = getStableDescription(datatypeFilter);
+            String times = getStableDescription(timeFilter);
+            String auths = getAuthorizationsFingerprint();
+            if (term != null && datatypes != null && times != null && auths != null) {
+                resultCacheKey = IvaratorResultCache.getCacheKey(getClass().getName(), fieldName.toString(), term, Boolean.toString(negated), datatypes, times,
+                                returnKeyType.name(), auths);
+            }
+        }
+        return resultCacheKey.isEmpty() ? null : resultCacheKey;
+    }
+    
+    private static String getStableDescription(Object filter) {
+        if (filter == null) {
+            return "null";
+        }
+        String description = filter.toString();
+        // an identity based description cannot be matched across queries
+        if (description.equals(filter.getClass().getName() + '@' + Integer.toHexString(filter.hashCode()))) {
+            return null;
+        }
+        return description;
+    }
+    
+    private String getAuthorizationsFingerprint() {
+        if (initEnv == null) {
+            return null;
+        }
+        try {
+            Authorizations authorizations = initEnv.getAuthorizations();
+            if (authorizations == null) {
+                return null;
+            }
+            SortedSet<String> auths = new TreeSet<>();
+            for (byte[] auth : authorizations.getAuthorizations()) {
+                auths.add(new String(auth, StandardCharsets.UTF_8));
+            }
+            return auths.toString();
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Publish the current row's results to the result cache if they are complete, persisted, and cover the entire row.
+     */
+    protected void publishToResultCache() {
+        String cacheKey = getResultCacheKey();
+        // a set filled elsewhere cannot be published as we do not know which invalidations it has seen
+        if (cacheKey == null || reusedCachedResults || rowFillStartTime <= 0 || currentRow == null || set == null || setControl.isCancelledQuery()) {
+            return;
+        }
+        Range rowRange = new Range(new Text(currentRow));
+        if (!set.hasPersistedData() || !set.isPersisted() || !rowRange.equals(lastRangeSeeked.clip(rowRange, true))) {
+            return;
+        }
+        try {
+            resultCache.publish(fs, getRowDir(currentRow), cacheKey, currentRow, rowFillStartTime);
+        } catch (IOException e) {
+            log.warn("Unable to publish ivarator results for " + currentRow + " to " + resultCache, e);
+        }
+    }
+    
     /**
      * Build the bounding FI ranges. Normally this returns only one range, but it could return multiple (@see DatawaveFieldIndexRegex/Range/ListIteratorJexl
      * superclasses). If multiple are returned, then they must be sorted. These ranges are expected to be exclusively in the field index!
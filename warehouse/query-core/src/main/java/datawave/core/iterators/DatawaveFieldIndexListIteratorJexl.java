@@ -104,6 +104,15 @@ public class DatawaveFieldIndexListIteratorJexl extends DatawaveFieldIndexCachin
         return builder.toString();
     }
     
+    @Override
+    protected String getResultCacheTerm() {
+        // an FST cannot be cheaply identified, however a list of values can
+        if (values == null) {
+            return null;
+        }
+        return "values=" + String.join(NULL_BYTE, values);
+    }
+    
     @Override
     protected List<Range> buildBoundingFiRanges(Text rowId, Text fiName, Text fieldValue) {
         if (fst != null || isNegated()) {
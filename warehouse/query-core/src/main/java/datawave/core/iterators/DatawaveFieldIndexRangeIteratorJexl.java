@@ -107,6 +107,11 @@ public class DatawaveFieldIndexRangeIteratorJexl extends DatawaveFieldIndexCachi
         return builder.toString();
     }
     
+    @Override
+    protected String getResultCacheTerm() {
+        return (lowerInclusive ? "[" : "(") + getFieldValue() + ',' + upperBound + (upperInclusive ? "]" : ")");
+    }
+    
     @Override
     protected List<Range> buildBoundingFiRanges(Text rowId, Text fiName, Text fieldValue) {
         Key startKey = null;
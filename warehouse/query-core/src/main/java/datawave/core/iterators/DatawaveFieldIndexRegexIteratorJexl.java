@@ -85,6 +85,11 @@ public class DatawaveFieldIndexRegexIteratorJexl extends DatawaveFieldIndexCachi
         return builder.toString();
     }
     
+    @Override
+    protected String getResultCacheTerm() {
+        return "regex=" + regex;
+    }
+    
     @Override
     protected List<Range> buildBoundingFiRanges(Text rowId, Text fiName, Text fieldValue) {
         Key startKey = null;
@@ -0,0 +1,383 @@
+package datawave.core.iterators;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Schedules tasks onto a shared thread pool fairly across groups (normally queries). Each group has its own queue and the groups are serviced in a weighted
+ * round robin: a group with weight N gets up to N tasks dispatched per turn. A group may also be capped to a maximum number of concurrently running tasks.
+ * Tasks are only handed to the underlying pool when it has a free thread, so a single group with many tasks cannot fill the pool queue ahead of everybody
+ * else. Within a group, tasks with a higher priority are dispatched first and tasks of equal priority are dispatched in the order they were submitted. All of
+ * the tasks of a group can be cancelled at once. Tasks that share the pool without being fairly scheduled must be handed to the pool through
+ * {@link #execute(Runnable)} so that the threads they occupy are accounted for.
+ */
+public class FairTaskScheduler implements FairTaskSchedulerMBean {
+    private static final Logger log = Logger.getLogger(FairTaskScheduler.class);
+    
+    private final ThreadPoolExecutor pool;
+    
+    // all groups with either queued or running tasks
+    private final Map<String,TaskGroup> groups = new HashMap<>();
+    
+    // the groups with queued tasks in round robin order
+    private final Deque<TaskGroup> rotation = new ArrayDeque<>();
+    
+    private int queued = 0;
+    private int running = 0;
+    
+    private long sequence = 0;
+    
+    private final AtomicLong dispatched = new AtomicLong(0);
+    private final AtomicLong totalWaitTime = new AtomicLong(0);
+    private final AtomicLong maxWaitTime = new AtomicLong(0);
+    
+    public FairTaskScheduler(ThreadPoolExecutor pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Register this scheduler as an MBean with the platform MBean server
+     * 
+     * @param name
+     *            the name of the scheduler, used as the MBean name
+     */
+    public void registerMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("datawave.query:type=FairTaskScheduler,name=" + ObjectName.quote(name)));
+        } catch (Exception e) {
+            log.warn("Unable to register the fair task scheduler metrics for " + name, e);
+        }
+    }
+    
+    /**
+     * Submit a task
+     * 
+     * @param group
+     *            the group (query) this task belongs to
+     * @param weight
+     *            the number of tasks dispatched for this group per turn
+     * @param maxConcurrent
+     *            the maximum number of tasks running at once for this group, 0 or less for no limit
+     * @param task
+     * @return the future for the task
+     */
+    public Future<?> submit(String group, int weight, int maxConcurrent, Runnable task) {
+        return submit(group, weight, maxConcurrent, 0, task);
+    }
+    
+    /**
+     * Submit a task with a priority
+     * 
+     * @param group
+     *            the group (query) this task belongs to
+     * @param weight
+     *            the number of tasks dispatched for this group per turn
+     * @param maxConcurrent
+     *            the maximum number of tasks running at once for this group, 0 or less for no limit
+     * @param priority
+     *            the priority of this task within its group, higher priorities are dispatched first
+     * @param task
+     * @return the future for the task
+     */
+    public Future<?> submit(String group, int weight, int maxConcurrent, double priority, Runnable task) {
+        ScheduledTask scheduledTask = new ScheduledTask(task, priority);
+        synchronized (this) {
+            scheduledTask.sequence = sequence++;
+            TaskGroup taskGroup = groups.get(group);
+            if (taskGroup == null) {
+                taskGroup = new TaskGroup(group);
+                groups.put(group, taskGroup);
+            }
+            // the latest submission determines the scheduling parameters for the group
+            taskGroup.weight = Math.max(1, weight);
+            taskGroup.maxConcurrent = maxConcurrent;
+            if (taskGroup.tasks.isEmpty()) {
+                taskGroup.credits = taskGroup.weight;
+                rotation.addLast(taskGroup);
+            }
+            taskGroup.tasks.add(scheduledTask);
+            queued++;
+        }
+        dispatch();
+        return scheduledTask;
+    }
+    
+    /**
+     * Execute a task on the pool immediately, in the order submitted, without fair scheduling. The task counts against the threads available to the fairly
+     * scheduled tasks while it is queued in or running on the pool.
+     * 
+     * @param task
+     * @return the future for the task
+     */
+    public Future<?> execute(Runnable task) {
+        ScheduledTask scheduledTask = new ScheduledTask(task, 0);
+        synchronized (this) {
+            running++;
+        }
+        try {
+            pool.execute(scheduledTask::runAndRelease);
+        } catch (RuntimeException e) {
+            scheduledTask.setException(e);
+            throw e;
+        }
+        return scheduledTask;
+    }
+    
+    /**
+     * Hand queued tasks to the pool while it has free threads
+     */
+    private void dispatch() {
+        while (true) {
+            ScheduledTask next;
+            synchronized (this) {
+                if (running >= pool.getMaximumPoolSize()) {
+                    return;
+                }
+                next = nextTask();
+                if (next == null) {
+                    return;
+                }
+                running++;
+            }
+            long waitTime = System.currentTimeMillis() - next.queuedTime;
+            totalWaitTime.addAndGet(waitTime);
+            dispatched.incrementAndGet();
+            maxWaitTime.accumulateAndGet(waitTime, Math::max);
+            try {
+                pool.execute(next::runAndRelease);
+            } catch (RuntimeException e) {
+                next.setException(e);
+                release(next);
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Get the next task to run in weighted round robin order, skipping groups that have reached their concurrency limit. Must be called while synchronized.
+     * 
+     * @return the next task, null if nothing can be run at this time
+     */
+    private ScheduledTask nextTask() {
+        for (int i = rotation.size(); i > 0; i--) {
+            TaskGroup group = rotation.peekFirst();
+            if (group.maxConcurrent > 0 && group.running >= group.maxConcurrent) {
+                rotation.addLast(rotation.removeFirst());
+                continue;
+            }
+            ScheduledTask task = group.tasks.poll();
+            queued--;
+            if (group.tasks.isEmpty()) {
+                rotation.removeFirst();
+            } else if (--group.credits <= 0) {
+                group.credits = group.weight;
+                rotation.addLast(rotation.removeFirst());
+            }
+            if (task.isCancelled()) {
+                // no need to tie up a thread on a cancelled task
+                removeIfIdle(group);
+                i = rotation.size() + 1;
+                continue;
+            }
+            task.group = group;
+            group.running++;
+            group.active.add(task);
+            return task;
+        }
+        return null;
+    }
+    
+    private synchronized void release(ScheduledTask task) {
+        if (task.released) {
+            return;
+        }
+        task.released = true;
+        running--;
+        // tasks passed straight through to the pool have no group
+        TaskGroup group = task.group;
+        if (group != null) {
+            group.running--;
+            group.active.remove(task);
+            removeIfIdle(group);
+        }
+    }
+    
+    private void removeIfIdle(TaskGroup group) {
+        if (group.running == 0 && group.tasks.isEmpty()) {
+            groups.remove(group.name);
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Cancel all of the tasks of a group. Queued tasks are removed without being run, and running tasks are interrupted.
+     * 
+     * @param group
+     *            the group (query) to cancel
+     * @return the number of tasks cancelled
+     */
+    public int cancel(String group) {
+        List<ScheduledTask> cancelled = new ArrayList<>();
+        synchronized (this) {
+            TaskGroup taskGroup = groups.get(group);
+            if (taskGroup == null) {
+                return 0;
+            }
+            if (!taskGroup.tasks.isEmpty()) {
+                cancelled.addAll(taskGroup.tasks);
+                queued -= taskGroup.tasks.size();
+                taskGroup.tasks.clear();
+                rotation.remove(taskGroup);
+            }
+            cancelled.addAll(taskGroup.active);
+            removeIfIdle(taskGroup);
+        }
+        for (ScheduledTask task : cancelled) {
+            task.cancel(true);
+        }
+        if (log.isDebugEnabled() && !cancelled.isEmpty()) {
+            log.debug("Cancelled " + cancelled.size() + " tasks for " + group);
+        }
+        return cancelled.size();
+    }
+    
+    /**
+     * @param group
+     *            the group (query)
+     * @return true if the group has no queued or running tasks
+     */
+    public synchronized boolean isIdle(String group) {
+        return !groups.containsKey(group);
+    }
+    
+    /**
+     * Wait for a group to have no queued or running tasks
+     * 
+     * @param group
+     *            the group (query)
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the unit of the timeout
+     * @return true if the group is idle, false if the timeout elapsed first
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public synchronized boolean awaitIdle(String group, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (groups.containsKey(group)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+    
+    @Override
+    public synchronized int getQueuedTasks() {
+        return queued;
+    }
+    
+    @Override
+    public synchronized int getRunningTasks() {
+        return running;
+    }
+    
+    @Override
+    public synchronized int getActiveGroups() {
+        return groups.size();
+    }
+    
+    @Override
+    public long getDispatchedTasks() {
+        return dispatched.get();
+    }
+    
+    @Override
+    public long getAverageWaitTimeMs() {
+        long count = dispatched.get();
+        return (count == 0 ? 0 : totalWaitTime.get() / count);
+    }
+    
+    @Override
+    public long getMaxWaitTimeMs() {
+        return maxWaitTime.get();
+    }
+    
+    private static class TaskGroup {
+        private final String name;
+        private final PriorityQueue<ScheduledTask> tasks = new PriorityQueue<>();
+        private final Set<ScheduledTask> active = new HashSet<>();
+        private int weight = 1;
+        private int credits = 1;
+        private int maxConcurrent = 0;
+        private int running = 0;
+        
+        private TaskGroup(String name) {
+            this.name = name;
+        }
+    }
+    
+    private class ScheduledTask extends FutureTask<Object> implements Comparable<ScheduledTask> {
+        private final long queuedTime = System.currentTimeMillis();
+        private final double priority;
+        private long sequence;
+        private TaskGroup group;
+        private boolean released = false;
+        
+        private ScheduledTask(Runnable task, double priority) {
+            super(task, null);
+            this.priority = priority;
+        }
+        
+        @Override
+        public int compareTo(ScheduledTask other) {
+            int result = Double.compare(other.priority, priority);
+            if (result == 0) {
+                result = Long.compare(sequence, other.sequence);
+            }
+            return result;
+        }
+        
+        // release the task before completing it so that the counts are up to date for anybody waiting on the result
+        @Override
+        protected void set(Object v) {
+            release(this);
+            super.set(v);
+        }
+        
+        @Override
+        protected void setException(Throwable t) {
+            release(this);
+            super.setException(t);
+        }
+        
+        private void runAndRelease() {
+            try {
+                run();
+            } finally {
+                release(this);
+                dispatch();
+            }
+        }
+    }
+}
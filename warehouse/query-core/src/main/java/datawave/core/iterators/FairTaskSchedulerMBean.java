@@ -0,0 +1,20 @@
+package datawave.core.iterators;
+
+/**
+ * Metrics exposed by the {@link FairTaskScheduler}
+ */
+public interface FairTaskSchedulerMBean {
+    
+    int getQueuedTasks();
+    
+    int getRunningTasks();
+    
+    int getActiveGroups();
+    
+    long getDispatchedTasks();
+    
+    long getAverageWaitTimeMs();
+    
+    long getMaxWaitTimeMs();
+    
+}
@@ -7,6 +7,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.util.NamingThreadFactory;
@@ -24,8 +25,12 @@ public class IteratorThreadPoolManager {
     private static final String IVARATOR_THREAD_NAME = "DATAWAVE Ivarator";
     private static final String EVALUATOR_THREAD_PROP = "tserver.datawave.evaluation.threads";
     private static final String EVALUATOR_THREAD_NAME = "DATAWAVE Evaluation";
+    private static final String EVALUATOR_PIPELINES_PROP = "tserver.datawave.evaluation.pipelines";
     private ExecutorService ivaratorThreadPool;
     private ExecutorService evaluationThreadPool;
+    private FairTaskScheduler ivaratorScheduler;
+    private final AtomicInteger evaluationPipelines = new AtomicInteger();
+    private volatile int maxEvaluationPipelines;
     private static final int DEFAULT_THREAD_POOL_SIZE = 100;
     
     private Map<String,ExecutorService> threadPools = new TreeMap<>();
@@ -44,7 +49,21 @@ public class IteratorThreadPoolManager {
             log.error("Unable to get the accumulo configuration, using default thread pool sizes (" + DEFAULT_THREAD_POOL_SIZE + " per pool)");
         }
         this.ivaratorThreadPool = createExecutorService(IVARATOR_THREAD_PROP, IVARATOR_THREAD_NAME);
+        this.ivaratorScheduler = new FairTaskScheduler((ThreadPoolExecutor) this.ivaratorThreadPool);
+        this.ivaratorScheduler.registerMBean(IVARATOR_THREAD_NAME + " (" + instanceId + ')');
         this.evaluationThreadPool = createExecutorService(EVALUATOR_THREAD_PROP, EVALUATOR_THREAD_NAME);
+        this.maxEvaluationPipelines = getMaxEvaluationPipelines();
+        SimpleTimer.getInstance(AccumuloConfiguration.getDefaultConfiguration()).schedule(() -> {
+            try {
+                int max = getMaxEvaluationPipelines();
+                if (maxEvaluationPipelines != max) {
+                    log.info("Changing " + EVALUATOR_PIPELINES_PROP + " to " + max);
+                    maxEvaluationPipelines = max;
+                }
+            } catch (Throwable t) {
+                log.error(t, t);
+            }
+        }, 1000, 10 * 1000);
     }
     
     private ThreadPoolExecutor createExecutorService(final String prop, final String name) {
@@ -74,6 +93,17 @@ public class IteratorThreadPoolManager {
     }
     
     private int getMaxThreads(final String prop) {
+        return getIntProperty(prop, DEFAULT_THREAD_POOL_SIZE);
+    }
+    
+    /**
+     * The evaluation pipelines across all queries default to the number of evaluation threads, beyond which evaluations would only be queued
+     */
+    private int getMaxEvaluationPipelines() {
+        return getIntProperty(EVALUATOR_PIPELINES_PROP, getMaxThreads(EVALUATOR_THREAD_PROP));
+    }
+    
+    private int getIntProperty(final String prop, int defaultValue) {
         if (this.confFactory != null) {
             AccumuloConfiguration conf = this.confFactory.getConfiguration();
             Map<String,String> properties = new TreeMap<>();
@@ -82,7 +112,7 @@ public class IteratorThreadPoolManager {
                 return Integer.parseInt(properties.get(prop));
             }
         }
-        return DEFAULT_THREAD_POOL_SIZE;
+        return defaultValue;
     }
     
     private static IteratorThreadPoolManager instance() {
@@ -97,7 +127,11 @@ public class IteratorThreadPoolManager {
     }
     
     private Future<?> execute(String name, final Runnable task, final String taskName) {
-        return threadPools.get(name).submit(() -> {
+        return threadPools.get(name).submit(named(task, taskName));
+    }
+    
+    private static Runnable named(final Runnable task, final String taskName) {
+        return () -> {
             String oldName = Thread.currentThread().getName();
             Thread.currentThread().setName(oldName + " -> " + taskName);
             try {
@@ -105,15 +139,66 @@ public class IteratorThreadPoolManager {
             } finally {
                 Thread.currentThread().setName(oldName);
             }
-        });
+        };
     }
     
     public static Future<?> executeIvarator(Runnable task, String taskName) {
-        return instance().execute(IVARATOR_THREAD_NAME, task, taskName);
+        // go through the scheduler so that it knows which of the pool threads are taken by these tasks
+        return instance().ivaratorScheduler.execute(named(task, taskName));
+    }
+    
+    /**
+     * Execute an ivarator task using the fair scheduler. Tasks are queued per query and dispatched to the ivarator thread pool in a weighted round robin
+     * across the queries.
+     * 
+     * @param task
+     * @param taskName
+     * @param queryId
+     *            the query this task belongs to
+     * @param weight
+     *            the number of tasks dispatched for this query per turn
+     * @param maxConcurrent
+     *            the maximum number of tasks running at once for this query, 0 or less for no limit
+     * @return the future for the task
+     */
+    public static Future<?> executeIvarator(Runnable task, String taskName, String queryId, int weight, int maxConcurrent) {
+        return instance().ivaratorScheduler.submit(queryId, weight, maxConcurrent, named(task, taskName));
     }
     
     public static Future<?> executeEvaluation(Runnable task, String taskName) {
         return instance().execute(EVALUATOR_THREAD_NAME, task, taskName);
     }
     
+    /**
+     * Acquire one of the evaluation pipelines shared by all of the queries on this tserver. A query should hold one for each concurrent evaluation beyond its
+     * first, so that every query can make progress no matter how busy the tserver is.
+     * 
+     * @return true if a pipeline was acquired, false if they are all in use
+     */
+    public static boolean tryAcquireEvaluationPipeline() {
+        IteratorThreadPoolManager manager = instance();
+        int inUse;
+        do {
+            inUse = manager.evaluationPipelines.get();
+            if (inUse >= manager.maxEvaluationPipelines) {
+                return false;
+            }
+        } while (!manager.evaluationPipelines.compareAndSet(inUse, inUse + 1));
+        return true;
+    }
+    
+    /**
+     * Release an evaluation pipeline acquired by {@link #tryAcquireEvaluationPipeline()}
+     */
+    public static void releaseEvaluationPipeline() {
+        instance().evaluationPipelines.decrementAndGet();
+    }
+    
+    /**
+     * @return the number of evaluation pipelines currently acquired across all queries
+     */
+    public static int getEvaluationPipelinesInUse() {
+        return instance().evaluationPipelines.get();
+    }
+
 }
@@ -0,0 +1,332 @@
+package datawave.core.iterators;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import datawave.query.util.sortedset.HdfsBackedSortedSet;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A cache of completed ivarator results that outlives a single query. Entries are keyed by a hash of everything that determines the contents of an ivarator
+ * set (field, normalized term, filters and authorizations) and the shard row, and hold a copy of the persisted sorted set files.
+ *
+ * The cache directory is laid out as follows:
+ *
+ * <pre>
+ * {cacheDir}/entries/{key}/{row}/SortedSetFile.*   the sorted set files
+ * {cacheDir}/entries/{key}/{row}/complete          written once the entry is fully published
+ * {cacheDir}/entries/{key}/{row}/accessed          rewritten every time the entry is used (used for LRU eviction)
+ * {cacheDir}/invalidations/bulk.import             touched to invalidate the entire table
+ * {cacheDir}/invalidations/{row}                   touched to invalidate a single shard, e.g. when new files are bulk imported into it
+ * </pre>
+ *
+ * The {@code complete} file carries the time at which the fill of the entry started, so an entry is stale, and is removed when found, if an applicable
+ * invalidation marker was touched at or after that time. Markers are pruned once they are older than every entry and than any fill that may still be running.
+ */
+public class IvaratorResultCache {
+    private static final Logger log = Logger.getLogger(IvaratorResultCache.class);
+    
+    public static final String ENTRIES_DIR = "entries";
+    // these names are shared with the BulkIngestMapFileLoader which touches the markers of the rows it imports into a table
+    public static final String INVALIDATIONS_DIR = "invalidations";
+    public static final String BULK_IMPORT_MARKER = "bulk.import";
+    public static final String COMPLETE_FILE = "complete";
+    public static final String ACCESSED_FILE = "accessed";
+    
+    // only check the total size of the cache and prune the invalidation markers once a minute per server
+    private static final long MAINTENANCE_INTERVAL = 60 * 1000L;
+    // a marker is kept at least this long to invalidate the fills that started before it but have not been published yet
+    private static final long INVALIDATION_RETENTION = 24 * 60 * 60 * 1000L;
+    private static volatile long lastMaintenance = 0;
+    
+    private final FileSystem fs;
+    private final Path cacheDir;
+    private final long maxSize;
+    
+    /**
+     * @param fs
+     *            the file system of the cache dir
+     * @param cacheDir
+     *            the cache directory, normally specific to a shard table
+     * @param maxSize
+     *            the maximum size of the cache in bytes, 0 or less for no limit
+     */
+    public IvaratorResultCache(FileSystem fs, Path cacheDir, long maxSize) {
+        this.fs = fs;
+        this.cacheDir = cacheDir;
+        this.maxSize = maxSize;
+    }
+    
+    public FileSystem getFileSystem() {
+        return fs;
+    }
+    
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+    
+    public long getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Create a cache key out of the components that determine the contents of an ivarator set.
+     * 
+     * @param components
+     * @return the key
+     */
+    public static String getCacheKey(String... components) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (String component : components) {
+            hasher.putString(String.valueOf(component), StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+    
+    public Path getEntryDir(String key, String row) {
+        return new Path(new Path(new Path(cacheDir, ENTRIES_DIR), key), row);
+    }
+    
+    /**
+     * Determine whether an entry exists and is still valid. A stale entry is removed.
+     * 
+     * @param entryDir
+     * @param row
+     * @return true if the entry can be used
+     * @throws IOException
+     */
+    public boolean isValid(Path entryDir, String row) throws IOException {
+        Path completeFile = new Path(entryDir, COMPLETE_FILE);
+        if (!fs.exists(completeFile)) {
+            return false;
+        }
+        long fillStarted = fs.getFileStatus(completeFile).getModificationTime();
+        if (fillStarted <= getInvalidationTime(row)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Removing stale ivarator cache entry " + entryDir);
+            }
+            delete(entryDir);
+            return false;
+        }
+        return true;
+    }
+    
+    private long getInvalidationTime(String row) throws IOException {
+        Path invalidations = new Path(cacheDir, INVALIDATIONS_DIR);
+        long time = 0;
+        for (Path marker : new Path[] {new Path(invalidations, BULK_IMPORT_MARKER), new Path(invalidations, row)}) {
+            if (fs.exists(marker)) {
+                time = Math.max(time, fs.getFileStatus(marker).getModificationTime());
+            }
+        }
+        return time;
+    }
+    
+    /**
+     * Get the number of sorted set files in an entry
+     * 
+     * @param entryDir
+     * @return the number of files
+     * @throws IOException
+     */
+    public int getFileCount(Path entryDir) throws IOException {
+        int count = 0;
+        for (FileStatus file : fs.listStatus(entryDir)) {
+            if (isSortedSetFile(file)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Mark an entry as recently used
+     * 
+     * @param entryDir
+     */
+    public void touch(Path entryDir) {
+        try {
+            fs.create(new Path(entryDir, ACCESSED_FILE), true).close();
+        } catch (IOException e) {
+            log.warn("Unable to mark ivarator cache entry " + entryDir + " as accessed", e);
+        }
+    }
+    
+    /**
+     * Publish a completed and persisted set into the cache. The files are copied into a temporary directory which is then renamed into place, so readers never
+     * see a partial entry. If another query published the same entry first, or the row was invalidated since the fill started, then this is a no-op.
+     * 
+     * @param setFs
+     *            the file system of the persisted sorted set
+     * @param setDir
+     *            the directory holding the persisted sorted set files
+     * @param key
+     * @param row
+     * @param fillStartTime
+     *            the time at which the fill of the set started
+     * @throws IOException
+     */
+    public void publish(FileSystem setFs, Path setDir, String key, String row, long fillStartTime) throws IOException {
+        Path entryDir = getEntryDir(key, row);
+        if (fs.exists(entryDir)) {
+            return;
+        }
+        if (fillStartTime <= getInvalidationTime(row)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Not publishing ivarator results for " + row + " to " + this + " as the row was invalidated during the fill");
+            }
+            return;
+        }
+        Path tmpDir = new Path(entryDir.getParent(), '.' + row + '.' + UUID.randomUUID() + ".tmp");
+        try {
+            fs.mkdirs(tmpDir);
+            for (FileStatus file : setFs.listStatus(setDir)) {
+                if (isSortedSetFile(file)) {
+                    FileUtil.copy(setFs, file.getPath(), fs, new Path(tmpDir, file.getPath().getName()), false, fs.getConf());
+                }
+            }
+            // a marker touched while copying will still be newer than the fill start, and hence invalidate this entry
+            Path completeFile = new Path(tmpDir, COMPLETE_FILE);
+            fs.create(completeFile, true).close();
+            fs.setTimes(completeFile, fillStartTime, -1);
+            fs.create(new Path(tmpDir, ACCESSED_FILE), true).close();
+            if (!fs.rename(tmpDir, entryDir)) {
+                // most likely published concurrently by another query
+                delete(tmpDir);
+            }
+        } catch (IOException e) {
+            delete(tmpDir);
+            throw e;
+        }
+        
+        // only check the total size of the cache and the invalidation markers periodically
+        long now = System.currentTimeMillis();
+        if (now - lastMaintenance >= MAINTENANCE_INTERVAL) {
+            lastMaintenance = now;
+            evict();
+            pruneInvalidations(now - INVALIDATION_RETENTION);
+        }
+    }
+    
+    /**
+     * Invalidate the cached entries for a row, or the entire cache if the row is null.
+     * 
+     * @param fs
+     * @param cacheDir
+     * @param row
+     * @throws IOException
+     */
+    public static void invalidate(FileSystem fs, Path cacheDir, String row) throws IOException {
+        Path marker = new Path(new Path(cacheDir, INVALIDATIONS_DIR), row == null ? BULK_IMPORT_MARKER : row);
+        fs.create(marker, true).close();
+    }
+    
+    /**
+     * Remove the least recently used entries until the cache is within its maximum size.
+     * 
+     * @throws IOException
+     */
+    public void evict() throws IOException {
+        Path entries = new Path(cacheDir, ENTRIES_DIR);
+        if (maxSize <= 0 || !fs.exists(entries)) {
+            return;
+        }
+        long size = fs.getContentSummary(entries).getLength();
+        if (size <= maxSize) {
+            return;
+        }
+        
+        List<FileStatus> accessed = new ArrayList<>();
+        for (FileStatus keyDir : fs.listStatus(entries)) {
+            if (keyDir.isDirectory()) {
+                for (FileStatus entryDir : fs.listStatus(keyDir.getPath())) {
+                    Path accessedFile = new Path(entryDir.getPath(), ACCESSED_FILE);
+                    if (entryDir.isDirectory() && fs.exists(accessedFile)) {
+                        accessed.add(fs.getFileStatus(accessedFile));
+                    }
+                }
+            }
+        }
+        accessed.sort(Comparator.comparingLong(FileStatus::getModificationTime));
+        for (FileStatus file : accessed) {
+            if (size <= maxSize) {
+                break;
+            }
+            Path entryDir = file.getPath().getParent();
+            long entrySize = fs.getContentSummary(entryDir).getLength();
+            if (delete(entryDir)) {
+                size -= entrySize;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Evicted ivarator cache entries in " + cacheDir + " down to " + size + " bytes");
+        }
+    }
+    
+    /**
+     * Remove the invalidation markers that can no longer invalidate anything, i.e. those older than the fill start of every entry and than the given time.
+     * 
+     * @param before
+     *            only markers older than this may be removed, which protects the fills still running when the marker was touched
+     * @throws IOException
+     */
+    public void pruneInvalidations(long before) throws IOException {
+        Path invalidations = new Path(cacheDir, INVALIDATIONS_DIR);
+        if (!fs.exists(invalidations)) {
+            return;
+        }
+        long oldest = before;
+        Path entries = new Path(cacheDir, ENTRIES_DIR);
+        if (fs.exists(entries)) {
+            for (FileStatus keyDir : fs.listStatus(entries)) {
+                if (keyDir.isDirectory()) {
+                    for (FileStatus entryDir : fs.listStatus(keyDir.getPath())) {
+                        Path completeFile = new Path(entryDir.getPath(), COMPLETE_FILE);
+                        if (entryDir.isDirectory() && fs.exists(completeFile)) {
+                            oldest = Math.min(oldest, fs.getFileStatus(completeFile).getModificationTime());
+                        }
+                    }
+                }
+            }
+        }
+        int pruned = 0;
+        for (FileStatus marker : fs.listStatus(invalidations)) {
+            if (marker.isFile() && marker.getModificationTime() < oldest && delete(marker.getPath())) {
+                pruned++;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Pruned " + pruned + " ivarator cache invalidation markers in " + cacheDir);
+        }
+    }
+    
+    private boolean delete(Path dir) {
+        try {
+            return fs.delete(dir, true);
+        } catch (IOException e) {
+            log.warn("Unable to delete " + dir, e);
+            return false;
+        }
+    }
+    
+    private static boolean isSortedSetFile(FileStatus file) {
+        return file.isFile() && file.getPath().getName().startsWith(HdfsBackedSortedSet.FILENAME_PREFIX);
+    }
+    
+    @Override
+    public String toString() {
+        return cacheDir + " (maxSize=" + maxSize + ')';
+    }
+}
@@ -15,8 +15,10 @@ import datawave.query.function.serializer.KryoDocumentSerializer;
 import datawave.query.exceptions.InvalidDocumentHeader;
 import datawave.query.exceptions.NoSuchDeserializerException;
 import datawave.query.function.deserializer.KryoDocumentDeserializer;
+import datawave.query.function.deserializer.StreamingDocumentDeserializer;
 import datawave.query.function.deserializer.WritableDocumentDeserializer;
 import datawave.query.function.serializer.DocumentSerializer;
+import datawave.query.function.serializer.StreamingDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
 import datawave.webservice.query.Query;
 import datawave.webservice.query.QueryImpl.Parameter;
@@ -31,7 +33,7 @@ import datawave.webservice.query.exception.QueryException;
 public class DocumentSerialization {
     
     public enum ReturnType {
-        writable, kryo, tostring, noop
+        writable, kryo, tostring, noop, streaming
     }
     
     public static final ReturnType DEFAULT_RETURN_TYPE = ReturnType.kryo;
@@ -43,6 +45,8 @@ public class DocumentSerialization {
     
     public static final int ZLIB_NUMBER = 2;
     
+    public static final int HEADER_LENGTH = 3;
+    
     /**
      * If a user-supplied ReturnType is specified, use it; otherwise, use the default ReturnType of {@link #DEFAULT_RETURN_TYPE}
      *
@@ -67,6 +71,8 @@ public class DocumentSerialization {
             return new KryoDocumentDeserializer();
         } else if (ReturnType.writable.equals(rt)) {
             return new WritableDocumentDeserializer();
+        } else if (ReturnType.streaming.equals(rt)) {
+            return new StreamingDocumentDeserializer();
         } else {
             QueryException qe = new QueryException(DatawaveErrorCode.DESERIALIZER_CREATE_ERROR);
             throw new NoSuchDeserializerException(qe);
@@ -82,6 +88,8 @@ public class DocumentSerialization {
             return new KryoDocumentSerializer();
         } else if (ReturnType.writable.equals(rt)) {
             return new WritableDocumentSerializer(false);
+        } else if (ReturnType.streaming.equals(rt)) {
+            return new StreamingDocumentSerializer();
         } else {
             QueryException qe = new QueryException(DatawaveErrorCode.DESERIALIZER_CREATE_ERROR);
             throw new NoSuchDeserializerException(qe);
@@ -122,7 +130,30 @@ public class DocumentSerialization {
     }
     
     public static InputStream consumeHeader(byte[] data) throws InvalidDocumentHeader {
-        if (null == data || 3 > data.length) {
+        int compression = getCompression(data);
+        
+        if (NONE == compression) {
+            return new ByteArrayInputStream(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+        } else if (GZIP == compression) {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+            return new InflaterInputStream(bytes, new Inflater(), 1024);
+        } else {
+            BadRequestQueryException qe = new BadRequestQueryException(DatawaveErrorCode.UNKNOWN_COMPRESSION_SCHEME, MessageFormat.format("{0}", compression));
+            throw new InvalidDocumentHeader(qe);
+        }
+    }
+    
+    /**
+     * Validate the header of a serialized document and return the compression scheme of its body, which begins at {@link #HEADER_LENGTH}
+     *
+     * @param data
+     *            the serialized document
+     * @return the compression scheme
+     * @throws InvalidDocumentHeader
+     *             if the header is missing or invalid
+     */
+    public static int getCompression(byte[] data) throws InvalidDocumentHeader {
+        if (null == data || HEADER_LENGTH > data.length) {
             QueryException qe = new QueryException(DatawaveErrorCode.DATA_INVALID_ERROR, MessageFormat.format("Length: {0}",
                             (null != data ? data.length : null)));
             throw new InvalidDocumentHeader(qe);
@@ -136,17 +167,7 @@ public class DocumentSerialization {
             throw new InvalidDocumentHeader(qe);
         }
         
-        int compression = readUByte(bais);
-        
-        if (NONE == compression) {
-            return new ByteArrayInputStream(data, 3, data.length - 3);
-        } else if (GZIP == compression) {
-            ByteArrayInputStream bytes = new ByteArrayInputStream(data, 3, data.length - 3);
-            return new InflaterInputStream(bytes, new Inflater(), 1024);
-        } else {
-            BadRequestQueryException qe = new BadRequestQueryException(DatawaveErrorCode.UNKNOWN_COMPRESSION_SCHEME, MessageFormat.format("{0}", compression));
-            throw new InvalidDocumentHeader(qe);
-        }
+        return readUByte(bais);
     }
     
     /*
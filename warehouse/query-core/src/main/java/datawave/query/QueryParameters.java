@@ -141,6 +141,16 @@ public class QueryParameters {
     public static final String GROUP_FIELDS = "group.fields";
     public static final String GROUP_FIELDS_BATCH_SIZE = "group.fields.batch.size";
     public static final String UNIQUE_FIELDS = "unique.fields";
+    
+    /**
+     * Used to return only the given number of results, those with the greatest values of the {@link #TOP_K_FIELDS}
+     */
+    public static final String TOP_K = "top.k";
+    
+    /**
+     * The fields whose values order the top-k results, the event timestamp if not given
+     */
+    public static final String TOP_K_FIELDS = "top.k.fields";
     /**
      * Used to cause Documents to contain a list of selectors that hit;
      */
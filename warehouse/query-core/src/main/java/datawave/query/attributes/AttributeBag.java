@@ -49,6 +49,15 @@ public abstract class AttributeBag<T extends Comparable<T>> extends Attribute<T>
     
     public abstract Collection<Attribute<? extends Comparable<?>>> getAttributes();
     
+    /**
+     * The attributes from which the timestamp and column visibility of this bag are computed. Defaults to {@link #getAttributes()}.
+     *
+     * @return the attributes
+     */
+    protected Collection<Attribute<? extends Comparable<?>>> getMetadataAttributes() {
+        return getAttributes();
+    }
+    
     @Override
     public long getTimestamp() {
         // calling isMetadataSet first to update the metadata as needed
@@ -68,7 +77,7 @@ public abstract class AttributeBag<T extends Comparable<T>> extends Attribute<T>
         long ts = updateTimestamps();
         ColumnVisibility vis = super.getColumnVisibility();
         try {
-            vis = this.combineAndSetColumnVisibilities(getAttributes());
+            vis = this.combineAndSetColumnVisibilities(getMetadataAttributes());
         } catch (Exception e) {
             log.error("got error combining visibilities", e);
         }
@@ -86,7 +95,7 @@ public abstract class AttributeBag<T extends Comparable<T>> extends Attribute<T>
     
     private long updateTimestamps() {
         MutableLong ts = new MutableLong(Long.MAX_VALUE);
-        for (Attribute<?> attribute : getAttributes()) {
+        for (Attribute<?> attribute : getMetadataAttributes()) {
             mergeTimestamps(attribute, ts);
         }
         return ts.longValue();
@@ -0,0 +1,617 @@
+package datawave.query.attributes;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Maps;
+import datawave.marking.MarkingFunctions;
+import datawave.query.Constants;
+import datawave.query.composite.CompositeMetadata;
+import datawave.query.function.KeyToFieldName;
+import datawave.query.jexl.DatawaveJexlContext;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.predicate.EventDataQueryFilter;
+import datawave.query.predicate.ValueToAttributes;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.log4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A {@link Document} which defers the creation of the attributes for an event until they are needed. The raw event entries consumed by
+ * {@link #consumeRawData(Key, Set, Iterator, TypeMetadata, CompositeMetadata, boolean, boolean, EventDataQueryFilter)} are appended to a single contiguous
+ * buffer and indexed by their (interned) field name. An {@link Attribute} is only normalized and created when its field is fetched, visited by the JEXL
+ * context, or when the whole dictionary is requested. Serialization streams the buffered fields one at a time so that the full dictionary is never built,
+ * and the wire format is identical to that of a {@link Document}.
+ * <p>
+ * Fields that are built from several entries at once (composites) can not be deferred, so when composite metadata is supplied the document is built eagerly.
+ */
+public class ColumnarDocument extends Document {
+    private static final long serialVersionUID = 1L;
+    
+    private static final Logger log = Logger.getLogger(ColumnarDocument.class);
+    
+    /**
+     * field names are shared across all documents so that each distinct name is held once
+     */
+    private static final Interner<String> FIELD_NAMES = Interners.newWeakInterner();
+    
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+    
+    private static final int MIN_BUFFER_SIZE = 256;
+    
+    /**
+     * the encoded entries which have not been materialized yet, back to back
+     */
+    private byte[] buffer = EMPTY_BUFFER;
+    private int bufferLength = 0;
+    
+    /**
+     * the distinct row, column family and column visibility combinations referenced by the encoded entries
+     */
+    private List<byte[][]> prefixes = new ArrayList<>();
+    
+    /**
+     * the offsets of the encoded entries which have not been materialized, by field name
+     */
+    private TreeMap<String,Column> columns = new TreeMap<>();
+    
+    /**
+     * the number of encoded entries which have not been materialized
+     */
+    private int pendingCount = 0;
+    
+    private boolean includeGroupingContext = false;
+    
+    /**
+     * set once {@link #reduceToKeep()} has been applied, after which buffered entries are reduced as they are materialized
+     */
+    private boolean reduced = false;
+    
+    private transient TypeMetadata typeMetadata;
+    private transient ValueToAttributes attributeFactory;
+    
+    public ColumnarDocument() {
+        this(null, true);
+    }
+    
+    public ColumnarDocument(Key key, boolean toKeep) {
+        this(key, toKeep, true);
+    }
+    
+    public ColumnarDocument(Key key, boolean toKeep, boolean trackSizes) {
+        super(key, toKeep, trackSizes);
+    }
+    
+    public ColumnarDocument(Key key, Set<Key> docKeys, Iterator<Entry<Key,Value>> iter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata,
+                    boolean includeGroupingContext, boolean keepRecordId, EventDataQueryFilter attrFilter, boolean toKeep, boolean trackSizes) {
+        this(key, toKeep, trackSizes);
+        this.consumeRawData(key, docKeys, iter, typeMetadata, compositeMetadata, includeGroupingContext, keepRecordId, attrFilter);
+    }
+    
+    @Override
+    public Document consumeRawData(Key docKey, Set<Key> docKeys, Iterator<Entry<Key,Value>> iter, TypeMetadata typeMetadata,
+                    CompositeMetadata compositeMetadata, boolean includeGroupingContext, boolean keepRecordId, EventDataQueryFilter attrFilter) {
+        // entries buffered by an earlier call must be normalized with the metadata they were consumed with
+        materializeAll();
+        
+        if (compositeMetadata != null && !compositeMetadata.isEmpty()) {
+            return super.consumeRawData(docKey, docKeys, iter, typeMetadata, compositeMetadata, includeGroupingContext, keepRecordId, attrFilter);
+        }
+        
+        invalidateMetadata();
+        extractShardTimestamp(docKey);
+        
+        this.includeGroupingContext = includeGroupingContext;
+        this.typeMetadata = typeMetadata;
+        this.attributeFactory = null;
+        
+        KeyToFieldName keyToFieldName = new KeyToFieldName(includeGroupingContext);
+        while (iter.hasNext()) {
+            Key key = iter.next().getKey();
+            String fieldName = FIELD_NAMES.intern(JexlASTHelper.deconstructIdentifier(keyToFieldName.getFieldName(key), includeGroupingContext));
+            
+            // the attribute filter is positioned on this document now, so the keep decision can not be deferred
+            append(fieldName, key, attrFilter == null || attrFilter.keep(key));
+        }
+        
+        // now add the dockeys as attributes
+        Attribute<?> docKeyAttributes = toDocKeyAttributes(docKeys, keepRecordId);
+        if (docKeyAttributes != null) {
+            this.put(DOCKEY_FIELD_NAME, docKeyAttributes);
+        }
+        
+        debugDocumentSize(docKey);
+        
+        return this;
+    }
+    
+    /**
+     * Encode an event entry as the index of its row, column family and column visibility, its keep flag, its timestamp and its column qualifier.
+     */
+    private void append(String fieldName, Key key, boolean toKeep) {
+        int prefix = getPrefixIndex(key);
+        ByteSequence cq = key.getColumnQualifierData();
+        
+        ensureCapacity(5 + 8 + 5 + cq.length());
+        int offset = bufferLength;
+        writeVInt((prefix << 1) | (toKeep ? 1 : 0));
+        writeLong(key.getTimestamp());
+        writeVInt(cq.length());
+        System.arraycopy(cq.getBackingArray(), cq.offset(), buffer, bufferLength, cq.length());
+        bufferLength += cq.length();
+        
+        Column column = columns.get(fieldName);
+        if (column == null) {
+            column = new Column();
+            columns.put(fieldName, column);
+        }
+        column.add(offset);
+        pendingCount++;
+        
+        invalidateMetadata();
+    }
+    
+    private int getPrefixIndex(Key key) {
+        ByteSequence row = key.getRowData();
+        ByteSequence cf = key.getColumnFamilyData();
+        ByteSequence cv = key.getColumnVisibilityData();
+        
+        // entries for an event nearly always share the row and column family, and rarely have more than a handful of visibilities
+        for (int i = prefixes.size() - 1; i >= 0; i--) {
+            byte[][] prefix = prefixes.get(i);
+            if (sameBytes(cv, prefix[2]) && sameBytes(cf, prefix[1]) && sameBytes(row, prefix[0])) {
+                return i;
+            }
+        }
+        prefixes.add(new byte[][] {row.toArray(), cf.toArray(), cv.toArray()});
+        return prefixes.size() - 1;
+    }
+    
+    private static boolean sameBytes(ByteSequence sequence, byte[] bytes) {
+        return WritableComparator.compareBytes(sequence.getBackingArray(), sequence.offset(), sequence.length(), bytes, 0, bytes.length) == 0;
+    }
+    
+    /**
+     * Rebuild the attribute for the entry encoded at the given offset. Will return <code>null</code> if the document has been reduced and nothing of the
+     * attribute is to be kept.
+     */
+    private Attribute<?> decode(String fieldName, int offset) {
+        int[] position = new int[] {offset};
+        int header = readVInt(position);
+        long timestamp = readLong(position);
+        int length = readVInt(position);
+        byte[] cq = Arrays.copyOfRange(buffer, position[0], position[0] + length);
+        
+        byte[][] prefix = prefixes.get(header >>> 1);
+        Key key = new Key(prefix[0], prefix[1], cq, prefix[2], timestamp);
+        
+        if (attributeFactory == null) {
+            attributeFactory = new ValueToAttributes(null, typeMetadata, null, MarkingFunctions.Factory.createMarkingFunctions());
+        }
+        Attribute<?> attr = attributeFactory.getFieldValue(fieldName, key);
+        attr.setToKeep((header & 1) == 1);
+        return (reduced ? attr.reduceToKeep() : attr);
+    }
+    
+    private boolean isToKeep(int offset) {
+        return (readVInt(new int[] {offset}) & 1) == 1;
+    }
+    
+    /**
+     * Move the buffered entries for a field into the dictionary
+     */
+    private void materialize(String fieldName, Column column) {
+        if (log.isTraceEnabled()) {
+            log.trace("Materializing " + column.size + " entries for " + fieldName);
+        }
+        
+        pendingCount -= column.size;
+        String baseFieldName = JexlASTHelper.deconstructIdentifier(fieldName, false);
+        for (int i = 0; i < column.size; i++) {
+            Attribute<?> attr = decode(baseFieldName, column.offsets[i]);
+            if (attr != null) {
+                super.put(fieldName, attr, includeGroupingContext, false);
+            }
+        }
+    }
+    
+    private void materialize(String fieldName) {
+        Column column = columns.remove(fieldName);
+        if (column != null) {
+            materialize(fieldName, column);
+        }
+    }
+    
+    private void materializeAll() {
+        if (columns.isEmpty()) {
+            return;
+        }
+        
+        for (Entry<String,Column> entry : columns.entrySet()) {
+            materialize(entry.getKey(), entry.getValue());
+        }
+        clearColumns();
+    }
+    
+    private void clearColumns() {
+        columns.clear();
+        prefixes.clear();
+        buffer = EMPTY_BUFFER;
+        bufferLength = 0;
+        pendingCount = 0;
+    }
+    
+    /**
+     * Build the attribute that the dictionary would hold for the given field once its buffered entries were materialized, without modifying this document.
+     * Will return <code>null</code> if nothing of the field is to be kept.
+     */
+    private Attribute<?> getMaterializedAttribute(String fieldName, Column column) {
+        Document scratch = new Document(null, isToKeep(), trackSizes);
+        Attribute<?> existing = dict.get(fieldName);
+        if (existing != null) {
+            scratch.put(fieldName, (Attribute<?>) existing.copy(), includeGroupingContext, false);
+        }
+        
+        String baseFieldName = JexlASTHelper.deconstructIdentifier(fieldName, false);
+        for (int i = 0; i < column.size; i++) {
+            Attribute<?> attr = decode(baseFieldName, column.offsets[i]);
+            if (attr != null) {
+                scratch.put(fieldName, attr, includeGroupingContext, false);
+            }
+        }
+        return scratch.dict.get(fieldName);
+    }
+    
+    /**
+     * Build the entries for all fields, in dictionary order, one field at a time
+     */
+    @Override
+    public Iterator<Entry<String,Attribute<? extends Comparable<?>>>> streamingIterator() {
+        final Iterator<String> fieldNames;
+        if (columns.isEmpty()) {
+            fieldNames = dict.keySet().iterator();
+        } else {
+            TreeSet<String> names = new TreeSet<>(dict.keySet());
+            names.addAll(columns.keySet());
+            fieldNames = names.iterator();
+        }
+        
+        return new Iterator<Entry<String,Attribute<? extends Comparable<?>>>>() {
+            @Override
+            public boolean hasNext() {
+                return fieldNames.hasNext();
+            }
+            
+            @SuppressWarnings("unchecked")
+            @Override
+            public Entry<String,Attribute<? extends Comparable<?>>> next() {
+                String fieldName = fieldNames.next();
+                Column column = columns.get(fieldName);
+                Attribute<?> attr = (column == null ? dict.get(fieldName) : getMaterializedAttribute(fieldName, column));
+                return Maps.<String,Attribute<? extends Comparable<?>>> immutableEntry(fieldName, (Attribute<? extends Comparable<?>>) attr);
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    /**
+     * @return the number of entries which have not been materialized yet
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+    
+    @Override
+    protected TreeMap<String,Attribute<? extends Comparable<?>>> _getDictionary() {
+        materializeAll();
+        return super._getDictionary();
+    }
+    
+    @Override
+    protected Collection<Attribute<? extends Comparable<?>>> getMetadataAttributes() {
+        if (columns.isEmpty()) {
+            return dict.values();
+        }
+        
+        // the metadata only needs the visibility and timestamp of each buffered entry, which are read from its header without normalizing the value
+        List<Set<Long>> timestamps = new ArrayList<>(prefixes.size());
+        for (int i = 0; i < prefixes.size(); i++) {
+            timestamps.add(new HashSet<>());
+        }
+        for (Column column : columns.values()) {
+            for (int i = 0; i < column.size; i++) {
+                int[] position = new int[] {column.offsets[i]};
+                int prefix = readVInt(position) >>> 1;
+                timestamps.get(prefix).add(readLong(position));
+            }
+        }
+        
+        List<Attribute<? extends Comparable<?>>> attributes = new ArrayList<>(dict.values());
+        for (int i = 0; i < prefixes.size(); i++) {
+            byte[][] prefix = prefixes.get(i);
+            for (Long timestamp : timestamps.get(i)) {
+                attributes.add(new Content("", new Key(prefix[0], prefix[1], EMPTY_BUFFER, prefix[2], timestamp), true));
+            }
+        }
+        return attributes;
+    }
+    
+    @Override
+    public boolean containsKey(String key) {
+        return columns.containsKey(key) || super.containsKey(key);
+    }
+    
+    @Override
+    public Attribute<?> get(String key) {
+        materialize(key);
+        return super.get(key);
+    }
+    
+    @Override
+    public Attribute<?> remove(String key) {
+        materialize(key);
+        return super.remove(key);
+    }
+    
+    @Override
+    public void removeAll(String key) {
+        // buffered entries are never nested documents, so only the matching column needs to be dropped
+        Column column = columns.remove(key);
+        if (column != null) {
+            pendingCount -= column.size;
+            invalidateMetadata();
+        }
+        super.removeAll(key);
+    }
+    
+    @Override
+    public int size() {
+        return super.size() + pendingCount;
+    }
+    
+    @Override
+    public long sizeInBytes() {
+        if (trackSizes) {
+            return super.sizeInBytes() + buffer.length + (pendingCount * 4L) + (columns.size() * 56L) + (prefixes.size() * 64L);
+            // 4 for each buffered entry offset
+            // 56 for each TreeMap.Entry and Column
+            // 64 for each prefix array and its overhead
+        } else {
+            return super.sizeInBytes();
+        }
+    }
+    
+    @Override
+    public Attribute<?> reduceToKeep() {
+        // drop the buffered entries which are not to be kept without materializing any of them
+        for (Iterator<Column> it = columns.values().iterator(); it.hasNext();) {
+            Column column = it.next();
+            int kept = 0;
+            for (int i = 0; i < column.size; i++) {
+                if (isToKeep(column.offsets[i])) {
+                    column.offsets[kept++] = column.offsets[i];
+                }
+            }
+            pendingCount -= (column.size - kept);
+            column.size = kept;
+            if (kept == 0) {
+                it.remove();
+            }
+        }
+        reduced = true;
+        return super.reduceToKeep();
+    }
+    
+    @Override
+    public Collection<ValueTuple> visit(Collection<String> queryFieldNames, DatawaveJexlContext context) {
+        // only the fields referenced by the query need to be materialized for evaluation
+        boolean allFields = queryFieldNames.isEmpty() || queryFieldNames.contains(Constants.ANY_FIELD);
+        for (Iterator<Entry<String,Column>> it = columns.entrySet().iterator(); it.hasNext();) {
+            Entry<String,Column> entry = it.next();
+            if (allFields || queryFieldNames.contains(JexlASTHelper.rebuildIdentifier(entry.getKey(), false))) {
+                it.remove();
+                materialize(entry.getKey(), entry.getValue());
+            }
+        }
+        return super.visit(queryFieldNames, context);
+    }
+    
+    @Override
+    public void write(DataOutput out, boolean reducedResponse) throws IOException {
+        DataOutputBuffer fields = new DataOutputBuffer(bufferLength + 1024);
+        int count = 0;
+        long bytes = 0;
+        int numAttrs = 0;
+        
+        for (Iterator<Entry<String,Attribute<? extends Comparable<?>>>> it = streamingIterator(); it.hasNext();) {
+            Entry<String,Attribute<? extends Comparable<?>>> entry = it.next();
+            Attribute<?> attr = entry.getValue();
+            if (attr == null) {
+                continue;
+            }
+            
+            WritableUtils.writeString(fields, entry.getKey());
+            WritableUtils.writeString(fields, attr.getClass().getName());
+            attr.write(fields);
+            
+            count += attr.size();
+            if (trackSizes) {
+                bytes += attr.sizeInBytes() + Attribute.sizeInBytes(entry.getKey());
+            }
+            numAttrs++;
+        }
+        
+        WritableUtils.writeVInt(out, count);
+        out.writeBoolean(trackSizes);
+        WritableUtils.writeVLong(out, bytes);
+        WritableUtils.writeVInt(out, numAttrs);
+        out.write(fields.getData(), 0, fields.getLength());
+        WritableUtils.writeVLong(out, shardTimestamp);
+    }
+    
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        clearColumns();
+        super.readFields(in);
+    }
+    
+    @Override
+    public void write(Kryo kryo, Output output, Boolean reducedResponse) {
+        Output fields = new Output(bufferLength + 1024, -1);
+        int count = 0;
+        long bytes = 0;
+        int numAttrs = 0;
+        
+        for (Iterator<Entry<String,Attribute<? extends Comparable<?>>>> it = streamingIterator(); it.hasNext();) {
+            Entry<String,Attribute<? extends Comparable<?>>> entry = it.next();
+            Attribute<?> attr = entry.getValue();
+            if (attr == null) {
+                continue;
+            }
+            
+            fields.writeString(entry.getKey());
+            fields.writeString(attr.getClass().getName());
+            attr.write(kryo, fields, reducedResponse);
+            
+            count += attr.size();
+            if (trackSizes) {
+                bytes += attr.sizeInBytes() + Attribute.sizeInBytes(entry.getKey());
+            }
+            numAttrs++;
+        }
+        
+        output.writeInt(count, true);
+        output.writeBoolean(trackSizes);
+        output.writeLong(bytes, true);
+        output.writeInt(numAttrs, true);
+        output.writeBytes(fields.getBuffer(), 0, fields.position());
+        output.writeLong(this.shardTimestamp);
+    }
+    
+    @Override
+    public void read(Kryo kryo, Input input) {
+        clearColumns();
+        super.read(kryo, input);
+    }
+    
+    @Override
+    public ColumnarDocument copy() {
+        ColumnarDocument d = new ColumnarDocument(this.getMetadata(), this.isToKeep(), trackSizes);
+        
+        for (Entry<String,Attribute<? extends Comparable<?>>> entry : dict.entrySet()) {
+            d.put(entry.getKey(), (Attribute<?>) entry.getValue().copy());
+        }
+        
+        // the buffered entries are immutable once written, so only the index needs to be copied
+        d.buffer = Arrays.copyOf(buffer, bufferLength);
+        d.bufferLength = bufferLength;
+        d.prefixes = new ArrayList<>(prefixes);
+        for (Entry<String,Column> entry : columns.entrySet()) {
+            d.columns.put(entry.getKey(), entry.getValue().copy());
+        }
+        d.pendingCount = pendingCount;
+        d.includeGroupingContext = includeGroupingContext;
+        d.reduced = reduced;
+        d.typeMetadata = typeMetadata;
+        d.shardTimestamp = this.shardTimestamp;
+        
+        return d;
+    }
+    
+    /**
+     * The type metadata needed to materialize the buffered entries is not serializable, so a plain document is serialized in place of this one.
+     */
+    private Object writeReplace() {
+        return super.copy();
+    }
+    
+    private void ensureCapacity(int length) {
+        if (bufferLength + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(Math.max(MIN_BUFFER_SIZE, buffer.length * 2), bufferLength + length));
+        }
+    }
+    
+    private void writeVInt(int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer[bufferLength++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[bufferLength++] = (byte) value;
+    }
+    
+    private void writeLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[bufferLength++] = (byte) (value >>> shift);
+        }
+    }
+    
+    private int readVInt(int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position[0]++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+    
+    private long readLong(int[] position) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position[0]++] & 0xff);
+        }
+        return value;
+    }
+    
+    /**
+     * The offsets of the buffered entries for a single field
+     */
+    private static class Column implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private int[] offsets = new int[2];
+        private int size = 0;
+        
+        void add(int offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+        
+        Column copy() {
+            Column column = new Column();
+            column.offsets = Arrays.copyOf(offsets, Math.max(size, 2));
+            column.size = size;
+            return column;
+        }
+    }
+}
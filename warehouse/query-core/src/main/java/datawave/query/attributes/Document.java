@@ -49,7 +49,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
     /**
      * should sizes of the documents be tracked
      */
-    private boolean trackSizes;
+    boolean trackSizes;
     
     private static final long ONE_DAY_MS = 1000l * 60 * 60 * 24;
     
@@ -97,14 +97,19 @@ public class Document extends AttributeBag<Document> implements Serializable {
     
     @Override
     public Collection<Attribute<? extends Comparable<?>>> getAttributes() {
-        return Collections.unmodifiableCollection(this.dict.values());
+        return Collections.unmodifiableCollection(this._getDictionary().values());
     }
     
     public Map<String,Attribute<? extends Comparable<?>>> getDictionary() {
-        return Collections.unmodifiableMap(this.dict);
+        return Collections.unmodifiableMap(this._getDictionary());
     }
     
-    private TreeMap<String,Attribute<? extends Comparable<?>>> _getDictionary() {
+    /**
+     * Get the complete internal dictionary. Subclasses which hold some of their attributes outside of the dictionary must make them available here.
+     *
+     * @return the dictionary
+     */
+    protected TreeMap<String,Attribute<? extends Comparable<?>>> _getDictionary() {
         return dict;
     }
     
@@ -116,6 +121,16 @@ public class Document extends AttributeBag<Document> implements Serializable {
         return getDictionary().entrySet().iterator();
     }
     
+    /**
+     * Iterate over the fields of this document in dictionary order. Unlike {@link #getDictionary()}, this does not require all of the attributes to be held at
+     * once, so the attributes returned may be transient and not held by this document.
+     *
+     * @return an iterator over the fields of this document
+     */
+    public Iterator<Entry<String,Attribute<? extends Comparable<?>>>> streamingIterator() {
+        return Iterators.unmodifiableIterator(this.dict.entrySet().iterator());
+    }
+    
     /**
      * Given an iterator over {@code Entry<Key, Value>}, and a set of normalizers, this method will merge the attributes scanned over by the supplied iterator
      * into <code>this</code> Document.
@@ -128,13 +143,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
                     CompositeMetadata compositeMetadata, boolean includeGroupingContext, boolean keepRecordId, EventDataQueryFilter attrFilter) {
         invalidateMetadata();
         // extract the sharded time from the dockey if possible
-        try {
-            this.shardTimestamp = DateHelper.parseWithGMT(docKey.getRow().toString()).getTime();
-        } catch (IllegalArgumentException e) {
-            log.warn("Unable to parse document key row as a shard id of the form yyyyMMdd...: " + docKey.getRow(), e);
-            // leave the shardTimestamp empty
-            this.shardTimestamp = Long.MAX_VALUE;
-        }
+        extractShardTimestamp(docKey);
         
         // Extract the fieldName from the Key
         Iterator<Entry<Key,String>> extractedFieldNames = Iterators.transform(iter, new KeyToFieldName(includeGroupingContext));
@@ -163,6 +172,21 @@ public class Document extends AttributeBag<Document> implements Serializable {
         return this;
     }
     
+    /**
+     * Set the shard timestamp from the row of the document key, if the row is of the form yyyyMMdd...
+     *
+     * @param docKey
+     */
+    protected void extractShardTimestamp(Key docKey) {
+        try {
+            this.shardTimestamp = DateHelper.parseWithGMT(docKey.getRow().toString()).getTime();
+        } catch (IllegalArgumentException e) {
+            log.warn("Unable to parse document key row as a shard id of the form yyyyMMdd...: " + docKey.getRow(), e);
+            // leave the shardTimestamp empty
+            this.shardTimestamp = Long.MAX_VALUE;
+        }
+    }
+    
     public Attribute<?> toDocKeyAttributes(Set<Key> docKeys, boolean keepRecordId) {
         Attributes attributes = new Attributes(keepRecordId, trackSizes);
         for (Key docKey : docKeys) {
@@ -212,6 +236,16 @@ public class Document extends AttributeBag<Document> implements Serializable {
         return this.dict.containsKey(key);
     }
     
+    /**
+     * Returns the number of fields in this <code>Document</code>. Unlike <code>getDictionary().size()</code>, this does not require all of the attributes to
+     * be held at once.
+     *
+     * @return the number of fields
+     */
+    public int getFieldCount() {
+        return this.dict.size();
+    }
+    
     /**
      * Fetch the value for the given <code>key</code>. Will return <code>null</code> if no such mapping exists.
      *
@@ -379,11 +413,11 @@ public class Document extends AttributeBag<Document> implements Serializable {
     }
     
     public void putAll(Document other, Boolean includeGroupingContext) {
-        if (null == other || null == other.dict || other.dict.isEmpty()) {
+        if (null == other || other._getDictionary().isEmpty()) {
             return;
         }
         
-        putAll(other.dict.entrySet().iterator(), includeGroupingContext);
+        putAll(other._getDictionary().entrySet().iterator(), includeGroupingContext);
     }
     
     /**
@@ -393,8 +427,8 @@ public class Document extends AttributeBag<Document> implements Serializable {
      * @return
      */
     public Attribute<?> remove(String key) {
-        if (this.getDictionary().containsKey(key)) {
-            Attribute<?> attr = this.getDictionary().get(key);
+        if (this.dict.containsKey(key)) {
+            Attribute<?> attr = this.dict.get(key);
             
             this._count -= attr.size();
             if (trackSizes) {
@@ -403,7 +437,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
             }
             invalidateMetadata();
             
-            return this._getDictionary().remove(key);
+            return this.dict.remove(key);
         }
         
         return null;
@@ -415,7 +449,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
      * @param key
      */
     public void removeAll(String key) {
-        _removeAll(this._getDictionary(), key);
+        _removeAll(this.dict, key);
     }
     
     private void _removeAll(Map<String,Attribute<? extends Comparable<?>>> dict, String key) {
@@ -475,7 +509,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
     
     @Override
     public Object getData() {
-        return Collections.unmodifiableMap(this.dict);
+        return Collections.unmodifiableMap(this._getDictionary());
     }
     
     @Override
@@ -672,7 +706,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
     public int hashCode() {
         HashCodeBuilder hcb = new HashCodeBuilder(173, 167);
         
-        for (Entry<String,Attribute<? extends Comparable<?>>> entry : this.dict.entrySet()) {
+        for (Entry<String,Attribute<? extends Comparable<?>>> entry : this._getDictionary().entrySet()) {
             hcb.append(entry.hashCode());
         }
         
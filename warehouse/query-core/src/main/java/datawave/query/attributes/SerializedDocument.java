@@ -0,0 +1,394 @@
+package datawave.query.attributes;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import datawave.query.jexl.DatawaveJexlContext;
+import org.apache.log4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A {@link Document} which is read directly from the bytes written by {@link #write(Document, Kryo, Output, boolean)}. Each field is written with its name,
+ * the class of its attribute, its count and its length ahead of the attribute itself, so that the fields can be indexed without reading any attribute. An
+ * attribute is only read when its field is fetched, or when the whole dictionary is requested, and {@link #streamingIterator()} only reads a field when its
+ * value is requested. Fields which are never returned are therefore never read. The serialized bytes are referenced, not copied.
+ */
+public class SerializedDocument extends Document {
+    private static final long serialVersionUID = 1L;
+    
+    private static final Logger log = Logger.getLogger(SerializedDocument.class);
+    
+    private transient byte[] data;
+    private transient Kryo kryo;
+    
+    /**
+     * The serialized fields which have not been read into the dictionary yet
+     */
+    private transient TreeMap<String,SerializedField> fields = new TreeMap<>();
+    
+    /**
+     * The number of attributes held by the serialized fields
+     */
+    private int pendingCount = 0;
+    
+    /**
+     * The size of the document as computed when it was written
+     */
+    private long serializedSizeInBytes = 0;
+    
+    /**
+     * Index the fields of a serialized document.
+     *
+     * @param data
+     *            the serialized document, which is referenced and must not be modified
+     * @param offset
+     *            the offset of the document within data
+     * @param length
+     *            the length of the document
+     * @param kryo
+     *            the kryo instance used to read the attributes
+     */
+    public SerializedDocument(byte[] data, int offset, int length, Kryo kryo) {
+        super(null, true, false);
+        this.data = data;
+        this.kryo = kryo;
+        
+        Input input = new Input(data, offset, length);
+        while (input.readBoolean()) {
+            String fieldName = input.readString();
+            String className = input.readString();
+            int count = input.readInt(true);
+            int attrLength = input.readInt(true);
+            
+            fields.put(fieldName, new SerializedField(className, count, input.position(), attrLength));
+            pendingCount += count;
+            input.setPosition(input.position() + attrLength);
+        }
+        this.trackSizes = input.readBoolean();
+        this.serializedSizeInBytes = input.readLong(true);
+        this.shardTimestamp = input.readLong();
+    }
+    
+    /**
+     * Write a document in the format read by {@link #SerializedDocument(byte[], int, int, Kryo)}. The fields are taken from
+     * {@link Document#streamingIterator()}, so a document which defers its attributes is written without building its full dictionary.
+     *
+     * @param document
+     *            the document to write
+     * @param kryo
+     *            the kryo instance used to write the attributes
+     * @param output
+     *            the output
+     * @param reducedResponse
+     *            whether to write the reduced form of the attributes
+     */
+    public static void write(Document document, Kryo kryo, Output output, boolean reducedResponse) {
+        Output attrOutput = new Output(1024, -1);
+        int numAttrs = 0;
+        
+        for (Iterator<Entry<String,Attribute<? extends Comparable<?>>>> it = document.streamingIterator(); it.hasNext();) {
+            Entry<String,Attribute<? extends Comparable<?>>> entry = it.next();
+            Attribute<?> attr = entry.getValue();
+            if (attr == null) {
+                continue;
+            }
+            
+            attrOutput.clear();
+            attr.write(kryo, attrOutput, reducedResponse);
+            
+            output.writeBoolean(true);
+            output.writeString(entry.getKey());
+            output.writeString(attr.getClass().getName());
+            output.writeInt(attr.size(), true);
+            output.writeInt(attrOutput.position(), true);
+            output.writeBytes(attrOutput.getBuffer(), 0, attrOutput.position());
+            numAttrs++;
+        }
+        output.writeBoolean(false);
+        
+        output.writeBoolean(document.trackSizes);
+        output.writeLong(document.sizeInBytes(), true);
+        output.writeLong(document.shardTimestamp);
+        
+        if (log.isTraceEnabled()) {
+            log.trace("Wrote " + numAttrs + " fields");
+        }
+    }
+    
+    private Attribute<?> read(SerializedField field) {
+        Class<?> clz;
+        try {
+            clz = Class.forName(field.className);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        
+        Attribute<?> attr;
+        if (Attribute.class.isAssignableFrom(clz)) {
+            try {
+                attr = (Attribute<?>) clz.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            throw new ClassCastException("Found class that was not an instance of Attribute");
+        }
+        
+        attr.read(kryo, new Input(data, field.offset, field.length));
+        return attr;
+    }
+    
+    /**
+     * Move a serialized field into the dictionary
+     */
+    private void materialize(String fieldName) {
+        SerializedField field = fields.remove(fieldName);
+        if (field != null) {
+            pendingCount -= field.count;
+            super.put(fieldName, read(field), true, false);
+        }
+    }
+    
+    private void materializeAll() {
+        if (fields.isEmpty()) {
+            return;
+        }
+        
+        for (Entry<String,SerializedField> entry : fields.entrySet()) {
+            super.put(entry.getKey(), read(entry.getValue()), true, false);
+        }
+        clearFields();
+    }
+    
+    private void clearFields() {
+        fields.clear();
+        pendingCount = 0;
+        data = null;
+    }
+    
+    /**
+     * Build the attribute that the dictionary would hold for the given field once it was read, without modifying this document
+     */
+    private Attribute<?> getMaterializedAttribute(String fieldName, SerializedField field) {
+        Attribute<?> existing = dict.get(fieldName);
+        if (existing == null) {
+            return read(field);
+        }
+        
+        Document scratch = new Document(null, isToKeep(), trackSizes);
+        scratch.put(fieldName, (Attribute<?>) existing.copy(), true, false);
+        scratch.put(fieldName, read(field), true, false);
+        return scratch.dict.get(fieldName);
+    }
+    
+    /**
+     * Iterate over the fields in dictionary order. The value of a serialized field is only read when {@link Entry#getValue()} is called, so a caller which
+     * skips a field based on its name never pays to read it.
+     */
+    @Override
+    public Iterator<Entry<String,Attribute<? extends Comparable<?>>>> streamingIterator() {
+        final Iterator<String> fieldNames;
+        if (fields.isEmpty()) {
+            fieldNames = dict.keySet().iterator();
+        } else {
+            TreeSet<String> names = new TreeSet<>(dict.keySet());
+            names.addAll(fields.keySet());
+            fieldNames = names.iterator();
+        }
+        
+        return new Iterator<Entry<String,Attribute<? extends Comparable<?>>>>() {
+            @Override
+            public boolean hasNext() {
+                return fieldNames.hasNext();
+            }
+            
+            @Override
+            public Entry<String,Attribute<? extends Comparable<?>>> next() {
+                return new LazyEntry(fieldNames.next());
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+    
+    /**
+     * @return the number of attributes which have not been read yet
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+    
+    @Override
+    protected TreeMap<String,Attribute<? extends Comparable<?>>> _getDictionary() {
+        materializeAll();
+        return super._getDictionary();
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Collection<Attribute<? extends Comparable<?>>> getMetadataAttributes() {
+        if (fields.isEmpty()) {
+            return dict.values();
+        }
+        
+        List<Attribute<? extends Comparable<?>>> attributes = new ArrayList<>(dict.size() + fields.size());
+        attributes.addAll(dict.values());
+        for (SerializedField field : fields.values()) {
+            attributes.add((Attribute<? extends Comparable<?>>) read(field));
+        }
+        return attributes;
+    }
+    
+    @Override
+    public boolean containsKey(String key) {
+        return fields.containsKey(key) || super.containsKey(key);
+    }
+    
+    @Override
+    public int getFieldCount() {
+        int count = super.getFieldCount();
+        for (String fieldName : fields.keySet()) {
+            if (!dict.containsKey(fieldName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    @Override
+    public Attribute<?> get(String key) {
+        materialize(key);
+        return super.get(key);
+    }
+    
+    @Override
+    public Attribute<?> remove(String key) {
+        materialize(key);
+        return super.remove(key);
+    }
+    
+    @Override
+    public void removeAll(String key) {
+        // the serialized fields may hold nested documents, so they have to be read before the key can be removed from them
+        materializeAll();
+        super.removeAll(key);
+    }
+    
+    @Override
+    public int size() {
+        return super.size() + pendingCount;
+    }
+    
+    @Override
+    public long sizeInBytes() {
+        if (fields.isEmpty()) {
+            return super.sizeInBytes();
+        }
+        return Math.max(serializedSizeInBytes, super.sizeInBytes());
+    }
+    
+    @Override
+    public Attribute<?> reduceToKeep() {
+        materializeAll();
+        return super.reduceToKeep();
+    }
+    
+    @Override
+    public Collection<ValueTuple> visit(Collection<String> queryFieldNames, DatawaveJexlContext context) {
+        materializeAll();
+        return super.visit(queryFieldNames, context);
+    }
+    
+    @Override
+    public void write(DataOutput out, boolean reducedResponse) throws IOException {
+        materializeAll();
+        super.write(out, reducedResponse);
+    }
+    
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        clearFields();
+        super.readFields(in);
+    }
+    
+    @Override
+    public void write(Kryo kryo, Output output, Boolean reducedResponse) {
+        materializeAll();
+        super.write(kryo, output, reducedResponse);
+    }
+    
+    @Override
+    public void read(Kryo kryo, Input input) {
+        clearFields();
+        super.read(kryo, input);
+    }
+    
+    /**
+     * The serialized bytes are not held across java serialization, so a plain document is serialized in place of this one.
+     */
+    private Object writeReplace() {
+        return super.copy();
+    }
+    
+    /**
+     * An entry whose attribute is read when it is first requested
+     */
+    private class LazyEntry implements Entry<String,Attribute<? extends Comparable<?>>> {
+        private final String fieldName;
+        private Attribute<? extends Comparable<?>> attr;
+        
+        LazyEntry(String fieldName) {
+            this.fieldName = fieldName;
+        }
+        
+        @Override
+        public String getKey() {
+            return fieldName;
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public Attribute<? extends Comparable<?>> getValue() {
+            if (attr == null) {
+                SerializedField field = fields.get(fieldName);
+                attr = (Attribute<? extends Comparable<?>>) (field == null ? dict.get(fieldName) : getMaterializedAttribute(fieldName, field));
+            }
+            return attr;
+        }
+        
+        @Override
+        public Attribute<? extends Comparable<?>> setValue(Attribute<? extends Comparable<?>> value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * The location of a single serialized field
+     */
+    private static class SerializedField {
+        private final String className;
+        private final int count;
+        private final int offset;
+        private final int length;
+        
+        SerializedField(String className, int count, int offset, int length) {
+            this.className = className;
+            this.count = count;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
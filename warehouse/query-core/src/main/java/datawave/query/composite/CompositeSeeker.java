@@ -2,10 +2,13 @@ package datawave.query.composite;
 
 import com.google.common.collect.Multimap;
 import datawave.data.type.DiscreteIndexType;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -13,10 +16,22 @@ import java.util.Map;
 /**
  * The CompositeSeeker can be used within an Accumulo iterator in order to determing whether or not the current key is within the bounds of the composite range.
  * If one of the component values is out of range, this class can be used to determine the next valid composite range that we should seek to.
+ * <p>
+ * Composite values are compared component by component in their encoded form, in the byte order of the keys, without decoding them into strings. The bounds of
+ * the range are split once and reused for as long as the same range is passed in. A seeker is therefore not thread safe.
  */
 public abstract class CompositeSeeker {
     protected Map<String,DiscreteIndexType<?>> fieldToDiscreteIndexType;
     
+    final Components values = new Components();
+    final Components startValues = new Components();
+    final Components endValues = new Components();
+    
+    private Range boundsRange = null;
+    private String boundsSeparator = null;
+    private String separator = null;
+    private byte[] separatorBytes = null;
+    
     CompositeSeeker(Map<String,DiscreteIndexType<?>> fieldToDiscreteIndexType) {
         this.fieldToDiscreteIndexType = fieldToDiscreteIndexType;
     }
@@ -25,165 +40,276 @@ public abstract class CompositeSeeker {
     
     abstract public Key nextSeekKey(List<String> fields, Key currentKey, Range currentRange, String separator);
     
-    boolean isInRange(List<String> values, List<String> startValues, boolean isStartInclusive, List<String> endValues, boolean isEndInclusive) {
-        for (int i = values.size(); i >= 0; i--) {
-            String value = (i < values.size()) ? values.get(i) : null;
-            String start = (i < startValues.size()) ? startValues.get(i) : null;
-            String end = (i < endValues.size()) ? endValues.get(i) : null;
+    /**
+     * @param key
+     * @return the encoded composite value of the key
+     */
+    abstract ByteSequence getValue(Key key);
+    
+    byte[] getSeparatorBytes(String separator) {
+        if (!separator.equals(this.separator)) {
+            this.separator = separator;
+            this.separatorBytes = separator.getBytes(StandardCharsets.UTF_8);
+        }
+        return separatorBytes;
+    }
+    
+    /**
+     * Split the current key and, if the range has changed, the bounds of the range into their components
+     */
+    void split(Key currentKey, Range currentRange, String separator) {
+        byte[] separatorBytes = getSeparatorBytes(separator);
+        values.split(getValue(currentKey), separatorBytes);
+        if (currentRange != boundsRange || !separator.equals(boundsSeparator)) {
+            startValues.split(getValue(currentRange.getStartKey()), separatorBytes);
+            endValues.split(getValue(currentRange.getEndKey()), separatorBytes);
+            boundsRange = currentRange;
+            boundsSeparator = separator;
+        }
+    }
+    
+    boolean isInRange(Components values, Components startValues, boolean isStartInclusive, Components endValues, boolean isEndInclusive) {
+        for (int i = values.size() - 1; i >= 0; i--) {
+            boolean hasStart = i < startValues.size();
+            boolean hasEnd = i < endValues.size();
             
             boolean isStartValueInclusive = (i != startValues.size() - 1) || isStartInclusive;
             boolean isEndValueInclusive = (i != endValues.size() - 1) || isEndInclusive;
             
             // if start and end are equal, and one side is exclusive while the other is inclusive, just mark both as inclusive for our purposes
-            if (start != null && end != null && isStartValueInclusive != isEndValueInclusive && start.equals(end)) {
+            if (hasStart && hasEnd && isStartValueInclusive != isEndValueInclusive && startValues.compare(i, endValues, i) == 0) {
                 isStartValueInclusive = true;
                 isEndValueInclusive = true;
             }
             
-            if (value != null) {
-                // only use exclusive comparison for the last value, all others are inclusive
-                if (start != null && !isStartValid(value, start, isStartValueInclusive))
-                    return false;
-                
-                // only use exclusive comparison for the last value, all others are inclusive
-                if (end != null && !isEndValid(value, end, isEndValueInclusive))
-                    return false;
-            }
+            // only use exclusive comparison for the last value, all others are inclusive
+            if (hasStart && !isStartValid(values.compare(i, startValues, i), isStartValueInclusive))
+                return false;
+            
+            // only use exclusive comparison for the last value, all others are inclusive
+            if (hasEnd && !isEndValid(values.compare(i, endValues, i), isEndValueInclusive))
+                return false;
         }
         return true;
     }
     
-    private boolean isStartValid(String startValue, String startBound, boolean isInclusive) {
+    private static boolean isStartValid(int comparison, boolean isInclusive) {
         if (isInclusive)
-            return startValue.compareTo(startBound) >= 0;
+            return comparison >= 0;
         else
-            return startValue.compareTo(startBound) > 0;
+            return comparison > 0;
     }
     
-    private boolean isEndValid(String endValue, String endBound, boolean isInclusive) {
+    private static boolean isEndValid(int comparison, boolean isInclusive) {
         if (isInclusive)
-            return endValue.compareTo(endBound) <= 0;
+            return comparison <= 0;
         else
-            return endValue.compareTo(endBound) < 0;
+            return comparison < 0;
     }
     
-    String nextLowerBound(List<String> fields, List<String> values, String separator, List<String> startValues, boolean isStartInclusive,
-                    List<String> endValues, boolean isEndInclusive) {
-        String[] newValues = new String[fields.size()];
+    /**
+     * Determine the lowest composite value at or after the current one which could be in range.
+     *
+     * @return the encoded lower bound
+     */
+    byte[] nextLowerBound(List<String> fields, Components values, byte[] separator, Components startValues, boolean isStartInclusive, Components endValues,
+                    boolean isEndInclusive) {
+        // each new value is either the i'th component of the source, or an incremented value
+        Components[] newSources = new Components[fields.size()];
+        String[] incremented = new String[fields.size()];
         
         boolean carryOver = false;
         for (int i = fields.size() - 1; i >= 0; i--) {
             DiscreteIndexType discreteIndexType = fieldToDiscreteIndexType.get(fields.get(i));
-            String value = (i < values.size()) ? values.get(i) : null;
-            String start = (i < startValues.size()) ? startValues.get(i) : null;
-            String end = (i < endValues.size()) ? endValues.get(i) : null;
+            if (i >= values.size()) {
+                continue;
+            }
+            boolean hasStart = i < startValues.size();
+            boolean hasEnd = i < endValues.size();
             
             boolean isStartValueInclusive = (i != startValues.size() - 1) || isStartInclusive;
             boolean isEndValueInclusive = (i != endValues.size() - 1) || isEndInclusive;
             
             // if start and end are equal, and one side is exclusive while the other is inclusive, just mark both as inclusive for our purposes
-            if (start != null && end != null && isStartValueInclusive != isEndValueInclusive && start.equals(end)) {
+            if (hasStart && hasEnd && isStartValueInclusive != isEndValueInclusive && startValues.compare(i, endValues, i) == 0) {
                 isStartValueInclusive = true;
                 isEndValueInclusive = true;
             }
             
-            if (value != null) {
-                // if it's not fixed length, check to see if we are in range
-                if (discreteIndexType == null) {
-                    // value precedes start value. need to seek forward.
-                    if (start != null && !isStartValid(value, start, isStartValueInclusive)) {
-                        newValues[i] = start;
-                        
-                        // subsequent values set to start
-                        for (int j = i + 1; j < startValues.size(); j++)
-                            newValues[j] = startValues.get(j);
-                    }
-                    // value exceeds end value. need to seek forward, and carry over.
-                    else if (end != null && !isEndValid(value, end, isEndValueInclusive)) {
-                        newValues[i] = start;
-                        carryOver = true;
-                        
-                        // subsequent values set to start
-                        for (int j = i + 1; j < startValues.size(); j++)
-                            newValues[j] = startValues.get(j);
-                    }
-                    // value is in range.
-                    else {
-                        newValues[i] = values.get(i);
-                    }
-                }
-                // if it's fixed length, determine whether or not we need to increment
-                else {
-                    // carry over means we need to increase our value
-                    if (carryOver) {
-                        // value precedes start value. just seek forward and ignore previous carry over.
-                        if (start != null && !isStartValid(value, start, isStartValueInclusive)) {
-                            newValues[i] = start;
-                            carryOver = false;
-                            
-                            // subsequent values set to start
-                            for (int j = i + 1; j < startValues.size(); j++)
-                                newValues[j] = startValues.get(j);
-                        }
-                        // value is at or exceeds end value. need to seek forward, and maintain carry over.
-                        else if (end != null && !isEndValid(value, end, false)) {
-                            newValues[i] = start;
-                            carryOver = true;
-                            
-                            // subsequent values set to start
-                            for (int j = i + 1; j < startValues.size(); j++)
-                                newValues[j] = startValues.get(j);
-                        }
-                        // value is in range. just increment, and finish carry over
-                        else {
-                            newValues[i] = discreteIndexType.incrementIndex(values.get(i));
-                            carryOver = false;
-                        }
-                    } else {
-                        // value precedes start value. need to seek forward.
-                        if (start != null && !isStartValid(value, start, isStartValueInclusive)) {
-                            newValues[i] = start;
-                            
-                            // subsequent values set to start
-                            for (int j = i + 1; j < startValues.size(); j++)
-                                newValues[j] = startValues.get(j);
-                        }
-                        // value exceeds end value. need to seek forward, and carry over.
-                        else if (end != null && !isEndValid(value, end, isEndValueInclusive)) {
-                            newValues[i] = start;
-                            carryOver = true;
-                            
-                            // subsequent values set to start
-                            for (int j = i + 1; j < startValues.size(); j++)
-                                newValues[j] = startValues.get(j);
-                        }
-                        // value is in range.
-                        else {
-                            newValues[i] = values.get(i);
-                        }
-                    }
+            boolean precedesStart = hasStart && !isStartValid(values.compare(i, startValues, i), isStartValueInclusive);
+            
+            // carry over means we need to increase our value, and the value is at or exceeds the end value if it may not be incremented
+            boolean exceedsEnd = hasEnd && !isEndValid(values.compare(i, endValues, i), (discreteIndexType != null && carryOver) ? false : isEndValueInclusive);
+            
+            // value precedes start value. need to seek forward, ignoring any previous carry over.
+            if (precedesStart) {
+                resetToStart(newSources, incremented, i, startValues);
+                if (discreteIndexType != null) {
+                    carryOver = false;
                 }
             }
+            // value exceeds end value. need to seek forward, and carry over.
+            else if (exceedsEnd) {
+                resetToStart(newSources, incremented, i, startValues);
+                carryOver = true;
+            }
+            // value is in range. increment if carrying over onto a fixed length value.
+            else if (discreteIndexType != null && carryOver) {
+                incremented[i] = discreteIndexType.incrementIndex(values.toString(i));
+                carryOver = false;
+            }
+            // value is in range.
+            else {
+                newSources[i] = values;
+            }
         }
         
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < newValues.length; i++) {
-            if (newValues[i] != null)
-                if (i > 0)
-                    builder.append(separator).append(newValues[i]);
-                else
-                    builder.append(newValues[i]);
-            else
+        ByteBuilder builder = new ByteBuilder();
+        for (int i = 0; i < newSources.length; i++) {
+            if (newSources[i] == null && incremented[i] == null)
                 break;
+            if (i > 0)
+                builder.append(separator, 0, separator.length);
+            if (incremented[i] != null) {
+                byte[] bytes = incremented[i].getBytes(StandardCharsets.UTF_8);
+                builder.append(bytes, 0, bytes.length);
+            } else {
+                newSources[i].append(i, builder);
+            }
         }
         
-        return builder.toString();
+        return builder.toArray();
+    }
+    
+    /**
+     * Set the i'th new value and all of those after it to the start values
+     */
+    private static void resetToStart(Components[] newSources, String[] incremented, int i, Components startValues) {
+        newSources[i] = (i < startValues.size()) ? startValues : null;
+        
+        // subsequent values set to start
+        for (int j = i + 1; j < startValues.size() && j < newSources.length; j++) {
+            newSources[j] = startValues;
+            incremented[j] = null;
+        }
     }
     
     public Map<String,DiscreteIndexType<?>> getFieldToDiscreteIndexType() {
         return fieldToDiscreteIndexType;
     }
     
+    /**
+     * The components of an encoded composite value, held as offsets into its bytes. Splitting follows {@link String#split(String)} with a literal separator:
+     * trailing empty components are dropped, and an empty value has a single empty component.
+     */
+    static class Components {
+        private byte[] bytes;
+        private int[] starts = new int[8];
+        private int[] ends = new int[8];
+        private int size = 0;
+        
+        Components split(ByteSequence value, byte[] separator) {
+            return split(value.getBackingArray(), value.offset(), value.length(), separator);
+        }
+        
+        Components split(byte[] bytes, int offset, int length, byte[] separator) {
+            this.bytes = bytes;
+            this.size = 0;
+            int end = offset + length;
+            if (length == 0) {
+                add(offset, offset);
+                return this;
+            }
+            
+            int start = offset;
+            int i = offset;
+            while (i <= end - separator.length) {
+                if (matches(bytes, i, separator)) {
+                    add(start, i);
+                    i += separator.length;
+                    start = i;
+                } else {
+                    i++;
+                }
+            }
+            add(start, end);
+            
+            while (size > 0 && starts[size - 1] == ends[size - 1]) {
+                size--;
+            }
+            return this;
+        }
+        
+        private static boolean matches(byte[] bytes, int offset, byte[] separator) {
+            for (int i = 0; i < separator.length; i++) {
+                if (bytes[offset + i] != separator[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void add(int start, int end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        /**
+         * Compare the i'th component with the j'th component of another value, in unsigned byte order
+         */
+        int compare(int i, Components other, int j) {
+            return WritableComparator.compareBytes(bytes, starts[i], ends[i] - starts[i], other.bytes, other.starts[j], other.ends[j] - other.starts[j]);
+        }
+        
+        void append(int i, ByteBuilder builder) {
+            builder.append(bytes, starts[i], ends[i] - starts[i]);
+        }
+        
+        String toString(int i) {
+            return new String(bytes, starts[i], ends[i] - starts[i], StandardCharsets.UTF_8);
+        }
+    }
+    
+    static class ByteBuilder {
+        private byte[] bytes = new byte[64];
+        private int length = 0;
+        
+        void append(byte[] source, int offset, int length) {
+            if (this.length + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, this.length + length));
+            }
+            System.arraycopy(source, offset, bytes, this.length, length);
+            this.length += length;
+        }
+        
+        byte[] toArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+    
+    /**
+     * Get the part of a column qualifier before the first null byte
+     */
+    private static ByteSequence beforeNull(ByteSequence colQual) {
+        byte[] bytes = colQual.getBackingArray();
+        int end = colQual.offset() + colQual.length();
+        for (int i = colQual.offset(); i < end; i++) {
+            if (bytes[i] == 0) {
+                return colQual.subSequence(0, i - colQual.offset());
+            }
+        }
+        return colQual;
+    }
+    
     /**
      * This version of the CompositeSeeker is intended to be used when scanning keys in the shard index.
      */
@@ -197,15 +323,18 @@ public abstract class CompositeSeeker {
             this.separator = separator;
         }
         
+        @Override
+        ByteSequence getValue(Key key) {
+            return key.getRowData();
+        }
+        
         public boolean isKeyInRange(Key currentKey, Range currentRange) {
             return isKeyInRange(currentKey, currentRange, separator);
         }
         
         @Override
         public boolean isKeyInRange(Key currentKey, Range currentRange, String separator) {
-            List<String> values = Arrays.asList(currentKey.getRow().toString().split(separator));
-            List<String> startValues = Arrays.asList(currentRange.getStartKey().getRow().toString().split(separator));
-            List<String> endValues = Arrays.asList(currentRange.getEndKey().getRow().toString().split(separator));
+            split(currentKey, currentRange, separator);
             return isInRange(values, startValues, currentRange.isStartKeyInclusive(), endValues, currentRange.isEndKeyInclusive());
         }
         
@@ -216,14 +345,10 @@ public abstract class CompositeSeeker {
         @Override
         public Key nextSeekKey(List<String> fields, Key currentKey, Range currentRange, String separator) {
             Key startKey = currentRange.getStartKey();
-            Key endKey = currentRange.getEndKey();
-            
-            List<String> values = Arrays.asList(currentKey.getRow().toString().split(separator));
-            List<String> startValues = Arrays.asList(startKey.getRow().toString().split(separator));
-            List<String> endValues = Arrays.asList(endKey.getRow().toString().split(separator));
             
-            String nextLowerBound = nextLowerBound(fields, values, separator, startValues, currentRange.isStartKeyInclusive(), endValues,
-                            currentRange.isEndKeyInclusive());
+            split(currentKey, currentRange, separator);
+            byte[] nextLowerBound = nextLowerBound(fields, values, getSeparatorBytes(separator), startValues, currentRange.isStartKeyInclusive(),
+                            endValues, currentRange.isEndKeyInclusive());
             
             Key newStartKey = new Key(new Text(nextLowerBound), startKey.getColumnFamily(), startKey.getColumnQualifier(), startKey.getColumnVisibility(), 0L);
             
@@ -243,41 +368,38 @@ public abstract class CompositeSeeker {
             super(CompositeUtils.getFieldToDiscreteIndexTypeMap(fieldDatatypes));
         }
         
+        @Override
+        ByteSequence getValue(Key key) {
+            return beforeNull(key.getColumnQualifierData());
+        }
+        
         @Override
         public boolean isKeyInRange(Key currentKey, Range currentRange, String separator) {
-            List<String> values = Arrays.asList(currentKey.getColumnQualifier().toString().split("\0")[0].split(separator));
-            List<String> startValues = Arrays.asList(currentRange.getStartKey().getColumnQualifier().toString().split("\0")[0].split(separator));
-            List<String> endValues = Arrays.asList(currentRange.getEndKey().getColumnQualifier().toString().split("\0")[0].split(separator));
+            split(currentKey, currentRange, separator);
             return isInRange(values, startValues, currentRange.isStartKeyInclusive(), endValues, currentRange.isEndKeyInclusive());
         }
         
         @Override
         public Key nextSeekKey(List<String> fields, Key currentKey, Range currentRange, String separator) {
             Key startKey = currentRange.getStartKey();
-            Key endKey = currentRange.getEndKey();
-            
-            String currentValue = currentKey.getColumnQualifier().toString().split("\0")[0];
             
-            String startColQual = startKey.getColumnQualifier().toString();
-            String lowerBound = startColQual.split("\0")[0];
-            
-            String endColQual = endKey.getColumnQualifier().toString();
-            String upperBound = endColQual.split("\0")[0];
-            
-            List<String> values = Arrays.asList(currentValue.split(separator));
-            List<String> startValues = Arrays.asList(lowerBound.split(separator));
-            List<String> endValues = Arrays.asList(upperBound.split(separator));
-            
-            String nextLowerBound = nextLowerBound(fields, values, separator, startValues, currentRange.isStartKeyInclusive(), endValues,
-                            currentRange.isEndKeyInclusive());
+            split(currentKey, currentRange, separator);
+            byte[] nextLowerBound = nextLowerBound(fields, values, getSeparatorBytes(separator), startValues, currentRange.isStartKeyInclusive(),
+                            endValues, currentRange.isEndKeyInclusive());
             
             // build a new range only if the new lower bound exceeds the current value without exceeding the upper bound of the range
-            if (nextLowerBound.compareTo(currentValue) > 0 && nextLowerBound.compareTo(upperBound) <= 0) {
-                String newColQual = nextLowerBound + "\0";
+            ByteSequence currentValue = getValue(currentKey);
+            ByteSequence upperBound = getValue(currentRange.getEndKey());
+            if (compare(nextLowerBound, currentValue) > 0 && compare(nextLowerBound, upperBound) <= 0) {
+                byte[] newColQual = Arrays.copyOf(nextLowerBound, nextLowerBound.length + 1);
                 return new Key(currentKey.getRow(), currentKey.getColumnFamily(), new Text(newColQual), startKey.getColumnVisibility(), 0L);
             }
             
             return startKey;
         }
+        
+        private static int compare(byte[] bytes, ByteSequence other) {
+            return WritableComparator.compareBytes(bytes, 0, bytes.length, other.getBackingArray(), other.offset(), other.length());
+        }
     }
 }
@@ -21,10 +21,14 @@ import datawave.query.model.QueryModel;
 import datawave.query.tables.ShardQueryLogic;
 import datawave.query.tld.TLDQueryIterator;
 import datawave.query.util.QueryStopwatch;
+import datawave.query.util.sortedset.FileBackedDigestSet;
 import datawave.util.UniversalSet;
 import datawave.webservice.query.Query;
 import datawave.webservice.query.QueryImpl;
 import datawave.webservice.query.configuration.GenericQueryConfiguration;
+import datawave.webservice.query.logic.WritesQueryMetrics;
+import datawave.webservice.query.metric.BaseQueryMetric;
+import datawave.webservice.query.metric.BaseQueryMetric.Prediction;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
@@ -37,6 +41,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -56,7 +61,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This class can be initialized with an instance of a ShardQueryLogic or ShardQueryTable which will grab the already configured parameters from the Accumulo
  * Webservice QueryTable and apply them to this configuration object
  */
-public class ShardQueryConfiguration extends GenericQueryConfiguration implements Serializable {
+public class ShardQueryConfiguration extends GenericQueryConfiguration implements Serializable, WritesQueryMetrics {
     public static final String PARAM_VALUE_SEP_STR = new String(new char[] {Constants.PARAM_VALUE_SEP});
     @SuppressWarnings("unused")
     private static final long serialVersionUID = -4354990715046146110L;
@@ -67,6 +72,9 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean disableIndexOnlyDocuments = false;
     @JsonIgnore
     private QueryStopwatch timers = new QueryStopwatch();
+    // The estimates made while planning the query, written to the query metrics as predictions
+    @JsonIgnore
+    private Map<String,Double> planEstimates = new LinkedHashMap<>();
     private int maxScannerBatchSize = 1000;
     /**
      * Index batch size is the size of results use for each index lookup
@@ -75,6 +83,8 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean allTermsIndexOnly;
     private String accumuloPassword = "";
     private long maxIndexScanTimeMillis = Long.MAX_VALUE;
+    // the time allowed for the range stream index lookups before the query fails, no limit by default
+    private long maxRangeStreamTimeMillis = Long.MAX_VALUE;
     private boolean collapseUids = false;
     private boolean sequentialScheduler = false;
     private boolean collectTimingDetails = false;
@@ -200,6 +210,11 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private String limitFieldsField = null;
     private boolean hitList = false;
     private boolean typeMetadataInHdfs = false;
+    /**
+     * A directory shared with the tservers to which the type metadata is written as a versioned snapshot, so that only the version is passed to the iterators.
+     * Null to pass the type metadata in the iterator options.
+     */
+    private String typeMetadataSnapshotDir = null;
     private boolean dateIndexTimeTravel = false;
     // Cap (or fail if failOutsideValidDateRange) the begin date with this value (subtracted from Now). 0 or less disables this feature.
     private long beginDateCap = -1;
@@ -207,6 +222,15 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean rawTypes = false;
     // Used to choose how "selective" a term is (indexStats)
     private double minSelectivity = -1.0;
+    // Used to plan the query from the index statistics and metadata counts (see CostBasedPlanningVisitor)
+    private boolean costBasedPlanning = false;
+    // A term is delayed (or a regex is handed to an ivarator) when its estimated cardinality exceeds that of the most selective term it is intersected with
+    // by this factor
+    private double costBasedPlanningRatio = 100.0;
+    // Used to plan and run the query one time slice at a time, so results for the first slices are returned while later slices are still being planned
+    private boolean timeSlicedPlanning = false;
+    // The number of days in each time slice when timeSlicedPlanning is enabled
+    private int timeSliceDays = 1;
     // Used to add the event datatype to the event as an event field.
     private boolean includeDataTypeAsField = false;
     // Used to add the event RECORD_ID to the event as an event field
@@ -232,6 +256,13 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
      * By default don't use speculative scanning.
      */
     private boolean speculativeScanning = false;
+    /**
+     * Hedge scans which have not responded within a percentile of the response times seen so far by issuing a duplicate, using the first to respond
+     */
+    private boolean hedgedScans = false;
+    private double hedgedScanPercentile = 0.95;
+    // The minimum time in milliseconds before a scan is hedged
+    private long hedgedScanMinDelay = 100;
     private boolean disableEvaluation = false;
     private boolean containsIndexOnlyTerms = false;
     private boolean containsCompositeTerms = false;
@@ -264,8 +295,19 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private long ivaratorCacheScanTimeout = 1000L * 60 * 60;
     private int maxFieldIndexRangeSplit = 11;
     private int ivaratorMaxOpenFiles = 100;
+    private String ivaratorSortedSetBackend = "hdfs";
+    private String ivaratorLocalCacheDir = null;
+    private int ivaratorOffHeapBufferSize = 16 * 1024 * 1024;
+    private String ivaratorScheduler = "fifo";
+    private int ivaratorSchedulerWeight = 1;
+    private int maxIvaratorConcurrentFills = 0;
+    private String ivaratorResultCacheBaseURI = null;
+    private long ivaratorResultCacheMaxSize = 100L * 1024 * 1024 * 1024;
     private int maxIvaratorSources = 33;
     private int maxEvaluationPipelines = 25;
+    // the number of evaluation pipelines is adjusted between this and maxEvaluationPipelines based on the cost of evaluation. 0 or less (the default) fixes
+    // the number of evaluation pipelines at maxEvaluationPipelines
+    private int minEvaluationPipelines = -1;
     private int maxPipelineCachedResults = 25;
     private boolean expandAllTerms = false;
     // Adding the ability to pre-cache the query model for performance sake. If this is null
@@ -285,11 +327,24 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean accrueStats = false;
     private Set<String> groupFields = new HashSet<>(0);
     private Set<String> uniqueFields = new HashSet<>(0);
+    // The number of unique signatures held in memory before they are spilled to uniqueCacheDir
+    private int uniqueCacheBufferSize = FileBackedDigestSet.DEFAULT_BUFFER_SIZE;
+    // The local directory for the spilled unique signatures, java.io.tmpdir if not set
+    private String uniqueCacheDir = null;
+    // Should the tservers remove the duplicates within their scan sessions before the results are returned
+    private boolean uniqueOnTservers = true;
+    // The number of results to return, keeping those with the greatest topKFields values (or event timestamps), 0 to return every result
+    private int topK = 0;
+    private Set<String> topKFields = new HashSet<>(0);
     private boolean cacheModel = false;
     /**
      * should the sizes of documents be tracked for this query
      */
     private boolean trackSizes = true;
+    /**
+     * should event documents be held in the columnar, lazily materialized representation while being evaluated
+     */
+    private boolean columnarDocuments = false;
     
     private List<String> contentFieldNames = Collections.emptyList();
     
@@ -321,6 +376,7 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setAllTermsIndexOnly(other.isAllTermsIndexOnly());
         this.setAccumuloPassword(other.getAccumuloPassword());
         this.setMaxIndexScanTimeMillis(other.getMaxIndexScanTimeMillis());
+        this.setMaxRangeStreamTimeMillis(other.getMaxRangeStreamTimeMillis());
         this.setCollapseUids(other.getCollapseUids());
         this.setSequentialScheduler(other.getSequentialScheduler());
         this.setCollectTimingDetails(other.getCollectTimingDetails());
@@ -390,11 +446,16 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setLimitFieldsField(other.getLimitFieldsField());
         this.setHitList(other.isHitList());
         this.setTypeMetadataInHdfs(other.isTypeMetadataInHdfs());
+        this.setTypeMetadataSnapshotDir(other.getTypeMetadataSnapshotDir());
         this.setDateIndexTimeTravel(other.isDateIndexTimeTravel());
         this.setBeginDateCap(other.getBeginDateCap());
         this.setFailOutsideValidDateRange(other.isFailOutsideValidDateRange());
         this.setRawTypes(other.isRawTypes());
         this.setMinSelectivity(other.getMinSelectivity());
+        this.setCostBasedPlanning(other.isCostBasedPlanning());
+        this.setCostBasedPlanningRatio(other.getCostBasedPlanningRatio());
+        this.setTimeSlicedPlanning(other.isTimeSlicedPlanning());
+        this.setTimeSliceDays(other.getTimeSliceDays());
         this.setIncludeDataTypeAsField(other.getIncludeDataTypeAsField());
         this.setIncludeRecordId(other.getIncludeRecordId());
         this.setIncludeHierarchyFields(other.getIncludeHierarchyFields());
@@ -405,6 +466,9 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setReducedResponse(other.isReducedResponse());
         this.setAllowShortcutEvaluation(other.getAllowShortcutEvaluation());
         this.setSpeculativeScanning(other.getSpeculativeScanning());
+        this.setHedgedScans(other.isHedgedScans());
+        this.setHedgedScanPercentile(other.getHedgedScanPercentile());
+        this.setHedgedScanMinDelay(other.getHedgedScanMinDelay());
         this.setDisableEvaluation(other.isDisableEvaluation());
         this.setContainsIndexOnlyTerms(other.isContainsIndexOnlyTerms());
         this.setContainsCompositeTerms(other.isContainsCompositeTerms());
@@ -430,8 +494,17 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setIvaratorCacheScanTimeout(other.getIvaratorCacheScanTimeout());
         this.setMaxFieldIndexRangeSplit(other.getMaxFieldIndexRangeSplit());
         this.setIvaratorMaxOpenFiles(other.getIvaratorMaxOpenFiles());
+        this.setIvaratorSortedSetBackend(other.getIvaratorSortedSetBackend());
+        this.setIvaratorLocalCacheDir(other.getIvaratorLocalCacheDir());
+        this.setIvaratorOffHeapBufferSize(other.getIvaratorOffHeapBufferSize());
+        this.setIvaratorScheduler(other.getIvaratorScheduler());
+        this.setIvaratorSchedulerWeight(other.getIvaratorSchedulerWeight());
+        this.setMaxIvaratorConcurrentFills(other.getMaxIvaratorConcurrentFills());
+        this.setIvaratorResultCacheBaseURI(other.getIvaratorResultCacheBaseURI());
+        this.setIvaratorResultCacheMaxSize(other.getIvaratorResultCacheMaxSize());
         this.setMaxIvaratorSources(other.getMaxIvaratorSources());
         this.setMaxEvaluationPipelines(other.getMaxEvaluationPipelines());
+        this.setMinEvaluationPipelines(other.getMinEvaluationPipelines());
         this.setMaxPipelineCachedResults(other.getMaxPipelineCachedResults());
         this.setExpandAllTerms(other.isExpandAllTerms());
         this.setQueryModel(null == other.getQueryModel() ? null : new QueryModel(other.getQueryModel()));
@@ -446,8 +519,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setAccrueStats(other.getAccrueStats());
         this.setGroupFields(null == other.getGroupFields() ? null : Sets.newHashSet(other.getGroupFields()));
         this.setUniqueFields(null == other.getUniqueFields() ? null : Sets.newHashSet(other.getUniqueFields()));
+        this.setUniqueCacheBufferSize(other.getUniqueCacheBufferSize());
+        this.setUniqueCacheDir(other.getUniqueCacheDir());
+        this.setUniqueOnTservers(other.isUniqueOnTservers());
+        this.setTopK(other.getTopK());
+        this.setTopKFields(null == other.getTopKFields() ? null : Sets.newHashSet(other.getTopKFields()));
         this.setCacheModel(other.getCacheModel());
         this.setTrackSizes(other.isTrackSizes());
+        this.setColumnarDocuments(other.isColumnarDocuments());
         this.setContentFieldNames(null == other.getContentFieldNames() ? null : Lists.newArrayList(other.getContentFieldNames()));
     }
     
@@ -1127,6 +1206,70 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.ivaratorMaxOpenFiles = ivaratorMaxOpenFiles;
     }
     
+    public String getIvaratorSortedSetBackend() {
+        return ivaratorSortedSetBackend;
+    }
+    
+    public void setIvaratorSortedSetBackend(String ivaratorSortedSetBackend) {
+        this.ivaratorSortedSetBackend = ivaratorSortedSetBackend;
+    }
+    
+    public String getIvaratorLocalCacheDir() {
+        return ivaratorLocalCacheDir;
+    }
+    
+    public void setIvaratorLocalCacheDir(String ivaratorLocalCacheDir) {
+        this.ivaratorLocalCacheDir = ivaratorLocalCacheDir;
+    }
+    
+    public int getIvaratorOffHeapBufferSize() {
+        return ivaratorOffHeapBufferSize;
+    }
+    
+    public void setIvaratorOffHeapBufferSize(int ivaratorOffHeapBufferSize) {
+        this.ivaratorOffHeapBufferSize = ivaratorOffHeapBufferSize;
+    }
+    
+    public String getIvaratorScheduler() {
+        return ivaratorScheduler;
+    }
+    
+    public void setIvaratorScheduler(String ivaratorScheduler) {
+        this.ivaratorScheduler = ivaratorScheduler;
+    }
+    
+    public int getIvaratorSchedulerWeight() {
+        return ivaratorSchedulerWeight;
+    }
+    
+    public void setIvaratorSchedulerWeight(int ivaratorSchedulerWeight) {
+        this.ivaratorSchedulerWeight = ivaratorSchedulerWeight;
+    }
+    
+    public int getMaxIvaratorConcurrentFills() {
+        return maxIvaratorConcurrentFills;
+    }
+    
+    public void setMaxIvaratorConcurrentFills(int maxIvaratorConcurrentFills) {
+        this.maxIvaratorConcurrentFills = maxIvaratorConcurrentFills;
+    }
+    
+    public String getIvaratorResultCacheBaseURI() {
+        return ivaratorResultCacheBaseURI;
+    }
+    
+    public void setIvaratorResultCacheBaseURI(String ivaratorResultCacheBaseURI) {
+        this.ivaratorResultCacheBaseURI = ivaratorResultCacheBaseURI;
+    }
+    
+    public long getIvaratorResultCacheMaxSize() {
+        return ivaratorResultCacheMaxSize;
+    }
+    
+    public void setIvaratorResultCacheMaxSize(long ivaratorResultCacheMaxSize) {
+        this.ivaratorResultCacheMaxSize = ivaratorResultCacheMaxSize;
+    }
+    
     public int getMaxIvaratorSources() {
         return maxIvaratorSources;
     }
@@ -1143,6 +1286,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.maxEvaluationPipelines = maxEvaluationPipelines;
     }
     
+    public int getMinEvaluationPipelines() {
+        return minEvaluationPipelines;
+    }
+    
+    public void setMinEvaluationPipelines(int minEvaluationPipelines) {
+        this.minEvaluationPipelines = minEvaluationPipelines;
+    }
+    
     public int getMaxPipelineCachedResults() {
         return maxPipelineCachedResults;
     }
@@ -1378,6 +1529,50 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         return StringUtils.join(this.getUniqueFields(), Constants.PARAM_VALUE_SEP);
     }
     
+    public int getTopK() {
+        return topK;
+    }
+    
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+    
+    public Set<String> getTopKFields() {
+        return topKFields;
+    }
+    
+    public void setTopKFields(Set<String> topKFields) {
+        this.topKFields = topKFields;
+    }
+    
+    public String getTopKFieldsAsString() {
+        return StringUtils.join(this.getTopKFields(), Constants.PARAM_VALUE_SEP);
+    }
+    
+    public int getUniqueCacheBufferSize() {
+        return uniqueCacheBufferSize;
+    }
+    
+    public void setUniqueCacheBufferSize(int uniqueCacheBufferSize) {
+        this.uniqueCacheBufferSize = uniqueCacheBufferSize;
+    }
+    
+    public String getUniqueCacheDir() {
+        return uniqueCacheDir;
+    }
+    
+    public void setUniqueCacheDir(String uniqueCacheDir) {
+        this.uniqueCacheDir = uniqueCacheDir;
+    }
+    
+    public boolean isUniqueOnTservers() {
+        return uniqueOnTservers;
+    }
+    
+    public void setUniqueOnTservers(boolean uniqueOnTservers) {
+        this.uniqueOnTservers = uniqueOnTservers;
+    }
+    
     public boolean isHitList() {
         return this.hitList;
     }
@@ -1394,6 +1589,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.typeMetadataInHdfs = typeMetadataInHdfs;
     }
     
+    public String getTypeMetadataSnapshotDir() {
+        return typeMetadataSnapshotDir;
+    }
+    
+    public void setTypeMetadataSnapshotDir(String typeMetadataSnapshotDir) {
+        this.typeMetadataSnapshotDir = typeMetadataSnapshotDir;
+    }
+    
     public boolean isRawTypes() {
         return this.rawTypes;
     }
@@ -1410,6 +1613,38 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.minSelectivity = minSelectivity;
     }
     
+    public boolean isCostBasedPlanning() {
+        return costBasedPlanning;
+    }
+    
+    public void setCostBasedPlanning(boolean costBasedPlanning) {
+        this.costBasedPlanning = costBasedPlanning;
+    }
+    
+    public double getCostBasedPlanningRatio() {
+        return costBasedPlanningRatio;
+    }
+    
+    public void setCostBasedPlanningRatio(double costBasedPlanningRatio) {
+        this.costBasedPlanningRatio = costBasedPlanningRatio;
+    }
+    
+    public boolean isTimeSlicedPlanning() {
+        return timeSlicedPlanning;
+    }
+    
+    public void setTimeSlicedPlanning(boolean timeSlicedPlanning) {
+        this.timeSlicedPlanning = timeSlicedPlanning;
+    }
+    
+    public int getTimeSliceDays() {
+        return timeSliceDays;
+    }
+    
+    public void setTimeSliceDays(int timeSliceDays) {
+        this.timeSliceDays = timeSliceDays;
+    }
+    
     /**
      * Checks for non-null, sane values for the configured values
      *
@@ -1593,6 +1828,21 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         return timers;
     }
     
+    public Map<String,Double> getPlanEstimates() {
+        return planEstimates;
+    }
+    
+    public void addPlanEstimate(String name, double estimate) {
+        planEstimates.put(name, estimate);
+    }
+    
+    @Override
+    public void writeQueryMetrics(BaseQueryMetric metric) {
+        for (Entry<String,Double> estimate : planEstimates.entrySet()) {
+            metric.addPrediction(new Prediction("Plan " + estimate.getKey(), estimate.getValue()));
+        }
+    }
+    
     public Query getQuery() {
         return query;
     }
@@ -1678,6 +1928,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.maxIndexScanTimeMillis = maxTime;
     }
     
+    public long getMaxRangeStreamTimeMillis() {
+        return maxRangeStreamTimeMillis;
+    }
+    
+    public void setMaxRangeStreamTimeMillis(long maxTime) {
+        this.maxRangeStreamTimeMillis = maxTime;
+    }
+    
     public boolean getCollapseUids() {
         return collapseUids;
     }
@@ -1836,6 +2094,30 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.speculativeScanning = speculativeScanning;
     }
     
+    public boolean isHedgedScans() {
+        return hedgedScans;
+    }
+    
+    public void setHedgedScans(boolean hedgedScans) {
+        this.hedgedScans = hedgedScans;
+    }
+    
+    public double getHedgedScanPercentile() {
+        return hedgedScanPercentile;
+    }
+    
+    public void setHedgedScanPercentile(double hedgedScanPercentile) {
+        this.hedgedScanPercentile = hedgedScanPercentile;
+    }
+    
+    public long getHedgedScanMinDelay() {
+        return hedgedScanMinDelay;
+    }
+    
+    public void setHedgedScanMinDelay(long hedgedScanMinDelay) {
+        this.hedgedScanMinDelay = hedgedScanMinDelay;
+    }
+    
     public boolean getSerializeQueryIterator() {
         return serializeQueryIterator;
     }
@@ -1868,6 +2150,14 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.trackSizes = trackSizes;
     }
     
+    public boolean isColumnarDocuments() {
+        return columnarDocuments;
+    }
+    
+    public void setColumnarDocuments(boolean columnarDocuments) {
+        this.columnarDocuments = columnarDocuments;
+    }
+    
     public List<String> getContentFieldNames() {
         return contentFieldNames;
     }
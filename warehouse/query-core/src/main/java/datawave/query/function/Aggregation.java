@@ -4,6 +4,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
+import datawave.query.attributes.ColumnarDocument;
 import datawave.query.attributes.Document;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.iterator.aggregation.DocumentData;
@@ -11,8 +12,10 @@ import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.predicate.TimeFilter;
 import datawave.query.util.TypeMetadata;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
 import org.apache.log4j.Logger;
 
+import java.util.Iterator;
 import java.util.Map.Entry;
 
 public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<Key,Document>> {
@@ -33,6 +36,11 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
      */
     private boolean trackSizes = true;
     
+    /**
+     * should documents be built in the columnar, lazily materialized representation
+     */
+    private boolean columnarDocuments = false;
+    
     // Need to provide the mapping
     @SuppressWarnings("unused")
     private Aggregation() {}
@@ -44,6 +52,12 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
     
     public Aggregation(TimeFilter timeFilter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata, boolean includeGroupingContext,
                     boolean includeRecordId, boolean disableIndexOnlyDocuments, EventDataQueryFilter attrFilter, boolean trackSizes) {
+        this(timeFilter, typeMetadata, compositeMetadata, includeGroupingContext, includeRecordId, disableIndexOnlyDocuments, attrFilter, trackSizes, false);
+    }
+    
+    public Aggregation(TimeFilter timeFilter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata, boolean includeGroupingContext,
+                    boolean includeRecordId, boolean disableIndexOnlyDocuments, EventDataQueryFilter attrFilter, boolean trackSizes,
+                    boolean columnarDocuments) {
         Preconditions.checkNotNull(timeFilter);
         
         this.timeFilter = timeFilter;
@@ -54,6 +68,7 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
         this.attrFilter = attrFilter;
         this.disableIndexOnlyDocuments = disableIndexOnlyDocuments;
         this.trackSizes = trackSizes;
+        this.columnarDocuments = columnarDocuments;
     }
     
     @Override
@@ -66,8 +81,15 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
         }
         
         // Only load attributes for this document that fall within the expected date range
-        Document d = new Document(docData.getKey(), docData.getDocKeys(), Iterators.filter(docData.getData().iterator(), timeFilter.getKeyValueTimeFilter()),
-                        this.typeMetadata, this.compositeMetadata, this.includeGroupingContext, this.includeRecordId, this.attrFilter, true, trackSizes);
+        Iterator<Entry<Key,Value>> data = Iterators.filter(docData.getData().iterator(), timeFilter.getKeyValueTimeFilter());
+        Document d;
+        if (columnarDocuments) {
+            d = new ColumnarDocument(docData.getKey(), docData.getDocKeys(), data, this.typeMetadata, this.compositeMetadata, this.includeGroupingContext,
+                            this.includeRecordId, this.attrFilter, true, trackSizes);
+        } else {
+            d = new Document(docData.getKey(), docData.getDocKeys(), data, this.typeMetadata, this.compositeMetadata, this.includeGroupingContext,
+                            this.includeRecordId, this.attrFilter, true, trackSizes);
+        }
         
         if (log.isTraceEnabled()) {
             log.trace("disable index only docs? " + disableIndexOnlyDocuments + " , size is " + d.size());
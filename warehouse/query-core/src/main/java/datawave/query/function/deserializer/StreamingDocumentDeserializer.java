@@ -0,0 +1,59 @@
+package datawave.query.function.deserializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Map.Entry;
+
+import datawave.query.DocumentSerialization;
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.SerializedDocument;
+import datawave.query.function.KryoCVAwareSerializableSerializer;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Transform the bytes written by the {@link datawave.query.function.serializer.StreamingDocumentSerializer} into a {@link SerializedDocument}. When the value
+ * is not compressed the document reads its fields directly from the bytes of the value without copying them, and a field is only read when it is requested.
+ */
+public class StreamingDocumentDeserializer extends DocumentDeserializer implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    final transient Kryo kryo = new Kryo();
+    
+    public StreamingDocumentDeserializer() {
+        kryo.addDefaultSerializer(Attribute.class, new KryoCVAwareSerializableSerializer(true));
+    }
+    
+    @Override
+    public Entry<Key,Document> apply(Entry<Key,Value> from) {
+        byte[] data = from.getValue().get();
+        
+        if (DocumentSerialization.NONE == DocumentSerialization.getCompression(data)) {
+            int offset = DocumentSerialization.HEADER_LENGTH;
+            return Maps.<Key,Document> immutableEntry(from.getKey(), new SerializedDocument(data, offset, data.length - offset, kryo));
+        }
+        
+        return super.apply(from);
+    }
+    
+    @Override
+    public Document deserialize(InputStream data) {
+        byte[] bytes;
+        try {
+            bytes = ByteStreams.toByteArray(data);
+            data.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the serialized Document", e);
+        }
+        
+        return new SerializedDocument(bytes, 0, bytes.length, kryo);
+    }
+
+}
@@ -0,0 +1,49 @@
+package datawave.query.function.serializer;
+
+import java.io.ByteArrayOutputStream;
+
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.SerializedDocument;
+import datawave.query.function.KryoCVAwareSerializableSerializer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Transform the Document into the field-indexed form read by {@link SerializedDocument}, which allows the web tier to read the fields of a document one at a
+ * time, straight from the serialized bytes.
+ *
+ * @see datawave.query.function.deserializer.StreamingDocumentDeserializer
+ */
+public class StreamingDocumentSerializer extends DocumentSerializer {
+    final Kryo kryo = new Kryo();
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+    
+    public StreamingDocumentSerializer() {
+        this(false, false);
+    }
+    
+    public StreamingDocumentSerializer(boolean reducedResponse) {
+        this(reducedResponse, false);
+    }
+    
+    public StreamingDocumentSerializer(boolean reducedResponse, boolean compress) {
+        super(reducedResponse, compress);
+        kryo.addDefaultSerializer(Attribute.class, new KryoCVAwareSerializableSerializer(reducedResponse));
+    }
+    
+    @Override
+    public byte[] serialize(Document doc) {
+        baos.reset();
+        
+        Output output = new Output(baos);
+        
+        SerializedDocument.write(doc, kryo, output, reducedResponse);
+        
+        output.close();
+        
+        return baos.toByteArray();
+    }
+
+}
@@ -6,11 +6,16 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import datawave.query.exceptions.DatawaveFatalQueryException;
 import datawave.query.index.lookup.IndexStream.StreamContext;
 
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
 import com.google.common.collect.Lists;
 
 /**
@@ -49,10 +54,13 @@ public class ConcurrentScannerInitializer implements Callable<IndexStream> {
     
     public static Collection<IndexStream> initializeScannerStreams(List<ConcurrentScannerInitializer> todo, ExecutorService executor) {
         
-        List<Future<IndexStream>> futures;
+        List<Future<IndexStream>> futures = Lists.newArrayListWithCapacity(todo.size());
         List<IndexStream> streams = Lists.newArrayList();
         try {
-            futures = executor.invokeAll(todo);
+            // submit the tasks individually rather than using invokeAll, which would wait on every task without regard to the executor being shut down
+            for (ConcurrentScannerInitializer initializer : todo) {
+                futures.add(executor.submit(initializer));
+            }
             
             for (Future<IndexStream> future : futures) {
                 Exception sawException = null;
@@ -67,8 +75,10 @@ public class ConcurrentScannerInitializer implements Callable<IndexStream> {
                             
                         }
                     }
-                    if (executor.isShutdown())
+                    if (executor.isShutdown()) {
                         future.cancel(true);
+                        checkTimeout(executor);
+                    }
                     if (newStream != null) {
                         streams.add(newStream);
                     }
@@ -83,8 +93,9 @@ public class ConcurrentScannerInitializer implements Callable<IndexStream> {
                 }
             }
             
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        } catch (RejectedExecutionException e) {
+            checkTimeout(executor);
+            throw e;
         } finally {
             todo.clear();
         }
@@ -93,4 +104,15 @@ public class ConcurrentScannerInitializer implements Callable<IndexStream> {
         
     }
     
+    /**
+     * Fail the query if the executor was shut down because the index lookups ran past their deadline. Returning the streams which did complete would change
+     * the results of the query.
+     */
+    private static void checkTimeout(ExecutorService executor) {
+        if (executor instanceof IndexLookupExecutor && ((IndexLookupExecutor) executor).isTimedOut()) {
+            QueryException qe = new QueryException(DatawaveErrorCode.QUERY_TIMEOUT, "Global index lookups exceeded the maximum index scan time");
+            throw new DatawaveFatalQueryException(qe);
+        }
+    }
+    
 }
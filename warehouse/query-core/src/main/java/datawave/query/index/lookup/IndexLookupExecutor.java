@@ -0,0 +1,219 @@
+package datawave.query.index.lookup;
+
+import datawave.core.iterators.FairTaskScheduler;
+import org.apache.log4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An executor for the global index lookups of a single query, backed by thread pools shared by every query in the JVM. There are two shared pools: one for the
+ * tasks which initialize the index streams, and one for the shard index scanners. The initializers wait on the scanners, so the two are kept apart to ensure
+ * that initializers can never hold every thread needed by the scanners.
+ * <p>
+ * Each executor schedules its tasks as a single group on a {@link FairTaskScheduler}, so the queries share the pools fairly and each query is limited to a
+ * maximum number of concurrent lookups. Views created with {@link #withPriority(double)} share the group and are used to run the lookups for the most selective
+ * terms first. Shutting down the executor with {@link #shutdownNow()} cancels the queued lookups and interrupts the running ones. An executor may be given a
+ * deadline, after which it reports itself as shut down and cancels its lookups.
+ */
+public class IndexLookupExecutor extends AbstractExecutorService {
+    
+    private static final Logger log = Logger.getLogger(IndexLookupExecutor.class);
+    
+    public static final String LOOKUP_THREADS_PROPERTY = "datawave.query.index.lookup.threads";
+    public static final String SCANNER_THREADS_PROPERTY = "datawave.query.index.scanner.threads";
+    public static final int DEFAULT_THREADS = 100;
+    
+    private static final AtomicLong groupIds = new AtomicLong(0);
+    
+    private final FairTaskScheduler scheduler;
+    private final int maxConcurrent;
+    private final double priority;
+    private final Group group;
+    
+    /**
+     * The state shared by an executor and its priority views
+     */
+    private static class Group {
+        private final String name;
+        private final long deadline;
+        private volatile boolean shutdown = false;
+        private volatile boolean timedOut = false;
+        
+        // the futures handed out by this executor which have not completed, cancelled on shutdown so that nobody waits on them forever
+        private final Set<Future<?>> outstanding = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        
+        private Group(String name, long deadline) {
+            this.name = name;
+            this.deadline = deadline;
+        }
+    }
+    
+    /**
+     * Lazily creates the shared schedulers
+     */
+    private static class SharedSchedulers {
+        private static final FairTaskScheduler LOOKUPS = createScheduler(LOOKUP_THREADS_PROPERTY, "Datawave Index Lookup");
+        private static final FairTaskScheduler SCANNERS = createScheduler(SCANNER_THREADS_PROPERTY, "Datawave Index Scanner");
+    }
+    
+    private static FairTaskScheduler createScheduler(String property, final String name) {
+        int threads = Integer.getInteger(property, DEFAULT_THREADS);
+        if (threads < 1) {
+            log.warn("Invalid value for " + property + ": " + threads + ", using " + DEFAULT_THREADS);
+            threads = DEFAULT_THREADS;
+        }
+        
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new ThreadFactory() {
+            private final ThreadFactory dtf = Executors.defaultThreadFactory();
+            private final AtomicLong threadNum = new AtomicLong(1);
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = dtf.newThread(r);
+                thread.setName(name + " -" + threadNum.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        
+        FairTaskScheduler scheduler = new FairTaskScheduler(pool);
+        scheduler.registerMBean(name);
+        return scheduler;
+    }
+    
+    /**
+     * Create an executor for the tasks which initialize the index streams of a query
+     *
+     * @param queryId
+     *            the id of the query, may be null
+     * @param maxConcurrent
+     *            the maximum number of tasks running at once for this executor
+     * @param deadline
+     *            the time in milliseconds after which the executor shuts itself down
+     * @return the executor
+     */
+    public static IndexLookupExecutor forLookups(Object queryId, int maxConcurrent, long deadline) {
+        return new IndexLookupExecutor(SharedSchedulers.LOOKUPS, newGroup(queryId, deadline), maxConcurrent, 0);
+    }
+    
+    /**
+     * Create an executor for the shard index scanners of a query
+     *
+     * @param queryId
+     *            the id of the query, may be null
+     * @param maxConcurrent
+     *            the maximum number of scans running at once for this executor
+     * @return the executor
+     */
+    public static IndexLookupExecutor forScanners(Object queryId, int maxConcurrent) {
+        return new IndexLookupExecutor(SharedSchedulers.SCANNERS, newGroup(queryId, Long.MAX_VALUE), maxConcurrent, 0);
+    }
+    
+    private static Group newGroup(Object queryId, long deadline) {
+        return new Group((queryId == null ? "(unknown)" : queryId.toString()) + '-' + groupIds.incrementAndGet(), deadline);
+    }
+    
+    private IndexLookupExecutor(FairTaskScheduler scheduler, Group group, int maxConcurrent, double priority) {
+        this.scheduler = scheduler;
+        this.group = group;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.priority = priority;
+    }
+    
+    /**
+     * Create a view of this executor which submits its tasks with the given priority. Tasks with a higher priority are run before the other tasks of this
+     * executor. The view shares the concurrency limit, the deadline and the shutdown state of this executor.
+     *
+     * @param priority
+     *            the priority
+     * @return the view
+     */
+    public IndexLookupExecutor withPriority(double priority) {
+        return new IndexLookupExecutor(scheduler, group, maxConcurrent, priority);
+    }
+    
+    @Override
+    public void execute(final Runnable command) {
+        final Future<?> future = (command instanceof Future ? (Future<?>) command : null);
+        if (future != null) {
+            group.outstanding.add(future);
+        }
+        if (isShutdown()) {
+            if (future != null) {
+                group.outstanding.remove(future);
+            }
+            throw new RejectedExecutionException("Index lookups for " + group.name + " have been " + (group.timedOut ? "timed out" : "shut down"));
+        }
+        
+        scheduler.submit(group.name, 1, maxConcurrent, priority, () -> {
+            try {
+                command.run();
+            } finally {
+                if (future != null) {
+                    group.outstanding.remove(future);
+                }
+            }
+        });
+    }
+    
+    /**
+     * @return true if this executor was shut down because its deadline passed
+     */
+    public boolean isTimedOut() {
+        isShutdown();
+        return group.timedOut;
+    }
+    
+    @Override
+    public void shutdown() {
+        group.shutdown = true;
+    }
+    
+    @Override
+    public List<Runnable> shutdownNow() {
+        group.shutdown = true;
+        int cancelled = scheduler.cancel(group.name);
+        for (Future<?> future : group.outstanding) {
+            future.cancel(true);
+        }
+        group.outstanding.clear();
+        if (log.isDebugEnabled() && cancelled > 0) {
+            log.debug("Cancelled " + cancelled + " index lookups for " + group.name);
+        }
+        // the cancelled tasks are not returned as they belong to the shared scheduler
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public boolean isShutdown() {
+        if (!group.shutdown && System.currentTimeMillis() > group.deadline) {
+            group.timedOut = true;
+            log.warn("Index lookups for " + group.name + " exceeded their deadline, cancelling");
+            shutdownNow();
+        }
+        return group.shutdown;
+    }
+    
+    @Override
+    public boolean isTerminated() {
+        return isShutdown() && scheduler.isIdle(group.name);
+    }
+    
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return scheduler.awaitIdle(group.name, timeout, unit) && isShutdown();
+    }
+}
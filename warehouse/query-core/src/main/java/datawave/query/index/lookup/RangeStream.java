@@ -13,6 +13,7 @@ import datawave.query.UnindexType;
 import datawave.query.config.ShardQueryConfiguration;
 import datawave.query.exceptions.DatawaveFatalQueryException;
 import datawave.query.index.lookup.IndexStream.StreamContext;
+import datawave.query.index.stats.IndexStatsClient;
 import datawave.query.iterator.QueryOptions;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.jexl.JexlASTHelper.IdentifierOpLiteral;
@@ -81,17 +82,13 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.Iterators.concat;
 import static com.google.common.collect.Iterators.filter;
@@ -118,8 +115,6 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
     protected Class<? extends SortedKeyValueIterator<Key,Value>> createCondensedUidIteratorClass = CondensedUidIterator.class;
     protected Multimap<String,Type<?>> fieldDataTypes;
     
-    protected BlockingQueue<Runnable> runnables;
-    
     protected JexlNode tree = null;
     
     protected UidIntersector uidIntersector = new IndexInfo();
@@ -133,7 +128,14 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
     
     protected ExecutorService executor;
     
-    protected ExecutorService streamExecutor;
+    protected IndexLookupExecutor streamExecutor;
+    
+    /**
+     * The selectivity of each field looked up, used to prioritize the scans of the most selective terms
+     */
+    protected Map<String,Double> fieldSelectivity = new HashMap<>();
+    
+    protected IndexStatsClient indexStats = null;
     
     protected boolean collapseUids = false;
     
@@ -148,10 +150,13 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         this.scanners = scanners;
         this.metadataHelper = metadataHelper;
         int maxLookup = (int) Math.max(Math.ceil(config.getNumIndexLookupThreads()), 1);
-        executor = Executors.newFixedThreadPool(maxLookup);
-        runnables = new LinkedBlockingDeque<>();
-        int executeLookupMin = (int) Math.max(maxLookup / 2, 1);
-        streamExecutor = new ThreadPoolExecutor(executeLookupMin, maxLookup, 100, TimeUnit.MILLISECONDS, runnables);
+        // the lookups run on pools shared by all queries, limited to maxLookup concurrent tasks for this query
+        Object queryId = (null == config.getQuery() ? null : config.getQuery().getId());
+        long now = System.currentTimeMillis();
+        long maxLookupTime = config.getMaxRangeStreamTimeMillis();
+        long deadline = (maxLookupTime >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxLookupTime);
+        executor = IndexLookupExecutor.forLookups(queryId, maxLookup, deadline);
+        streamExecutor = IndexLookupExecutor.forScanners(queryId, maxLookup);
         fieldDataTypes = config.getQueryFieldsDatatypes();
         collapseUids = config.getCollapseUids();
         try {
@@ -198,7 +203,13 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         
         IndexStream ranges = null;
         
-        ranges = (IndexStream) node.jjtAccept(this, null);
+        try {
+            ranges = (IndexStream) node.jjtAccept(this, null);
+        } catch (RuntimeException e) {
+            // cancel any outstanding lookups
+            close();
+            throw e;
+        }
         
         // Guards against the case of a very oddly formed JEXL query, e.g.
         // ("foo")
@@ -265,6 +276,10 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                 this.itr = queryStream == null ? Collections.<QueryPlan> emptySet().iterator() : filter(
                                 concat(transform(queryStream, new TupleToRange(queryStream.currentNode(), config))), new EmptyPlanPruner());
             }
+        } catch (RuntimeException e) {
+            // cancel any outstanding lookups
+            close();
+            throw e;
         } finally {
             // shut down the executor as all threads have completed
             shutdownThreads();
@@ -490,7 +505,7 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
                 
                 scanSession.setMaxResults(config.getMaxIndexBatchSize());
                 
-                scanSession.setExecutor(streamExecutor);
+                scanSession.setExecutor(streamExecutor.withPriority(getSelectivity(fieldName)));
                 
                 if (log.isTraceEnabled()) {
                     log.trace("Provided new object " + scanSession.hashCode());
@@ -983,6 +998,32 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         return false;
     }
     
+    /**
+     * Get the selectivity of a field, used as the priority of its index scans. Fields without statistics are given no priority.
+     * 
+     * @param fieldName
+     *            the field
+     * @return the selectivity of the field, 0 if unknown
+     */
+    protected double getSelectivity(String fieldName) {
+        if (null == config.getIndexStatsTableName()) {
+            return 0;
+        }
+        
+        Double selectivity = fieldSelectivity.get(fieldName);
+        if (null == selectivity) {
+            if (null == indexStats) {
+                indexStats = new IndexStatsClient(config.getConnector(), config.getIndexStatsTableName());
+            }
+            selectivity = JexlASTHelper.getNodeSelectivity(Collections.singleton(fieldName), config, indexStats);
+            if (selectivity.equals(IndexStatsClient.DEFAULT_VALUE)) {
+                selectivity = 0d;
+            }
+            fieldSelectivity.put(fieldName, selectivity);
+        }
+        return selectivity;
+    }
+    
     @Override
     public void close() {
         streamExecutor.shutdownNow();
@@ -12,6 +12,7 @@ import java.util.Set;
 
 import datawave.query.function.PrefixEquality;
 import datawave.query.function.serializer.KryoDocumentSerializer;
+import datawave.query.function.serializer.StreamingDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.iterator.errors.UnindexedException;
 import datawave.query.iterator.filter.FieldIndexKeyDataTypeFilter;
@@ -345,6 +346,9 @@ public class FieldIndexOnlyQueryIterator extends QueryIterator {
         if (this.getReturnType() == ReturnType.kryo) {
             // Serialize the Document using Kryo
             this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new KryoDocumentSerializer(isReducedResponse(), isCompressResults()));
+        } else if (this.getReturnType() == ReturnType.streaming) {
+            // Serialize the Document so that its fields can be read one at a time
+            this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new StreamingDocumentSerializer(isReducedResponse(), isCompressResults()));
         } else if (this.getReturnType() == ReturnType.writable) {
             // Use the Writable interface to serialize the Document
             this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new WritableDocumentSerializer(isReducedResponse()));
@@ -34,6 +34,7 @@ import datawave.query.function.MaskedValueFilterInterface;
 import datawave.query.function.RemoveGroupingContext;
 import datawave.query.function.deserializer.KryoDocumentDeserializer;
 import datawave.query.function.serializer.KryoDocumentSerializer;
+import datawave.query.function.serializer.StreamingDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
 import datawave.query.iterator.aggregation.DocumentData;
@@ -62,6 +63,7 @@ import datawave.query.postprocessing.tf.TFFactory;
 import datawave.query.predicate.EmptyDocumentFilter;
 import datawave.query.statsd.QueryStatsDClient;
 import datawave.query.transformer.GroupingTransform;
+import datawave.query.transformer.TopKTransform;
 import datawave.query.transformer.UniqueTransform;
 import datawave.query.util.EmptyContext;
 import datawave.query.util.EntryToTuple;
@@ -361,11 +363,14 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 this.seekKeySource = buildDocumentIterator(documentRange, range, columnFamilies, inclusive);
             }
             
+            // a top-k scan must see every document in its range before it returns any, and the documents kept so far would be lost on a yield
+            YieldCallback<Key> pipelineYield = (getTopK() > 0 ? null : yield);
+            
             // Create the pipeline iterator for document aggregation and
             // evaluation within a thread pool
-            PipelineIterator pipelineIter = PipelineFactory.createIterator(this.seekKeySource, getMaxEvaluationPipelines(), getMaxPipelineCachedResults(),
-                            getSerialPipelineRequest(), querySpanCollector, trackingSpan, this, sourceForDeepCopies.deepCopy(myEnvironment), myEnvironment,
-                            yield, yieldThresholdMs);
+            PipelineIterator pipelineIter = PipelineFactory.createIterator(this.seekKeySource, getMinEvaluationPipelines(), getMaxEvaluationPipelines(),
+                            getMaxPipelineCachedResults(), getSerialPipelineRequest(), querySpanCollector, trackingSpan, this,
+                            sourceForDeepCopies.deepCopy(myEnvironment), myEnvironment, pipelineYield, yieldThresholdMs);
             
             pipelineIter.setCollectTimingDetails(collectTimingDetails);
             // TODO pipelineIter.setStatsdHostAndPort(statsdHostAndPort);
@@ -382,12 +387,17 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 });
             }
             
-            // now apply the unique transform if requested
+            // now remove the duplicates within this scan session if requested, the web server removes the remainder
             UniqueTransform uniquify = getUniqueTransform();
             if (uniquify != null) {
                 pipelineDocuments = Iterators.filter(pipelineDocuments, uniquify.getUniquePredicate());
             }
             
+            // keep the top k documents of this scan session, the web server keeps the top k of those from every scan session
+            if (getTopK() > 0) {
+                pipelineDocuments = new TopKTransform(null, getTopKFields(), getTopK()).getTopKIterator(pipelineDocuments);
+            }
+            
             // apply the grouping transform if requested and if the batch size is greater than zero
             // if the batch size is 0, then grouping is computed only on the web server
             GroupingTransform groupify = getGroupingTransform();
@@ -407,6 +417,9 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             if (this.getReturnType() == ReturnType.kryo) {
                 // Serialize the Document using Kryo
                 this.serializedDocuments = Iterators.transform(pipelineDocuments, new KryoDocumentSerializer(isReducedResponse(), isCompressResults()));
+            } else if (this.getReturnType() == ReturnType.streaming) {
+                // Serialize the Document so that its fields can be read one at a time
+                this.serializedDocuments = Iterators.transform(pipelineDocuments, new StreamingDocumentSerializer(isReducedResponse(), isCompressResults()));
             } else if (this.getReturnType() == ReturnType.writable) {
                 // Use the Writable interface to serialize the Document
                 this.serializedDocuments = Iterators.transform(pipelineDocuments, new WritableDocumentSerializer(isReducedResponse()));
@@ -759,7 +772,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         // which do not fall within the expected time range
         Iterator<Entry<Key,Document>> documents = null;
         Aggregation a = new Aggregation(this.getTimeFilter(), this.typeMetadataWithNonIndexed, compositeMetadata, this.isIncludeGroupingContext(),
-                        this.includeRecordId, this.disableIndexOnlyDocuments(), getEvaluationFilter(), isTrackSizes());
+                        this.includeRecordId, this.disableIndexOnlyDocuments(), getEvaluationFilter(), isTrackSizes(), isColumnarDocuments());
         if (gatherTimingDetails()) {
             documents = Iterators.transform(sourceIterator, new EvaluationTrackingFunction<>(QuerySpan.Stage.Aggregation, trackingSpan, a));
         } else {
@@ -996,7 +1009,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                             documents,
                             new GetDocument(docMapper, new Aggregation(this.getTimeFilter(), typeMetadataWithNonIndexed, compositeMetadata, this
                                             .isIncludeGroupingContext(), this.includeRecordId, this.disableIndexOnlyDocuments(), getEvaluationFilter(),
-                                            isTrackSizes())));
+                                            isTrackSizes(), isColumnarDocuments())));
             
             Iterator<Entry<Key,Document>> retDocuments = Iterators.transform(mappedDocuments, new TupleToEntry<>());
             
@@ -1290,6 +1303,10 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                         .setIvaratorCacheScanPersistThreshold(this.getIvaratorCacheScanPersistThreshold())
                         .setIvaratorCacheScanTimeout(this.getIvaratorCacheScanTimeout()).setMaxRangeSplit(this.getMaxIndexRangeSplit())
                         .setIvaratorMaxOpenFiles(this.getIvaratorMaxOpenFiles()).setIvaratorSources(this, this.getMaxIvaratorSources())
+                        .setIvaratorSortedSetBackend(this.getIvaratorSortedSetBackend()).setIvaratorLocalCacheDir(this.getIvaratorLocalCacheDir())
+                        .setIvaratorOffHeapBufferSize(this.getIvaratorOffHeapBufferSize()).setIvaratorScheduler(this.getIvaratorScheduler())
+                        .setIvaratorSchedulerWeight(this.getIvaratorSchedulerWeight()).setMaxIvaratorConcurrentFills(this.getMaxIvaratorConcurrentFills())
+                        .setIvaratorResultCacheDir(this.getIvaratorResultCacheDir()).setIvaratorResultCacheMaxSize(this.getIvaratorResultCacheMaxSize())
                         .setIncludes(indexedFields).setTermFrequencyFields(this.getTermFrequencyFields()).setIsQueryFullySatisfied(isQueryFullySatisfied)
                         .setSortedUIDs(sortedUIDs).limit(documentRange).disableIndexOnly(disableFiEval).limit(this.sourceLimit)
                         .setCollectTimingDetails(this.collectTimingDetails).setQuerySpanCollector(this.querySpanCollector)
@@ -1382,7 +1399,8 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         if (uniqueTransform == null && getUniqueFields() != null & !getUniqueFields().isEmpty()) {
             synchronized (getUniqueFields()) {
                 if (uniqueTransform == null) {
-                    uniqueTransform = new UniqueTransform(getUniqueFields());
+                    // only the duplicates within this scan session are removed, so there is no need to spill
+                    uniqueTransform = new UniqueTransform(getUniqueFields(), getUniqueBufferSize(), null);
                 }
             }
         }
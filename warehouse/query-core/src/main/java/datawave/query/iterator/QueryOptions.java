@@ -14,6 +14,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
 import datawave.core.iterators.ColumnRangeIterator;
+import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl;
 import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl.HdfsBackedControl;
 import datawave.core.iterators.filesystem.FileSystemCache;
 import datawave.core.iterators.querylock.QueryLock;
@@ -45,6 +46,9 @@ import datawave.query.statsd.QueryStatsDClient;
 import datawave.query.tables.async.Scan;
 import datawave.query.util.TypeMetadata;
 import datawave.query.util.TypeMetadataProvider;
+import datawave.query.util.TypeMetadataSnapshot;
+import datawave.query.util.sortedset.FileBackedDigestSet;
+import datawave.query.util.sortedset.MappedFileBackedSortedSet;
 import datawave.util.StringUtils;
 import datawave.util.UniversalSet;
 import org.apache.accumulo.core.data.Key;
@@ -54,6 +58,7 @@ import org.apache.accumulo.core.iterators.OptionDescriber;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.jexl2.JexlArithmetic;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
 import org.apache.zookeeper.server.quorum.QuorumPeerConfig.ConfigException;
@@ -101,6 +106,8 @@ public class QueryOptions implements OptionDescriber {
     public static final String QUERY_ID = "query.id";
     public static final String TYPE_METADATA = "type.metadata";
     public static final String TYPE_METADATA_AUTHS = "type.metadata.auths";
+    public static final String TYPE_METADATA_SNAPSHOT = "type.metadata.snapshot";
+    public static final String TYPE_METADATA_SNAPSHOT_DIR = "type.metadata.snapshot.dir";
     public static final String METADATA_TABLE_NAME = "model.table.name";
     
     public static final String REDUCED_RESPONSE = "reduced.response";
@@ -126,6 +133,9 @@ public class QueryOptions implements OptionDescriber {
     public static final String GROUP_FIELDS = "group.fields";
     public static final String GROUP_FIELDS_BATCH_SIZE = "group.fields.batch.size";
     public static final String UNIQUE_FIELDS = "unique.fields";
+    public static final String UNIQUE_BUFFER_SIZE = "unique.buffer.size";
+    public static final String TOP_K = "top.k";
+    public static final String TOP_K_FIELDS = "top.k.fields";
     public static final String TYPE_METADATA_IN_HDFS = "type.metadata.in.hdfs";
     public static final String HITS_ONLY = "hits.only";
     public static final String HIT_LIST = "hit.list";
@@ -142,6 +152,7 @@ public class QueryOptions implements OptionDescriber {
     public static final String STATSD_MAX_QUEUE_SIZE = "statsd.max.queue.size";
     public static final String DATATYPE_FIELDNAME = "include.datatype.fieldname";
     public static final String TRACK_SIZES = "track.sizes";
+    public static final String COLUMNAR_DOCUMENTS = "columnar.documents";
     
     // pass through to Evaluating iterator to ensure consistency between query
     // logics
@@ -200,12 +211,30 @@ public class QueryOptions implements OptionDescriber {
     
     public static final String MAX_IVARATOR_OPEN_FILES = "max.ivarator.open.files";
     
+    public static final String IVARATOR_SORTED_SET_BACKEND = "ivarator.sorted.set.backend";
+    
+    public static final String IVARATOR_LOCAL_CACHE_DIR = "ivarator.local.cache.dir";
+    
+    public static final String IVARATOR_OFF_HEAP_BUFFER_SIZE = "ivarator.off.heap.buffer.size";
+    
+    public static final String IVARATOR_SCHEDULER = "ivarator.scheduler";
+    
+    public static final String IVARATOR_SCHEDULER_WEIGHT = "ivarator.scheduler.weight";
+    
+    public static final String MAX_IVARATOR_CONCURRENT_FILLS = "max.ivarator.concurrent.fills";
+    
+    public static final String IVARATOR_RESULT_CACHE_DIR = "ivarator.result.cache.dir";
+    
+    public static final String IVARATOR_RESULT_CACHE_MAX_SIZE = "ivarator.result.cache.max.size";
+    
     public static final String MAX_IVARATOR_SOURCES = "max.ivarator.sources";
     
     public static final String COMPRESS_SERVER_SIDE_RESULTS = "compress.server.side.results";
     
     public static final String MAX_EVALUATION_PIPELINES = "max.evaluation.pipelines";
     
+    public static final String MIN_EVALUATION_PIPELINES = "min.evaluation.pipelines";
+    
     public static final String SERIAL_EVALUATION_PIPELINE = "serial.evaluation.pipeline";
     
     public static final String MAX_PIPELINE_CACHED_RESULTS = "max.pipeline.cached.results";
@@ -252,6 +281,9 @@ public class QueryOptions implements OptionDescriber {
     protected Set<String> groupFields = Sets.newHashSet();
     protected int groupFieldsBatchSize = Integer.MAX_VALUE;
     protected Set<String> uniqueFields = Sets.newHashSet();
+    protected int uniqueBufferSize = FileBackedDigestSet.DEFAULT_BUFFER_SIZE;
+    protected int topK = 0;
+    protected Set<String> topKFields = Sets.newHashSet();
     
     protected Set<String> hitsOnlySet = new HashSet<>();
     
@@ -263,6 +295,11 @@ public class QueryOptions implements OptionDescriber {
     protected EventDataQueryFilter evaluationFilter;
     
     protected int maxEvaluationPipelines = 25;
+    /**
+     * The number of evaluation pipelines is adjusted between this and {@link #maxEvaluationPipelines} based on the cost of evaluation. 0 or less (the default)
+     * fixes the number of evaluation pipelines at {@link #maxEvaluationPipelines}.
+     */
+    protected int minEvaluationPipelines = -1;
     protected int maxPipelineCachedResults = 25;
     
     protected Set<String> indexOnlyFields = Sets.newHashSet();
@@ -307,6 +344,14 @@ public class QueryOptions implements OptionDescriber {
     
     protected int maxIndexRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
+    protected String ivaratorSortedSetBackend = DatawaveFieldIndexCachingIteratorJexl.HDFS_SORTED_SET_BACKEND;
+    protected String ivaratorLocalCacheDir = null;
+    protected int ivaratorOffHeapBufferSize = MappedFileBackedSortedSet.DEFAULT_BUFFER_SIZE;
+    protected String ivaratorScheduler = DatawaveFieldIndexCachingIteratorJexl.FIFO_IVARATOR_SCHEDULER;
+    protected int ivaratorSchedulerWeight = 1;
+    protected int maxIvaratorConcurrentFills = 0;
+    protected String ivaratorResultCacheDir = null;
+    protected long ivaratorResultCacheMaxSize = 0;
     
     protected int maxIvaratorSources = 33;
     
@@ -350,6 +395,10 @@ public class QueryOptions implements OptionDescriber {
     
     protected String metadataTableName;
     
+    protected String typeMetadataSnapshot = null;
+    
+    protected String typeMetadataSnapshotDir = null;
+    
     protected boolean dateIndexTimeTravel = false;
     
     protected boolean debugMultithreadedSources = false;
@@ -361,6 +410,11 @@ public class QueryOptions implements OptionDescriber {
      */
     protected boolean trackSizes = true;
     
+    /**
+     * should event documents be built as {@link datawave.query.attributes.ColumnarDocument}s
+     */
+    protected boolean columnarDocuments = false;
+    
     public void deepCopy(QueryOptions other) {
         this.options = other.options;
         this.query = other.query;
@@ -372,6 +426,8 @@ public class QueryOptions implements OptionDescriber {
         this.typeMetadataProvider = other.typeMetadataProvider;
         this.typeMetadataAuthsKey = other.typeMetadataAuthsKey;
         this.metadataTableName = other.metadataTableName;
+        this.typeMetadataSnapshot = other.typeMetadataSnapshot;
+        this.typeMetadataSnapshotDir = other.typeMetadataSnapshotDir;
         this.compositeMetadata = other.compositeMetadata;
         this.compositeSeekThreshold = other.compositeSeekThreshold;
         this.returnType = other.returnType;
@@ -428,6 +484,14 @@ public class QueryOptions implements OptionDescriber {
         this.hdfsFileCompressionCodec = other.hdfsFileCompressionCodec;
         this.maxIndexRangeSplit = other.maxIndexRangeSplit;
         this.ivaratorMaxOpenFiles = other.ivaratorMaxOpenFiles;
+        this.ivaratorSortedSetBackend = other.ivaratorSortedSetBackend;
+        this.ivaratorLocalCacheDir = other.ivaratorLocalCacheDir;
+        this.ivaratorOffHeapBufferSize = other.ivaratorOffHeapBufferSize;
+        this.ivaratorScheduler = other.ivaratorScheduler;
+        this.ivaratorSchedulerWeight = other.ivaratorSchedulerWeight;
+        this.maxIvaratorConcurrentFills = other.maxIvaratorConcurrentFills;
+        this.ivaratorResultCacheDir = other.ivaratorResultCacheDir;
+        this.ivaratorResultCacheMaxSize = other.ivaratorResultCacheMaxSize;
         this.maxIvaratorSources = other.maxIvaratorSources;
         
         this.yieldThresholdMs = other.yieldThresholdMs;
@@ -438,6 +502,10 @@ public class QueryOptions implements OptionDescriber {
         this.limitFieldsField = other.limitFieldsField;
         this.groupFields = other.groupFields;
         this.groupFieldsBatchSize = other.groupFieldsBatchSize;
+        this.uniqueFields = other.uniqueFields;
+        this.uniqueBufferSize = other.uniqueBufferSize;
+        this.topK = other.topK;
+        this.topKFields = other.topKFields;
         this.hitsOnlySet = other.hitsOnlySet;
         
         this.compressedMappings = other.compressedMappings;
@@ -467,6 +535,7 @@ public class QueryOptions implements OptionDescriber {
         this.batchedQueries = other.batchedQueries;
         this.batchStack = other.batchStack;
         this.maxEvaluationPipelines = other.maxEvaluationPipelines;
+        this.minEvaluationPipelines = other.minEvaluationPipelines;
         
         this.dateIndexTimeTravel = other.dateIndexTimeTravel;
         
@@ -475,6 +544,7 @@ public class QueryOptions implements OptionDescriber {
         this.dataQueryExpressionFilterEnabled = other.dataQueryExpressionFilterEnabled;
         
         this.trackSizes = other.trackSizes;
+        this.columnarDocuments = other.columnarDocuments;
     }
     
     public String getQuery() {
@@ -525,6 +595,17 @@ public class QueryOptions implements OptionDescriber {
             
             return this.typeMetadata;
             
+            // if the query passed the version of a snapshot, use the copy this server has already loaded or load it
+        } else if (this.typeMetadataSnapshot != null && this.typeMetadataSnapshotDir != null) {
+            try {
+                Path dir = new Path(this.typeMetadataSnapshotDir);
+                this.typeMetadata = TypeMetadataSnapshot.load(TypeMetadataSnapshot.getFileSystem(dir.toUri(), this.hdfsSiteConfigURLs), dir,
+                                this.typeMetadataSnapshot);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to load type metadata snapshot " + this.typeMetadataSnapshot, e);
+            }
+            return this.typeMetadata;
+            
             // if the query did not contain the TypeMetadata in its options,
             // (the TypeMetadata class member is empty) we will attempt to
             // use the hdfs typeMetadata from the TypeMetadataProvider. The query will have sent
@@ -565,6 +646,14 @@ public class QueryOptions implements OptionDescriber {
         this.trackSizes = trackSizes;
     }
     
+    public boolean isColumnarDocuments() {
+        return columnarDocuments;
+    }
+    
+    public void setColumnarDocuments(boolean columnarDocuments) {
+        this.columnarDocuments = columnarDocuments;
+    }
+    
     public void setTypeMetadata(TypeMetadata typeMetadata) {
         this.typeMetadata = typeMetadata;
     }
@@ -879,6 +968,70 @@ public class QueryOptions implements OptionDescriber {
         this.ivaratorMaxOpenFiles = ivaratorMaxOpenFiles;
     }
     
+    public String getIvaratorSortedSetBackend() {
+        return ivaratorSortedSetBackend;
+    }
+    
+    public void setIvaratorSortedSetBackend(String ivaratorSortedSetBackend) {
+        this.ivaratorSortedSetBackend = ivaratorSortedSetBackend;
+    }
+    
+    public String getIvaratorLocalCacheDir() {
+        return ivaratorLocalCacheDir;
+    }
+    
+    public void setIvaratorLocalCacheDir(String ivaratorLocalCacheDir) {
+        this.ivaratorLocalCacheDir = ivaratorLocalCacheDir;
+    }
+    
+    public int getIvaratorOffHeapBufferSize() {
+        return ivaratorOffHeapBufferSize;
+    }
+    
+    public void setIvaratorOffHeapBufferSize(int ivaratorOffHeapBufferSize) {
+        this.ivaratorOffHeapBufferSize = ivaratorOffHeapBufferSize;
+    }
+    
+    public String getIvaratorScheduler() {
+        return ivaratorScheduler;
+    }
+    
+    public void setIvaratorScheduler(String ivaratorScheduler) {
+        this.ivaratorScheduler = ivaratorScheduler;
+    }
+    
+    public int getIvaratorSchedulerWeight() {
+        return ivaratorSchedulerWeight;
+    }
+    
+    public void setIvaratorSchedulerWeight(int ivaratorSchedulerWeight) {
+        this.ivaratorSchedulerWeight = ivaratorSchedulerWeight;
+    }
+    
+    public int getMaxIvaratorConcurrentFills() {
+        return maxIvaratorConcurrentFills;
+    }
+    
+    public void setMaxIvaratorConcurrentFills(int maxIvaratorConcurrentFills) {
+        this.maxIvaratorConcurrentFills = maxIvaratorConcurrentFills;
+    }
+    
+    public String getIvaratorResultCacheDir() {
+        return ivaratorResultCacheDir;
+    }
+    
+    public void setIvaratorResultCacheDir(String ivaratorResultCacheDir) {
+        this.ivaratorResultCacheDir = ivaratorResultCacheDir;
+    }
+    
+    public long getIvaratorResultCacheMaxSize() {
+        return ivaratorResultCacheMaxSize;
+    }
+    
+    public void setIvaratorResultCacheMaxSize(long ivaratorResultCacheMaxSize) {
+        this.ivaratorResultCacheMaxSize = ivaratorResultCacheMaxSize;
+    }
+    
     public int getMaxIvaratorSources() {
         return maxIvaratorSources;
     }
@@ -943,6 +1096,30 @@ public class QueryOptions implements OptionDescriber {
         this.uniqueFields = uniqueFields;
     }
     
+    public int getUniqueBufferSize() {
+        return uniqueBufferSize;
+    }
+    
+    public void setUniqueBufferSize(int uniqueBufferSize) {
+        this.uniqueBufferSize = uniqueBufferSize;
+    }
+    
+    public int getTopK() {
+        return topK;
+    }
+    
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+    
+    public Set<String> getTopKFields() {
+        return topKFields;
+    }
+    
+    public void setTopKFields(Set<String> topKFields) {
+        this.topKFields = topKFields;
+    }
+    
     public Set<String> getHitsOnlySet() {
         return hitsOnlySet;
     }
@@ -996,6 +1173,8 @@ public class QueryOptions implements OptionDescriber {
         options.put(QUERY, "The JEXL query to evaluate documents against");
         options.put(QUERY_ID, "The UUID of the query");
         options.put(TYPE_METADATA, "A mapping of field name to a set of DataType class names");
+        options.put(TYPE_METADATA_SNAPSHOT, "The version of a type metadata snapshot to use in place of " + TYPE_METADATA);
+        options.put(TYPE_METADATA_SNAPSHOT_DIR, "The directory holding the type metadata snapshots");
         options.put(METADATA_TABLE_NAME, "The name of the metadata table");
         options.put(QUERY_MAPPING_COMPRESS, "Boolean value to indicate Normalizer mapping is compressed");
         options.put(REDUCED_RESPONSE, "Whether or not to return visibility markings on each attribute. Default: " + reducedResponse);
@@ -1027,6 +1206,10 @@ public class QueryOptions implements OptionDescriber {
         options.put(GROUP_FIELDS, "group fields");
         options.put(GROUP_FIELDS_BATCH_SIZE, "group fields.batch.size");
         options.put(UNIQUE_FIELDS, "unique fields");
+        options.put(UNIQUE_BUFFER_SIZE, "The number of unique signatures to remember before the duplicate filter is reset.  Default is "
+                        + FileBackedDigestSet.DEFAULT_BUFFER_SIZE);
+        options.put(TOP_K, "The number of documents to return from each scan session, keeping those with the greatest top.k.fields values");
+        options.put(TOP_K_FIELDS, "The fields whose values order the top-k documents.  Default is the event timestamp");
         options.put(HIT_LIST, "hit list");
         options.put(NON_INDEXED_DATATYPES, "Normalizers to apply only at aggregation time");
         options.put(CONTAINS_INDEX_ONLY_TERMS, "Does the query being evaluated contain any terms which are index-only");
@@ -1048,12 +1231,26 @@ public class QueryOptions implements OptionDescriber {
                         "The maximum number of ranges to split a field index scan (ivarator) range into for multithreading.  Note the thread pool size is controlled via an accumulo property.");
         options.put(MAX_IVARATOR_OPEN_FILES,
                         "The maximum number of files that can be opened at one time during a merge sort.  If more that this number of files are created, then compactions will occur");
+        options.put(IVARATOR_SORTED_SET_BACKEND,
+                        "The sorted set used to cache ivarator results: hdfs (shared across tservers) or mapped (local off-heap buffer and memory mapped files).  Default is hdfs.");
+        options.put(IVARATOR_LOCAL_CACHE_DIR, "The local directory under which the mapped ivarator sorted sets are stored.  Default is java.io.tmpdir.");
+        options.put(IVARATOR_OFF_HEAP_BUFFER_SIZE,
+                        "The number of off-heap bytes buffered by a mapped ivarator sorted set before spilling to a local file.  Default is 16MB.");
+        options.put(IVARATOR_SCHEDULER,
+                        "How ivarator fill tasks are scheduled on the shared ivarator thread pool: fifo (in order of submission) or fair (weighted round robin across queries).  Default is fifo.");
+        options.put(IVARATOR_SCHEDULER_WEIGHT, "The number of ivarator fill tasks dispatched for this query per turn when using the fair scheduler.  Default is 1.");
+        options.put(MAX_IVARATOR_CONCURRENT_FILLS,
+                        "The maximum number of ivarator fill tasks running at once for this query when using the fair scheduler.  Default is 0 (no limit).");
+        options.put(IVARATOR_RESULT_CACHE_DIR,
+                        "The directory of the ivarator result cache shared across queries.  Completed ivarator results are published there and reused by later queries.  Default is none (disabled).");
+        options.put(IVARATOR_RESULT_CACHE_MAX_SIZE, "The maximum size in bytes of the ivarator result cache before least recently used entries are evicted.");
         options.put(MAX_IVARATOR_SOURCES,
                         " The maximum number of sources to use for ivarators across all ivarated terms within the query.  Note the thread pool size is controlled via an accumulo property.");
         options.put(YIELD_THRESHOLD_MS,
                         "The threshold in milliseconds that the query iterator will evaluate consecutive documents to false before yielding the scan.");
         options.put(COMPRESS_SERVER_SIDE_RESULTS, "GZIP compress the serialized Documents before returning to the webserver");
         options.put(MAX_EVALUATION_PIPELINES, "The max number of evaluation pipelines");
+        options.put(MIN_EVALUATION_PIPELINES, "The min number of evaluation pipelines when adjusting them to the cost of evaluation");
         options.put(SERIAL_EVALUATION_PIPELINE, "Forces us to use the serial pipeline. Allows us to still have a single thread for evaluation");
         options.put(MAX_PIPELINE_CACHED_RESULTS, "The max number of non-null evaluated results to cache beyond the evaluation pipelines in queue");
         options.put(DATE_INDEX_TIME_TRAVEL, "Whether the shards from before the event should be gathered from the dateIndex");
@@ -1165,6 +1362,10 @@ public class QueryOptions implements OptionDescriber {
             setTrackSizes(Boolean.parseBoolean(options.get(TRACK_SIZES)));
         }
         
+        if (options.containsKey(COLUMNAR_DOCUMENTS) && options.get(COLUMNAR_DOCUMENTS) != null) {
+            setColumnarDocuments(Boolean.parseBoolean(options.get(COLUMNAR_DOCUMENTS)));
+        }
+        
         if (options.containsKey(PROJECTION_FIELDS)) {
             this.projectResults = true;
             this.useWhiteListedFields = true;
@@ -1342,6 +1543,21 @@ public class QueryOptions implements OptionDescriber {
             }
         }
         
+        if (options.containsKey(UNIQUE_BUFFER_SIZE)) {
+            this.setUniqueBufferSize(Integer.parseInt(options.get(UNIQUE_BUFFER_SIZE)));
+        }
+        
+        if (options.containsKey(TOP_K)) {
+            this.setTopK(Integer.parseInt(options.get(TOP_K)));
+        }
+        
+        if (options.containsKey(TOP_K_FIELDS)) {
+            String topKFields = options.get(TOP_K_FIELDS);
+            for (String param : Splitter.on(',').omitEmptyStrings().trimResults().split(topKFields)) {
+                this.getTopKFields().add(param);
+            }
+        }
+        
         if (options.containsKey(HIT_LIST)) {
             log.debug("Adding hitList to QueryOptions? " + options.get(HIT_LIST));
             if (Boolean.parseBoolean(options.get(HIT_LIST))) {
@@ -1427,6 +1643,38 @@ public class QueryOptions implements OptionDescriber {
             this.setIvaratorMaxOpenFiles(Integer.parseInt(options.get(MAX_IVARATOR_OPEN_FILES)));
         }
         
+        if (options.containsKey(IVARATOR_SORTED_SET_BACKEND)) {
+            this.setIvaratorSortedSetBackend(options.get(IVARATOR_SORTED_SET_BACKEND));
+        }
+        
+        if (options.containsKey(IVARATOR_LOCAL_CACHE_DIR)) {
+            this.setIvaratorLocalCacheDir(options.get(IVARATOR_LOCAL_CACHE_DIR));
+        }
+        
+        if (options.containsKey(IVARATOR_OFF_HEAP_BUFFER_SIZE)) {
+            this.setIvaratorOffHeapBufferSize(Integer.parseInt(options.get(IVARATOR_OFF_HEAP_BUFFER_SIZE)));
+        }
+        
+        if (options.containsKey(IVARATOR_SCHEDULER)) {
+            this.setIvaratorScheduler(options.get(IVARATOR_SCHEDULER));
+        }
+        
+        if (options.containsKey(IVARATOR_SCHEDULER_WEIGHT)) {
+            this.setIvaratorSchedulerWeight(Integer.parseInt(options.get(IVARATOR_SCHEDULER_WEIGHT)));
+        }
+        
+        if (options.containsKey(MAX_IVARATOR_CONCURRENT_FILLS)) {
+            this.setMaxIvaratorConcurrentFills(Integer.parseInt(options.get(MAX_IVARATOR_CONCURRENT_FILLS)));
+        }
+        
+        if (options.containsKey(IVARATOR_RESULT_CACHE_DIR)) {
+            this.setIvaratorResultCacheDir(options.get(IVARATOR_RESULT_CACHE_DIR));
+        }
+        
+        if (options.containsKey(IVARATOR_RESULT_CACHE_MAX_SIZE)) {
+            this.setIvaratorResultCacheMaxSize(Long.parseLong(options.get(IVARATOR_RESULT_CACHE_MAX_SIZE)));
+        }
+        
         if (options.containsKey(MAX_IVARATOR_SOURCES)) {
             this.setMaxIvaratorSources(Integer.parseInt(options.get(MAX_IVARATOR_SOURCES)));
         }
@@ -1443,6 +1691,10 @@ public class QueryOptions implements OptionDescriber {
             this.setMaxEvaluationPipelines(Integer.parseInt(options.get(MAX_EVALUATION_PIPELINES)));
         }
         
+        if (options.containsKey(MIN_EVALUATION_PIPELINES)) {
+            this.setMinEvaluationPipelines(Integer.parseInt(options.get(MIN_EVALUATION_PIPELINES)));
+        }
+        
         if (options.containsKey(SERIAL_EVALUATION_PIPELINE)) {
             this.setSerialEvaluationPipeline(Boolean.parseBoolean(options.get(SERIAL_EVALUATION_PIPELINE)));
         }
@@ -1542,6 +1794,11 @@ public class QueryOptions implements OptionDescriber {
                 log.trace("Using typeMetadata: " + this.typeMetadata);
             }
         }
+        // The snapshot is loaded when first needed, as the hdfs configuration has not been read yet
+        if (options.containsKey(TYPE_METADATA_SNAPSHOT)) {
+            this.typeMetadataSnapshot = options.get(TYPE_METADATA_SNAPSHOT);
+            this.typeMetadataSnapshotDir = options.get(TYPE_METADATA_SNAPSHOT_DIR);
+        }
         if (options.containsKey(METADATA_TABLE_NAME)) {
             this.metadataTableName = options.get(METADATA_TABLE_NAME);
         }
@@ -1834,6 +2091,17 @@ public class QueryOptions implements OptionDescriber {
         this.maxEvaluationPipelines = maxEvaluationPipelines;
     }
     
+    /**
+     * @return the min number of evaluation pipelines, which is the max number unless set so that the number of pipelines is only adjusted when asked for
+     */
+    public int getMinEvaluationPipelines() {
+        return (minEvaluationPipelines > 0 ? minEvaluationPipelines : maxEvaluationPipelines);
+    }
+    
+    public void setMinEvaluationPipelines(int minEvaluationPipelines) {
+        this.minEvaluationPipelines = minEvaluationPipelines;
+    }
+    
     public int getMaxPipelineCachedResults() {
         return maxPipelineCachedResults;
     }
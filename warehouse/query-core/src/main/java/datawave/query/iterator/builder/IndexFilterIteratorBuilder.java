@@ -79,7 +79,10 @@ public class IndexFilterIteratorBuilder extends IvaratorBuilder implements Itera
                                 .withFileSystem(hdfsFileSystem).withUniqueDir(new Path(hdfsCacheURI)).withQueryLock(queryLock).allowDirResuse(true)
                                 .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
                                 .withCompositeMetadata(compositeMetadata).withCompositeSeekThreshold(compositeSeekThreshold).withTypeMetadata(typeMetadata)
-                                .build();
+                                .withSortedSetBackend(ivaratorSortedSetBackend).withLocalCacheDir(ivaratorLocalCacheDir)
+                                .withOffHeapBufferSize(ivaratorOffHeapBufferSize).withQueryId(queryId).withScheduler(ivaratorScheduler)
+                                .withSchedulerWeight(ivaratorSchedulerWeight).withMaxConcurrentFills(maxIvaratorConcurrentFills)
+                                .withResultCache(ivaratorResultCache).build();
                 
                 if (collectTimingDetails) {
                     rangeIterator.setCollectTimingDetails(true);
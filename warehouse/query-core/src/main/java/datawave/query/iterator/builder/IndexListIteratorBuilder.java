@@ -103,7 +103,10 @@ public class IndexListIteratorBuilder extends IvaratorBuilder implements Iterato
                                     .withUniqueDir(new Path(hdfsCacheURI)).withQueryLock(queryLock).allowDirResuse(true)
                                     .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
                                     .withCompositeMetadata(compositeMetadata).withCompositeSeekThreshold(compositeSeekThreshold).withTypeMetadata(typeMetadata)
-                                    .build();
+                                    .withSortedSetBackend(ivaratorSortedSetBackend).withLocalCacheDir(ivaratorLocalCacheDir)
+                                    .withOffHeapBufferSize(ivaratorOffHeapBufferSize).withQueryId(queryId).withScheduler(ivaratorScheduler)
+                                    .withSchedulerWeight(ivaratorSchedulerWeight).withMaxConcurrentFills(maxIvaratorConcurrentFills)
+                                    .withResultCache(ivaratorResultCache).build();
                     
                 } else {
                     FST fst = DatawaveFieldIndexListIteratorJexl.FSTManager.get(new Path(fstURI), hdfsFileCompressionCodec, fstHdfsFileSystem);
@@ -114,7 +117,10 @@ public class IndexListIteratorBuilder extends IvaratorBuilder implements Iterato
                                     .withUniqueDir(new Path(hdfsCacheURI)).withQueryLock(queryLock).allowDirResuse(true)
                                     .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
                                     .withCompositeMetadata(compositeMetadata).withCompositeSeekThreshold(compositeSeekThreshold).withTypeMetadata(typeMetadata)
-                                    .build();
+                                    .withSortedSetBackend(ivaratorSortedSetBackend).withLocalCacheDir(ivaratorLocalCacheDir)
+                                    .withOffHeapBufferSize(ivaratorOffHeapBufferSize).withQueryId(queryId).withScheduler(ivaratorScheduler)
+                                    .withSchedulerWeight(ivaratorSchedulerWeight).withMaxConcurrentFills(maxIvaratorConcurrentFills)
+                                    .withResultCache(ivaratorResultCache).build();
                     
                 }
                 if (collectTimingDetails) {
@@ -71,7 +71,10 @@ public class IndexRangeIteratorBuilder extends IvaratorBuilder implements Iterat
                                 .withUniqueDir(new Path(hdfsCacheURI)).withQueryLock(queryLock).allowDirResuse(true)
                                 .withReturnKeyType(PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME).withSortedUUIDs(sortedUIDs)
                                 .withCompositeMetadata(compositeMetadata).withCompositeSeekThreshold(compositeSeekThreshold).withTypeMetadata(typeMetadata)
-                                .build();
+                                .withSortedSetBackend(ivaratorSortedSetBackend).withLocalCacheDir(ivaratorLocalCacheDir)
+                                .withOffHeapBufferSize(ivaratorOffHeapBufferSize).withQueryId(queryId).withScheduler(ivaratorScheduler)
+                                .withSchedulerWeight(ivaratorSchedulerWeight).withMaxConcurrentFills(maxIvaratorConcurrentFills)
+                                .withResultCache(ivaratorResultCache).build();
                 
                 if (collectTimingDetails) {
                     rangeIterator.setCollectTimingDetails(true);
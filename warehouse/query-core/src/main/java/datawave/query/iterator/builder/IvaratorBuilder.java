@@ -1,8 +1,11 @@
 package datawave.query.iterator.builder;
 
+import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl;
+import datawave.core.iterators.IvaratorResultCache;
 import datawave.core.iterators.querylock.QueryLock;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.iterator.profile.QuerySpanCollector;
+import datawave.query.util.sortedset.MappedFileBackedSortedSet;
 import org.apache.hadoop.fs.FileSystem;
 
 /**
@@ -19,6 +22,14 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
     protected int ivaratorCacheBufferSize = 10000;
     protected int maxRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
+    protected String ivaratorSortedSetBackend = DatawaveFieldIndexCachingIteratorJexl.HDFS_SORTED_SET_BACKEND;
+    protected String ivaratorLocalCacheDir = null;
+    protected int ivaratorOffHeapBufferSize = MappedFileBackedSortedSet.DEFAULT_BUFFER_SIZE;
+    protected String queryId;
+    protected String ivaratorScheduler = DatawaveFieldIndexCachingIteratorJexl.FIFO_IVARATOR_SCHEDULER;
+    protected int ivaratorSchedulerWeight = 1;
+    protected int maxIvaratorConcurrentFills = 0;
+    protected IvaratorResultCache ivaratorResultCache = null;
     protected boolean collectTimingDetails = false;
     protected QuerySpanCollector querySpanCollector = null;
     protected CompositeMetadata compositeMetadata;
@@ -96,6 +107,70 @@ public abstract class IvaratorBuilder extends IndexIteratorBuilder {
         this.ivaratorMaxOpenFiles = ivaratorMaxOpenFiles;
     }
     
+    public String getIvaratorSortedSetBackend() {
+        return ivaratorSortedSetBackend;
+    }
+    
+    public void setIvaratorSortedSetBackend(String ivaratorSortedSetBackend) {
+        this.ivaratorSortedSetBackend = ivaratorSortedSetBackend;
+    }
+    
+    public String getIvaratorLocalCacheDir() {
+        return ivaratorLocalCacheDir;
+    }
+    
+    public void setIvaratorLocalCacheDir(String ivaratorLocalCacheDir) {
+        this.ivaratorLocalCacheDir = ivaratorLocalCacheDir;
+    }
+    
+    public int getIvaratorOffHeapBufferSize() {
+        return ivaratorOffHeapBufferSize;
+    }
+    
+    public void setIvaratorOffHeapBufferSize(int ivaratorOffHeapBufferSize) {
+        this.ivaratorOffHeapBufferSize = ivaratorOffHeapBufferSize;
+    }
+    
+    public String getQueryId() {
+        return queryId;
+    }
+    
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+    
+    public String getIvaratorScheduler() {
+        return ivaratorScheduler;
+    }
+    
+    public void setIvaratorScheduler(String ivaratorScheduler) {
+        this.ivaratorScheduler = ivaratorScheduler;
+    }
+    
+    public int getIvaratorSchedulerWeight() {
+        return ivaratorSchedulerWeight;
+    }
+    
+    public void setIvaratorSchedulerWeight(int ivaratorSchedulerWeight) {
+        this.ivaratorSchedulerWeight = ivaratorSchedulerWeight;
+    }
+    
+    public int getMaxIvaratorConcurrentFills() {
+        return maxIvaratorConcurrentFills;
+    }
+    
+    public void setMaxIvaratorConcurrentFills(int maxIvaratorConcurrentFills) {
+        this.maxIvaratorConcurrentFills = maxIvaratorConcurrentFills;
+    }
+    
+    public IvaratorResultCache getIvaratorResultCache() {
+        return ivaratorResultCache;
+    }
+    
+    public void setIvaratorResultCache(IvaratorResultCache ivaratorResultCache) {
+        this.ivaratorResultCache = ivaratorResultCache;
+    }
+    
     public void setCollectTimingDetails(boolean collectTimingDetails) {
         this.collectTimingDetails = collectTimingDetails;
     }
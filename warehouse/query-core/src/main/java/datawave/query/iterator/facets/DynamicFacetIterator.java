@@ -37,6 +37,7 @@ import datawave.query.function.JexlEvaluation;
 import datawave.query.function.KeyToDocumentData;
 import datawave.query.function.MinimumEstimation;
 import datawave.query.function.serializer.KryoDocumentSerializer;
+import datawave.query.function.serializer.StreamingDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
 import datawave.query.iterator.AccumuloTreeIterable;
@@ -257,6 +258,9 @@ public class DynamicFacetIterator extends FieldIndexOnlyQueryIterator {
         if (this.getReturnType() == ReturnType.kryo) {
             // Serialize the Document using Kryo
             this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new KryoDocumentSerializer(isReducedResponse(), isCompressResults()));
+        } else if (this.getReturnType() == ReturnType.streaming) {
+            // Serialize the Document so that its fields can be read one at a time
+            this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new StreamingDocumentSerializer(isReducedResponse(), isCompressResults()));
         } else if (this.getReturnType() == ReturnType.writable) {
             // Use the Writable interface to serialize the Document
             this.serializedDocuments = Iterators.transform(fieldIndexDocuments, new WritableDocumentSerializer(isReducedResponse()));
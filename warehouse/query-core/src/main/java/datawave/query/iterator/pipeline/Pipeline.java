@@ -3,7 +3,9 @@ package datawave.query.iterator.pipeline;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import datawave.core.iterators.IteratorThreadPoolManager;
 import datawave.query.attributes.Document;
 import datawave.query.iterator.DocumentSpecificNestedIterator;
 import datawave.query.iterator.NestedQueryIterator;
@@ -32,6 +34,18 @@ public class Pipeline implements Runnable {
     
     private QuerySpanCollector querySpanCollector = null;
     
+    // how long the last evaluation took
+    private long evaluationNanos = 0;
+    
+    // the states of the evaluation pipeline shared across the tserver which this pipeline may hold
+    private static final int NO_PERMIT = 0;
+    private static final int PERMIT_HELD = 1;
+    private static final int PERMIT_IN_USE = 2;
+    private static final int PERMIT_RELEASED = 3;
+    
+    // whether this pipeline holds one of the evaluation pipelines shared across the tserver, and whether its evaluation is running
+    private final AtomicInteger permit = new AtomicInteger(NO_PERMIT);
+    
     public Pipeline(QuerySpanCollector querySpanCollector, SortedKeyValueIterator<Key,Value> sourceForDeepCopy) {
         this.querySpanCollector = querySpanCollector;
         this.iterator = null;
@@ -56,18 +70,54 @@ public class Pipeline implements Runnable {
     public void clear() {
         this.result = null;
         this.documentSpecificSource.setDocumentKey(null);
+        // a running evaluation releases the permit itself once it has stopped, and an evaluation which has not started yet will not run
+        if (permit.compareAndSet(PERMIT_HELD, PERMIT_RELEASED)) {
+            IteratorThreadPoolManager.releaseEvaluationPipeline();
+        }
     }
     
     public Entry<Key,Document> getResult() {
         return result;
     }
     
+    /**
+     * @return how long the last evaluation took, in nanoseconds
+     */
+    public long getEvaluationNanos() {
+        return evaluationNanos;
+    }
+    
+    /**
+     * Mark this pipeline as holding an evaluation pipeline acquired from the {@link IteratorThreadPoolManager}, or not. A held pipeline is released once the
+     * evaluation has stopped, or when this pipeline is cleared if the evaluation had not started by then. An evaluation cleared before it started is skipped.
+     * 
+     * @param holdsPermit
+     *            whether the next evaluation holds an evaluation pipeline
+     */
+    public void setHoldsPermit(boolean holdsPermit) {
+        permit.set(holdsPermit ? PERMIT_HELD : NO_PERMIT);
+    }
+    
     @Override
     public void run() {
-        if (iterator.hasNext()) {
-            result = iterator.next();
-        } else {
+        if (!permit.compareAndSet(PERMIT_HELD, PERMIT_IN_USE) && permit.get() == PERMIT_RELEASED) {
+            // the evaluation was cancelled and its permit released before it started
             result = null;
+            return;
+        }
+        
+        long start = System.nanoTime();
+        try {
+            if (iterator.hasNext()) {
+                result = iterator.next();
+            } else {
+                result = null;
+            }
+        } finally {
+            evaluationNanos = System.nanoTime() - start;
+            if (permit.compareAndSet(PERMIT_IN_USE, NO_PERMIT)) {
+                IteratorThreadPoolManager.releaseEvaluationPipeline();
+            }
         }
         
         if (log.isTraceEnabled()) {
@@ -38,9 +38,41 @@ public class PipelineFactory {
     public static PipelineIterator createIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, boolean requestSerialPipeline,
                     QuerySpanCollector querySpanCollector, QuerySpan querySpan, QueryIterator sourceIterator,
                     SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env, YieldCallback<Key> yield, long yieldThresholdMs) {
+        return createIterator(documents, maxPipelines, maxPipelines, maxCachedResults, requestSerialPipeline, querySpanCollector, querySpan, sourceIterator,
+                        sourceForDeepCopy, env, yield, yieldThresholdMs);
+    }
+    
+    /**
+     * Create a pipeline iterator which adjusts the number of active pipelines between a minimum and maximum based on the cost of evaluation.
+     * 
+     * @param documents
+     *            Document Iterator.
+     * @param minPipelines
+     *            minimum number of active pipelines.
+     * @param maxPipelines
+     *            maximum number of requested pipelines.
+     * @param maxCachedResults
+     *            maximum cached results.
+     * @param requestSerialPipeline
+     *            request for a serial pipeline. In the future this choice may not be honored
+     * @param querySpanCollector
+     *            query span collector
+     * @param querySpan
+     *            query span
+     * @param sourceIterator
+     *            source iterator.
+     * @param sourceForDeepCopy
+     *            source used for deep copies.
+     * @param env
+     *            iterator environment
+     * @return
+     */
+    public static PipelineIterator createIterator(NestedIterator<Key> documents, int minPipelines, int maxPipelines, int maxCachedResults,
+                    boolean requestSerialPipeline, QuerySpanCollector querySpanCollector, QuerySpan querySpan, QueryIterator sourceIterator,
+                    SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env, YieldCallback<Key> yield, long yieldThresholdMs) {
         if (maxPipelines > 1 && !requestSerialPipeline) {
-            return new PipelineIterator(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env,
-                            yield, yieldThresholdMs);
+            return new PipelineIterator(documents, minPipelines, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator,
+                            sourceForDeepCopy, env, yield, yieldThresholdMs);
         } else {
             return new SerialIterator(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env, yield,
                             yieldThresholdMs);
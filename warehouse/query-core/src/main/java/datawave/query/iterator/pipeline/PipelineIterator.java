@@ -28,7 +28,8 @@ import java.util.concurrent.TimeoutException;
 
 /**
  * This is the iterator that handles the evaluation pipelines. Essentially it will queue up N evaluations. On each hasNext and next call, it will pull the
- * results ready from the top and cache the non-null results in a results queue.
+ * results ready from the top and cache the non-null results in a results queue. N is adjusted between the minimum and maximum number of pipelines by a
+ * {@link PipelineSizer}, and every evaluation beyond the first requires one of the evaluation pipelines shared across the tserver.
  */
 public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     
@@ -37,6 +38,7 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     protected final long yieldThresholdMs;
     protected final NestedIterator<Key> docSource;
     protected final PipelinePool pipelines;
+    protected final PipelineSizer sizer;
     protected final Queue<Tuple2<Future<?>,Pipeline>> evaluationQueue;
     protected Key lastKeyEvaluated = null;
     protected final Queue<Entry<Key,Document>> results;
@@ -49,8 +51,16 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     public PipelineIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
                     QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
                     YieldCallback<Key> yieldCallback, long yieldThresholdMs) {
+        this(documents, maxPipelines, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env, yieldCallback,
+                        yieldThresholdMs);
+    }
+    
+    public PipelineIterator(NestedIterator<Key> documents, int minPipelines, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector,
+                    QuerySpan querySpan, QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
+                    YieldCallback<Key> yieldCallback, long yieldThresholdMs) {
         this.docSource = documents;
         this.pipelines = new PipelinePool(maxPipelines, querySpanCollector, sourceIterator, sourceForDeepCopy, env);
+        this.sizer = new PipelineSizer(minPipelines, maxPipelines);
         this.evaluationQueue = new LinkedList<>();
         this.results = new LinkedList<>();
         this.maxResults = maxCachedResults;
@@ -231,7 +241,8 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             }
             
             // wait for it to complete if not already done
-            if (!nextFuture.first().isDone()) {
+            boolean waited = !nextFuture.first().isDone();
+            if (waited) {
                 long start = System.currentTimeMillis();
                 
                 nextFuture.first().get(waitMs, TimeUnit.MILLISECONDS);
@@ -247,6 +258,7 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             
             // pull the result
             result = nextFuture.second().getResult();
+            sizer.record(waited, nextFuture.second().getEvaluationNanos(), results.size() >= maxResults);
             
             if (log.isTraceEnabled()) {
                 Key docKey = nextFuture.second().getSource().getKey();
@@ -265,18 +277,9 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             pipelines.checkIn(nextFuture.second());
         }
         
-        // start a new evaluation if we can
-        if (docSource.hasNext()) {
-            Key keySource = docSource.next();
-            NestedQuery<Key> nestedQuery = null;
-            if (docSource instanceof NestedQueryIterator) {
-                nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
-            }
-            
-            evaluate(keySource, docSource.document(), nestedQuery);
-            if (collectTimingDetails) {
-                querySpanCollector.addQuerySpan(querySpan);
-            }
+        // start new evaluations if we can
+        if (startEvaluations() > 0 && collectTimingDetails) {
+            querySpanCollector.addQuerySpan(querySpan);
         }
         
         // put the result into the queue if non-null
@@ -300,35 +303,51 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     }
     
     public void startPipeline() {
-        // start up to maxPipeline pipelines
-        int maxPipelines = pipelines.maxPipelines;
-        boolean isNested = false;
-        NestedQuery<Key> nestedQuery = null;
-        if (docSource instanceof NestedQueryIterator) {
-            if (log.isTraceEnabled()) {
-                log.trace("we're in a nested query");
+        // start up to the target number of pipelines
+        startEvaluations();
+    }
+    
+    /**
+     * Start evaluations until the target number of pipelines are active, the documents are exhausted, or the evaluation pipelines shared across the tserver
+     * are all in use. The first evaluation never requires a shared pipeline, so that every query makes progress.
+     * 
+     * @return the number of evaluations started
+     */
+    private int startEvaluations() {
+        int started = 0;
+        while (evaluationQueue.size() < sizer.getTarget() && docSource.hasNext()) {
+            boolean holdsPermit = false;
+            if (!evaluationQueue.isEmpty()) {
+                if (!IteratorThreadPoolManager.tryAcquireEvaluationPipeline()) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("No evaluation pipelines available, limiting to " + evaluationQueue.size() + " pipelines");
+                    }
+                    break;
+                }
+                holdsPermit = true;
             }
-            isNested = true;
             
-        }
-        
-        for (int i = 0; i < maxPipelines && this.docSource.hasNext(); i++) {
-            Key keySource = this.docSource.next();
-            if (isNested) {
+            Key keySource = docSource.next();
+            NestedQuery<Key> nestedQuery = null;
+            if (docSource instanceof NestedQueryIterator) {
                 nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
+                if (log.isTraceEnabled()) {
+                    log.trace("evaluating nested " + nestedQuery);
+                }
             }
-            if (log.isTraceEnabled()) {
-                log.trace("evaluating nested " + nestedQuery);
-            }
-            evaluate(keySource, this.docSource.document(), nestedQuery);
+            
+            evaluate(keySource, docSource.document(), nestedQuery, holdsPermit);
+            started++;
         }
+        return started;
     }
     
-    private void evaluate(Key key, Document document, NestedQuery<Key> nestedQuery) {
+    private void evaluate(Key key, Document document, NestedQuery<Key> nestedQuery, boolean holdsPermit) {
         if (log.isTraceEnabled()) {
             log.trace("Adding evaluation of " + key + " to pipeline");
         }
         Pipeline pipeline = pipelines.checkOut(key, document, nestedQuery);
+        pipeline.setHoldsPermit(holdsPermit);
         
         evaluationQueue.add(new Tuple2<>(IteratorThreadPoolManager.executeEvaluation(pipeline, pipeline.toString()), pipeline));
     }
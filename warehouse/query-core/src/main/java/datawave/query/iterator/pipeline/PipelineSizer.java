@@ -0,0 +1,118 @@
+package datawave.query.iterator.pipeline;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many evaluation pipelines a {@link PipelineIterator} keeps active, between a minimum and a maximum. Each time the evaluation at the head of the
+ * queue is polled, the iterator records whether it had to wait for that evaluation, how long the evaluation took, and whether the cached results were full.
+ * After every round of evaluations the target is adjusted:
+ * <ul>
+ * <li>if the consumer waited on most of the evaluations then evaluation is the bottleneck, and the target grows by half (or doubles when the documents are
+ * expensive to evaluate)</li>
+ * <li>if the consumer never waited, or the cached results were mostly full, then evaluation is outpacing the consumer and the target shrinks by one</li>
+ * </ul>
+ * When the minimum and maximum are the same the number of pipelines is fixed.
+ */
+public class PipelineSizer {
+    
+    private static final Logger log = Logger.getLogger(PipelineSizer.class);
+    
+    /**
+     * The minimum number of polls between adjustments
+     */
+    static final int MIN_ROUND = 4;
+    
+    /**
+     * A document which takes at least this long to evaluate is expensive
+     */
+    static final long EXPENSIVE_EVALUATION_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    
+    /**
+     * The weight given to the latest evaluation in the average evaluation time
+     */
+    private static final double SMOOTHING = 0.2;
+    
+    private final int minPipelines;
+    private final int maxPipelines;
+    private int target;
+    
+    private int polls = 0;
+    private int waits = 0;
+    private int backlogs = 0;
+    private double averageEvaluationNanos = -1;
+    
+    public PipelineSizer(int minPipelines, int maxPipelines) {
+        this.maxPipelines = Math.max(1, maxPipelines);
+        this.minPipelines = Math.max(1, Math.min(minPipelines, this.maxPipelines));
+        this.target = this.minPipelines;
+    }
+    
+    /**
+     * Record the outcome of polling the evaluation at the head of the queue
+     *
+     * @param waited
+     *            whether the evaluation had not completed when it was polled
+     * @param evaluationNanos
+     *            how long the evaluation took
+     * @param backlogged
+     *            whether the cached results were full
+     */
+    public void record(boolean waited, long evaluationNanos, boolean backlogged) {
+        if (minPipelines == maxPipelines) {
+            return;
+        }
+        
+        polls++;
+        if (waited) {
+            waits++;
+        }
+        if (backlogged) {
+            backlogs++;
+        }
+        if (averageEvaluationNanos < 0) {
+            averageEvaluationNanos = evaluationNanos;
+        } else {
+            averageEvaluationNanos += SMOOTHING * (evaluationNanos - averageEvaluationNanos);
+        }
+        
+        if (polls >= Math.max(MIN_ROUND, target)) {
+            adjust();
+        }
+    }
+    
+    private void adjust() {
+        int previous = target;
+        if (waits * 2 > polls) {
+            int growth = (averageEvaluationNanos >= EXPENSIVE_EVALUATION_NANOS ? target : Math.max(1, target / 2));
+            target = Math.min(maxPipelines, target + growth);
+        } else if (waits == 0 || backlogs * 2 > polls) {
+            target = Math.max(minPipelines, target - 1);
+        }
+        
+        if (log.isDebugEnabled() && target != previous) {
+            log.debug("Changed the evaluation pipelines from " + previous + " to " + target + " after " + waits + " waits and " + backlogs + " backlogs in "
+                            + polls + " polls averaging " + TimeUnit.NANOSECONDS.toMicros((long) averageEvaluationNanos) + "us");
+        }
+        
+        polls = 0;
+        waits = 0;
+        backlogs = 0;
+    }
+    
+    /**
+     * @return the number of pipelines that should be active
+     */
+    public int getTarget() {
+        return target;
+    }
+    
+    public int getMinPipelines() {
+        return minPipelines;
+    }
+    
+    public int getMaxPipelines() {
+        return maxPipelines;
+    }
+}
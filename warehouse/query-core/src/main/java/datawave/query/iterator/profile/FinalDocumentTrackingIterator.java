@@ -5,6 +5,7 @@ import datawave.query.DocumentSerialization;
 import datawave.query.attributes.Document;
 import datawave.query.function.LogTiming;
 import datawave.query.function.serializer.KryoDocumentSerializer;
+import datawave.query.function.serializer.StreamingDocumentSerializer;
 import datawave.query.function.serializer.ToStringDocumentSerializer;
 import datawave.query.function.serializer.WritableDocumentSerializer;
 import datawave.query.iterator.Util;
@@ -96,6 +97,9 @@ public class FinalDocumentTrackingIterator implements Iterator<Map.Entry<Key,Val
         if (returnType == DocumentSerialization.ReturnType.kryo) {
             // Serialize the Document using Kryo
             serializedDocuments = Iterators.transform(emptyDocumentIterator, new KryoDocumentSerializer(isReducedResponse, isCompressResults));
+        } else if (returnType == DocumentSerialization.ReturnType.streaming) {
+            // Serialize the Document so that its fields can be read one at a time
+            serializedDocuments = Iterators.transform(emptyDocumentIterator, new StreamingDocumentSerializer(isReducedResponse, isCompressResults));
         } else if (returnType == DocumentSerialization.ReturnType.writable) {
             // Use the Writable interface to serialize the Document
             serializedDocuments = Iterators.transform(emptyDocumentIterator, new WritableDocumentSerializer(isReducedResponse));
@@ -1,19 +1,14 @@
 package datawave.query.jexl.functions;
 
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
 import datawave.ingest.protobuf.TermWeightPosition;
 import org.apache.log4j.Logger;
 
-import com.google.common.collect.LinkedListMultimap;
-import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Lists;
-
 /**
  * An abstract class to for the ordered and unordered content evaluators.
  */
@@ -64,12 +59,12 @@ public abstract class ContentFunctionEvaluator {
     }
     
     /**
-     * Evaluate the function based on the list of offset lists. The lists are expected to be ordered, and there is one offset list per term.
+     * Evaluate the function based on the positions of the terms within a field. There is one set of positions per term, in the order of the terms.
      * 
-     * @param offsets
-     * @return List of offset matching the query, often just the first match for efficiency
+     * @param positions
+     * @return true if the positions satisfy the function
      */
-    protected abstract boolean evaluate(List<List<TermWeightPosition>> offsets);
+    protected abstract boolean evaluate(TermPositions[] positions);
     
     /**
      * Validate and initialize this class. This will validate the arguments and setup other members.
@@ -116,7 +111,7 @@ public abstract class ContentFunctionEvaluator {
                 
                 return false;
             }
-            if (tfList.fetchOffsets().isEmpty()) {
+            if (tfList.isEmpty()) {
                 if (log.isTraceEnabled()) {
                     log.trace("Failing process() because of an empty offset list for " + term);
                 }
@@ -149,75 +144,32 @@ public abstract class ContentFunctionEvaluator {
      */
     public boolean evaluate() {
         if (computable()) {
-            // now for each event, lets process the terms
+            // the positions of each term within the field being evaluated
+            TermPositions[] positions = new TermPositions[terms.length];
+            
+            // now for each event, lets process the terms in each field holding any of them
             for (String eventId : eventIds) {
-                ListMultimap<String,List<TermWeightPosition>> offsetsByField = LinkedListMultimap.create();
+                Set<String> termFields = new LinkedHashSet<>();
                 for (String term : terms) {
-                    TermFrequencyList tfList = termOffsetMap.get(term);
-                    
-                    // Invert the map to take all of the offsets for a term within a field
-                    // and group the lists together
-                    for (String field : tfList.fields()) {
-                        TermFrequencyList.Zone zone = new TermFrequencyList.Zone(field, true, eventId);
-                        Collection<TermWeightPosition> offsets = tfList.fetchOffsets().get(zone);
-                        // if no offsets, but we are explicitly looking for this field (i.e. not unfielded), then check for a non-content expansion zone
-                        if (offsets.isEmpty() && (fields != null && fields.contains(field))) {
-                            zone = new TermFrequencyList.Zone(field, false, eventId);
-                            offsets = tfList.fetchOffsets().get(zone);
-                        }
-                        // not all field/event pairs will have offsets
-                        if (offsets != null && !offsets.isEmpty()) {
-                            offsetsByField.put(field, Lists.newArrayList(offsets));
-                        }
-                    }
-                }
-                
-                // If we have no offset lists, we can't match anything for this event
-                // (shouldn't happen because we are using an intersection of event ids...but just in case)
-                if (offsetsByField.isEmpty()) {
-                    continue;
+                    termFields.addAll(termOffsetMap.get(term).fields());
                 }
                 
-                // Iterate over each collection of offsets (grouped by field) and try to find one that satisfies the phrase/adjacency
-                for (String field : offsetsByField.keySet()) {
-                    List<List<TermWeightPosition>> offsets = offsetsByField.get(field);
-                    if (offsets == null || offsets.isEmpty()) {
-                        continue;
-                    }
-                    
-                    String logPrefix = "";
-                    if (log.isTraceEnabled()) {
-                        StringBuilder sb = new StringBuilder();
-                        sb.append("Testing content evaluation in ").append(field).append('(').append(eventId).append(") over terms: [");
-                        int length = terms.length;
-                        for (int i = 0; i < length; i++) {
-                            String term = terms[i];
-                            String offset = i < offsets.size() ? offsets.get(i).toString() : "[]";
-                            
-                            sb.append(term).append(":").append(offset);
-                            if (i < length - 1) {
-                                sb.append(", ");
-                            }
-                        }
-                        sb.append("]");
-                        
-                        logPrefix = sb.toString();
-                    }
-                    
-                    // fail quick if we did not find enough offsets
-                    if (offsets.size() < terms.length) {
+                // Iterate over each field and try to find one that satisfies the phrase/adjacency
+                for (String field : termFields) {
+                    // fail quick if any of the terms are not in the field
+                    if (!load(field, eventId, positions)) {
                         continue;
                     }
                     
                     // evaluate the offsets
-                    if (evaluate(offsets)) {
+                    if (evaluate(positions)) {
                         if (log.isTraceEnabled()) {
-                            log.trace(logPrefix + " satisfied the content function");
+                            log.trace(getLogPrefix(field, eventId, positions) + " satisfied the content function");
                         }
                         
                         return true;
                     } else if (log.isTraceEnabled()) {
-                        log.trace(logPrefix + " did not satisfy the content function");
+                        log.trace(getLogPrefix(field, eventId, positions) + " did not satisfy the content function");
                     }
                 }
             }
@@ -226,10 +178,50 @@ public abstract class ContentFunctionEvaluator {
         return false;
     }
     
+    /**
+     * Look up the positions of each term within a field of an event
+     * 
+     * @param field
+     * @param eventId
+     * @param positions
+     *            the positions to fill in, one per term
+     * @return false if any of the terms have no positions in the field
+     */
+    private boolean load(String field, String eventId, TermPositions[] positions) {
+        for (int i = 0; i < terms.length; i++) {
+            TermFrequencyList tfList = termOffsetMap.get(terms[i]);
+            TermPositions offsets = tfList.getPositions(new TermFrequencyList.Zone(field, true, eventId));
+            // if no offsets, but we are explicitly looking for this field (i.e. not unfielded), then check for a non-content expansion zone
+            if (offsets == null && (fields != null && fields.contains(field))) {
+                offsets = tfList.getPositions(new TermFrequencyList.Zone(field, false, eventId));
+            }
+            // not all field/event pairs will have offsets
+            if (offsets == null || offsets.size() == 0) {
+                return false;
+            }
+            positions[i] = offsets;
+        }
+        return true;
+    }
+    
+    private String getLogPrefix(String field, String eventId, TermPositions[] positions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Testing content evaluation in ").append(field).append('(').append(eventId).append(") over terms: [");
+        int length = terms.length;
+        for (int i = 0; i < length; i++) {
+            sb.append(terms[i]).append(":").append(positions[i]);
+            if (i < length - 1) {
+                sb.append(", ");
+            }
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+    
     @Override
     public String toString() {
         return "ContentFunctionEvaluator{fields=" + fields + ", distance=" + distance + ", terms=" + Arrays.toString(terms) + ", termOffsetMap="
                         + termOffsetMap + ", canProcess=" + canProcess + ", eventIds=" + eventIds + '}';
     }
-    
+
 }
@@ -1,17 +1,8 @@
 package datawave.query.jexl.functions;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.PriorityQueue;
 import java.util.Set;
 
-import datawave.ingest.protobuf.TermWeightPosition;
 import org.apache.log4j.Logger;
 
 /**
@@ -43,202 +34,149 @@ import org.apache.log4j.Logger;
 public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
     private static final Logger log = Logger.getLogger(ContentUnorderedEvaluator.class);
     
+    // the index of the first occurrence of each term, repeated terms share the positions of their first occurrence
+    private final int[] termGroups;
+    
+    // the next unused position of each term group
+    private final int[] nextPositions;
+    
+    // the current position of each term
+    private final int[] currentPositions;
+    
+    // the highest offset of the positions remaining to each term
+    private final int[] maxOffsets;
+    
     public ContentUnorderedEvaluator(Set<String> fields, int distance, float maxScore, Map<String,TermFrequencyList> termOffsetMap, String... terms) {
         super(fields, distance, maxScore, termOffsetMap, terms);
+        
+        this.termGroups = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            termGroups[i] = i;
+            for (int j = 0; j < i; j++) {
+                if (terms[j] != null && terms[j].equals(terms[i])) {
+                    termGroups[i] = j;
+                    break;
+                }
+            }
+        }
+        this.nextPositions = new int[terms.length];
+        this.currentPositions = new int[terms.length];
+        this.maxOffsets = new int[terms.length];
     }
     
     /**
-     * Evaluate a list of offsets in an unordered kind of way.
+     * Evaluate the positions in an unordered kind of way. Each term starts at its lowest position and the term at the lowest position is repeatedly advanced
+     * until the lowest and highest positions are within the distance, or the lowest can no longer be brought within the distance of the highest. Repeated
+     * terms share one set of positions, so each occurrence of the term is matched at a different position.
      * 
-     * @param offsets
+     * @param positions
      * @return true if we found an unordered list within the specified distance for the specified set of offsets.
      */
     @Override
-    public boolean evaluate(List<List<TermWeightPosition>> offsets) {
-        filterOffsets(offsets);
-        MultiOffsetMatcher mlIter = new MultiOffsetMatcher(distance, terms, offsets);
-        return mlIter.findMatch();
-    }
-    
-    private void filterOffsets(List<List<TermWeightPosition>> offsets) {
-        // if max score is maximum possible value short circuit
-        if (maxScore == DEFAULT_MAX_SCORE) {
-            return;
+    public boolean evaluate(TermPositions[] positions) {
+        if (positions.length < terms.length) {
+            return false;
         }
         
-        for (List<TermWeightPosition> offset : offsets) {
-            Iterator<TermWeightPosition> twpIter = offset.iterator();
-            while (twpIter.hasNext()) {
-                Integer score = twpIter.next().getScore();
-                if (null == score || score > maxScore) {
-                    twpIter.remove();
-                }
-            }
+        for (int i = 0; i < terms.length; i++) {
+            nextPositions[i] = 0;
         }
-    }
-    
-    private static class OffsetList implements Comparable<OffsetList> {
-        private final String term;
-        private final List<TermWeightPosition> offsets;
-        private TermWeightPosition minOffset;
-        private TermWeightPosition maxOffset = null;
         
-        public OffsetList(String term, List<TermWeightPosition> o) {
-            this.term = term;
-            this.offsets = o;
+        // start each term at its lowest position, tracking the highest of those
+        int maxLowOffset = 0;
+        int maxOffset = 0;
+        for (int i = 0; i < terms.length; i++) {
+            int group = termGroups[i];
+            TermPositions termPositions = positions[group];
+            int position = nextPosition(termPositions, nextPositions[group]);
+            if (position < 0) {
+                if (log.isTraceEnabled()) {
+                    log.trace("The offset list for " + terms[i] + " has no remaining elements: " + termPositions + ". Exiting");
+                }
+                return false;
+            }
+            nextPositions[group] = position + 1;
+            currentPositions[i] = position;
             
-            // as long as there is at least one term, grab the last item for a max
-            if (!o.isEmpty()) {
-                // offsets with skip words will sort based on min so for max we need to loop over all offsets
-                maxOffset = Collections.max(offsets, new TermWeightPosition.MaxOffsetComparator());
+            // offsets with skip words sort based on the low offset so for max we need to look at all of the remaining positions
+            int max = termPositions.getOffset(position);
+            for (int j = position + 1; j < termPositions.size(); j++) {
+                if (termPositions.getOffset(j) > max && isScored(termPositions, j)) {
+                    max = termPositions.getOffset(j);
+                }
             }
+            maxOffsets[i] = max;
             
-            nextOffset();
-        }
-        
-        public TermWeightPosition getMinOffset() {
-            return minOffset;
-        }
-        
-        /**
-         * 
-         * @return the highest value in this list
-         */
-        public TermWeightPosition getMaxOffset() {
-            return maxOffset;
-        }
-        
-        public Optional<TermWeightPosition> nextOffset() {
-            if (offsets.isEmpty()) {
-                return Optional.empty();
-            } else {
-                minOffset = offsets.remove(0);
-                return Optional.of(minOffset);
+            if (i == 0 || compare(termPositions.getLowOffset(position), termPositions.getOffset(position), maxLowOffset, maxOffset) > 0) {
+                maxLowOffset = termPositions.getLowOffset(position);
+                maxOffset = termPositions.getOffset(position);
             }
         }
         
-        @Override
-        public int compareTo(OffsetList o) {
-            return this.getMinOffset().compareTo(o.getMinOffset());
-        }
-        
-        @Override
-        public boolean equals(Object o) {
-            return minOffset == ((OffsetList) o).minOffset;
-        }
-        
-        @Override
-        public String toString() {
-            return term + ";" + minOffset + ":" + maxOffset;
-        }
-    }
-    
-    private static class MultiOffsetMatcher {
-        int distance = 0;
-        
-        final String[] terms;
-        
-        final PriorityQueue<OffsetList> offsetQueue = new PriorityQueue<>();
-        Optional<TermWeightPosition> maxOffset = Optional.empty();
-        
-        /**
-         * At the end of this method, terms will contain the query terms. currentOffsets will contain the minimum offset for each term and offsetLists will
-         * contain the remaining offsets for each term.
-         * 
-         * The indexes of terms, offsetLists and currentOffsets are parallel in that the i'th item in currentOffsets corresponds to the i'th item in offsetLists
-         * and term[i].
-         *
-         * @param distance
-         *            the maximum acceptable distance between terms.
-         * @param terms
-         *            the query terms.
-         * @param termOffsets
-         *            the offsets for the specified terms, these lists will not be modified in any way.
-         * @throws IllegalArgumentException
-         *             if the number of terms does not match the number of offset lists.
-         */
-        public MultiOffsetMatcher(int distance, String[] terms, Collection<List<TermWeightPosition>> termOffsets) {
-            this.distance = distance;
-            this.terms = terms;
-            
-            if (terms.length > termOffsets.size()) {
-                // more terms than offsets, no match, falls through to quick short-circuit in findMatch.
-                return;
-            } else if (terms.length < termOffsets.size()) {
-                throw new IllegalArgumentException("Less terms than the number of offset lists received");
+        while (true) {
+            // find the term at the lowest position
+            int min = 0;
+            TermPositions minPositions = positions[termGroups[0]];
+            for (int i = 1; i < terms.length; i++) {
+                TermPositions termPositions = positions[termGroups[i]];
+                if (compare(termPositions.getLowOffset(currentPositions[i]), termPositions.getOffset(currentPositions[i]),
+                                minPositions.getLowOffset(currentPositions[min]), minPositions.getOffset(currentPositions[min])) < 0) {
+                    min = i;
+                    minPositions = termPositions;
+                }
             }
             
-            int termPos = 0;
-            
-            // holds the (canonical) offset list for of each term
-            final Map<String,List<TermWeightPosition>> termsSeen = new HashMap<>();
+            if (maxLowOffset - minPositions.getOffset(currentPositions[min]) <= distance) {
+                return true;
+            }
             
-            for (List<TermWeightPosition> offsetList : termOffsets) {
-                String term = terms[termPos++];
-                
-                if (offsetList != null) {
-                    if (!termsSeen.containsKey(term)) {
-                        // new term, create a defensive copy that's safe to modify.
-                        offsetList = new LinkedList<>(offsetList);
-                        termsSeen.put(term, offsetList);
-                    } else {
-                        // already seen term, all matching terms should reference the same list.
-                        offsetList = termsSeen.get(term);
-                    }
-                }
-                
-                if (offsetList == null || offsetList.isEmpty()) {
-                    if (log.isTraceEnabled()) {
-                        log.trace("The offset list for " + term + " is null or has no elements: " + offsetList + ". Exiting");
-                    }
-                    
-                    offsetQueue.clear();
-                    return;
-                }
-                
-                OffsetList entry = new OffsetList(term, offsetList);
-                if ((!maxOffset.isPresent()) || (entry.getMinOffset().compareTo(maxOffset.get()) > 0)) {
-                    maxOffset = Optional.of(entry.getMinOffset());
-                }
-                offsetQueue.add(entry);
+            // if the maxOffset is more than distance from the largest value for this term, there is no way to satisfy
+            if (maxLowOffset - maxOffsets[min] > distance) {
+                return false;
             }
-        }
-        
-        public boolean findMatch() {
-            // Quick short-circuit -- if we have fewer offsets than terms in the phrase/adjacency/within
-            // we're evaluating, we know there are no results
-            if (terms.length > offsetQueue.size() || (!maxOffset.isPresent())) {
+            
+            int group = termGroups[min];
+            int position = nextPosition(minPositions, nextPositions[group]);
+            if (position < 0) { // no more offsets for this term
                 return false;
             }
+            nextPositions[group] = position + 1;
+            currentPositions[min] = position;
             
-            while (true) {
-                OffsetList o = offsetQueue.remove();
-                
-                if (maxOffset.get().getLowOffset() - o.getMinOffset().getOffset() <= distance) {
-                    return true;
-                }
-                
-                // if the maxOffset is more than distance from the largest value in this list, there is no way to satisfy
-                if (maxOffset.get().getLowOffset() - o.getMaxOffset().getOffset() > distance) {
-                    return false;
-                }
-                
-                Optional<TermWeightPosition> nextOffset = o.nextOffset();
-                if (!nextOffset.isPresent()) { // no more offsets from this list
-                    return false;
-                }
-                
-                if (nextOffset.get().compareTo(maxOffset.get()) > 0) {
-                    maxOffset = nextOffset;
-                }
-                
-                offsetQueue.add(o);
+            if (compare(minPositions.getLowOffset(position), minPositions.getOffset(position), maxLowOffset, maxOffset) > 0) {
+                maxLowOffset = minPositions.getLowOffset(position);
+                maxOffset = minPositions.getOffset(position);
             }
         }
-        
-        @Override
-        public String toString() {
-            return "MultiOffsetMatcher; dis:" + distance + " max: " + maxOffset + " queue: " + offsetQueue;
+    }
+    
+    /**
+     * @param termPositions
+     * @param from
+     * @return the first position at or after from which is within the max score, or -1 if there are none
+     */
+    private int nextPosition(TermPositions termPositions, int from) {
+        for (int i = from; i < termPositions.size(); i++) {
+            if (isScored(termPositions, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private boolean isScored(TermPositions termPositions, int i) {
+        // if max score is maximum possible value short circuit
+        return maxScore == DEFAULT_MAX_SCORE || termPositions.getScore(i) <= maxScore;
+    }
+    
+    /**
+     * Compare two positions the way {@link datawave.ingest.protobuf.TermWeightPosition} does, by low offset and then by offset
+     */
+    private static int compare(int lowOffset1, int offset1, int lowOffset2, int offset2) {
+        int result = Integer.compare(lowOffset1, lowOffset2);
+        if (result != 0) {
+            return result;
         }
+        return Integer.compare(offset1, offset2);
     }
 }
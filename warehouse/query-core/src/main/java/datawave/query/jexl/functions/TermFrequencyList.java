@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 
 import datawave.ingest.protobuf.TermWeightPosition;
 import org.apache.accumulo.core.data.Key;
@@ -18,6 +19,8 @@ import com.google.common.collect.TreeMultimap;
 /**
  * Represents a List of offsets represented as TermWeightPositions, corresponding to word positions, in a given field, for a term. This is intended to be used
  * in the scope of a Map from term to {@link TermFrequencyList}
+ * <p>
+ * The positions of each zone are held as {@link TermPositions}, which the content function evaluators read directly.
  */
 public class TermFrequencyList {
     
@@ -95,12 +98,18 @@ public class TermFrequencyList {
         return eventId.toString();
     }
     
-    protected final TreeMultimap<Zone,TermWeightPosition> offsetsPerField;
+    protected final TreeMap<Zone,TermPositions> offsetsPerField = new TreeMap<>();
     
     public TermFrequencyList(TreeMultimap<Zone,TermWeightPosition> offsetsByField) {
         checkNotNull(offsetsByField);
         
-        this.offsetsPerField = offsetsByField;
+        addOffsets(offsetsByField);
+    }
+    
+    private TermFrequencyList() {}
+    
+    public TermFrequencyList(Zone field, TermPositions positions) {
+        addPositions(field, positions);
     }
     
     public TermFrequencyList(Entry<Zone,Iterable<TermWeightPosition>> offsetsPerField) {
@@ -114,23 +123,64 @@ public class TermFrequencyList {
     public TermFrequencyList(Iterable<Entry<Zone,Iterable<TermWeightPosition>>> offsetsPerField) {
         checkNotNull(offsetsPerField);
         
-        this.offsetsPerField = TreeMultimap.create();
-        
         addOffsets(offsetsPerField);
     }
     
     public static TermFrequencyList merge(TermFrequencyList list1, TermFrequencyList list2) {
-        TreeMultimap<Zone,TermWeightPosition> offsetsPerField = TreeMultimap.create();
-        offsetsPerField.putAll(list1.offsetsPerField);
-        offsetsPerField.putAll(list2.offsetsPerField);
-        return new TermFrequencyList(offsetsPerField);
+        TermFrequencyList merged = new TermFrequencyList();
+        for (TermFrequencyList list : Arrays.asList(list1, list2)) {
+            for (Entry<Zone,TermPositions> entry : list.offsetsPerField.entrySet()) {
+                merged.addPositions(entry.getKey(), entry.getValue());
+            }
+        }
+        return merged;
     }
     
     public void addOffsets(Zone field, Iterable<TermWeightPosition> offsets) {
         checkNotNull(field);
         checkNotNull(offsets);
         
-        this.offsetsPerField.putAll(field, offsets);
+        TermPositions positions = new TermPositions();
+        positions.addAll(offsets);
+        addPositions(field, positions);
+    }
+    
+    /**
+     * Add the positions of a zone. The positions are copied if the zone is already held, and are held as is otherwise so they must not be modified
+     * afterwards.
+     * 
+     * @param field
+     * @param positions
+     */
+    public void addPositions(Zone field, TermPositions positions) {
+        checkNotNull(field);
+        checkNotNull(positions);
+        
+        // as with a multimap, a zone without positions is not held
+        if (positions.size() == 0) {
+            return;
+        }
+        TermPositions existing = this.offsetsPerField.get(field);
+        if (existing == null) {
+            this.offsetsPerField.put(field, positions);
+        } else {
+            TermPositions combined = new TermPositions();
+            combined.addAll(existing);
+            combined.addAll(positions);
+            this.offsetsPerField.put(field, combined);
+        }
+    }
+    
+    /**
+     * @param field
+     * @return the positions of a zone, or null if there are none
+     */
+    public TermPositions getPositions(Zone field) {
+        return this.offsetsPerField.get(field);
+    }
+    
+    public boolean isEmpty() {
+        return this.offsetsPerField.isEmpty();
     }
     
     public void addOffsets(Entry<Zone,Iterable<TermWeightPosition>> offsetForField) {
@@ -156,12 +206,19 @@ public class TermFrequencyList {
     }
     
     /**
-     * Return an <code>Immutable</code> copy of the entire mapping
+     * Return a copy of the entire mapping, with the positions boxed
      * 
      * @return
      */
     public TreeMultimap<Zone,TermWeightPosition> fetchOffsets() {
-        return this.offsetsPerField;
+        TreeMultimap<Zone,TermWeightPosition> offsets = TreeMultimap.create();
+        for (Entry<Zone,TermPositions> entry : this.offsetsPerField.entrySet()) {
+            TermPositions positions = entry.getValue();
+            for (int i = 0; i < positions.size(); i++) {
+                offsets.put(entry.getKey(), positions.getPosition(i));
+            }
+        }
+        return offsets;
     }
     
     /**
@@ -173,7 +230,7 @@ public class TermFrequencyList {
     public TreeMultimap<Zone,TermWeightPosition> fetchOffsets(Set<Zone> fields) {
         checkNotNull(fields);
         
-        return (TreeMultimap<Zone,TermWeightPosition>) Multimaps.filterKeys(this.offsetsPerField, new FieldFilterPredicate(fields));
+        return (TreeMultimap<Zone,TermWeightPosition>) Multimaps.filterKeys(fetchOffsets(), new FieldFilterPredicate(fields));
     }
     
     /**
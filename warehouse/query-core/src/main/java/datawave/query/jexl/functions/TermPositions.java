@@ -0,0 +1,200 @@
+package datawave.query.jexl.functions;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import datawave.ingest.protobuf.TermWeightOffsets;
+import datawave.ingest.protobuf.TermWeightPosition;
+
+/**
+ * The positions of one term within a field of an event, held as parallel primitive arrays in {@link TermWeightPosition} order: by low offset and then by
+ * offset. As in a set of {@link TermWeightPosition}s, a position with the same low offset and offset as one already held is dropped. The positions are
+ * loaded straight from the decoded term frequency entry, and the content evaluators walk these arrays instead of lists of boxed positions.
+ */
+public class TermPositions {
+    
+    private int size = 0;
+    private int[] lowOffsets = new int[16];
+    private int[] offsets = new int[16];
+    private int[] scores = new int[16];
+    private boolean[] zeroOffsetMatches = new boolean[16];
+    private int maxSkips = 0;
+    
+    /**
+     * Replace the positions held with the given ones
+     *
+     * @param positions
+     *            positions in {@link TermWeightPosition} order
+     */
+    public void load(Collection<TermWeightPosition> positions) {
+        clear(positions.size());
+        addAll(positions);
+    }
+    
+    /**
+     * Replace the positions held with those of a decoded term frequency entry
+     *
+     * @param decoded
+     *            the decoded entry
+     */
+    public void load(TermWeightOffsets decoded) {
+        clear(decoded.size());
+        boolean zeroOffsetMatch = decoded.getZeroOffsetMatch();
+        for (int i = 0; i < decoded.size(); i++) {
+            int offset = decoded.getOffset(i);
+            int prevSkips = decoded.getPrevSkips(i);
+            add((prevSkips >= 0 ? offset - prevSkips : offset), offset, decoded.getScore(i), zeroOffsetMatch);
+        }
+    }
+    
+    /**
+     * Add positions to those held
+     *
+     * @param positions
+     */
+    public void addAll(Iterable<TermWeightPosition> positions) {
+        for (TermWeightPosition position : positions) {
+            add(position.getLowOffset(), position.getOffset(), position.getScore(), position.getZeroOffsetMatch());
+        }
+    }
+    
+    /**
+     * Add the positions held by another instance to those held
+     *
+     * @param other
+     */
+    public void addAll(TermPositions other) {
+        ensureCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            add(other.lowOffsets[i], other.offsets[i], other.scores[i], other.zeroOffsetMatches[i]);
+        }
+    }
+    
+    /**
+     * @param i
+     * @return the i'th position, boxed
+     */
+    public TermWeightPosition getPosition(int i) {
+        return new TermWeightPosition.Builder().setOffset(offsets[i]).setPrevSkips(offsets[i] - lowOffsets[i]).setScore(scores[i])
+                        .setZeroOffsetMatch(zeroOffsetMatches[i]).build();
+    }
+    
+    private void clear(int capacity) {
+        ensureCapacity(capacity);
+        size = 0;
+        maxSkips = 0;
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity > offsets.length) {
+            capacity = Math.max(capacity, offsets.length * 2);
+            lowOffsets = Arrays.copyOf(lowOffsets, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            zeroOffsetMatches = Arrays.copyOf(zeroOffsetMatches, capacity);
+        }
+    }
+    
+    private void add(int lowOffset, int offset, int score, boolean zeroOffsetMatch) {
+        // positions nearly always arrive in order, for which this insertion sort is linear
+        int i = size;
+        while (i > 0 && (lowOffsets[i - 1] > lowOffset || (lowOffsets[i - 1] == lowOffset && offsets[i - 1] > offset))) {
+            i--;
+        }
+        if (i > 0 && lowOffsets[i - 1] == lowOffset && offsets[i - 1] == offset) {
+            return;
+        }
+        ensureCapacity(size + 1);
+        if (i < size) {
+            System.arraycopy(lowOffsets, i, lowOffsets, i + 1, size - i);
+            System.arraycopy(offsets, i, offsets, i + 1, size - i);
+            System.arraycopy(scores, i, scores, i + 1, size - i);
+            System.arraycopy(zeroOffsetMatches, i, zeroOffsetMatches, i + 1, size - i);
+        }
+        lowOffsets[i] = lowOffset;
+        offsets[i] = offset;
+        scores[i] = score;
+        zeroOffsetMatches[i] = zeroOffsetMatch;
+        maxSkips = Math.max(maxSkips, offset - lowOffset);
+        size++;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @param i
+     * @return the lowest offset of the i'th position with respect to skips
+     */
+    public int getLowOffset(int i) {
+        return lowOffsets[i];
+    }
+    
+    public int getOffset(int i) {
+        return offsets[i];
+    }
+    
+    public int getScore(int i) {
+        return scores[i];
+    }
+    
+    public boolean getZeroOffsetMatch(int i) {
+        return zeroOffsetMatches[i];
+    }
+    
+    /**
+     * @return the most skips before any of the positions, so the offset of a position is at most this much more than its low offset
+     */
+    public int getMaxSkips() {
+        return maxSkips;
+    }
+    
+    /**
+     * @param i
+     * @param other
+     * @param j
+     * @return true if the i'th position and the j'th position of the other term are equal as {@link TermWeightPosition}s
+     */
+    public boolean isSamePosition(int i, TermPositions other, int j) {
+        return lowOffsets[i] == other.lowOffsets[j] && offsets[i] == other.offsets[j];
+    }
+    
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * (31 * hash + lowOffsets[i]) + offsets[i];
+        }
+        return hash;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TermPositions)) {
+            return false;
+        }
+        TermPositions other = (TermPositions) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!isSamePosition(i, other, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(lowOffsets[i]).append('-').append(offsets[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
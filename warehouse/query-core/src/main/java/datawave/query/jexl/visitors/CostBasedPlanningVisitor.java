@@ -0,0 +1,179 @@
+package datawave.query.jexl.visitors;
+
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.nodes.ExceededValueThresholdMarkerJexlNode;
+import datawave.query.jexl.nodes.QueryPropertyMarker;
+import datawave.query.planner.pushdown.CardinalityEstimator;
+import datawave.query.util.MetadataHelper;
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTDelayedPredicate;
+import org.apache.commons.jexl2.parser.ASTEQNode;
+import org.apache.commons.jexl2.parser.ASTERNode;
+import org.apache.commons.jexl2.parser.ASTReference;
+import org.apache.commons.jexl2.parser.ASTReferenceExpression;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.JexlNodes;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Visitor which plans the indexed portions of a query from the estimated cardinality of each term (see {@link CardinalityEstimator}). For each intersection,
+ * bottom up:
+ * <ul>
+ * <li>terms whose estimate exceeds that of the most selective term by more than the configured ratio are delayed, so they are evaluated against the documents
+ * found by the more selective term rather than scanned in the global index</li>
+ * <li>likewise, such regexes are handed to an ivarator rather than being expanded against the global index, when ivarators are configured</li>
+ * <li>the terms are ordered from the most to the least selective, which is the order they are intersected and evaluated in</li>
+ * </ul>
+ * Index only terms are never delayed, and the most selective term of an intersection is always kept, so the query remains executable. The estimates are recorded
+ * on the configuration as plan estimates, from where they are written to the query metrics.
+ */
+public class CostBasedPlanningVisitor extends BaseVisitor {
+    
+    private static final Logger log = Logger.getLogger(CostBasedPlanningVisitor.class);
+    
+    /**
+     * The maximum number of term estimates recorded for a query
+     */
+    protected static final int MAX_RECORDED_TERMS = 20;
+    
+    protected final ShardQueryConfiguration config;
+    protected final CardinalityEstimator estimator;
+    protected final Set<String> indexOnlyFields;
+    protected final double ratio;
+    
+    private int delayed = 0;
+    private int ivarated = 0;
+    private int recordedTerms = 0;
+    
+    public CostBasedPlanningVisitor(ShardQueryConfiguration config, MetadataHelper helper, Set<String> indexOnlyFields) {
+        this.config = config;
+        this.estimator = new CardinalityEstimator(config, helper);
+        this.indexOnlyFields = (indexOnlyFields == null ? Collections.<String> emptySet() : indexOnlyFields);
+        this.ratio = Math.max(1.0, config.getCostBasedPlanningRatio());
+    }
+    
+    public static <T extends JexlNode> T plan(T queryTree, ShardQueryConfiguration config, MetadataHelper helper, Set<String> indexOnlyFields) {
+        CostBasedPlanningVisitor visitor = new CostBasedPlanningVisitor(config, helper, indexOnlyFields);
+        queryTree.jjtAccept(visitor, null);
+        
+        long estimate = visitor.estimator.estimate(queryTree);
+        if (estimate != CardinalityEstimator.UNKNOWN) {
+            config.addPlanEstimate("Estimated Records", estimate);
+        }
+        config.addPlanEstimate("Delayed Terms", visitor.delayed);
+        config.addPlanEstimate("Ivarated Terms", visitor.ivarated);
+        if (log.isDebugEnabled()) {
+            log.debug("Estimated " + (estimate == CardinalityEstimator.UNKNOWN ? "unknown" : estimate) + " records, delayed " + visitor.delayed
+                            + " terms and ivarated " + visitor.ivarated + " terms");
+        }
+        return queryTree;
+    }
+    
+    @Override
+    public Object visit(ASTReferenceExpression node, Object data) {
+        // if not already delayed somehow
+        if (!QueryPropertyMarker.instanceOf(node, null)) {
+            return super.visit(node, data);
+        }
+        return data;
+    }
+    
+    @Override
+    public Object visit(ASTReference node, Object data) {
+        // if not already delayed somehow
+        if (!QueryPropertyMarker.instanceOf(node, null)) {
+            return super.visit(node, data);
+        }
+        return data;
+    }
+    
+    @Override
+    public Object visit(ASTEQNode node, Object data) {
+        if (recordedTerms < MAX_RECORDED_TERMS) {
+            long estimate = estimator.estimate(node);
+            if (estimate != CardinalityEstimator.UNKNOWN) {
+                config.addPlanEstimate("Estimated " + JexlStringBuildingVisitor.buildQuery(node), estimate);
+                recordedTerms++;
+            }
+        }
+        return data;
+    }
+    
+    @Override
+    public Object visit(ASTAndNode node, Object data) {
+        if (QueryPropertyMarker.instanceOf(node, null)) {
+            return data;
+        }
+        
+        // plan the nested expressions first so that their estimates are final
+        node.childrenAccept(this, data);
+        
+        JexlNode[] children = JexlNodes.children(node);
+        final long[] estimates = new long[children.length];
+        int anchor = -1;
+        for (int i = 0; i < children.length; i++) {
+            estimates[i] = estimator.estimate(children[i]);
+            if (estimates[i] != CardinalityEstimator.UNKNOWN && (anchor < 0 || estimates[i] < estimates[anchor])) {
+                anchor = i;
+            }
+        }
+        if (anchor < 0) {
+            return data;
+        }
+        
+        double threshold = estimates[anchor] * ratio;
+        for (int i = 0; i < children.length; i++) {
+            if (i == anchor || estimates[i] == CardinalityEstimator.UNKNOWN || estimates[i] <= threshold) {
+                continue;
+            }
+            
+            JexlNode source = JexlASTHelper.dereference(children[i]);
+            if (source instanceof ASTEQNode && !isIndexOnly(source)) {
+                children[i] = ASTDelayedPredicate.create(children[i]);
+                estimates[i] = CardinalityEstimator.UNKNOWN;
+                delayed++;
+            } else if (source instanceof ASTERNode && config.getIvaratorCacheBaseURIs() != null) {
+                JexlNode marker = new ExceededValueThresholdMarkerJexlNode(children[i]);
+                JexlNodes.replaceChild(node, children[i], marker);
+                children[i] = marker;
+                ivarated++;
+            } else {
+                continue;
+            }
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Estimated " + JexlStringBuildingVisitor.buildQuery(source) + " at " + estimates[i] + " against " + estimates[anchor] + ", "
+                                + (source instanceof ASTEQNode ? "delaying" : "using an ivarator"));
+            }
+        }
+        
+        // order the intersection from the most to the least selective term, keeping the original order for equal estimates
+        Integer[] order = new Integer[children.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> estimates[i]));
+        JexlNode[] ordered = new JexlNode[children.length];
+        for (int i = 0; i < order.length; i++) {
+            ordered[i] = JexlNodes.children(node)[order[i]];
+        }
+        JexlNodes.children(node, ordered);
+        
+        return data;
+    }
+    
+    private boolean isIndexOnly(JexlNode node) {
+        try {
+            return indexOnlyFields.contains(JexlASTHelper.getIdentifier(node));
+        } catch (NoSuchElementException e) {
+            return true;
+        }
+    }
+}
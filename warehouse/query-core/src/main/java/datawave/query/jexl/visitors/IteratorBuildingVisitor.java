@@ -5,6 +5,8 @@ import com.google.common.base.Predicates;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl;
+import datawave.core.iterators.IvaratorResultCache;
 import datawave.core.iterators.SourcePool;
 import datawave.core.iterators.ThreadLocalPooledSource;
 import datawave.core.iterators.filesystem.FileSystemCache;
@@ -49,6 +51,7 @@ import datawave.query.predicate.Filter;
 import datawave.query.predicate.TimeFilter;
 import datawave.query.util.IteratorToSortedKeyValueIterator;
 import datawave.query.util.TypeMetadata;
+import datawave.query.util.sortedset.MappedFileBackedSortedSet;
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
 import org.apache.accumulo.core.data.Key;
@@ -132,6 +135,14 @@ public class IteratorBuildingVisitor extends BaseVisitor {
     protected int ivaratorCacheBufferSize = 10000;
     protected int maxRangeSplit = 11;
     protected int ivaratorMaxOpenFiles = 100;
+    protected String ivaratorSortedSetBackend = DatawaveFieldIndexCachingIteratorJexl.HDFS_SORTED_SET_BACKEND;
+    protected String ivaratorLocalCacheDir = null;
+    protected int ivaratorOffHeapBufferSize = MappedFileBackedSortedSet.DEFAULT_BUFFER_SIZE;
+    protected String ivaratorScheduler = DatawaveFieldIndexCachingIteratorJexl.FIFO_IVARATOR_SCHEDULER;
+    protected int ivaratorSchedulerWeight = 1;
+    protected int maxIvaratorConcurrentFills = 0;
+    protected String ivaratorResultCacheDir = null;
+    protected long ivaratorResultCacheMaxSize = 0;
     protected SourcePool ivaratorSources = null;
     protected SortedKeyValueIterator<Key,Value> ivaratorSource = null;
     protected int ivaratorCount = 0;
@@ -1226,6 +1237,18 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         builder.setIvaratorCacheScanTimeout(ivaratorCacheScanTimeout);
         builder.setMaxRangeSplit(maxRangeSplit);
         builder.setIvaratorMaxOpenFiles(ivaratorMaxOpenFiles);
+        builder.setIvaratorSortedSetBackend(ivaratorSortedSetBackend);
+        builder.setIvaratorLocalCacheDir(ivaratorLocalCacheDir);
+        builder.setIvaratorOffHeapBufferSize(ivaratorOffHeapBufferSize);
+        builder.setQueryId(queryId);
+        builder.setIvaratorScheduler(ivaratorScheduler);
+        builder.setIvaratorSchedulerWeight(ivaratorSchedulerWeight);
+        builder.setMaxIvaratorConcurrentFills(maxIvaratorConcurrentFills);
+        if (ivaratorResultCacheDir != null) {
+            Path resultCacheDir = new Path(ivaratorResultCacheDir);
+            builder.setIvaratorResultCache(new IvaratorResultCache(hdfsFileSystem.getFileSystem(resultCacheDir.toUri()), resultCacheDir,
+                            ivaratorResultCacheMaxSize));
+        }
         builder.setCollectTimingDetails(collectTimingDetails);
         builder.setQuerySpanCollector(querySpanCollector);
         builder.setSortedUIDs(sortedUIDs);
@@ -1448,6 +1471,46 @@ public class IteratorBuildingVisitor extends BaseVisitor {
         return this;
     }
     
+    public IteratorBuildingVisitor setIvaratorSortedSetBackend(String ivaratorSortedSetBackend) {
+        this.ivaratorSortedSetBackend = ivaratorSortedSetBackend;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorLocalCacheDir(String ivaratorLocalCacheDir) {
+        this.ivaratorLocalCacheDir = ivaratorLocalCacheDir;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorOffHeapBufferSize(int ivaratorOffHeapBufferSize) {
+        this.ivaratorOffHeapBufferSize = ivaratorOffHeapBufferSize;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorScheduler(String ivaratorScheduler) {
+        this.ivaratorScheduler = ivaratorScheduler;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorSchedulerWeight(int ivaratorSchedulerWeight) {
+        this.ivaratorSchedulerWeight = ivaratorSchedulerWeight;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setMaxIvaratorConcurrentFills(int maxIvaratorConcurrentFills) {
+        this.maxIvaratorConcurrentFills = maxIvaratorConcurrentFills;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorResultCacheDir(String ivaratorResultCacheDir) {
+        this.ivaratorResultCacheDir = ivaratorResultCacheDir;
+        return this;
+    }
+    
+    public IteratorBuildingVisitor setIvaratorResultCacheMaxSize(long ivaratorResultCacheMaxSize) {
+        this.ivaratorResultCacheMaxSize = ivaratorResultCacheMaxSize;
+        return this;
+    }
+    
     public IteratorBuildingVisitor setIvaratorSources(SourceFactory sourceFactory, int maxIvaratorSources) {
         this.ivaratorSources = new SourcePool(sourceFactory, maxIvaratorSources);
         this.ivaratorSource = new ThreadLocalPooledSource<>(ivaratorSources);
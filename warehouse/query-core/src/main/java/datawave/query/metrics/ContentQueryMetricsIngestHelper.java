@@ -222,7 +222,8 @@ public class ContentQueryMetricsIngestHelper extends CSVIngestHelper implements
                 for (PageMetric p : pageMetrics) {
                     fields.put("PAGE_METRICS." + p.getPageNumber(),
                                     p.getPagesize() + "/" + p.getReturnTime() + "/" + p.getCallTime() + "/" + p.getSerializationTime() + "/"
-                                                    + p.getBytesWritten() + "/" + p.getPageRequested() + "/" + p.getPageReturned() + "/" + p.getLoginTime());
+                                                    + p.getBytesWritten() + "/" + p.getPageRequested() + "/" + p.getPageReturned() + "/" + p.getLoginTime()
+                                                    + "/" + p.getPrefetchWaitTime());
                 }
             }
             fields.put("SOURCE_COUNT", Long.toString(updatedQueryMetric.getSourceCount()));
@@ -306,7 +307,7 @@ public class ContentQueryMetricsIngestHelper extends CSVIngestHelper implements
                                         storedPageMetric.getPagesize() + "/" + storedPageMetric.getReturnTime() + "/" + storedPageMetric.getCallTime() + "/"
                                                         + storedPageMetric.getSerializationTime() + "/" + storedPageMetric.getBytesWritten() + "/"
                                                         + storedPageMetric.getPageRequested() + "/" + storedPageMetric.getPageReturned() + "/"
-                                                        + storedPageMetric.getLoginTime());
+                                                        + storedPageMetric.getLoginTime() + "/" + storedPageMetric.getPrefetchWaitTime());
                     }
                 }
             }
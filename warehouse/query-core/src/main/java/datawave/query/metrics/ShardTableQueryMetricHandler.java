@@ -705,7 +705,11 @@ public class ShardTableQueryMetricHandler extends BaseQueryMetricHandler<QueryMe
                         
                         String[] parts = StringUtils.split(fieldValue, "/");
                         PageMetric pageMetric = null;
-                        if (parts.length == 8) {
+                        if (parts.length == 9) {
+                            pageMetric = new PageMetric(Long.valueOf(parts[0]), Long.valueOf(parts[1]), Long.valueOf(parts[2]), Long.valueOf(parts[3]),
+                                            Long.valueOf(parts[4]), Long.valueOf(parts[5]), Long.valueOf(parts[6]), Long.valueOf(parts[7]),
+                                            Long.valueOf(parts[8]));
+                        } else if (parts.length == 8) {
                             pageMetric = new PageMetric(Long.valueOf(parts[0]), Long.valueOf(parts[1]), Long.valueOf(parts[2]), Long.valueOf(parts[3]),
                                             Long.valueOf(parts[4]), Long.valueOf(parts[5]), Long.valueOf(parts[6]), Long.valueOf(parts[7]));
                         } else if (parts.length == 7) {
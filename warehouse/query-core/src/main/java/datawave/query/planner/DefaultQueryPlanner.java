@@ -39,6 +39,7 @@ import datawave.query.jexl.functions.EvaluationPhaseFilterFunctions;
 import datawave.query.jexl.functions.QueryFunctions;
 import datawave.query.jexl.visitors.BoundedRangeDetectionVisitor;
 import datawave.query.jexl.visitors.CaseSensitivityVisitor;
+import datawave.query.jexl.visitors.CostBasedPlanningVisitor;
 import datawave.query.jexl.visitors.DepthVisitor;
 import datawave.query.jexl.visitors.ExecutableDeterminationVisitor;
 import datawave.query.jexl.visitors.ExecutableDeterminationVisitor.STATE;
@@ -83,6 +84,8 @@ import datawave.query.util.DateIndexHelper;
 import datawave.query.util.MetadataHelper;
 import datawave.query.util.QueryStopwatch;
 import datawave.query.util.Tuple2;
+import datawave.query.util.TypeMetadata;
+import datawave.query.util.TypeMetadataSnapshot;
 import datawave.util.time.TraceStopwatch;
 import datawave.webservice.common.logging.ThreadConfigurableLogger;
 import datawave.webservice.query.Query;
@@ -107,6 +110,7 @@ import org.apache.commons.jexl2.parser.JexlNode;
 import org.apache.commons.jexl2.parser.ParseException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DateUtils;
+import org.apache.hadoop.fs.Path;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
@@ -359,9 +363,58 @@ public class DefaultQueryPlanner extends QueryPlanner {
             throw new DatawaveQueryException("Failed to mark query as started" + settings.getId(), e);
         }
         
+        if (config.isTimeSlicedPlanning()) {
+            // cap the date range before slicing so that no slices are planned outside of it
+            capDateRange(config);
+            List<Tuple2<Date,Date>> slices = TimeSlicedQueryIterable.slice(config.getBeginDate(), config.getEndDate(), config.getTimeSliceDays());
+            if (slices.size() > 1) {
+                return processTimeSlices(scannerFactory, getMetadataHelper(config), getDateIndexHelper(config), config, query, settings, slices);
+            }
+        }
+        
         return process(scannerFactory, getMetadataHelper(config), getDateIndexHelper(config), config, query, settings);
     }
     
+    /**
+     * Plan the first time slice of the query, and return the queries for all of the slices. The remaining slices are planned in the background as the queries
+     * are iterated, each with a copy of the configuration as it was before planning and its own clone of this planner.
+     */
+    protected CloseableIterable<QueryData> processTimeSlices(final ScannerFactory scannerFactory, final MetadataHelper metadataHelper,
+                    final DateIndexHelper dateIndexHelper, final ShardQueryConfiguration config, final String query, final Query settings,
+                    List<Tuple2<Date,Date>> slices) throws DatawaveQueryException {
+        final ShardQueryConfiguration original = new ShardQueryConfiguration(config);
+        
+        final Date beginDate = config.getBeginDate();
+        final Date endDate = config.getEndDate();
+        CloseableIterable<QueryData> firstSlice;
+        try {
+            config.setBeginDate(slices.get(0).first());
+            config.setEndDate(slices.get(0).second());
+            firstSlice = process(scannerFactory, metadataHelper, dateIndexHelper, config, query, settings);
+        } finally {
+            config.setBeginDate(beginDate);
+            config.setEndDate(endDate);
+        }
+        
+        TimeSlicedQueryIterable.SlicePlanner slicePlanner = (begin, end) -> {
+            ShardQueryConfiguration sliceConfig = new ShardQueryConfiguration(original);
+            // the slices must run under the id of the query, not that of a duplicate
+            sliceConfig.setQuery(config.getQuery());
+            sliceConfig.setBeginDate(begin);
+            sliceConfig.setEndDate(end);
+            
+            DefaultQueryPlanner planner = clone();
+            planner.builderThread = builderThread;
+            return planner.process(scannerFactory, metadataHelper, dateIndexHelper, sliceConfig, query, settings);
+        };
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Planned the first of " + slices.size() + " time slices, from " + slices.get(0).first() + " to " + slices.get(0).second());
+        }
+        return new TimeSlicedQueryIterable(firstSlice, slices.subList(1, slices.size()), slicePlanner, TimeSlicedQueryIterable.DEFAULT_LOOKAHEAD,
+                        settings.getId());
+    }
+    
     protected CloseableIterable<QueryData> process(ScannerFactory scannerFactory, MetadataHelper metadataHelper, DateIndexHelper dateIndexHelper,
                     ShardQueryConfiguration config, String query, Query settings) throws DatawaveQueryException {
         final QueryData queryData = new QueryData();
@@ -485,7 +538,14 @@ public class DefaultQueryPlanner extends QueryPlanner {
         addOption(cfg, QueryOptions.LIMIT_FIELDS, config.getLimitFieldsAsString(), true);
         addOption(cfg, QueryOptions.GROUP_FIELDS, config.getGroupFieldsAsString(), true);
         addOption(cfg, QueryOptions.GROUP_FIELDS_BATCH_SIZE, config.getGroupFieldsBatchSizeAsString(), true);
-        addOption(cfg, QueryOptions.UNIQUE_FIELDS, config.getUniqueFieldsAsString(), true);
+        if (config.isUniqueOnTservers()) {
+            addOption(cfg, QueryOptions.UNIQUE_FIELDS, config.getUniqueFieldsAsString(), true);
+            addOption(cfg, QueryOptions.UNIQUE_BUFFER_SIZE, Integer.toString(config.getUniqueCacheBufferSize()), false);
+        }
+        if (config.getTopK() > 0) {
+            addOption(cfg, QueryOptions.TOP_K, Integer.toString(config.getTopK()), false);
+            addOption(cfg, QueryOptions.TOP_K_FIELDS, config.getTopKFieldsAsString(), false);
+        }
         addOption(cfg, QueryOptions.HIT_LIST, Boolean.toString(config.isHitList()), false);
         addOption(cfg, QueryOptions.TYPE_METADATA_IN_HDFS, Boolean.toString(config.isTypeMetadataInHdfs()), true);
         addOption(cfg, QueryOptions.TERM_FREQUENCY_FIELDS, Joiner.on(',').join(config.getQueryTermFrequencyFields()), false);
@@ -494,6 +554,7 @@ public class DefaultQueryPlanner extends QueryPlanner {
         addOption(cfg, QueryOptions.QUERY_ID, config.getQuery().getId().toString(), false);
         addOption(cfg, QueryOptions.FULL_TABLE_SCAN_ONLY, Boolean.toString(isFullTable), false);
         addOption(cfg, QueryOptions.TRACK_SIZES, Boolean.toString(config.isTrackSizes()), true);
+        addOption(cfg, QueryOptions.COLUMNAR_DOCUMENTS, Boolean.toString(config.isColumnarDocuments()), true);
         // Set the start and end dates
         configureTypeMappings(config, cfg, metadataHelper, compressMappings);
     }
@@ -1034,7 +1095,7 @@ public class DefaultQueryPlanner extends QueryPlanner {
         Set<String> indexedFields = null;
         Set<String> indexOnlyFields = null;
         Set<String> nonEventFields = null;
-        if (config.getMinSelectivity() > 0 || !disableBoundedLookup) {
+        if (config.getMinSelectivity() > 0 || config.isCostBasedPlanning() || !disableBoundedLookup) {
             try {
                 indexedFields = metadataHelper.getIndexedFields(config.getDatatypeFilter());
                 indexOnlyFields = metadataHelper.getIndexOnlyFields(config.getDatatypeFilter());
@@ -1070,6 +1131,18 @@ public class DefaultQueryPlanner extends QueryPlanner {
             stopwatch.stop();
         }
         
+        // delay, ivarate and order the terms based on their estimated cardinality
+        if (config.isCostBasedPlanning()) {
+            stopwatch = timers.newStartedStopwatch("DefaultQueryPlanner - Cost-based planning");
+            
+            queryTree = CostBasedPlanningVisitor.plan(queryTree, config, metadataHelper, indexOnlyFields);
+            if (log.isDebugEnabled()) {
+                logQuery(queryTree, "Query after cost-based planning:");
+            }
+            
+            stopwatch.stop();
+        }
+        
         if (!disableCompositeFields) {
             stopwatch = timers.newStartedStopwatch("DefaultQueryPlanner - Expand composite terms");
             
@@ -1243,6 +1316,15 @@ public class DefaultQueryPlanner extends QueryPlanner {
             config.setUniqueFields(Sets.newHashSet(remappedUniqueFields));
         }
         
+        Collection<String> topKFields = config.getTopKFields();
+        if (topKFields != null && !topKFields.isEmpty()) {
+            Collection<String> remappedTopKFields = queryModel.remapParameter(topKFields, inverseReverseModel);
+            if (log.isTraceEnabled()) {
+                log.trace("Updated top-k set using query model to: " + remappedTopKFields);
+            }
+            config.setTopKFields(Sets.newHashSet(remappedTopKFields));
+        }
+        
         if (config.getBlacklistedFields() != null && !config.getBlacklistedFields().isEmpty()) {
             blacklistedFields = queryModel.remapParameter(blacklistedFields, inverseReverseModel);
             if (log.isTraceEnabled()) {
@@ -1565,7 +1647,22 @@ public class DefaultQueryPlanner extends QueryPlanner {
                         addOption(cfg, QueryOptions.COLLECT_TIMING_DETAILS, Boolean.toString(config.getCollectTimingDetails()), false);
                         addOption(cfg, QueryOptions.MAX_INDEX_RANGE_SPLIT, Integer.toString(config.getMaxFieldIndexRangeSplit()), false);
                         addOption(cfg, QueryOptions.MAX_IVARATOR_OPEN_FILES, Integer.toString(config.getIvaratorMaxOpenFiles()), false);
+                        addOption(cfg, QueryOptions.IVARATOR_SORTED_SET_BACKEND, config.getIvaratorSortedSetBackend(), false);
+                        if (config.getIvaratorLocalCacheDir() != null) {
+                            addOption(cfg, QueryOptions.IVARATOR_LOCAL_CACHE_DIR, config.getIvaratorLocalCacheDir(), false);
+                        }
+                        addOption(cfg, QueryOptions.IVARATOR_OFF_HEAP_BUFFER_SIZE, Integer.toString(config.getIvaratorOffHeapBufferSize()), false);
+                        addOption(cfg, QueryOptions.IVARATOR_SCHEDULER, config.getIvaratorScheduler(), false);
+                        addOption(cfg, QueryOptions.IVARATOR_SCHEDULER_WEIGHT, Integer.toString(config.getIvaratorSchedulerWeight()), false);
+                        addOption(cfg, QueryOptions.MAX_IVARATOR_CONCURRENT_FILLS, Integer.toString(config.getMaxIvaratorConcurrentFills()), false);
+                        if (config.getIvaratorResultCacheBaseURI() != null) {
+                            // the result cache is specific to the shard table so that bulk imports can invalidate it
+                            addOption(cfg, QueryOptions.IVARATOR_RESULT_CACHE_DIR,
+                                            config.getIvaratorResultCacheBaseURI().replaceAll("/+$", "") + '/' + config.getShardTableName(), false);
+                            addOption(cfg, QueryOptions.IVARATOR_RESULT_CACHE_MAX_SIZE, Long.toString(config.getIvaratorResultCacheMaxSize()), false);
+                        }
                         addOption(cfg, QueryOptions.MAX_EVALUATION_PIPELINES, Integer.toString(config.getMaxEvaluationPipelines()), false);
+                        addOption(cfg, QueryOptions.MIN_EVALUATION_PIPELINES, Integer.toString(config.getMinEvaluationPipelines()), false);
                         addOption(cfg, QueryOptions.MAX_PIPELINE_CACHED_RESULTS, Integer.toString(config.getMaxPipelineCachedResults()), false);
                         addOption(cfg, QueryOptions.MAX_IVARATOR_SOURCES, Integer.toString(config.getMaxIvaratorSources()), false);
                         
@@ -1659,16 +1756,19 @@ public class DefaultQueryPlanner extends QueryPlanner {
             nonIndexedQueryFieldsDatatypes.keySet().removeAll(config.getIndexedFields());
             
             String nonIndexedTypes = QueryOptions.buildFieldNormalizerString(nonIndexedQueryFieldsDatatypes);
-            String typeMetadataString = metadataHelper.getTypeMetadata(config.getDatatypeFilter()).toString();
+            TypeMetadata typeMetadata = metadataHelper.getTypeMetadata(config.getDatatypeFilter());
             String requiredAuthsString = metadataHelper.getUsersMetadataAuthorizationSubset();
             
             if (compressMappings) {
                 nonIndexedTypes = QueryOptions.compressOption(nonIndexedTypes, QueryOptions.UTF8);
-                typeMetadataString = QueryOptions.compressOption(typeMetadataString, QueryOptions.UTF8);
                 requiredAuthsString = QueryOptions.compressOption(requiredAuthsString, QueryOptions.UTF8);
             }
             addOption(cfg, QueryOptions.NON_INDEXED_DATATYPES, nonIndexedTypes, false);
-            if (config.isTypeMetadataInHdfs() == false) {
+            if (config.isTypeMetadataInHdfs() == false && !addTypeMetadataSnapshot(config, cfg, typeMetadata)) {
+                String typeMetadataString = typeMetadata.toString();
+                if (compressMappings) {
+                    typeMetadataString = QueryOptions.compressOption(typeMetadataString, QueryOptions.UTF8);
+                }
                 addOption(cfg, QueryOptions.TYPE_METADATA, typeMetadataString, false);
             }
             addOption(cfg, QueryOptions.TYPE_METADATA_AUTHS, requiredAuthsString, false);
@@ -1682,6 +1782,33 @@ public class DefaultQueryPlanner extends QueryPlanner {
         
     }
     
+    /**
+     * Write the type metadata to the snapshot directory, if one is configured, and pass its version to the iterators in place of the type metadata itself
+     *
+     * @param config
+     * @param cfg
+     * @param typeMetadata
+     * @return true if the snapshot was added, false if the type metadata must be passed in the options
+     */
+    protected static boolean addTypeMetadataSnapshot(ShardQueryConfiguration config, IteratorSetting cfg, TypeMetadata typeMetadata) {
+        if (StringUtils.isBlank(config.getTypeMetadataSnapshotDir())) {
+            return false;
+        }
+        try {
+            Path dir = new Path(config.getTypeMetadataSnapshotDir());
+            TypeMetadataSnapshot snapshot = new TypeMetadataSnapshot(typeMetadata);
+            snapshot.write(TypeMetadataSnapshot.getFileSystem(dir.toUri(), config.getHdfsSiteConfigURLs()), dir);
+            
+            addOption(cfg, QueryOptions.TYPE_METADATA_SNAPSHOT, snapshot.getVersion(), false);
+            addOption(cfg, QueryOptions.TYPE_METADATA_SNAPSHOT_DIR, config.getTypeMetadataSnapshotDir(), false);
+            addOption(cfg, QueryOptions.HDFS_SITE_CONFIG_URLS, config.getHdfsSiteConfigURLs(), false);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Unable to write the type metadata snapshot to " + config.getTypeMetadataSnapshotDir() + ", passing the type metadata in the options", e);
+            return false;
+        }
+    }
+    
     public static void addOption(IteratorSetting cfg, String option, String value, boolean allowBlankValue) {
         if (StringUtils.isNotBlank(option) && (allowBlankValue || StringUtils.isNotBlank(value))) {
             // If blank value, then we need to change it to something else or it
@@ -84,6 +84,9 @@ public class ThreadedRangeBundler implements CloseableIterable<QueryData> {
     public void close() throws IOException {
         if (null != iterator) {
             iterator.close();
+        } else if (null != ranges) {
+            // never iterated, so the ranges have to be closed here
+            ranges.close();
         }
     }
     
@@ -0,0 +1,235 @@
+package datawave.query.planner;
+
+import datawave.query.CloseableIterable;
+import datawave.query.exceptions.DatawaveFatalQueryException;
+import datawave.query.util.Tuple2;
+import datawave.webservice.query.configuration.QueryData;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The queries for a date range which is planned one time slice at a time. The first slice is planned up front, and the remaining slices are planned on a
+ * background thread, a few slices ahead of the slice being iterated. This allows the queries for the first slices to be scheduled, and their results returned,
+ * while the index expansion and range building for the later slices is still running. The queries are returned in slice order.
+ */
+public class TimeSlicedQueryIterable implements CloseableIterable<QueryData> {
+    
+    private static final Logger log = Logger.getLogger(TimeSlicedQueryIterable.class);
+    
+    /**
+     * The number of slices planned ahead of the slice being iterated
+     */
+    public static final int DEFAULT_LOOKAHEAD = 2;
+    
+    /**
+     * Plans the queries for a single slice
+     */
+    public interface SlicePlanner {
+        CloseableIterable<QueryData> plan(Date begin, Date end) throws Exception;
+    }
+    
+    private final CloseableIterable<QueryData> first;
+    private final List<Tuple2<Date,Date>> slices;
+    private final SlicePlanner planner;
+    private final int lookahead;
+    private final ExecutorService executor;
+    
+    private final List<Future<CloseableIterable<QueryData>>> planned = new ArrayList<>();
+    private volatile boolean closed = false;
+    private boolean iterated = false;
+    
+    /**
+     * @param first
+     *            the queries for the first slice
+     * @param slices
+     *            the remaining slices
+     * @param planner
+     *            plans the remaining slices
+     * @param lookahead
+     *            the number of slices planned ahead of the slice being iterated
+     * @param queryId
+     *            the id of the query, used to name the planning thread
+     */
+    public TimeSlicedQueryIterable(CloseableIterable<QueryData> first, List<Tuple2<Date,Date>> slices, SlicePlanner planner, int lookahead, Object queryId) {
+        this.first = first;
+        this.slices = slices;
+        this.planner = planner;
+        this.lookahead = Math.max(1, lookahead);
+        
+        final String name = "Time Sliced Planner " + (queryId == null ? "(unknown)" : queryId.toString());
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            private final ThreadFactory dtf = Executors.defaultThreadFactory();
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = dtf.newThread(r);
+                thread.setName(name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        
+        // start on the next slices while the first is being scheduled
+        schedule(this.lookahead - 1);
+    }
+    
+    /**
+     * Split a date range into slices of a number of days, aligned to GMT days as the shards are
+     *
+     * @param begin
+     *            the begin date, inclusive
+     * @param end
+     *            the end date, inclusive
+     * @param days
+     *            the number of days in each slice
+     * @return the slices in order, each as an inclusive begin and end date
+     */
+    public static List<Tuple2<Date,Date>> slice(Date begin, Date end, int days) {
+        if (begin == null || end == null || end.before(begin)) {
+            return Collections.emptyList();
+        }
+        
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.setTime(begin);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        
+        List<Tuple2<Date,Date>> slices = new ArrayList<>();
+        Date sliceBegin = begin;
+        while (!sliceBegin.after(end)) {
+            calendar.add(Calendar.DAY_OF_MONTH, Math.max(1, days));
+            Date sliceEnd = new Date(Math.min(end.getTime(), calendar.getTimeInMillis() - 1));
+            slices.add(new Tuple2<>(sliceBegin, sliceEnd));
+            sliceBegin = calendar.getTime();
+        }
+        return slices;
+    }
+    
+    /**
+     * Submit the remaining slices up to and including an index for planning
+     *
+     * @param index
+     *            the index into the remaining slices
+     */
+    private synchronized void schedule(int index) {
+        while (!closed && planned.size() <= index && planned.size() < slices.size()) {
+            final Tuple2<Date,Date> slice = slices.get(planned.size());
+            planned.add(executor.submit(() -> {
+                if (log.isDebugEnabled()) {
+                    log.debug("Planning the slice from " + slice.first() + " to " + slice.second());
+                }
+                CloseableIterable<QueryData> queries = planner.plan(slice.first(), slice.second());
+                if (closed) {
+                    closeQuietly(queries);
+                }
+                return queries;
+            }));
+        }
+    }
+    
+    /**
+     * Wait for a slice to be planned, scheduling the slices after it
+     *
+     * @param index
+     *            the index into the remaining slices
+     * @return the queries for the slice
+     */
+    private CloseableIterable<QueryData> await(int index) {
+        schedule(index + lookahead);
+        
+        Future<CloseableIterable<QueryData>> future;
+        synchronized (this) {
+            future = planned.get(index);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatawaveFatalQueryException("Interrupted while planning the slice from " + slices.get(index).first(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DatawaveFatalQueryException("Failed to plan the slice from " + slices.get(index).first(), e.getCause());
+        }
+    }
+    
+    @Override
+    public synchronized Iterator<QueryData> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("iterator() was already called once");
+        }
+        iterated = true;
+        
+        return new Iterator<QueryData>() {
+            private Iterator<QueryData> current = first.iterator();
+            private int next = 0;
+            
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (closed || next >= slices.size()) {
+                        return false;
+                    }
+                    current = await(next++).iterator();
+                }
+                return true;
+            }
+            
+            @Override
+            public QueryData next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+    
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        
+        List<Future<CloseableIterable<QueryData>>> futures;
+        synchronized (this) {
+            futures = new ArrayList<>(planned);
+        }
+        // slices still being planned are closed by the planning thread once it notices
+        for (Future<CloseableIterable<QueryData>> future : futures) {
+            if (!future.cancel(false) && future.isDone()) {
+                try {
+                    closeQuietly(future.get());
+                } catch (InterruptedException | ExecutionException e) {
+                    // nothing to close
+                }
+            }
+        }
+        executor.shutdown();
+        
+        first.close();
+    }
+    
+    private static void closeQuietly(CloseableIterable<QueryData> queries) {
+        try {
+            queries.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the queries for a slice", e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package datawave.query.planner.pushdown;
+
+import static org.apache.commons.jexl2.parser.JexlNodes.children;
+import static org.apache.commons.jexl2.parser.JexlNodes.id;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import datawave.data.MetadataCardinalityCounts;
+import datawave.query.Constants;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.index.stats.IndexStatsClient;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.nodes.ExceededValueThresholdMarkerJexlNode;
+import datawave.query.jexl.nodes.QueryPropertyMarker;
+import datawave.query.util.MetadataHelper;
+
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.ParserTreeConstants;
+import org.apache.log4j.Logger;
+
+/**
+ * Estimates the number of records matched by the indexed portions of a query, using the best statistics available for each term:
+ * <ol>
+ * <li>the term counts in the metadata table ({@link MetadataCardinalityCounts}), which give the count for a specific field and value</li>
+ * <li>the index stats table ({@link IndexStatsClient}), whose selectivity is the ratio of unique values to total values for a field, so that the expected count
+ * of any one value is its inverse</li>
+ * <li>the number of unique values for a field from the term counts, dividing the count of the field over the date range</li>
+ * <li>the count of the field over the date range from the metadata frequency counts</li>
+ * </ol>
+ * An intersection is estimated by its most selective child and a union by the sum of its children. Anything which cannot be estimated, including terms which
+ * are not indexed or have been delayed, is {@link #UNKNOWN}. Statistics are cached per field for the life of the estimator.
+ */
+public class CardinalityEstimator {
+    
+    private static final Logger log = Logger.getLogger(CardinalityEstimator.class);
+    
+    public static final long UNKNOWN = Long.MAX_VALUE;
+    
+    protected final ShardQueryConfiguration config;
+    protected final MetadataHelper helper;
+    
+    private Map<String,Map<String,MetadataCardinalityCounts>> termCounts = null;
+    private IndexStatsClient indexStats = null;
+    
+    private final Map<String,Long> fieldCounts = new HashMap<>();
+    private final Map<String,Long> fieldValueCounts = new HashMap<>();
+    private final Map<String,Boolean> indexed = new HashMap<>();
+    
+    public CardinalityEstimator(ShardQueryConfiguration config, MetadataHelper helper) {
+        this.config = config;
+        this.helper = helper;
+    }
+    
+    /**
+     * Estimate the number of records matched by a subtree
+     *
+     * @param node
+     *            the subtree
+     * @return the estimate, {@link #UNKNOWN} if it cannot be estimated
+     */
+    public long estimate(JexlNode node) {
+        if (ExceededValueThresholdMarkerJexlNode.instanceOf(node)) {
+            // an ivarator will scan the field index for the field
+            return estimateField(ExceededValueThresholdMarkerJexlNode.getExceededValueThresholdSource(node));
+        }
+        if (QueryPropertyMarker.instanceOf(node, null)) {
+            return UNKNOWN;
+        }
+        
+        switch (id(node)) {
+            case ParserTreeConstants.JJTEQNODE:
+                return estimateTerm(node);
+            case ParserTreeConstants.JJTERNODE:
+            case ParserTreeConstants.JJTLTNODE:
+            case ParserTreeConstants.JJTGTNODE:
+            case ParserTreeConstants.JJTLENODE:
+            case ParserTreeConstants.JJTGENODE:
+                return estimateField(node);
+            case ParserTreeConstants.JJTANDNODE: {
+                long estimate = UNKNOWN;
+                for (JexlNode child : children(node)) {
+                    estimate = Math.min(estimate, estimate(child));
+                }
+                return estimate;
+            }
+            case ParserTreeConstants.JJTORNODE: {
+                long estimate = 0;
+                for (JexlNode child : children(node)) {
+                    long childEstimate = estimate(child);
+                    if (childEstimate == UNKNOWN || estimate > UNKNOWN - childEstimate) {
+                        return UNKNOWN;
+                    }
+                    estimate += childEstimate;
+                }
+                return estimate;
+            }
+            case ParserTreeConstants.JJTREFERENCE:
+            case ParserTreeConstants.JJTREFERENCEEXPRESSION:
+            case ParserTreeConstants.JJTJEXLSCRIPT:
+                if (1 == node.jjtGetNumChildren()) {
+                    return estimate(node.jjtGetChild(0));
+                }
+                return UNKNOWN;
+            default:
+                return UNKNOWN;
+        }
+    }
+    
+    /**
+     * Estimate the number of records matched by a field and value
+     *
+     * @param node
+     *            an EQ node
+     * @return the estimate, {@link #UNKNOWN} if it cannot be estimated
+     */
+    protected long estimateTerm(JexlNode node) {
+        String fieldName;
+        Object literal;
+        try {
+            fieldName = JexlASTHelper.getIdentifier(node);
+            literal = JexlASTHelper.getLiteralValue(node);
+        } catch (NoSuchElementException e) {
+            log.trace("Could not find field name or literal for EQ node, ignoring for cardinality");
+            return UNKNOWN;
+        }
+        if (literal == null || !isIndexed(fieldName)) {
+            return UNKNOWN;
+        }
+        
+        String value = String.valueOf(literal);
+        String key = fieldName + Constants.NULL + value;
+        Long estimate = fieldValueCounts.get(key);
+        if (estimate == null) {
+            estimate = computeTermEstimate(fieldName, value);
+            fieldValueCounts.put(key, estimate);
+            if (log.isTraceEnabled()) {
+                log.trace("Estimated " + fieldName + " == '" + value + "' at " + (estimate == UNKNOWN ? "unknown" : estimate));
+            }
+        }
+        return estimate;
+    }
+    
+    private long computeTermEstimate(String fieldName, String value) {
+        Map<String,MetadataCardinalityCounts> valueCounts = getTermCounts().get(fieldName);
+        if (valueCounts != null) {
+            MetadataCardinalityCounts counts = valueCounts.get(value);
+            if (counts != null) {
+                return counts.getFieldValueCount();
+            }
+        }
+        
+        if (config.getIndexStatsTableName() != null) {
+            if (indexStats == null) {
+                indexStats = new IndexStatsClient(config.getConnector(), config.getIndexStatsTableName());
+            }
+            Double selectivity = JexlASTHelper.getNodeSelectivity(Collections.singleton(fieldName), config, indexStats);
+            if (!selectivity.equals(IndexStatsClient.DEFAULT_VALUE) && selectivity > 0) {
+                return Math.max(1L, Math.round(1.0 / selectivity));
+            }
+        }
+        
+        long fieldCount = getFieldCount(fieldName);
+        if (fieldCount == UNKNOWN) {
+            return UNKNOWN;
+        }
+        if (valueCounts != null) {
+            for (MetadataCardinalityCounts counts : valueCounts.values()) {
+                if (counts.getUniqueFieldAllValueCount() > 0) {
+                    return Math.max(1L, fieldCount / counts.getUniqueFieldAllValueCount());
+                }
+            }
+        }
+        return fieldCount;
+    }
+    
+    /**
+     * Estimate the number of records with a value for the field of a node, which bounds the cost of a regex or range over that field
+     *
+     * @param node
+     *            the node
+     * @return the estimate, {@link #UNKNOWN} if it cannot be estimated
+     */
+    protected long estimateField(JexlNode node) {
+        try {
+            String fieldName = JexlASTHelper.getIdentifier(node);
+            if (!isIndexed(fieldName)) {
+                return UNKNOWN;
+            }
+            return getFieldCount(fieldName);
+        } catch (NoSuchElementException e) {
+            log.trace("Could not find field name for node, ignoring for cardinality");
+            return UNKNOWN;
+        }
+    }
+    
+    /**
+     * @param fieldName
+     *            the field
+     * @return true if the field is indexed for the datatypes of the query
+     */
+    public boolean isIndexed(String fieldName) {
+        if (fieldName.equals(Constants.ANY_FIELD) || fieldName.equals(Constants.NO_FIELD)) {
+            return false;
+        }
+        
+        Boolean isIndexed = indexed.get(fieldName);
+        if (isIndexed == null) {
+            try {
+                isIndexed = helper.isIndexed(fieldName, config.getDatatypeFilter());
+            } catch (TableNotFoundException e) {
+                log.error("Could not find metadata table", e);
+                isIndexed = false;
+            }
+            indexed.put(fieldName, isIndexed);
+        }
+        return isIndexed;
+    }
+    
+    private long getFieldCount(String fieldName) {
+        Long count = fieldCounts.get(fieldName);
+        if (count == null) {
+            try {
+                count = helper.getCountsByFieldForDays(fieldName, config.getBeginDate(), config.getEndDate(), config.getDatatypeFilter());
+            } catch (Exception e) {
+                log.warn("Could not retrieve the counts for " + fieldName, e);
+                count = null;
+            }
+            // a field without any counts is more likely to be missing its frequency metadata than to be empty
+            if (count == null || count <= 0) {
+                count = UNKNOWN;
+            }
+            fieldCounts.put(fieldName, count);
+        }
+        return count;
+    }
+    
+    private Map<String,Map<String,MetadataCardinalityCounts>> getTermCounts() {
+        if (termCounts == null) {
+            try {
+                // We can get the term counts with root auths (ignoring user auths) because this information is not
+                // exposed to the user. It is only used to adjust the query planning.
+                termCounts = helper.getTermCountsWithRootAuths();
+            } catch (Exception e) {
+                log.warn("Could not retrieve the term counts from the metadata helper", e);
+            }
+            if (termCounts == null) {
+                termCounts = Collections.emptyMap();
+            }
+        }
+        return termCounts;
+    }
+}
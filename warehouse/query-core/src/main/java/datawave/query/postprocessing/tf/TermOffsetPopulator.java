@@ -10,14 +10,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
-import datawave.core.iterators.TermFrequencyIterator;
 import datawave.core.iterators.TermFrequencyIterator.FieldValue;
 import datawave.data.type.NoOpType;
 import datawave.data.type.Type;
-import datawave.ingest.protobuf.TermWeight;
-import datawave.ingest.protobuf.TermWeightPosition;
+import datawave.ingest.protobuf.TermWeightOffsets;
 import datawave.query.jexl.functions.TermFrequencyList;
+import datawave.query.jexl.functions.TermPositions;
 import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.Constants;
 import datawave.query.attributes.Content;
@@ -25,7 +26,10 @@ import datawave.query.attributes.Document;
 import datawave.query.jexl.functions.ContentFunctions;
 import datawave.query.jexl.visitors.LiteralNodeSubsetVisitor;
 
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
@@ -40,7 +44,6 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 public class TermOffsetPopulator {
@@ -56,15 +59,26 @@ public class TermOffsetPopulator {
         phraseFunctions = Collections.unmodifiableSet(_phraseFunctions);
     }
     
+    private static final Collection<ByteSequence> TERM_FREQUENCY_COLUMN_FAMILIES = Collections.singleton(new ArrayByteSequence(
+                    Constants.TERM_FREQUENCY_COLUMN_FAMILY.getBytes(), 0, Constants.TERM_FREQUENCY_COLUMN_FAMILY.getLength()));
+    
     private Multimap<String,String> termFrequencyFieldValues;
+    private List<FieldValue> fieldValues = new ArrayList<>();
     private EventDataQueryFilter evaluationFilter;
     private SortedKeyValueIterator<Key,Value> source;
     private Document document;
     private Set<String> contentExpansionFields;
     
+    // decodes the term weights into buffers reused across all of the term frequency entries
+    private final TermWeightOffsets termWeightOffsets = new TermWeightOffsets();
+    
     public TermOffsetPopulator(Multimap<String,String> termFrequencyFieldValues, Set<String> contentExpansionFields, EventDataQueryFilter evaluationFilter,
                     SortedKeyValueIterator<Key,Value> source) {
         this.termFrequencyFieldValues = termFrequencyFieldValues;
+        for (Entry<String,String> fieldValue : termFrequencyFieldValues.entries()) {
+            this.fieldValues.add(new FieldValue(fieldValue.getKey(), fieldValue.getValue()));
+        }
+        Collections.sort(this.fieldValues);
         this.contentExpansionFields = contentExpansionFields;
         this.source = source;
         this.evaluationFilter = evaluationFilter;
@@ -109,20 +123,31 @@ public class TermOffsetPopulator {
         return map;
     }
     
-    protected Range getRange(Set<Key> keys) {
-        // building a range from the begining of the term frequencies for the first datatype\0uid
-        // to the end of the term frequencies for the last datatype\0uid
-        List<String> dataTypeUids = new ArrayList<>();
+    /**
+     * Get the ranges of the term frequencies needed for a set of documents: one per document, field, and term, in key order so that the source only moves
+     * forward. Only the documents which are still candidates are given, so the term frequencies of any other documents in between are never read.
+     *
+     * @param keys
+     *            the document keys
+     * @return the ranges, sorted
+     */
+    protected List<Range> getRanges(Set<Key> keys) {
+        SortedSet<String> dataTypeUids = new TreeSet<>();
         Text row = null;
         for (Key key : keys) {
             row = key.getRow();
             dataTypeUids.add(key.getColumnFamily().toString());
         }
-        Collections.sort(dataTypeUids);
         
-        Key startKey = new Key(row, Constants.TERM_FREQUENCY_COLUMN_FAMILY, new Text(dataTypeUids.get(0)));
-        Key endKey = new Key(row, Constants.TERM_FREQUENCY_COLUMN_FAMILY, new Text(dataTypeUids.get(dataTypeUids.size() - 1) + '\1'));
-        return new Range(startKey, true, endKey, true);
+        List<Range> ranges = new ArrayList<>(dataTypeUids.size() * fieldValues.size());
+        for (String dataTypeUid : dataTypeUids) {
+            // the field values are sorted as value\0field, the order of the term frequency column qualifiers within a document
+            for (FieldValue fieldValue : fieldValues) {
+                Key startKey = new Key(row, Constants.TERM_FREQUENCY_COLUMN_FAMILY, new Text(dataTypeUid + '\0' + fieldValue.getValueField()));
+                ranges.add(new Range(startKey, true, startKey.followingKey(PartialKey.ROW_COLFAM_COLQUAL), false));
+            }
+        }
+        return ranges;
     }
     
     public Map<String,Object> getContextMap(Key key) {
@@ -132,16 +157,6 @@ public class TermOffsetPopulator {
     public Map<String,Object> getContextMap(Key docKey, Set<Key> keys) {
         document = new Document();
         
-        TermFrequencyIterator tfSource = new TermFrequencyIterator(termFrequencyFieldValues);
-        
-        Range range = getRange(keys);
-        try {
-            tfSource.init(source, null, null);
-            tfSource.seek(getRange(keys), null, false);
-        } catch (IOException e) {
-            log.error("Seek to the range failed: " + range, e);
-        }
-        
         // set the document context on the filter
         if (evaluationFilter != null) {
             evaluationFilter.startNewDocument(docKey);
@@ -149,58 +164,17 @@ public class TermOffsetPopulator {
         
         Map<String,TermFrequencyList> termOffsetMap = Maps.newHashMap();
         
-        while (tfSource.hasTop()) {
-            Key key = tfSource.getTopKey();
-            FieldValue fv = FieldValue.getFieldValue(key);
-            
-            // add the zone and term to our internal document
-            Content attr = new Content(fv.getValue(), source.getTopKey(), evaluationFilter == null || evaluationFilter.keep(key));
-            
-            // no need to apply the evaluation filter here as the TermFrequencyIterator above is already doing more filtering than we can do here.
-            // So this filter is simply extraneous. However if the an EventDataQueryFilter implementation gets smarter somehow, then it can be added back in
-            // here.
-            // For example the AncestorQueryLogic may require this....
-            // if (evaluationFilter == null || evaluationFilter.apply(Maps.immutableEntry(key, StringUtils.EMPTY_STRING))) {
-            
-            this.document.put(fv.getField(), attr);
-            
-            TreeMultimap<TermFrequencyList.Zone,TermWeightPosition> offsets = TreeMultimap.create();
+        for (Range range : getRanges(keys)) {
             try {
-                TermWeight.Info twInfo = TermWeight.Info.parseFrom(tfSource.getTopValue().get());
-                
-                // if no content expansion fields then assume every field is permitted for unfielded content functions
-                TermFrequencyList.Zone twZone = new TermFrequencyList.Zone(fv.getField(),
-                                (contentExpansionFields == null || contentExpansionFields.isEmpty() || contentExpansionFields.contains(fv.getField())),
-                                TermFrequencyList.getEventId(key));
-                
-                TermWeightPosition.Builder position = new TermWeightPosition.Builder();
-                for (int i = 0; i < twInfo.getTermOffsetCount(); i++) {
-                    position.setTermWeightOffsetInfo(twInfo, i);
-                    offsets.put(twZone, position.build());
-                    position.reset();
+                source.seek(range, TERM_FREQUENCY_COLUMN_FAMILIES, true);
+                while (source.hasTop() && range.contains(source.getTopKey())) {
+                    if (!addTermOffsets(source.getTopKey(), source.getTopValue(), termOffsetMap)) {
+                        return null;
+                    }
+                    source.next();
                 }
-                
-            } catch (InvalidProtocolBufferException e) {
-                log.error("Could not deserialize TermWeight protocol buffer for: " + source.getTopKey());
-                
-                return null;
-            }
-            
-            // First time looking up this term in a field
-            TermFrequencyList tfl = termOffsetMap.get(fv.getValue());
-            if (null == tfl) {
-                termOffsetMap.put(fv.getValue(), new TermFrequencyList(offsets));
-            } else {
-                // Merge in the offsets for the current field+term with all previous
-                // offsets from other fields in the same term
-                tfl.addOffsets(offsets);
-            }
-            
-            try {
-                tfSource.next();
-            } catch (IOException ioe) {
-                log.error("Next failed: " + range, ioe);
-                break;
+            } catch (IOException e) {
+                log.error("Seek to the range failed: " + range, e);
             }
         }
         
@@ -211,6 +185,56 @@ public class TermOffsetPopulator {
         return map;
     }
     
+    /**
+     * Add the offsets of a term frequency entry to the document and the term offset map
+     *
+     * @return false if the offsets could not be deserialized
+     */
+    private boolean addTermOffsets(Key key, Value value, Map<String,TermFrequencyList> termOffsetMap) {
+        FieldValue fv = FieldValue.getFieldValue(key);
+        
+        // add the zone and term to our internal document
+        Content attr = new Content(fv.getValue(), key, evaluationFilter == null || evaluationFilter.keep(key));
+        
+        // no need to apply the evaluation filter here as the ranges above are already doing more filtering than we can do here.
+        // So this filter is simply extraneous. However if the an EventDataQueryFilter implementation gets smarter somehow, then it can be added back in
+        // here.
+        // For example the AncestorQueryLogic may require this....
+        // if (evaluationFilter == null || evaluationFilter.apply(Maps.immutableEntry(key, StringUtils.EMPTY_STRING))) {
+        
+        this.document.put(fv.getField(), attr);
+        
+        TermPositions positions = new TermPositions();
+        TermFrequencyList.Zone twZone;
+        try {
+            termWeightOffsets.decode(value.get());
+            
+            // if no content expansion fields then assume every field is permitted for unfielded content functions
+            twZone = new TermFrequencyList.Zone(fv.getField(),
+                            (contentExpansionFields == null || contentExpansionFields.isEmpty() || contentExpansionFields.contains(fv.getField())),
+                            TermFrequencyList.getEventId(key));
+            
+            // the positions are taken straight from the decoded arrays, without boxing each one
+            positions.load(termWeightOffsets);
+            
+        } catch (InvalidProtocolBufferException e) {
+            log.error("Could not deserialize TermWeight protocol buffer for: " + key);
+            
+            return false;
+        }
+        
+        // First time looking up this term in a field
+        TermFrequencyList tfl = termOffsetMap.get(fv.getValue());
+        if (null == tfl) {
+            termOffsetMap.put(fv.getValue(), new TermFrequencyList(twZone, positions));
+        } else {
+            // Merge in the offsets for the current field+term with all previous
+            // offsets from other fields in the same term
+            tfl.addPositions(twZone, positions);
+        }
+        return true;
+    }
+    
     public static boolean isContentFunctionTerm(String functionName) {
         return phraseFunctions.contains(functionName);
     }
@@ -362,5 +386,5 @@ public class TermOffsetPopulator {
         }
         return termFrequencyFieldValues;
     }
-    
+
 }
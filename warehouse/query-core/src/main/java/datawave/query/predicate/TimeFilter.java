@@ -61,4 +61,9 @@ public class TimeFilter {
     public Predicate<Entry<Key,Value>> getKeyValueTimeFilter() {
         return keyValueTimeFilter;
     }
+    
+    @Override
+    public String toString() {
+        return "TimeFilter" + acceptedRange;
+    }
 }
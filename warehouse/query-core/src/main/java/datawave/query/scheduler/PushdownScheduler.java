@@ -173,6 +173,12 @@ public class PushdownScheduler extends Scheduler {
             session.setBackoffEnabled(true);
         }
         
+        if (config.isHedgedScans()) {
+            session.setHedgedScans(true);
+            session.setHedgePercentile(config.getHedgedScanPercentile());
+            session.setHedgeMinDelay(config.getHedgedScanMinDelay());
+        }
+        
         session.setChunkIter(chunkIter);
         
         session.setTabletLocator(tl);
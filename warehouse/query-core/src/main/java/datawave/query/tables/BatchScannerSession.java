@@ -7,11 +7,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -42,9 +45,11 @@ import com.google.common.util.concurrent.Service;
 
 import datawave.mr.bulk.RfileResource;
 import datawave.query.tables.async.Scan;
+import datawave.query.tables.async.ScanHedge;
 import datawave.query.tables.async.ScannerChunk;
 import datawave.query.tables.async.SessionArbiter;
 import datawave.query.tables.async.SpeculativeScan;
+import datawave.query.tables.stats.ScanSessionStats;
 import datawave.webservice.query.Query;
 
 /**
@@ -58,6 +63,13 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     private static final double QUEUE_MULTIPLIER = 25;
     
+    /**
+     * The number of scan response times needed before any scans are hedged
+     */
+    private static final int MIN_HEDGE_SAMPLES = 20;
+    
+    private static final long HEDGE_CHECK_INTERVAL = 25;
+    
     /**
      * Delegates scanners to us, blocking if none are available or used by other sources.
      */
@@ -106,6 +118,25 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     protected int threadCount = 5;
     
+    protected boolean hedgedScans = false;
+    
+    protected double hedgePercentile = 0.95;
+    
+    protected long hedgeMinDelay = 100;
+    
+    /**
+     * The response times of the scans, from which the hedge delay is learned
+     */
+    protected ScanSessionStats responseStats = new ScanSessionStats();
+    
+    protected Queue<ScanHedge> unclaimedHedges = new ConcurrentLinkedQueue<>();
+    
+    protected AtomicInteger activeHedges = new AtomicInteger(0);
+    
+    protected ScheduledExecutorService hedgeMonitor = null;
+    
+    protected ExecutorService hedgeService = null;
+    
     private class BatchReaderThreadFactory implements ThreadFactory {
         
         private ThreadFactory dtf = Executors.defaultThreadFactory();
@@ -267,6 +298,9 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     @Override
     protected void run() throws Exception {
         try {
+            if (hedgedScans) {
+                startHedging();
+            }
             if (!scannerBatches.hasNext()) {
                 if (log.isTraceEnabled())
                     log.trace("Immediate shutdown of scanner session because no work available");
@@ -383,6 +417,7 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 
             } else {
                 scan = new Scan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
+                trackHedge(scan, chunk);
             }
             
             if (backoffEnabled) {
@@ -433,6 +468,7 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 
             } else {
                 scan = new Scan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
+                trackHedge(scan, chunk);
             }
             
             if (backoffEnabled) {
@@ -448,6 +484,72 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         
     }
     
+    /**
+     * Track a scan so that it may be hedged if it is slow to respond
+     * 
+     * @param scan
+     * @param chunk
+     *            the chunk of the scan, before it has started
+     */
+    protected void trackHedge(Scan scan, ScannerChunk chunk) {
+        if (hedgedScans && delegatedResourceInitializer != RfileResource.class) {
+            ScanHedge hedge = new ScanHedge(chunk, responseStats);
+            hedge.addScan(scan);
+            unclaimedHedges.add(hedge);
+        }
+    }
+    
+    protected void startHedging() {
+        int maxHedges = Math.max(1, threadCount / 4);
+        hedgeService = new ThreadPoolExecutor(maxHedges, maxHedges, 120, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new BatchReaderThreadFactory(
+                        new StringBuilder("Hedge ").append(threadId), this));
+        hedgeService = MoreExecutors.listeningDecorator(hedgeService);
+        hedgeMonitor = Executors.newSingleThreadScheduledExecutor(new BatchReaderThreadFactory(new StringBuilder("Hedge Monitor ").append(threadId), this));
+        hedgeMonitor.scheduleWithFixedDelay(this::checkHedges, HEDGE_CHECK_INTERVAL, HEDGE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Issue a hedge scan for each chunk which has not responded within the learned percentile of the response times.
+     */
+    protected void checkHedges() {
+        try {
+            if (responseStats.getResponseTimeCount() < MIN_HEDGE_SAMPLES) {
+                return;
+            }
+            long delay = Math.max(hedgeMinDelay, responseStats.getResponseTimePercentile(hedgePercentile));
+            int maxHedges = Math.max(1, threadCount / 4);
+            long now = System.currentTimeMillis();
+            for (Iterator<ScanHedge> it = unclaimedHedges.iterator(); it.hasNext();) {
+                ScanHedge hedge = it.next();
+                if (hedge.isClaimed()) {
+                    it.remove();
+                } else if (!hedge.isHedged() && hedge.isStarted() && now - hedge.getStart() > delay && activeHedges.get() < maxHedges) {
+                    submitHedge(hedge);
+                }
+            }
+        } catch (Exception e) {
+            // an exception would cancel any further checks
+            log.warn("Unable to check for scans to hedge", e);
+        }
+    }
+    
+    protected void submitHedge(ScanHedge hedge) {
+        if (log.isDebugEnabled()) {
+            log.debug("Hedging a scan which has not responded after " + (System.currentTimeMillis() - hedge.getStart()) + "ms");
+        }
+        Scan scan = new Scan(localTableName, localAuths, hedge.newHedgeChunk(), delegatorReference, delegatedResourceInitializer, resultQueue,
+                        listenerService);
+        scan.disableStats();
+        scan.setVisitors(visitorFunctions);
+        scan.setTimeout(scanLimitTimeout);
+        activeHedges.incrementAndGet();
+        hedge.addHedge(scan, activeHedges::decrementAndGet);
+        
+        ListenableFuture<Scan> future = (ListenableFuture<Scan>) hedgeService.submit(scan);
+        runnableCount.incrementAndGet();
+        Futures.addCallback(future, this);
+    }
+    
     protected void submitScan(Scan scan, boolean increment) {
         ListenableFuture<Scan> future = (ListenableFuture<Scan>) service.submit(scan);
         if (increment)
@@ -630,6 +732,7 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         protected void shutdownServices() {
             service.shutdownNow();
             listenerService.shutdownNow();
+            shutdownHedging();
             int count = 0;
             try {
                 while (!service.awaitTermination(250, TimeUnit.MILLISECONDS) && count < MAX_WAIT) {
@@ -650,6 +753,16 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         stop();
         service.shutdownNow();
         listenerService.shutdownNow();
+        shutdownHedging();
+    }
+    
+    protected void shutdownHedging() {
+        if (null != hedgeMonitor) {
+            hedgeMonitor.shutdownNow();
+        }
+        if (null != hedgeService) {
+            hedgeService.shutdownNow();
+        }
     }
     
     public void addVisitor(Function<ScannerChunk,ScannerChunk> visitorFunction) {
@@ -692,6 +805,32 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         this.speculativeScanning = speculative;
     }
     
+    /**
+     * Enable hedging, where a duplicate scan is issued for a chunk which has not responded within a percentile of the response times seen so far, and the
+     * first to respond is used.
+     * 
+     * @param hedgedScans
+     */
+    public void setHedgedScans(boolean hedgedScans) {
+        this.hedgedScans = hedgedScans;
+    }
+    
+    /**
+     * @param hedgePercentile
+     *            the percentile of the response times after which a scan is hedged
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+    
+    /**
+     * @param hedgeMinDelay
+     *            the minimum time in milliseconds before a scan is hedged
+     */
+    public void setHedgeMinDelay(long hedgeMinDelay) {
+        this.hedgeMinDelay = hedgeMinDelay;
+    }
+    
     @Override
     public void uncaughtException(Thread t, Throwable e) {
         t.interrupt();
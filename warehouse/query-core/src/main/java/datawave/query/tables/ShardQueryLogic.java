@@ -38,6 +38,7 @@ import datawave.query.tables.stats.ScanSessionStats;
 import datawave.query.transformer.DocumentTransformer;
 import datawave.query.transformer.EventQueryDataDecoratorTransformer;
 import datawave.query.transformer.GroupingTransform;
+import datawave.query.transformer.TopKTransform;
 import datawave.query.transformer.UniqueTransform;
 import datawave.query.util.DateIndexHelper;
 import datawave.query.util.DateIndexHelperFactory;
@@ -182,6 +183,9 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
     
     private CardinalityConfiguration cardinalityConfiguration = null;
     
+    // the unique transforms handed out by getTransformer, closed with this logic to remove any signatures they spilled
+    private final List<UniqueTransform> uniqueTransforms = new ArrayList<>();
+    
     /**
      * Basic constructor
      */
@@ -582,7 +586,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             transformer.setProjectFields(getConfig().getProjectFields());
             transformer.setBlacklistedFields(getConfig().getBlacklistedFields());
             if (getConfig().getUniqueFields() != null && !getConfig().getUniqueFields().isEmpty()) {
-                transformer.addTransform(new UniqueTransform(this, getConfig().getUniqueFields()));
+                UniqueTransform uniqueTransform = new UniqueTransform(this, getConfig().getUniqueFields());
+                synchronized (uniqueTransforms) {
+                    uniqueTransforms.add(uniqueTransform);
+                }
+                transformer.addTransform(uniqueTransform);
+            }
+            if (getConfig().getTopK() > 0) {
+                transformer.addTransform(new TopKTransform(this, getConfig().getTopKFields(), getConfig().getTopK()));
             }
             if (getConfig().getGroupFields() != null && !getConfig().getGroupFields().isEmpty()) {
                 transformer.addTransform(new GroupingTransform(this, getConfig().getGroupFields()));
@@ -748,6 +759,31 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             }
         }
         
+        // Get the TOP_K parameter if given
+        String topKString = settings.findParameter(QueryParameters.TOP_K).getParameterValue().trim();
+        if (org.apache.commons.lang.StringUtils.isNotBlank(topKString)) {
+            int topK = Integer.parseInt(topKString);
+            if (topK > 0 && !config.getGroupFields().isEmpty()) {
+                throw new QueryException("Top-k and grouping options are mutually exclusive");
+            }
+            this.setTopK(topK);
+            config.setTopK(topK);
+            
+            String topKFields = settings.findParameter(QueryParameters.TOP_K_FIELDS).getParameterValue().trim();
+            if (org.apache.commons.lang.StringUtils.isNotBlank(topKFields)) {
+                List<String> topKFieldsList = Arrays.asList(StringUtils.split(topKFields, Constants.PARAM_VALUE_SEP));
+                this.setTopKFields(new HashSet<>(topKFieldsList));
+                config.setTopKFields(new HashSet<>(topKFieldsList));
+                
+                // the results can only be ordered by fields which are returned
+                if (!config.getProjectFields().isEmpty()) {
+                    Set<String> projectFieldsSet = new HashSet<>(config.getProjectFields());
+                    projectFieldsSet.addAll(topKFieldsList);
+                    config.setProjectFields(projectFieldsSet);
+                }
+            }
+        }
+        
         // Get the HIT_LIST parameter if given
         String hitListString = settings.findParameter(QueryParameters.HIT_LIST).getParameterValue().trim();
         if (org.apache.commons.lang.StringUtils.isNotBlank(hitListString)) {
@@ -1087,6 +1123,16 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             }
         }
         
+        synchronized (uniqueTransforms) {
+            if (!uniqueTransforms.isEmpty()) {
+                log.debug("Closing ShardQueryLogic unique transforms: " + System.identityHashCode(this));
+                for (UniqueTransform uniqueTransform : uniqueTransforms) {
+                    uniqueTransform.close();
+                }
+                uniqueTransforms.clear();
+            }
+        }
+        
     }
     
     @Override
@@ -1211,6 +1257,46 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setUniqueFields(uniqueFields);
     }
     
+    public int getTopK() {
+        return getConfig().getTopK();
+    }
+    
+    public void setTopK(int topK) {
+        getConfig().setTopK(topK);
+    }
+    
+    public Set<String> getTopKFields() {
+        return getConfig().getTopKFields();
+    }
+    
+    public void setTopKFields(Set<String> topKFields) {
+        getConfig().setTopKFields(topKFields);
+    }
+    
+    public int getUniqueCacheBufferSize() {
+        return getConfig().getUniqueCacheBufferSize();
+    }
+    
+    public void setUniqueCacheBufferSize(int uniqueCacheBufferSize) {
+        getConfig().setUniqueCacheBufferSize(uniqueCacheBufferSize);
+    }
+    
+    public String getUniqueCacheDir() {
+        return getConfig().getUniqueCacheDir();
+    }
+    
+    public void setUniqueCacheDir(String uniqueCacheDir) {
+        getConfig().setUniqueCacheDir(uniqueCacheDir);
+    }
+    
+    public boolean isUniqueOnTservers() {
+        return getConfig().isUniqueOnTservers();
+    }
+    
+    public void setUniqueOnTservers(boolean uniqueOnTservers) {
+        getConfig().setUniqueOnTservers(uniqueOnTservers);
+    }
+    
     public String getBlacklistedFieldsString() {
         return getConfig().getBlacklistedFieldsAsString();
     }
@@ -1263,6 +1349,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setTypeMetadataInHdfs(typeMetadataInHdfs);
     }
     
+    public String getTypeMetadataSnapshotDir() {
+        return getConfig().getTypeMetadataSnapshotDir();
+    }
+    
+    public void setTypeMetadataSnapshotDir(String typeMetadataSnapshotDir) {
+        getConfig().setTypeMetadataSnapshotDir(typeMetadataSnapshotDir);
+    }
+    
     public int getEventPerDayThreshold() {
         return getConfig().getEventPerDayThreshold();
     }
@@ -1632,6 +1726,70 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setIvaratorMaxOpenFiles(ivaratorMaxOpenFiles);
     }
     
+    public String getIvaratorSortedSetBackend() {
+        return getConfig().getIvaratorSortedSetBackend();
+    }
+    
+    public void setIvaratorSortedSetBackend(String ivaratorSortedSetBackend) {
+        getConfig().setIvaratorSortedSetBackend(ivaratorSortedSetBackend);
+    }
+    
+    public String getIvaratorLocalCacheDir() {
+        return getConfig().getIvaratorLocalCacheDir();
+    }
+    
+    public void setIvaratorLocalCacheDir(String ivaratorLocalCacheDir) {
+        getConfig().setIvaratorLocalCacheDir(ivaratorLocalCacheDir);
+    }
+    
+    public int getIvaratorOffHeapBufferSize() {
+        return getConfig().getIvaratorOffHeapBufferSize();
+    }
+    
+    public void setIvaratorOffHeapBufferSize(int ivaratorOffHeapBufferSize) {
+        getConfig().setIvaratorOffHeapBufferSize(ivaratorOffHeapBufferSize);
+    }
+    
+    public String getIvaratorScheduler() {
+        return getConfig().getIvaratorScheduler();
+    }
+    
+    public void setIvaratorScheduler(String ivaratorScheduler) {
+        getConfig().setIvaratorScheduler(ivaratorScheduler);
+    }
+    
+    public int getIvaratorSchedulerWeight() {
+        return getConfig().getIvaratorSchedulerWeight();
+    }
+    
+    public void setIvaratorSchedulerWeight(int ivaratorSchedulerWeight) {
+        getConfig().setIvaratorSchedulerWeight(ivaratorSchedulerWeight);
+    }
+    
+    public int getMaxIvaratorConcurrentFills() {
+        return getConfig().getMaxIvaratorConcurrentFills();
+    }
+    
+    public void setMaxIvaratorConcurrentFills(int maxIvaratorConcurrentFills) {
+        getConfig().setMaxIvaratorConcurrentFills(maxIvaratorConcurrentFills);
+    }
+    
+    public String getIvaratorResultCacheBaseURI() {
+        return getConfig().getIvaratorResultCacheBaseURI();
+    }
+    
+    public void setIvaratorResultCacheBaseURI(String ivaratorResultCacheBaseURI) {
+        getConfig().setIvaratorResultCacheBaseURI(ivaratorResultCacheBaseURI);
+    }
+    
+    public long getIvaratorResultCacheMaxSize() {
+        return getConfig().getIvaratorResultCacheMaxSize();
+    }
+    
+    public void setIvaratorResultCacheMaxSize(long ivaratorResultCacheMaxSize) {
+        getConfig().setIvaratorResultCacheMaxSize(ivaratorResultCacheMaxSize);
+    }
+    
     public int getMaxIvaratorSources() {
         return getConfig().getMaxIvaratorSources();
     }
@@ -1648,6 +1806,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setMaxEvaluationPipelines(maxEvaluationPipelines);
     }
     
+    public int getMinEvaluationPipelines() {
+        return getConfig().getMinEvaluationPipelines();
+    }
+    
+    public void setMinEvaluationPipelines(int minEvaluationPipelines) {
+        getConfig().setMinEvaluationPipelines(minEvaluationPipelines);
+    }
+    
     public int getMaxPipelineCachedResults() {
         return getConfig().getMaxPipelineCachedResults();
     }
@@ -1664,6 +1830,38 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setMinSelectivity(d);
     }
     
+    public boolean isCostBasedPlanning() {
+        return getConfig().isCostBasedPlanning();
+    }
+    
+    public void setCostBasedPlanning(boolean costBasedPlanning) {
+        getConfig().setCostBasedPlanning(costBasedPlanning);
+    }
+    
+    public double getCostBasedPlanningRatio() {
+        return getConfig().getCostBasedPlanningRatio();
+    }
+    
+    public void setCostBasedPlanningRatio(double costBasedPlanningRatio) {
+        getConfig().setCostBasedPlanningRatio(costBasedPlanningRatio);
+    }
+    
+    public boolean isTimeSlicedPlanning() {
+        return getConfig().isTimeSlicedPlanning();
+    }
+    
+    public void setTimeSlicedPlanning(boolean timeSlicedPlanning) {
+        getConfig().setTimeSlicedPlanning(timeSlicedPlanning);
+    }
+    
+    public int getTimeSliceDays() {
+        return getConfig().getTimeSliceDays();
+    }
+    
+    public void setTimeSliceDays(int timeSliceDays) {
+        getConfig().setTimeSliceDays(timeSliceDays);
+    }
+    
     public Map<String,QueryParser> getQuerySyntaxParsers() {
         return querySyntaxParsers;
     }
@@ -1825,6 +2023,8 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         params.add(QueryParameters.LIMIT_FIELDS);
         params.add(QueryParameters.GROUP_FIELDS);
         params.add(QueryParameters.UNIQUE_FIELDS);
+        params.add(QueryParameters.TOP_K);
+        params.add(QueryParameters.TOP_K_FIELDS);
         params.add(QueryOptions.LOG_TIMING_DETAILS);
         return params;
     }
@@ -1898,6 +2098,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setMaxIndexScanTimeMillis(maxTime);
     }
     
+    public long getMaxRangeStreamTimeMillis() {
+        return getConfig().getMaxRangeStreamTimeMillis();
+    }
+    
+    public void setMaxRangeStreamTimeMillis(long maxTime) {
+        getConfig().setMaxRangeStreamTimeMillis(maxTime);
+    }
+    
     public Function getQueryMacroFunction() {
         return queryMacroFunction;
     }
@@ -1922,6 +2130,30 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setSpeculativeScanning(speculativeScanning);
     }
     
+    public boolean isHedgedScans() {
+        return getConfig().isHedgedScans();
+    }
+    
+    public void setHedgedScans(boolean hedgedScans) {
+        getConfig().setHedgedScans(hedgedScans);
+    }
+    
+    public double getHedgedScanPercentile() {
+        return getConfig().getHedgedScanPercentile();
+    }
+    
+    public void setHedgedScanPercentile(double hedgedScanPercentile) {
+        getConfig().setHedgedScanPercentile(hedgedScanPercentile);
+    }
+    
+    public long getHedgedScanMinDelay() {
+        return getConfig().getHedgedScanMinDelay();
+    }
+    
+    public void setHedgedScanMinDelay(long hedgedScanMinDelay) {
+        getConfig().setHedgedScanMinDelay(hedgedScanMinDelay);
+    }
+    
     public boolean getAllowShortcutEvaluation() {
         return getConfig().getAllowShortcutEvaluation();
     }
@@ -2146,6 +2378,14 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setTrackSizes(trackSizes);
     }
     
+    public boolean isColumnarDocuments() {
+        return getConfig().isColumnarDocuments();
+    }
+    
+    public void setColumnarDocuments(boolean columnarDocuments) {
+        getConfig().setColumnarDocuments(columnarDocuments);
+    }
+    
     public Profile getSelectedProfile() {
         return this.selectedProfile;
     }
@@ -71,7 +71,9 @@ public class Scan implements Callable<Scan> {
     
     protected long timeout = -1;
     
-    private AccumuloResource delegatedResource = null;
+    private volatile AccumuloResource delegatedResource = null;
+    
+    protected ScanHedge hedge = null;
     
     public Scan(String localTableName, Set<Authorizations> localAuths, ScannerChunk chunk, ResourceQueue delegatorReference,
                     Class<? extends AccumuloResource> delegatedResourceInitializer, BlockingQueue<Entry<Key,Value>> results, ExecutorService callingService) {
@@ -101,6 +103,33 @@ public class Scan implements Callable<Scan> {
         return this.visitorFunctions;
     }
     
+    public void setHedge(ScanHedge hedge) {
+        this.hedge = hedge;
+    }
+    
+    public ScanHedge getHedge() {
+        return hedge;
+    }
+    
+    /**
+     * @return true if another scan of this chunk responded first, in which case this scan must not return anything
+     */
+    protected boolean lostHedge() {
+        return null != hedge && hedge.lost(this);
+    }
+    
+    /**
+     * Called when the scan has reached the end of its ranges, which counts as a response if it has not yet returned anything
+     * 
+     * @return this scan
+     */
+    protected Scan complete() {
+        if (null != hedge && finished()) {
+            hedge.claim(this);
+        }
+        return this;
+    }
+    
     public boolean finished() {
         if (caller.isShutdown() && log.isTraceEnabled()) {
             log.trace("Prematurely shutting down because we were forced to stop");
@@ -120,6 +149,7 @@ public class Scan implements Callable<Scan> {
      */
     @Override
     public Scan call() throws Exception {
+        boolean failed = false;
         try {
             
             /**
@@ -136,7 +166,16 @@ public class Scan implements Callable<Scan> {
                 initialized = true;
             }
             
+            if (null != hedge) {
+                hedge.started();
+            }
+            
             do {
+                if (lostHedge()) {
+                    currentRange = null;
+                    lastSeenKey = null;
+                    return this;
+                }
                 if (null != myStats)
                     myStats.getTimer(TIMERS.SCANNER_START).resume();
                 delegatedResource = delegatorReference.getScannerResource();
@@ -154,7 +193,7 @@ public class Scan implements Callable<Scan> {
                             log.trace("Leaving");
                         if (null != myStats)
                             myStats.getTimer(TIMERS.SCANNER_START).suspend();
-                        return this;
+                        return complete();
                     }
                     
                     if (log.isTraceEnabled())
@@ -181,7 +220,7 @@ public class Scan implements Callable<Scan> {
                         if (null == currentRange) {
                             lastSeenKey = null;
                             log.trace("Leaving");
-                            return this;
+                            return complete();
                         }
                     }
                 }
@@ -267,6 +306,15 @@ public class Scan implements Callable<Scan> {
                         throw new Exception("Stopped mid cycle");
                     myEntry = iter.next();
                     
+                    if (null != hedge && !hedge.claim(this)) {
+                        // another scan of this chunk responded first, so drop everything from this one
+                        if (log.isTraceEnabled())
+                            log.trace("Dropping the results of a hedged scan of " + currentRange);
+                        currentRange = null;
+                        lastSeenKey = null;
+                        break;
+                    }
+                    
                     while (!caller.isShutdown() && !results.offer(myEntry, 25, TimeUnit.MILLISECONDS)) {
                         if (log.isTraceEnabled())
                             log.trace("offering");
@@ -282,11 +330,12 @@ public class Scan implements Callable<Scan> {
                     if (log.isTraceEnabled())
                         log.trace("last seen key is " + lastSeenKey);
                 }
-                if (!iter.hasNext())
+                if (lostHedge() || !iter.hasNext())
                     lastSeenKey = null;
                 
                 // close early
                 delegatorReference.close(delegatedResource);
+                delegatedResource = null;
                 
                 if (null != myStats)
                     myStats.getTimer(TIMERS.SCANNER_ITERATE).suspend();
@@ -294,6 +343,7 @@ public class Scan implements Callable<Scan> {
                 if (log.isTraceEnabled())
                     log.trace("not finished?" + !finished());
             } while (!finished());
+            complete();
         } catch (
         
         ScanTimedOutException e)
@@ -306,14 +356,31 @@ public class Scan implements Callable<Scan> {
         Exception e)
         
         {
-            log.error("exception ", e);
-            throw e;
+            if (lostHedge()) {
+                // expected, as the losing scan is closed out from under us
+                if (log.isDebugEnabled())
+                    log.debug("Hedged scan stopped after another scan of the chunk responded: " + e.getMessage());
+                currentRange = null;
+                lastSeenKey = null;
+            } else if (null != hedge && hedge.isHedge(this) && !hedge.isWinner(this)) {
+                // nothing has been returned by the hedge, so the original scan can still complete the chunk
+                log.warn("Hedged scan failed, leaving the chunk to the original scan", e);
+                currentRange = null;
+                lastSeenKey = null;
+            } else {
+                log.error("exception ", e);
+                failed = true;
+                throw e;
+            }
         } finally
         
         {
             if (null != delegatedResource) {
                 delegatorReference.close(delegatedResource);
             }
+            if (null != hedge && (failed || finished())) {
+                hedge.done(this);
+            }
         }
         return this;
         
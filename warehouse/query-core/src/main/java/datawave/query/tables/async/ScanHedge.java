@@ -0,0 +1,164 @@
+package datawave.query.tables.async;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+import datawave.query.tables.SessionOptions;
+import datawave.query.tables.stats.ScanSessionStats;
+
+/**
+ * The scans of a single chunk when hedging is enabled. If the original scan has not responded after a while, because its tablet server is paused, compacting,
+ * or serving a hot tablet, a duplicate hedge scan is issued for the chunk. The first scan to respond, either by returning a result or by completing without
+ * one, claims the chunk; the other scans are closed and stop without returning anything, so no results are duplicated. Since nothing has been returned when
+ * the hedge is issued, the hedge covers the whole chunk.
+ * <p>
+ * The hedge starts a new scan session on whichever tablet server is hosting the tablets at that time, so it helps when the original session is queued behind
+ * other scans, or when the tablets have been reassigned away from a paused server; it cannot help when the only hosting server is itself slow.
+ */
+public class ScanHedge {
+    
+    private static final Logger log = Logger.getLogger(ScanHedge.class);
+    
+    /**
+     * A copy of the chunk taken before the original scan consumes any of its ranges
+     */
+    private final ScannerChunk chunk;
+    
+    private final ScanSessionStats responseStats;
+    
+    private final List<Scan> scans = new CopyOnWriteArrayList<>();
+    
+    private final AtomicReference<Scan> winner = new AtomicReference<>();
+    
+    private volatile Scan hedgeScan = null;
+    
+    private volatile Runnable hedgeCompletion = null;
+    
+    private final AtomicBoolean hedgeDone = new AtomicBoolean(false);
+    
+    private volatile long start = 0;
+    
+    /**
+     * @param chunk
+     *            the chunk, before it has been scanned
+     * @param responseStats
+     *            the stats in which the response times are recorded, may be null
+     */
+    public ScanHedge(ScannerChunk chunk, ScanSessionStats responseStats) {
+        this.chunk = new ScannerChunk(chunk);
+        this.responseStats = responseStats;
+    }
+    
+    /**
+     * Add the original scan of the chunk
+     *
+     * @param scan
+     */
+    public void addScan(Scan scan) {
+        scans.add(scan);
+        scan.setHedge(this);
+    }
+    
+    /**
+     * Add the hedge scan of the chunk. Only one is issued per chunk.
+     *
+     * @param scan
+     * @param completion
+     *            run once when the hedge scan is done, whether it completed, lost or failed; may be null
+     */
+    public void addHedge(Scan scan, Runnable completion) {
+        hedgeCompletion = completion;
+        hedgeScan = scan;
+        addScan(scan);
+    }
+    
+    /**
+     * Called when a scan of the chunk is done, either because it has nothing left to scan or because it failed
+     *
+     * @param scan
+     */
+    public void done(Scan scan) {
+        if (isHedge(scan) && hedgeDone.compareAndSet(false, true) && null != hedgeCompletion) {
+            hedgeCompletion.run();
+        }
+    }
+    
+    /**
+     * @return a copy of the chunk for a hedge scan, with its own options as the scans update them
+     */
+    public ScannerChunk newHedgeChunk() {
+        ScannerChunk hedgeChunk = new ScannerChunk(chunk);
+        hedgeChunk.setOptions(new SessionOptions(chunk.getOptions()));
+        return hedgeChunk;
+    }
+    
+    /**
+     * Called when a scan of the chunk starts running, the response time is measured from the first
+     */
+    public synchronized void started() {
+        if (start == 0) {
+            start = System.currentTimeMillis();
+        }
+    }
+    
+    public boolean isStarted() {
+        return start != 0;
+    }
+    
+    public long getStart() {
+        return start;
+    }
+    
+    public boolean isHedged() {
+        return hedgeScan != null;
+    }
+    
+    public boolean isHedge(Scan scan) {
+        return hedgeScan == scan;
+    }
+    
+    public boolean isClaimed() {
+        return winner.get() != null;
+    }
+    
+    public boolean isWinner(Scan scan) {
+        return winner.get() == scan;
+    }
+    
+    /**
+     * @param scan
+     * @return true if another scan of the chunk has claimed it
+     */
+    public boolean lost(Scan scan) {
+        Scan claimed = winner.get();
+        return claimed != null && claimed != scan;
+    }
+    
+    /**
+     * Claim the chunk for a scan which is responding. The first scan to do so closes the others.
+     *
+     * @param scan
+     * @return true if the scan may return its results
+     */
+    public boolean claim(Scan scan) {
+        if (winner.compareAndSet(null, scan)) {
+            if (null != responseStats && start != 0) {
+                responseStats.recordResponseTime(System.currentTimeMillis() - start);
+            }
+            for (Scan other : scans) {
+                if (other != scan) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Closing " + (isHedge(scan) ? "the original scan" : "the hedge scan") + " of " + chunk.getLastKnownLocation());
+                    }
+                    other.close();
+                }
+            }
+            return true;
+        }
+        return winner.get() == scan;
+    }
+}
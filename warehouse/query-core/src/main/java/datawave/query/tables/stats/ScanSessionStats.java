@@ -3,6 +3,7 @@ package datawave.query.tables.stats;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -30,6 +31,15 @@ public class ScanSessionStats {
     
     protected MutableLong keysSeen;
     
+    /**
+     * The number of recent scan response times kept to estimate their percentiles
+     */
+    public static final int RESPONSE_TIME_SAMPLES = 512;
+    
+    protected final long[] responseTimes = new long[RESPONSE_TIME_SAMPLES];
+    
+    protected long responseTimeCount = 0;
+    
     public ScanSessionStats() {
         timers = new EnumMap<>(TIMERS.class);
         
@@ -52,9 +62,49 @@ public class ScanSessionStats {
             long otherTimer = other.getValue(timer);
             timerValue.add(otherTimer);
         }
+        for (long responseTime : other.getResponseTimes()) {
+            recordResponseTime(responseTime);
+        }
         return this;
     }
     
+    /**
+     * Record the time a scan took to respond, either with its first result or by completing without one
+     * 
+     * @param millis
+     */
+    public synchronized void recordResponseTime(long millis) {
+        responseTimes[(int) (responseTimeCount++ % RESPONSE_TIME_SAMPLES)] = millis;
+    }
+    
+    /**
+     * @return the number of response times recorded
+     */
+    public synchronized long getResponseTimeCount() {
+        return responseTimeCount;
+    }
+    
+    protected synchronized long[] getResponseTimes() {
+        return Arrays.copyOf(responseTimes, (int) Math.min(responseTimeCount, RESPONSE_TIME_SAMPLES));
+    }
+    
+    /**
+     * Get a percentile of the recent response times
+     * 
+     * @param percentile
+     *            the percentile, between 0 and 1
+     * @return the response time in milliseconds, or -1 if none have been recorded
+     */
+    public long getResponseTimePercentile(double percentile) {
+        long[] samples = getResponseTimes();
+        if (samples.length == 0) {
+            return -1;
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile * samples.length) - 1;
+        return samples[Math.max(0, Math.min(samples.length - 1, index))];
+    }
+    
     public long getValue(TIMERS timer) {
         return (timers.get(timer).getTime() + mergedTimers.get(timer).longValue());
     }
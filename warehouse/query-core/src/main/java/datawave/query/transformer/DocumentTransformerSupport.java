@@ -46,6 +46,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -181,36 +182,38 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
         }
         
         Set<FieldBase<?>> Fields = new HashSet<>();
-        final Map<String,Attribute<? extends Comparable<?>>> documentData = document.getDictionary();
         
         String fn = null;
         Attribute<?> attribute = null;
-        for (Entry<String,Attribute<? extends Comparable<?>>> data : documentData.entrySet()) {
+        // stream the fields so that a document which reads its attributes lazily never reads those which are suppressed
+        for (Iterator<Entry<String,Attribute<? extends Comparable<?>>>> it = document.streamingIterator(); it.hasNext();) {
+            Entry<String,Attribute<? extends Comparable<?>>> data = it.next();
+            fn = (documentName == null) ? data.getKey() : documentName;
+            
+            // Some fields were added by the queryPlanner. This will ensure that the original projectFields and blacklistFields are honored
+            // remove any grouping context (only return the field up until the first dot)
+            if (suppressFields.contains(JexlASTHelper.removeGroupingContext(fn))) {
+                continue;
+            }
             
             // skip metadata fields
-            if (data.getValue() instanceof datawave.query.attributes.Metadata) {
+            attribute = data.getValue();
+            if (attribute == null || attribute instanceof datawave.query.attributes.Metadata) {
                 continue;
             }
-            fn = (documentName == null) ? data.getKey() : documentName;
             
-            // Some fields were added by the queryPlanner. This will ensure that the original projectFields and blacklistFields are honored
-            // remove any grouping context (only return the field up until the first dot)
-            if (!suppressFields.contains(JexlASTHelper.removeGroupingContext(fn))) {
-                // Apply the reverse mapping to make the field name human-readable again
-                if (null != this.getQm()) {
-                    fn = this.getQm().aliasFieldNameReverseModel(fn);
-                }
-                attribute = data.getValue();
-                Fields.addAll(buildDocumentFields(documentKey, fn, attribute, topLevelColumnVisibility, markingFunctions));
+            // Apply the reverse mapping to make the field name human-readable again
+            if (null != this.getQm()) {
+                fn = this.getQm().aliasFieldNameReverseModel(fn);
             }
+            Fields.addAll(buildDocumentFields(documentKey, fn, attribute, topLevelColumnVisibility, markingFunctions));
         }
         return Fields;
     }
     
     protected void extractMetrics(Document document, Key documentKey) {
         
-        Map<String,Attribute<? extends Comparable<?>>> dictionary = document.getDictionary();
-        Attribute<? extends Comparable<?>> timingMetadataAttribute = dictionary.get(LogTiming.TIMING_METADATA);
+        Attribute<?> timingMetadataAttribute = document.get(LogTiming.TIMING_METADATA);
         if (timingMetadataAttribute != null && timingMetadataAttribute instanceof TimingMetadata) {
             TimingMetadata timingMetadata = (TimingMetadata) timingMetadataAttribute;
             long currentSourceCount = timingMetadata.getSourceCount();
@@ -239,7 +242,7 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
                     log.info(sb.toString());
                 }
             }
-            if (dictionary.size() == 1) {
+            if (document.getFieldCount() == 1) {
                 // this document contained only timing metadata
                 throw new EmptyObjectException();
             }
@@ -263,7 +266,8 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
         Map<String,String> reverseModel = cardinalityConfiguration.getCardinalityFieldReverseMapping();
         List<String> valueList = new ArrayList<>();
         
-        for (Entry<String,Attribute<? extends Comparable<?>>> e : document.getDictionary().entrySet()) {
+        for (Iterator<Entry<String,Attribute<? extends Comparable<?>>>> it = document.streamingIterator(); it.hasNext();) {
+            Entry<String,Attribute<? extends Comparable<?>>> e = it.next();
             String docField = e.getKey();
             String baseDocField = JexlASTHelper.removeGroupingContext(docField);
             String reverseMappedField = reverseModel.containsKey(baseDocField) ? reverseModel.get(baseDocField) : "";
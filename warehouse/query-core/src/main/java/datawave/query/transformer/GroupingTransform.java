@@ -10,6 +10,8 @@ import com.google.common.collect.TreeMultimap;
 import datawave.data.type.NumberType;
 import datawave.data.type.Type;
 import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Attributes;
+import datawave.query.attributes.Content;
 import datawave.query.attributes.Document;
 import datawave.query.attributes.TypeAttribute;
 import datawave.query.model.QueryModel;
@@ -23,21 +25,31 @@ import org.springframework.util.Assert;
 
 import javax.annotation.Nullable;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+/**
+ * Counts the documents of a query by the values of the group fields. In the web server this collects the counts over every result and emits one document per
+ * group when flushed. In the tablet servers, {@link #getGroupingIterator(Iterator, int)} collects the counts over each batch of documents and emits them as a
+ * single document of partial counts, which the web server merges. Group-by then ships a document per batch instead of a document per result.
+ * <p>
+ * A document of partial counts holds each group under its own context: the group fields as {@code FIELD.n}, the count as {@code COUNT.n} and the datatypes
+ * as {@code DATATYPES.n}, where the count carries the combined visibility of the group.
+ */
 public class GroupingTransform extends DocumentTransform.DefaultDocumentTransform {
     
     private static final Logger log = Logger.getLogger(GroupingTransform.class);
     
+    public static final String COUNT_FIELD = "COUNT";
+    public static final String DATATYPES_FIELD = "DATATYPES";
+    
     private Set<String> groupFieldsSet;
     private Map<String,Attribute<?>> fieldMap = Maps.newHashMap();
     private Multimap<Collection<Attribute<?>>,String> fieldDatatypes = HashMultimap.create();
@@ -46,7 +58,8 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
     private LinkedList<Document> documents = null;
     private Map<String,String> reverseModelMapping = null;
     
-    private List<Key> keys = new ArrayList<>();
+    // the key of the first document counted, used for the grouped documents
+    private Key firstKey = null;
     
     public GroupingTransform(BaseQueryLogic<Entry<Key,Value>> logic, Collection<String> groupFieldsSet) {
         this.groupFieldsSet = new HashSet<>(groupFieldsSet);
@@ -95,21 +108,76 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
             
             @Override
             public boolean hasNext() {
-                for (int i = 0; i < max && in.hasNext(); i++) {
-                    GroupingTransform.this.apply(in.next());
+                while (next == null && in.hasNext()) {
+                    Key last = null;
+                    for (int i = 0; i < max && in.hasNext(); i++) {
+                        Entry<Key,Document> entry = in.next();
+                        last = entry.getKey();
+                        GroupingTransform.this.apply(entry);
+                    }
+                    next = flushPartialGroups(last);
                 }
-                next = GroupingTransform.this.flush();
                 return next != null;
             }
             
             @Override
             public Entry<Key,Document> next() {
-                return next;
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry<Key,Document> entry = next;
+                next = null;
+                return entry;
             }
         };
         
     }
     
+    /**
+     * Emit the counts collected since the last flush as a single document of partial counts, and reset them. The document is keyed by the last document
+     * counted, so that a scan which is torn down and re-seeked after it resumes with the documents which have not been counted.
+     *
+     * @param key
+     *            the key of the last document counted
+     * @return the partial counts, null if there are none
+     */
+    private Entry<Key,Document> flushPartialGroups(Key key) {
+        if (multiset.isEmpty()) {
+            return null;
+        }
+        
+        Document d = new Document(key, true);
+        int group = 0;
+        for (Collection<Attribute<?>> fields : multiset.elementSet()) {
+            ColumnVisibility vis = getGroupVisibility(fields);
+            String context = "." + group++;
+            for (Attribute<?> field : fields) {
+                Attribute<?> attr = makeAttribute(getFieldName(field) + context, field.getData());
+                attr.setColumnVisibility(vis);
+                d.put(getFieldName(field) + context, attr, true, false);
+            }
+            Attribute<?> count = makeCountAttribute(multiset.count(fields));
+            count.setColumnVisibility(vis);
+            d.put(COUNT_FIELD + context, count, true, false);
+            for (String datatype : fieldDatatypes.get(fields)) {
+                Content content = new Content(datatype, key, true);
+                content.setColumnVisibility(vis);
+                d.put(DATATYPES_FIELD + context, content, true, false);
+            }
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("flushing " + group + " partial groups as " + d);
+        }
+        
+        multiset.clear();
+        fieldDatatypes.clear();
+        fieldVisibilities.clear();
+        fieldMap.clear();
+        firstKey = null;
+        
+        return Maps.immutableEntry(key, d);
+    }
+    
     @Override
     public Entry<Key,Document> flush() {
         if (documents == null) {
@@ -120,24 +188,17 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
                 log.trace("flush will use the multiset:" + multiset);
             }
             for (Collection<Attribute<?>> entry : multiset.elementSet()) {
-                ColumnVisibility vis;
-                try {
-                    vis = toColumnVisibility(fieldVisibilities.get(entry));
-                } catch (Exception e) {
-                    throw new IllegalStateException("Unable to merge column visibilities: " + fieldVisibilities.get(entry), e);
-                }
-                // grab a key from those saved during getListKeyCounts
-                Assert.notEmpty(keys, "no available keys for grouping results");
-                Key docKey = keys.get(0);
-                Document d = new Document(docKey, true);
+                ColumnVisibility vis = getGroupVisibility(entry);
+                // grab the key saved during getListKeyCounts
+                Assert.notNull(firstKey, "no available keys for grouping results");
+                Document d = new Document(firstKey, true);
                 
                 for (Attribute base : entry) {
                     d.put(getFieldName(base), base);
                 }
-                NumberType type = new NumberType();
-                type.setDelegate(new BigDecimal(multiset.count(entry)));
-                TypeAttribute<BigDecimal> attr = new TypeAttribute<>(type, new Key("count"), true);
-                d.put("COUNT", attr);
+                Attribute<?> attr = makeCountAttribute(multiset.count(entry));
+                attr.setColumnVisibility(vis);
+                d.put(COUNT_FIELD, attr);
                 documents.add(d);
             }
         }
@@ -153,6 +214,85 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
         return null;
     }
     
+    private ColumnVisibility getGroupVisibility(Collection<Attribute<?>> fields) {
+        try {
+            return toColumnVisibility(fieldVisibilities.get(fields));
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to merge column visibilities: " + fieldVisibilities.get(fields), e);
+        }
+    }
+    
+    private Attribute<?> makeCountAttribute(int count) {
+        NumberType type = new NumberType();
+        type.setDelegate(new BigDecimal(count));
+        return new TypeAttribute<>(type, new Key("count"), true);
+    }
+    
+    private int getCount(Attribute<?> countAttribute) {
+        return ((BigDecimal) ((TypeAttribute<?>) countAttribute).getType().getDelegate()).intValue();
+    }
+    
+    /**
+     * @param fieldName
+     *            a field name
+     * @return the field name with the model mapping reversed for the name before the grouping context
+     */
+    private String reverseModelMapping(String fieldName) {
+        if (reverseModelMapping != null) {
+            int index = fieldName.indexOf('.');
+            String shorterName = (index == -1 ? fieldName : fieldName.substring(0, index));
+            String finalName = reverseModelMapping.get(shorterName);
+            if (finalName != null) {
+                return finalName + fieldName.substring(shorterName.length());
+            }
+        }
+        return fieldName;
+    }
+    
+    /**
+     * Merge a document of partial counts from a tablet server
+     *
+     * @param entry
+     *            the document of partial counts
+     */
+    private void mergePartialGroups(Entry<Key,Document> entry) {
+        Document d = entry.getValue();
+        Map<String,Collection<Attribute<?>>> groups = Maps.newHashMap();
+        for (Map.Entry<String,Attribute<? extends Comparable<?>>> field : d.entrySet()) {
+            int index = field.getKey().lastIndexOf('.');
+            if (index == -1) {
+                continue;
+            }
+            String fieldName = field.getKey().substring(0, index);
+            String context = field.getKey().substring(index + 1);
+            if (!fieldName.equals(COUNT_FIELD) && !fieldName.equals(DATATYPES_FIELD)) {
+                groups.computeIfAbsent(context, k -> new HashSet<>()).add(makeAttribute(reverseModelMapping(fieldName), field.getValue().getData()));
+            }
+        }
+        
+        for (Map.Entry<String,Collection<Attribute<?>>> group : groups.entrySet()) {
+            Attribute<?> count = d.get(COUNT_FIELD + '.' + group.getKey());
+            if (count == null) {
+                continue;
+            }
+            Collection<Attribute<?>> fields = group.getValue();
+            multiset.add(fields, getCount(count));
+            // the visibilities of the attributes are not returned with a reduced response
+            fieldVisibilities.put(fields, count.isMetadataSet() ? count.getColumnVisibility() : getColumnVisibility(entry));
+            
+            Attribute<?> datatypes = d.get(DATATYPES_FIELD + '.' + group.getKey());
+            if (datatypes instanceof Attributes) {
+                for (Attribute<?> datatype : ((Attributes) datatypes).getAttributes()) {
+                    fieldDatatypes.put(fields, String.valueOf(datatype.getData()));
+                }
+            } else if (datatypes != null) {
+                fieldDatatypes.put(fields, String.valueOf(datatypes.getData()));
+            }
+        }
+        if (log.isTraceEnabled())
+            log.trace("merged partial groups:" + groups.keySet() + ", map:" + multiset);
+    }
+    
     private Multimap<String,String> getFieldToFieldWithGroupingContextMap(Document d, Set<String> expandedGroupFieldsList) {
         Multimap<String,String> fieldToFieldWithContextMap = TreeMultimap.create();
         for (Map.Entry<String,Attribute<? extends Comparable<?>>> entry : d.entrySet()) {
@@ -213,16 +353,22 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
         if (log.isTraceEnabled()) {
             log.trace("get list key counts for:" + entry);
         }
-        keys.add(entry.getKey());
+        if (firstKey == null) {
+            firstKey = entry.getKey();
+        }
+        if (entry.getValue().containsKey(COUNT_FIELD + ".0")) {
+            mergePartialGroups(entry);
+            return;
+        }
+        
         int count = 1;
         Set<String> expandedGroupFieldsList = new LinkedHashSet<>();
         // if the incoming Documents have been aggregated on the tserver, they will have a COUNT field.
         // use the value in the COUNT field as a loop max when the fields are put into the multiset
         // During the flush operation, a new COUNT field will be created based on the number of unique
         // field sets in the multiset
-        if (entry.getValue().getDictionary().containsKey("COUNT")) {
-            TypeAttribute countTypeAttribute = ((TypeAttribute) entry.getValue().getDictionary().get("COUNT"));
-            count = ((BigDecimal) countTypeAttribute.getType().getDelegate()).intValue();
+        if (entry.getValue().getDictionary().containsKey(COUNT_FIELD)) {
+            count = getCount(entry.getValue().getDictionary().get(COUNT_FIELD));
         }
         Multimap<String,String> fieldToFieldWithContextMap = this.getFieldToFieldWithGroupingContextMap(entry.getValue(), expandedGroupFieldsList);
         if (log.isTraceEnabled())
@@ -253,9 +399,7 @@ public class GroupingTransform extends DocumentTransform.DefaultDocumentTransfor
             }
             if (fieldCollection.size() == expandedGroupFieldsList.size()) {
                 // see above comment about the COUNT field
-                for (int j = 0; j < count; j++) {
-                    multiset.add(fieldCollection);
-                }
+                multiset.add(fieldCollection, count);
                 fieldDatatypes.put(fieldCollection, getDataType(entry));
                 fieldVisibilities.put(fieldCollection, getColumnVisibility(entry));
                 if (log.isTraceEnabled())
@@ -0,0 +1,272 @@
+package datawave.query.transformer;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import datawave.data.normalizer.NumberNormalizer;
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Attributes;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.Numeric;
+import datawave.query.attributes.TypeAttribute;
+import datawave.query.model.QueryModel;
+import datawave.query.tables.ShardQueryLogic;
+import datawave.webservice.query.logic.BaseQueryLogic;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Keeps the k documents with the greatest values of the top-k fields, or the most recent documents when no fields are given. The documents are held in a heap
+ * bounded at k, so a query for the latest k results over a long date range never holds more than k documents at once.
+ * <p>
+ * In the tablet servers, {@link #getTopKIterator(Iterator)} keeps the top k documents of each scan session and returns them in key order once the session's
+ * documents are exhausted. Returning them in key order means a scan which is torn down and re-seeked after the last key returned can only return more
+ * documents, never fewer. In the web server the transform merges those per scan session results, keeping the top k of them all, and emits them greatest first
+ * when flushed.
+ * <p>
+ * A document is ordered by the greatest normalized value of any of the top-k fields it holds, so numeric fields order numerically. Documents without any of
+ * the fields order before every document with one, and ties are broken by the document key.
+ */
+public class TopKTransform extends DocumentTransform.DefaultDocumentTransform {
+    
+    private static final Logger log = Logger.getLogger(TopKTransform.class);
+    
+    private static final NumberNormalizer numberNormalizer = new NumberNormalizer();
+    
+    private final Set<String> fields;
+    private final int k;
+    private Multimap<String,String> modelMapping;
+    
+    // the documents kept so far, least first so that the least can be replaced
+    private final PriorityQueue<Ranked> heap;
+    private LinkedList<Entry<Key,Document>> flushed = null;
+    
+    /**
+     * @param logic
+     *            the query logic, used to match the fields through the query model. May be null
+     * @param fields
+     *            the fields which order the documents, empty to order them by timestamp
+     * @param k
+     *            the number of documents to keep
+     */
+    public TopKTransform(BaseQueryLogic<Entry<Key,Value>> logic, Collection<String> fields, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("The number of documents to keep must be positive: " + k);
+        }
+        this.fields = (fields == null ? Collections.emptySet() : new HashSet<>(fields));
+        this.k = k;
+        this.heap = new PriorityQueue<>(Math.min(k, 1024) + 1);
+        if (logic != null) {
+            QueryModel model = ((ShardQueryLogic) logic).getQueryModel();
+            if (model != null) {
+                modelMapping = HashMultimap.create();
+                // reverse the reverse query mapping which will give us a mapping from the final field name to the original field name(s)
+                for (Map.Entry<String,String> entry : model.getReverseQueryMapping().entrySet()) {
+                    modelMapping.put(entry.getValue(), entry.getKey());
+                }
+            }
+        }
+        if (log.isTraceEnabled())
+            log.trace("top " + k + " by " + (this.fields.isEmpty() ? "timestamp" : this.fields));
+    }
+    
+    /**
+     * Keep the document if it is among the top k seen so far
+     *
+     * @param keyDocumentEntry
+     * @return null, the documents kept are returned by {@link #flush()}
+     */
+    @Nullable
+    @Override
+    public Entry<Key,Document> apply(@Nullable Entry<Key,Document> keyDocumentEntry) {
+        if (keyDocumentEntry != null) {
+            offer(keyDocumentEntry);
+        }
+        return null;
+    }
+    
+    /**
+     * Called repeatedly after the last document, this returns the documents kept from greatest to least
+     *
+     * @return the next document, null when there are none left
+     */
+    @Override
+    public Entry<Key,Document> flush() {
+        if (flushed == null) {
+            flushed = new LinkedList<>();
+            for (Ranked ranked : drain()) {
+                flushed.addFirst(ranked.entry);
+            }
+        }
+        return flushed.poll();
+    }
+    
+    /**
+     * Keep the top k documents of the incoming iterator, returning them in key order once it is exhausted
+     *
+     * @param in
+     *            an iterator source
+     * @return the top k documents in key order
+     */
+    public Iterator<Entry<Key,Document>> getTopKIterator(final Iterator<Entry<Key,Document>> in) {
+        return new Iterator<Entry<Key,Document>>() {
+            
+            Iterator<Entry<Key,Document>> kept = null;
+            
+            @Override
+            public boolean hasNext() {
+                if (kept == null) {
+                    while (in.hasNext()) {
+                        offer(in.next());
+                    }
+                    List<Entry<Key,Document>> entries = new ArrayList<>(heap.size());
+                    for (Ranked ranked : drain()) {
+                        entries.add(ranked.entry);
+                    }
+                    entries.sort(Comparator.comparing(Entry::getKey));
+                    if (log.isDebugEnabled()) {
+                        log.debug("Kept the top " + entries.size() + " documents of the scan session");
+                    }
+                    kept = entries.iterator();
+                }
+                return kept.hasNext();
+            }
+            
+            @Override
+            public Entry<Key,Document> next() {
+                hasNext();
+                return kept.next();
+            }
+        };
+    }
+    
+    private void offer(Entry<Key,Document> entry) {
+        Ranked ranked = new Ranked(entry, getRank(entry));
+        if (heap.size() < k) {
+            heap.add(ranked);
+        } else if (ranked.compareTo(heap.peek()) > 0) {
+            heap.poll();
+            heap.add(ranked);
+        }
+    }
+    
+    /**
+     * @return the documents kept from least to greatest, emptying the heap
+     */
+    private List<Ranked> drain() {
+        List<Ranked> ranked = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ranked.add(heap.poll());
+        }
+        return ranked;
+    }
+    
+    /**
+     * Get the value which orders a document: the greatest normalized value of the top-k fields, or the timestamp when there are no fields
+     *
+     * @param entry
+     * @return a String or Long, null if the document has none of the fields
+     */
+    private Comparable<?> getRank(Entry<Key,Document> entry) {
+        Document document = entry.getValue();
+        if (fields.isEmpty()) {
+            // the attribute timestamps are not returned with a reduced response, so fall back on the key
+            long timestamp = document.getTimestamp();
+            return (timestamp >= 0 ? timestamp : entry.getKey().getTimestamp());
+        }
+        
+        String greatest = null;
+        for (Entry<String,Attribute<? extends Comparable<?>>> field : document.getDictionary().entrySet()) {
+            if (isTopKField(field.getKey())) {
+                String value = getGreatestValue(field.getValue());
+                if (value != null && (greatest == null || value.compareTo(greatest) > 0)) {
+                    greatest = value;
+                }
+            }
+        }
+        return greatest;
+    }
+    
+    private String getGreatestValue(Attribute<?> attr) {
+        if (attr instanceof Attributes) {
+            String greatest = null;
+            for (Attribute<?> child : ((Attributes) attr).getAttributes()) {
+                String value = getGreatestValue(child);
+                if (value != null && (greatest == null || value.compareTo(greatest) > 0)) {
+                    greatest = value;
+                }
+            }
+            return greatest;
+        } else if (attr instanceof TypeAttribute) {
+            return ((TypeAttribute<?>) attr).getType().getNormalizedValue();
+        } else if (attr instanceof Numeric) {
+            return numberNormalizer.normalize(String.valueOf(attr.getData()));
+        }
+        return String.valueOf(attr.getData());
+    }
+    
+    /**
+     * Determine if a document field, less its grouping context, is one of the top-k fields, applying reverse model mappings if configured.
+     *
+     * @param documentField
+     * @return true if matching
+     */
+    private boolean isTopKField(String documentField) {
+        int index = documentField.indexOf('.');
+        String baseDocumentField = (index < 0 ? documentField : documentField.substring(0, index));
+        if (fields.contains(baseDocumentField)) {
+            return true;
+        }
+        if (modelMapping != null) {
+            for (String field : fields) {
+                if (modelMapping.get(field).contains(baseDocumentField)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * A document and the value which orders it
+     */
+    private static class Ranked implements Comparable<Ranked> {
+        private final Entry<Key,Document> entry;
+        private final Comparable rank;
+        
+        Ranked(Entry<Key,Document> entry, Comparable<?> rank) {
+            this.entry = entry;
+            this.rank = rank;
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public int compareTo(Ranked other) {
+            int comparison;
+            if (rank == null || other.rank == null) {
+                comparison = (rank == null ? (other.rank == null ? 0 : -1) : 1);
+            } else {
+                comparison = rank.compareTo(other.rank);
+            }
+            if (comparison == 0) {
+                // the lesser key is the greater, so that ties are kept in key order
+                comparison = other.entry.getKey().compareTo(entry.getKey());
+            }
+            return comparison;
+        }
+    }
+}
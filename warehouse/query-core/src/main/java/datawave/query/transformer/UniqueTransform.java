@@ -4,27 +4,24 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnel;
-import com.google.common.hash.PrimitiveSink;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import datawave.query.attributes.Attribute;
 import datawave.query.attributes.Attributes;
 import datawave.query.attributes.Document;
 import datawave.query.model.QueryModel;
 import datawave.query.tables.ShardQueryLogic;
+import datawave.query.util.sortedset.FileBackedDigestSet;
 import datawave.util.StringUtils;
 import datawave.webservice.query.logic.BaseQueryLogic;
-import org.apache.accumulo.core.data.ArrayByteSequence;
-import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.log4j.Logger;
 
 import javax.annotation.Nullable;
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -35,27 +32,46 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.UUID;
 
 /**
  * This is a iterator that will filter documents base on a uniqueness across a set of configured fields. Only the first instance of an event with a unique set
  * of those fields will be returned. This transform is thread safe.
+ * <p>
+ * Each document is reduced to a 128 bit murmur3 hash of its field sets, and the hashes seen so far are kept in a {@link FileBackedDigestSet}. That holds a
+ * bounded number of hashes in memory and spills the rest to sorted files in a local directory, so the memory used does not grow with the number of results.
+ * The spilled files are removed when the transform is flushed or closed, and the ShardQueryLogic closes the transforms it created when the query is closed,
+ * cancelled or expires. When no directory is given the hashes are only held in memory and forgotten when the buffer
+ * fills, which is how the tservers remove the duplicates within a scan session before the web server removes the remainder.
  */
-public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform {
+public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform implements Closeable {
     
-    private static final Logger log = Logger.getLogger(GroupingTransform.class);
+    private static final Logger log = Logger.getLogger(UniqueTransform.class);
     
-    private BloomFilter<byte[]> bloom = null;
-    private HashSet<ByteSequence> seen;
+    private final FileBackedDigestSet digests;
     private Set<String> fields;
     private Multimap<String,String> modelMapping;
-    private final boolean DEBUG = false;
     
+    /**
+     * Remove the duplicates, spilling to a directory under java.io.tmpdir
+     *
+     * @param fields
+     */
     public UniqueTransform(Set<String> fields) {
+        this(fields, FileBackedDigestSet.DEFAULT_BUFFER_SIZE, getCacheDir(null));
+    }
+    
+    /**
+     * @param fields
+     *            the unique fields
+     * @param bufferSize
+     *            the number of hashes to hold in memory
+     * @param cacheDir
+     *            the local directory to spill the hashes to, or null to forget them when the buffer fills
+     */
+    public UniqueTransform(Set<String> fields, int bufferSize, File cacheDir) {
         this.fields = fields;
-        this.bloom = BloomFilter.create(new ByteFunnel(), 500000, 1e-15);
-        if (DEBUG) {
-            this.seen = new HashSet<>();
-        }
+        this.digests = new FileBackedDigestSet(bufferSize, cacheDir, FileBackedDigestSet.DEFAULT_MAX_RUNS);
         if (log.isTraceEnabled())
             log.trace("unique fields: " + this.fields);
     }
@@ -67,7 +83,7 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      * @param fields
      */
     public UniqueTransform(BaseQueryLogic<Entry<Key,Value>> logic, Set<String> fields) {
-        this(fields);
+        this(fields, ((ShardQueryLogic) logic).getUniqueCacheBufferSize(), getCacheDir(((ShardQueryLogic) logic).getUniqueCacheDir()));
         QueryModel model = ((ShardQueryLogic) logic).getQueryModel();
         if (model != null) {
             modelMapping = HashMultimap.create();
@@ -78,6 +94,13 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
         }
     }
     
+    private static File getCacheDir(String baseDir) {
+        if (baseDir == null || baseDir.isEmpty()) {
+            baseDir = System.getProperty("java.io.tmpdir");
+        }
+        return new File(baseDir, "unique-" + UUID.randomUUID());
+    }
+    
     /**
      * Get a predicate that will apply this transform.
      * 
@@ -102,65 +125,73 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
                     keyDocumentEntry = null;
                 }
             } catch (IOException ioe) {
-                log.error("Failed to convert document to bytes.  Returning document as unique.", ioe);
+                log.error("Failed to spill the unique signatures to " + digests.getDirectory() + ".  Returning document as unique.", ioe);
             }
         }
         return keyDocumentEntry;
     }
     
+    /**
+     * Called after the last document, this removes any spilled signatures
+     *
+     * @return null, this transform does not aggregate
+     */
+    @Override
+    public Entry<Key,Document> flush() {
+        close();
+        return null;
+    }
+    
+    /**
+     * Remove any spilled signatures along with the directory they were spilled to
+     */
+    @Override
+    public void close() {
+        synchronized (digests) {
+            if (digests.getRunCount() > 0 && log.isDebugEnabled()) {
+                log.debug("Removing " + digests.getRunCount() + " spilled runs of " + digests.size() + " unique signatures");
+            }
+            digests.close();
+        }
+    }
+    
     /**
      * Determine if a document is unique per the fields specified. If we have seen this set of fields and values before, then it is not unique.
      * 
      * @param document
      * @return
      * @throws IOException
+     *             if the signatures could not be spilled
      */
     private boolean isDuplicate(Document document) throws IOException {
-        byte[] bytes = getBytes(document);
-        ByteSequence byteSeq = new ArrayByteSequence(bytes);
-        synchronized (bloom) {
-            if (bloom.mightContain(bytes)) {
-                if (DEBUG && !seen.contains(byteSeq)) {
-                    throw new IllegalStateException("This event is 1 in 1Q!");
-                } else {
-                    return true;
-                }
-            }
-            bloom.put(bytes);
-            if (DEBUG) {
-                seen.add(byteSeq);
-            }
+        byte[] signature = getSignature(document);
+        synchronized (digests) {
+            return !digests.add(signature);
         }
-        return false;
     }
     
     /**
-     * Get a sequence of bytes that uniquely identifies this document using the configured unique fields.
+     * Get a hash that identifies this document using the configured unique fields.
      * 
      * @param document
-     * @return A document signature
-     * @throws IOException
-     *             if we failed to generate the byte array
+     * @return A 128 bit document signature
      */
-    private byte[] getBytes(Document document) throws IOException {
+    private byte[] getSignature(Document document) {
         // we need to pull the fields out of the document.
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        DataOutputStream output = new DataOutputStream(bytes);
+        Hasher hasher = Hashing.murmur3_128().newHasher();
         List<FieldSet> fieldSets = getOrderedFieldSets(document);
-        System.out.println(fieldSets);
         int count = 0;
         for (FieldSet fieldSet : fieldSets) {
             String separator = "f" + (count++) + ":";
             for (Map.Entry<String,String> entry : fieldSet.entrySet()) {
-                output.writeChars(separator);
-                output.writeChars(entry.getKey());
-                output.writeChar('=');
-                output.writeChars(entry.getValue());
+                hasher.putUnencodedChars(separator);
+                hasher.putUnencodedChars(entry.getKey());
+                hasher.putChar('=');
+                hasher.putUnencodedChars(entry.getValue());
                 separator = ",";
             }
         }
-        output.flush();
-        return bytes.toByteArray();
+        return hasher.hash().asBytes();
     }
     
     /**
@@ -395,15 +426,4 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
         return false;
     }
     
-    public static class ByteFunnel implements Funnel<byte[]>, Serializable {
-        
-        private static final long serialVersionUID = -2126172579955897986L;
-        
-        @Override
-        public void funnel(byte[] from, PrimitiveSink into) {
-            into.putBytes(from);
-        }
-        
-    }
-    
 }
@@ -2,6 +2,8 @@ package datawave.query.util;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
@@ -51,6 +53,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  */
@@ -106,6 +109,16 @@ public class AllFieldMetadataHelper {
     
     protected CompositeMetadataHelper compositeMetadataHelper;
     
+    /**
+     * The snapshots of the metadata table shared by all of the helpers, by instance, table and auths
+     */
+    protected static final Cache<List<Object>,MetadataSnapshot> metadataSnapshots = CacheBuilder.newBuilder().maximumSize(100)
+                    .expireAfterAccess(24, TimeUnit.HOURS).build();
+    
+    protected boolean useMetadataSnapshot = false;
+    
+    protected long metadataSnapshotRefreshInterval = TimeUnit.MINUTES.toMillis(15);
+    
     public AllFieldMetadataHelper initialize(Connector connector, String metadataTableName, Set<Authorizations> auths, Set<Authorizations> fullUserAuths) {
         return this.initialize(connector, connector.getInstance(), metadataTableName, auths, fullUserAuths, false);
     }
@@ -168,6 +181,55 @@ public class AllFieldMetadataHelper {
         this.compositeMetadataHelper = compositeMetadataHelper;
     }
     
+    public boolean isUseMetadataSnapshot() {
+        return useMetadataSnapshot;
+    }
+    
+    /**
+     * @param useMetadataSnapshot
+     *            whether to serve the field lookups from a {@link MetadataSnapshot} loaded with one scan of the metadata table, instead of scanning the
+     *            metadata table for each of them
+     */
+    public void setUseMetadataSnapshot(boolean useMetadataSnapshot) {
+        this.useMetadataSnapshot = useMetadataSnapshot;
+    }
+    
+    public long getMetadataSnapshotRefreshInterval() {
+        return metadataSnapshotRefreshInterval;
+    }
+    
+    /**
+     * @param metadataSnapshotRefreshInterval
+     *            the age in milliseconds after which a metadata snapshot is reloaded
+     */
+    public void setMetadataSnapshotRefreshInterval(long metadataSnapshotRefreshInterval) {
+        this.metadataSnapshotRefreshInterval = metadataSnapshotRefreshInterval;
+    }
+    
+    /**
+     * Get the snapshot of the metadata table for a set of auths, loading it if there is none or it is older than the refresh interval. Only one thread loads a
+     * snapshot while any others asking for it wait.
+     * 
+     * @param auths
+     * @return the snapshot
+     * @throws TableNotFoundException
+     */
+    protected MetadataSnapshot getMetadataSnapshot(final Set<Authorizations> auths) throws TableNotFoundException {
+        List<Object> key = Arrays.asList(getKey(this), auths);
+        try {
+            MetadataSnapshot snapshot = metadataSnapshots.getIfPresent(key);
+            if (snapshot != null && snapshot.getAge() > metadataSnapshotRefreshInterval) {
+                metadataSnapshots.asMap().remove(key, snapshot);
+            }
+            return metadataSnapshots.get(key, () -> MetadataSnapshot.load(connector, metadataTableName, auths));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TableNotFoundException) {
+                throw (TableNotFoundException) e.getCause();
+            }
+            throw new RuntimeException("Unable to load a metadata snapshot from " + metadataTableName, e.getCause());
+        }
+    }
+    
     /**
      * Method that fetches whether or not a column is indexed.
      * 
@@ -193,6 +255,14 @@ public class AllFieldMetadataHelper {
         // FieldNames are "normalized" to be all upper case
         String upCaseFieldName = fieldName.toUpperCase();
         
+        if (useMetadataSnapshot && tableName.equals(metadataTableName) && MetadataSnapshot.COLUMN_FAMILIES.contains(colf)) {
+            Set<String> datatypes = getMetadataSnapshot(auths).getDatatypes(colf, upCaseFieldName);
+            if (datatype == null || datatype.isEmpty()) {
+                return !datatypes.isEmpty();
+            }
+            return !Collections.disjoint(datatypes, datatype);
+        }
+        
         // Scanner to the provided metadata table
         Scanner scanner = ScannerHelper.createScanner(connector, tableName, auths);
         
@@ -238,6 +308,19 @@ public class AllFieldMetadataHelper {
     public Set<Type<?>> getAllDatatypes() throws InstantiationException, IllegalAccessException, TableNotFoundException {
         log.debug("cache fault for getAllDatatypes(" + this.auths + "," + this.metadataTableName + ")");
         Set<Type<?>> datatypes = Sets.newHashSetWithExpectedSize(10);
+        if (useMetadataSnapshot) {
+            for (String className : getMetadataSnapshot(auths).getTypeClassNames()) {
+                try {
+                    @SuppressWarnings("unchecked")
+                    Class<? extends Type<?>> clazz = (Class<? extends Type<?>>) Class.forName(className);
+                    
+                    datatypes.add(getDatatypeFromClass(clazz));
+                } catch (ClassNotFoundException e) {
+                    log.error("Unable to find normalizer on class path: " + className, e);
+                }
+            }
+            return Collections.unmodifiableSet(datatypes);
+        }
         if (log.isTraceEnabled())
             log.trace("getAllDatatypes from table: " + metadataTableName);
         Scanner bs = ScannerHelper.createScanner(connector, metadataTableName, auths);
@@ -714,6 +797,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "loadAllFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> loadAllFields() throws TableNotFoundException {
         log.debug("cache fault for loadAllFields(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(auths).getAllFields();
+        }
         if (log.isTraceEnabled()) {
             log.trace("Using these minimized auths:" + AuthorizationsUtil.minimize(this.auths).iterator().next());
         }
@@ -758,6 +844,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "getIndexOnlyFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> getIndexOnlyFields() throws TableNotFoundException {
         log.debug("cache fault for getIndexOnlyFields(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(auths).getIndexOnlyFields();
+        }
         Multimap<String,String> fields = HashMultimap.create();
         
         final Map<String,Multimap<Text,Text>> metadata = new HashMap<>();
@@ -827,6 +916,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "loadTermFrequencyFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> loadTermFrequencyFields() throws TableNotFoundException {
         log.debug("cache fault for loadTermFrequencyFields(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(auths).getFields(ColumnFamilyConstants.COLF_TF);
+        }
         Multimap<String,String> fields = HashMultimap.create();
         if (log.isTraceEnabled())
             log.trace("loadTermFrequencyFields from table: " + metadataTableName);
@@ -852,6 +944,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "loadIndexedFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> loadIndexedFields() throws TableNotFoundException {
         log.debug("cache fault for loadIndexedFields(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(auths).getFields(ColumnFamilyConstants.COLF_I);
+        }
         Multimap<String,String> fields = HashMultimap.create();
         
         Scanner bs = ScannerHelper.createScanner(connector, metadataTableName, auths);
@@ -879,6 +974,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "loadReverseIndexedFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> loadReverseIndexedFields() throws TableNotFoundException {
         log.debug("cache fault for loadReverseIndexedFields(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(auths).getFields(ColumnFamilyConstants.COLF_RI);
+        }
         Multimap<String,String> fields = HashMultimap.create();
         
         Scanner bs = ScannerHelper.createScanner(connector, metadataTableName, auths);
@@ -906,6 +1004,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "loadIndexedFields", key = "{#root.target.fullUserAuths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> loadAllIndexedFields() throws TableNotFoundException {
         log.debug("cache fault for loadIndexedFields(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(fullUserAuths).getFields(ColumnFamilyConstants.COLF_I);
+        }
         Multimap<String,String> fields = HashMultimap.create();
         
         Scanner bs = ScannerHelper.createScanner(connector, metadataTableName, fullUserAuths);
@@ -933,6 +1034,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "loadExpansionFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> loadExpansionFields() throws TableNotFoundException {
         log.debug("cache fault for loadExpansionFields(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(auths).getFields(ColumnFamilyConstants.COLF_EXP);
+        }
         Multimap<String,String> fields = HashMultimap.create();
         
         Scanner bs = ScannerHelper.createScanner(connector, metadataTableName, auths);
@@ -959,6 +1063,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "loadContentFields", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Multimap<String,String> loadContentFields() throws TableNotFoundException {
         log.debug("cache fault for loadContentFields(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(auths).getFields(ColumnFamilyConstants.COLF_CONTENT);
+        }
         Multimap<String,String> fields = HashMultimap.create();
         
         Scanner bs = ScannerHelper.createScanner(connector, metadataTableName, auths);
@@ -987,6 +1094,9 @@ public class AllFieldMetadataHelper {
     @Cacheable(value = "loadDatatypes", key = "{#root.target.auths,#root.target.metadataTableName}", cacheManager = "metadataHelperCacheManager")
     public Set<String> loadDatatypes() throws TableNotFoundException {
         log.debug("cache fault for loadDatatypes(" + this.auths + "," + this.metadataTableName + ")");
+        if (useMetadataSnapshot) {
+            return getMetadataSnapshot(auths).getDatatypes();
+        }
         if (log.isTraceEnabled())
             log.trace("loadDatatypes from table: " + metadataTableName);
         HashSet<String> datatypes = new HashSet<>();
@@ -1030,6 +1140,7 @@ public class AllFieldMetadataHelper {
                     allEntries = true, cacheManager = "metadataHelperCacheManager")
     public void evictCaches() {
         log.debug("evictCaches");
+        metadataSnapshots.invalidateAll();
         typeMetadataHelper.evictCaches();
     }
     
@@ -0,0 +1,215 @@
+package datawave.query.util;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.SetMultimap;
+import datawave.data.ColumnFamilyConstants;
+import datawave.security.util.ScannerHelper;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * An immutable view of the field metadata in the metadata table as seen with one set of auths, loaded with a single scan. The {@link AllFieldMetadataHelper}
+ * serves its field lookups from a snapshot instead of scanning the metadata table once for each kind of field, so planning a query against a cold cache costs
+ * one metadata scan rather than one per lookup.
+ */
+public class MetadataSnapshot {
+    private static final Logger log = Logger.getLogger(MetadataSnapshot.class);
+    
+    /**
+     * The column families held by a snapshot
+     */
+    public static final List<Text> COLUMN_FAMILIES = Arrays.asList(ColumnFamilyConstants.COLF_E, ColumnFamilyConstants.COLF_I, ColumnFamilyConstants.COLF_RI,
+                    ColumnFamilyConstants.COLF_T, ColumnFamilyConstants.COLF_TF, ColumnFamilyConstants.COLF_CI, ColumnFamilyConstants.COLF_EXP,
+                    ColumnFamilyConstants.COLF_CONTENT);
+    
+    /**
+     * The column families which make up the set of all fields, leaving out those which may contain model field names
+     */
+    private static final List<Text> ALL_FIELDS_COLUMN_FAMILIES = Arrays.asList(ColumnFamilyConstants.COLF_T, ColumnFamilyConstants.COLF_I,
+                    ColumnFamilyConstants.COLF_E, ColumnFamilyConstants.COLF_RI, ColumnFamilyConstants.COLF_TF, ColumnFamilyConstants.COLF_CI);
+    
+    private final String metadataTableName;
+    private final long loadTime;
+    
+    // column family -> field -> datatype
+    private final Map<Text,SetMultimap<String,String>> fieldsToDatatypes;
+    
+    // column family -> datatype -> field
+    private final Map<Text,SetMultimap<String,String>> datatypesToFields;
+    
+    private final Set<String> compositeFields;
+    private final Set<String> typeClassNames;
+    private final Multimap<String,String> allFields;
+    private final Multimap<String,String> indexOnlyFields;
+    
+    private MetadataSnapshot(String metadataTableName, Map<Text,SetMultimap<String,String>> fieldsToDatatypes, Set<String> compositeFields,
+                    Set<String> typeClassNames) {
+        this.metadataTableName = metadataTableName;
+        this.loadTime = System.currentTimeMillis();
+        this.fieldsToDatatypes = new HashMap<>();
+        this.datatypesToFields = new HashMap<>();
+        for (Text colf : COLUMN_FAMILIES) {
+            SetMultimap<String,String> fields = fieldsToDatatypes.get(colf);
+            ImmutableSetMultimap<String,String> immutable = (fields == null ? ImmutableSetMultimap.of() : ImmutableSetMultimap.copyOf(fields));
+            this.fieldsToDatatypes.put(colf, immutable);
+            this.datatypesToFields.put(colf, immutable.inverse());
+        }
+        this.compositeFields = ImmutableSet.copyOf(compositeFields);
+        this.typeClassNames = ImmutableSet.copyOf(typeClassNames);
+        
+        ImmutableSetMultimap.Builder<String,String> allFields = ImmutableSetMultimap.builder();
+        for (Text colf : ALL_FIELDS_COLUMN_FAMILIES) {
+            allFields.putAll(getFields(colf));
+        }
+        this.allFields = allFields.build();
+        
+        // the fields which are indexed for a datatype without appearing in its events, leaving out the composite fields
+        ImmutableSetMultimap.Builder<String,String> indexOnlyFields = ImmutableSetMultimap.builder();
+        for (Entry<String,String> entry : getFields(ColumnFamilyConstants.COLF_I).entries()) {
+            String datatype = entry.getKey();
+            String field = entry.getValue();
+            if (!getDatatypes(ColumnFamilyConstants.COLF_E, field).contains(datatype) && !getDatatypes(ColumnFamilyConstants.COLF_CI, field).contains(datatype)
+                            && !this.compositeFields.contains(field)) {
+                indexOnlyFields.put(datatype, field);
+            }
+        }
+        this.indexOnlyFields = indexOnlyFields.build();
+    }
+    
+    /**
+     * Scan the metadata table for every column family held by a snapshot
+     *
+     * @param connector
+     * @param metadataTableName
+     * @param auths
+     * @return the snapshot
+     * @throws TableNotFoundException
+     */
+    public static MetadataSnapshot load(Connector connector, String metadataTableName, Set<Authorizations> auths) throws TableNotFoundException {
+        long start = System.currentTimeMillis();
+        Map<Text,SetMultimap<String,String>> fieldsToDatatypes = new HashMap<>();
+        Set<String> compositeFields = new HashSet<>();
+        Set<String> typeClassNames = new HashSet<>();
+        
+        Scanner bs = ScannerHelper.createScanner(connector, metadataTableName, auths);
+        bs.setRange(new Range());
+        for (Text colf : COLUMN_FAMILIES) {
+            bs.fetchColumnFamily(colf);
+        }
+        
+        int entries = 0;
+        for (Entry<Key,Value> entry : bs) {
+            Key k = entry.getKey();
+            Text colf = k.getColumnFamily();
+            String colq = k.getColumnQualifier().toString();
+            int idx = colq.indexOf('\0');
+            String datatype = (idx >= 0 ? colq.substring(0, idx) : colq);
+            
+            SetMultimap<String,String> fields = fieldsToDatatypes.get(colf);
+            if (fields == null) {
+                fields = HashMultimap.create();
+                fieldsToDatatypes.put(new Text(colf), fields);
+            }
+            fields.put(k.getRow().toString(), datatype);
+            
+            if (idx >= 0 && colf.equals(ColumnFamilyConstants.COLF_T)) {
+                typeClassNames.add(colq.substring(idx + 1));
+            } else if (idx >= 0 && colf.equals(ColumnFamilyConstants.COLF_CI)) {
+                String compositeField = colq.substring(idx + 1);
+                int comma = compositeField.indexOf(',');
+                compositeFields.add(comma >= 0 ? compositeField.substring(0, comma) : compositeField);
+            }
+            entries++;
+        }
+        
+        MetadataSnapshot snapshot = new MetadataSnapshot(metadataTableName, fieldsToDatatypes, compositeFields, typeClassNames);
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded metadata snapshot of " + entries + " entries from " + metadataTableName + " with " + auths + " in "
+                            + (System.currentTimeMillis() - start) + "ms");
+        }
+        return snapshot;
+    }
+    
+    public String getMetadataTableName() {
+        return metadataTableName;
+    }
+    
+    /**
+     * @return how long ago this snapshot was loaded, in milliseconds
+     */
+    public long getAge() {
+        return System.currentTimeMillis() - loadTime;
+    }
+    
+    /**
+     * @param colf
+     *            one of the {@link #COLUMN_FAMILIES}
+     * @return a multimap of datatype to the fields with an entry in the column family
+     */
+    public Multimap<String,String> getFields(Text colf) {
+        return datatypesToFields.get(colf);
+    }
+    
+    /**
+     * @param colf
+     *            one of the {@link #COLUMN_FAMILIES}
+     * @param field
+     * @return the datatypes for which the field has an entry in the column family
+     */
+    public Set<String> getDatatypes(Text colf, String field) {
+        return fieldsToDatatypes.get(colf).get(field);
+    }
+    
+    /**
+     * @return a multimap of datatype to every field that has occurred in the database
+     */
+    public Multimap<String,String> getAllFields() {
+        return allFields;
+    }
+    
+    /**
+     * @return a multimap of datatype to the fields which are indexed but do not appear in an event
+     */
+    public Multimap<String,String> getIndexOnlyFields() {
+        return indexOnlyFields;
+    }
+    
+    /**
+     * @return the names of all of the composite fields
+     */
+    public Set<String> getCompositeFields() {
+        return compositeFields;
+    }
+    
+    /**
+     * @return the class names of all of the normalizers
+     */
+    public Set<String> getTypeClassNames() {
+        return typeClassNames;
+    }
+    
+    /**
+     * @return all of the datatypes with a field that appears in an event
+     */
+    public Set<String> getDatatypes() {
+        return datatypesToFields.get(ColumnFamilyConstants.COLF_E).keySet();
+    }
+}
@@ -0,0 +1,262 @@
+package datawave.query.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import datawave.core.iterators.filesystem.FileSystemCache;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Multimap;
+import com.google.common.hash.Hashing;
+
+/**
+ * A versioned binary snapshot of a {@link TypeMetadata}, written once to a shared directory by the query planner so that the query iterators can be given the
+ * version instead of the serialized type metadata. The version is a hash of the snapshot's bytes, so a snapshot never changes once written and each tablet
+ * server reads and parses a version only once, caching the result for every scan session which uses it.
+ * <p>
+ * The snapshot holds a dictionary of the ingest types and normalizer classes, which are repeated across many fields, followed by the fields with indexes into
+ * the dictionary. Everything is written in sorted order so the same type metadata always produces the same version.
+ */
+public class TypeMetadataSnapshot {
+    
+    private static final Logger log = Logger.getLogger(TypeMetadataSnapshot.class);
+    
+    public static final String FILE_SUFFIX = ".typeMetadata";
+    
+    private static final int MAGIC = 0x544d4431; // TMD1
+    private static final int MAX_CACHED_SNAPSHOTS = 64;
+    
+    /**
+     * The snapshots loaded on this server, by version
+     */
+    private static final Cache<String,TypeMetadata> loaded = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SNAPSHOTS).build();
+    
+    /**
+     * The snapshot files which this server has written or seen, so that the planner only checks for a version once
+     */
+    private static final Set<Path> written = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    
+    private final TypeMetadata typeMetadata;
+    private final byte[] bytes;
+    private final String version;
+    
+    public TypeMetadataSnapshot(TypeMetadata typeMetadata) {
+        this.typeMetadata = typeMetadata;
+        this.bytes = serialize(typeMetadata);
+        this.version = version(bytes);
+    }
+    
+    public TypeMetadata getTypeMetadata() {
+        return typeMetadata;
+    }
+    
+    public String getVersion() {
+        return version;
+    }
+    
+    public byte[] toBytes() {
+        return bytes;
+    }
+    
+    /**
+     * Write this snapshot to a directory unless it is already there. The snapshot is written to a temporary file and renamed so that readers never see a
+     * partial snapshot.
+     *
+     * @param fs
+     * @param dir
+     * @return the snapshot file
+     * @throws IOException
+     *             if the snapshot could not be written
+     */
+    public Path write(FileSystem fs, Path dir) throws IOException {
+        Path file = getPath(dir, version);
+        if (written.contains(file) || fs.exists(file)) {
+            written.add(file);
+            return file;
+        }
+        
+        Path tmp = new Path(dir, "." + version + '.' + System.nanoTime() + ".tmp");
+        try (FSDataOutputStream out = fs.create(tmp, false)) {
+            out.write(bytes);
+        }
+        if (!fs.rename(tmp, file)) {
+            fs.delete(tmp, false);
+            // another planner may have written the same version at the same time
+            if (!fs.exists(file)) {
+                throw new IOException("Unable to rename " + tmp + " to " + file);
+            }
+        }
+        written.add(file);
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote type metadata snapshot " + file + " of " + bytes.length + " bytes");
+        }
+        return file;
+    }
+    
+    /**
+     * Get the type metadata of a snapshot, reading it from the directory the first time the version is seen on this server
+     *
+     * @param fs
+     * @param dir
+     * @param version
+     * @return the type metadata, shared by all of the callers so it must not be modified
+     * @throws IOException
+     *             if the snapshot could not be read or does not match its version
+     */
+    public static TypeMetadata load(FileSystem fs, Path dir, String version) throws IOException {
+        try {
+            return loaded.get(version, () -> read(fs, getPath(dir, version), version));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to load type metadata snapshot " + version + " from " + dir, e.getCause());
+        }
+    }
+    
+    /**
+     * Get the file system holding the snapshots
+     *
+     * @param dir
+     *            the snapshot directory
+     * @param hdfsSiteConfigURLs
+     *            the hadoop site configuration files, or null to use the default configuration
+     * @return the file system
+     * @throws IOException
+     */
+    public static FileSystem getFileSystem(URI dir, String hdfsSiteConfigURLs) throws IOException {
+        if (hdfsSiteConfigURLs == null) {
+            return FileSystem.get(dir, new Configuration());
+        }
+        return new FileSystemCache(hdfsSiteConfigURLs).getFileSystem(dir);
+    }
+    
+    public static Path getPath(Path dir, String version) {
+        return new Path(dir, version + FILE_SUFFIX);
+    }
+    
+    private static TypeMetadata read(FileSystem fs, Path file, String version) throws IOException {
+        long start = System.currentTimeMillis();
+        byte[] bytes;
+        try (FSDataInputStream in = fs.open(file)) {
+            bytes = IOUtils.toByteArray(in);
+        }
+        if (!version.equals(version(bytes))) {
+            throw new IOException("Type metadata snapshot " + file + " does not match its version");
+        }
+        TypeMetadata typeMetadata = fromBytes(bytes);
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded type metadata snapshot " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        return typeMetadata;
+    }
+    
+    private static String version(byte[] bytes) {
+        return Hashing.sha256().hashBytes(bytes).toString();
+    }
+    
+    private static byte[] serialize(TypeMetadata typeMetadata) {
+        // field -> ingest type -> normalizer classes, all sorted so the bytes are deterministic
+        SortedSet<String> ingestTypes = new TreeSet<>();
+        SortedSet<String> types = new TreeSet<>();
+        SortedMap<String,SortedMap<String,SortedSet<String>>> fields = new TreeMap<>();
+        for (Map.Entry<String,Multimap<String,String>> ingestType : typeMetadata.typeMetadata.entrySet()) {
+            for (Map.Entry<String,String> entry : ingestType.getValue().entries()) {
+                ingestTypes.add(ingestType.getKey());
+                types.add(entry.getValue());
+                fields.computeIfAbsent(entry.getKey(), k -> new TreeMap<>()).computeIfAbsent(ingestType.getKey(), k -> new TreeSet<>()).add(entry.getValue());
+            }
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            Map<String,Integer> ingestTypeIds = writeDictionary(out, ingestTypes);
+            Map<String,Integer> typeIds = writeDictionary(out, types);
+            WritableUtils.writeVInt(out, fields.size());
+            for (Map.Entry<String,SortedMap<String,SortedSet<String>>> field : fields.entrySet()) {
+                out.writeUTF(field.getKey());
+                WritableUtils.writeVInt(out, field.getValue().size());
+                for (Map.Entry<String,SortedSet<String>> ingestType : field.getValue().entrySet()) {
+                    WritableUtils.writeVInt(out, ingestTypeIds.get(ingestType.getKey()));
+                    WritableUtils.writeVInt(out, ingestType.getValue().size());
+                    for (String type : ingestType.getValue()) {
+                        WritableUtils.writeVInt(out, typeIds.get(type));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize the type metadata", e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static Map<String,Integer> writeDictionary(DataOutputStream out, Set<String> values) throws IOException {
+        Map<String,Integer> ids = new HashMap<>();
+        WritableUtils.writeVInt(out, values.size());
+        for (String value : values) {
+            ids.put(value, ids.size());
+            out.writeUTF(value);
+        }
+        return ids;
+    }
+    
+    private static List<String> readDictionary(DataInputStream in) throws IOException {
+        int size = WritableUtils.readVInt(in);
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+    
+    public static TypeMetadata fromBytes(byte[] bytes) throws IOException {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a type metadata snapshot");
+            }
+            List<String> ingestTypes = readDictionary(in);
+            List<String> types = readDictionary(in);
+            int fields = WritableUtils.readVInt(in);
+            for (int i = 0; i < fields; i++) {
+                String field = in.readUTF();
+                int fieldIngestTypes = WritableUtils.readVInt(in);
+                for (int j = 0; j < fieldIngestTypes; j++) {
+                    String ingestType = ingestTypes.get(WritableUtils.readVInt(in));
+                    int fieldTypes = WritableUtils.readVInt(in);
+                    for (int k = 0; k < fieldTypes; k++) {
+                        typeMetadata.put(field, ingestType, types.get(WritableUtils.readVInt(in)));
+                    }
+                }
+            }
+        }
+        return typeMetadata;
+    }
+}
@@ -0,0 +1,65 @@
+package datawave.query.util.sortedset;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Frees direct and memory mapped buffers as soon as they are no longer used, rather than leaving the off-heap memory and file mappings to be released
+ * whenever the garbage collector gets to the buffer objects. A buffer must not be used, by any thread, once it has been freed.
+ */
+final class DirectBuffers {
+    private static final Logger log = Logger.getLogger(DirectBuffers.class);
+    
+    // Unsafe.invokeCleaner on java 9+, otherwise the buffer's own cleaner on java 8
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+    
+    private DirectBuffers() {}
+    
+    /**
+     * Free a direct or mapped buffer. Nothing is done for heap buffers, and if the buffer cannot be freed it is left to the garbage collector.
+     *
+     * @param buffer
+     *            the buffer as allocated or mapped, not a duplicate or slice of it
+     */
+    static void free(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to free direct buffer, leaving it to the garbage collector", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package datawave.query.util.sortedset;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+/**
+ * An append only buffer of byte arrays held in a direct (off-heap) ByteBuffer. Entries are stored length-prefixed in arrival order along with an int array of
+ * their offsets; the offsets are sorted (and duplicates dropped) lazily the first time the contents are iterated. This keeps the ivarator result buffer out of
+ * the tserver heap and avoids creating an object per entry until the entries are read back.
+ *
+ * The off-heap buffer starts small and is doubled as entries are added, up to the capacity, so that a set holding a handful of entries does not reserve the
+ * whole capacity. Call {@link #release()} once the buffer is no longer needed to free the off-heap memory immediately.
+ */
+public class DirectByteSetBuffer {
+    private static final int DEFAULT_INITIAL_ENTRIES = 1024;
+    private static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+    
+    private final int capacity;
+    private ByteBuffer data;
+    private int[] offsets = new int[DEFAULT_INITIAL_ENTRIES];
+    private int count = 0;
+    private boolean sorted = true;
+    
+    /**
+     * @param capacity
+     *            the maximum number of bytes to allocate off-heap for this buffer
+     */
+    public DirectByteSetBuffer(int capacity) {
+        this.capacity = capacity;
+        this.data = ByteBuffer.allocateDirect(Math.min(capacity, DEFAULT_INITIAL_CAPACITY));
+    }
+    
+    /**
+     * @param length
+     *            the length of an entry
+     * @return true if an entry of the specified length will fit in the remaining space, once the buffer has grown to its capacity
+     */
+    public boolean fits(int length) {
+        return capacity - data.position() >= length + 4;
+    }
+    
+    /**
+     * Append an entry to this buffer
+     * 
+     * @param entry
+     * @return false if the buffer does not have enough space for the entry, in which case nothing was added
+     */
+    public boolean add(byte[] entry) {
+        if (!fits(entry.length)) {
+            return false;
+        }
+        if (data.remaining() < entry.length + 4) {
+            grow(entry.length + 4);
+        }
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        int offset = data.position();
+        data.putInt(entry.length);
+        data.put(entry);
+        if (sorted && count > 0 && compare(offsets[count - 1], offset) >= 0) {
+            sorted = false;
+        }
+        offsets[count++] = offset;
+        return true;
+    }
+    
+    /**
+     * @return the number of entries in this buffer. Duplicates are counted until the buffer has been sorted
+     */
+    public int size() {
+        return count;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    /**
+     * @return the number of off-heap bytes currently used
+     */
+    public int getBytesUsed() {
+        return data.position();
+    }
+    
+    public void clear() {
+        data.clear();
+        count = 0;
+        sorted = true;
+    }
+    
+    /**
+     * Free the off-heap memory of this buffer. The buffer must not be used afterwards.
+     */
+    public void release() {
+        DirectBuffers.free(data);
+        data = null;
+        count = 0;
+    }
+    
+    /**
+     * Double the off-heap buffer, up to the capacity, until it has room for the needed bytes
+     */
+    private void grow(int needed) {
+        int size = data.capacity();
+        while (size - data.position() < needed) {
+            size = (int) Math.min(capacity, size * 2L);
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(size);
+        ByteBuffer contents = data.duplicate();
+        contents.flip();
+        larger.put(contents);
+        DirectBuffers.free(data);
+        data = larger;
+    }
+    
+    /**
+     * Sort the entry offsets and remove duplicates.
+     */
+    public void sort() {
+        if (sorted) {
+            return;
+        }
+        int[] scratch = new int[count];
+        mergeSort(offsets, scratch, 0, count);
+        
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || compare(offsets[unique - 1], offsets[i]) != 0) {
+                offsets[unique++] = offsets[i];
+            }
+        }
+        count = unique;
+        sorted = true;
+    }
+    
+    /**
+     * @return the entries of this buffer in sorted order with duplicates removed
+     */
+    public Iterator<byte[]> iterator() {
+        sort();
+        return new Iterator<byte[]>() {
+            private final int end = count;
+            private int index = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return index < end;
+            }
+            
+            @Override
+            public byte[] next() {
+                if (index >= end) {
+                    QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                    throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+                }
+                return get(offsets[index++]);
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("DirectByteSetBuffer iterators do not support remove");
+            }
+        };
+    }
+    
+    private byte[] get(int offset) {
+        int length = data.getInt(offset);
+        byte[] entry = new byte[length];
+        ByteBuffer view = data.duplicate();
+        view.position(offset + 4);
+        view.get(entry);
+        return entry;
+    }
+    
+    private int compare(int offset1, int offset2) {
+        int len1 = data.getInt(offset1);
+        int len2 = data.getInt(offset2);
+        int minLength = Math.min(len1, len2);
+        for (int i = 0; i < minLength; i++) {
+            int a = data.get(offset1 + 4 + i) & 0xff;
+            int b = data.get(offset2 + 4 + i) & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return len1 - len2;
+    }
+    
+    private void mergeSort(int[] values, int[] scratch, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(values, scratch, from, mid);
+        mergeSort(values, scratch, mid, to);
+        if (compare(values[mid - 1], values[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(values, from, scratch, from, to - from);
+        int left = from, right = mid, dest = from;
+        while (left < mid && right < to) {
+            if (compare(scratch[left], scratch[right]) <= 0) {
+                values[dest++] = scratch[left++];
+            } else {
+                values[dest++] = scratch[right++];
+            }
+        }
+        while (left < mid) {
+            values[dest++] = scratch[left++];
+        }
+        while (right < to) {
+            values[dest++] = scratch[right++];
+        }
+    }
+}
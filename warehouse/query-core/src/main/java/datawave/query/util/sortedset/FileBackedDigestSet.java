@@ -0,0 +1,432 @@
+package datawave.query.util.sortedset;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An exact set of 128 bit digests whose memory use is bounded. Digests are held in an open addressing table of longs, which starts small and doubles as it
+ * fills, until it reaches the buffer size, at which point the table is sorted and spilled to a local file as a run of fixed width records. Because the records
+ * are fixed width, a run is searched with a binary search over the memory mapped file instead of the linear scan needed for the variable length runs of a
+ * {@link MappedSortedByteFile}, so a lookup costs one hash probe plus a binary search per run. When there are more than the maximum number of runs they are
+ * merged with a {@link RawMergeSortIterator}.
+ * <p>
+ * If no directory is given nothing is spilled: the table is simply cleared when it fills, which makes the set a best effort filter bounded by the buffer size.
+ * <p>
+ * Closing the set deletes the runs along with the directory. This class is not thread safe.
+ */
+public class FileBackedDigestSet implements Closeable {
+    private static final Logger log = Logger.getLogger(FileBackedDigestSet.class);
+    
+    public static final String FILENAME_PREFIX = "DigestSetFile.";
+    public static final int DIGEST_LENGTH = 16;
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final int DEFAULT_MAX_RUNS = 8;
+    static final int INITIAL_SLOTS = 64;
+    
+    private final File directory;
+    private final int bufferSize;
+    private final int maxRuns;
+    
+    // pairs of longs; a pair of zeros marks an empty slot, so the zero digest is tracked separately
+    private long[] table;
+    private int mask;
+    private final int maxSlots;
+    private int buffered = 0;
+    private boolean containsZero = false;
+    
+    private final List<Run> runs = new ArrayList<>();
+    private int fileCount = 0;
+    private long size = 0;
+    
+    /**
+     * @param bufferSize
+     *            the number of digests to hold in memory before spilling a run
+     * @param directory
+     *            the local directory for the runs, or null to clear the set when the buffer fills instead of spilling
+     * @param maxRuns
+     *            the number of runs at which they are merged
+     */
+    public FileBackedDigestSet(int bufferSize, File directory, int maxRuns) {
+        this.bufferSize = Math.max(1, bufferSize);
+        this.directory = directory;
+        this.maxRuns = Math.max(2, maxRuns);
+        
+        // keep the table at most half full
+        this.maxSlots = Integer.highestOneBit(Math.max(1, this.bufferSize - 1)) << 2;
+        allocateTable(Math.min(INITIAL_SLOTS, maxSlots));
+    }
+    
+    private void allocateTable(int slots) {
+        this.table = new long[slots * 2];
+        this.mask = slots - 1;
+    }
+    
+    /**
+     * @return the number of slots in the table currently allocated
+     */
+    int getTableSlots() {
+        return mask + 1;
+    }
+    
+    public File getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * @return the number of digests in this set, or since it was last cleared if it is not spilling
+     */
+    public long size() {
+        return size;
+    }
+    
+    public int getRunCount() {
+        return runs.size();
+    }
+    
+    /**
+     * Add a digest to this set
+     *
+     * @param digest
+     *            a digest of {@link #DIGEST_LENGTH} bytes
+     * @return true if the digest was not already in the set
+     * @throws IOException
+     *             if a run could not be spilled
+     */
+    public boolean add(byte[] digest) throws IOException {
+        if (digest.length != DIGEST_LENGTH) {
+            throw new IllegalArgumentException("Expected a digest of " + DIGEST_LENGTH + " bytes but got " + digest.length);
+        }
+        long high = getLong(digest, 0);
+        long low = getLong(digest, 8);
+        
+        if (bufferContains(high, low)) {
+            return false;
+        }
+        for (Run run : runs) {
+            if (run.contains(high, low)) {
+                return false;
+            }
+        }
+        
+        if (buffered >= bufferSize) {
+            if (directory == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Clearing " + buffered + " digests");
+                }
+                clearBuffer();
+                size = 0;
+            } else {
+                spill();
+            }
+        }
+        insert(high, low);
+        size++;
+        return true;
+    }
+    
+    /**
+     * @param digest
+     *            a digest of {@link #DIGEST_LENGTH} bytes
+     * @return true if the digest is in the set
+     */
+    public boolean contains(byte[] digest) {
+        long high = getLong(digest, 0);
+        long low = getLong(digest, 8);
+        if (bufferContains(high, low)) {
+            return true;
+        }
+        for (Run run : runs) {
+            if (run.contains(high, low)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Remove all of the digests, deleting any spilled runs
+     */
+    public void clear() {
+        clearBuffer();
+        if (getTableSlots() > INITIAL_SLOTS) {
+            allocateTable(INITIAL_SLOTS);
+        }
+        for (Run run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        size = 0;
+    }
+    
+    /**
+     * Remove all of the digests, deleting any spilled runs and the directory they were spilled to. The set may still be used afterwards.
+     */
+    @Override
+    public void close() {
+        clear();
+        if (directory != null && directory.exists() && !directory.delete()) {
+            log.warn("Failed to delete " + directory);
+        }
+    }
+    
+    private void clearBuffer() {
+        Arrays.fill(table, 0L);
+        buffered = 0;
+        containsZero = false;
+    }
+    
+    private boolean bufferContains(long high, long low) {
+        if (high == 0 && low == 0) {
+            return containsZero;
+        }
+        for (int slot = slot(high, low);; slot = (slot + 1) & mask) {
+            long h = table[slot * 2];
+            long l = table[slot * 2 + 1];
+            if (h == 0 && l == 0) {
+                return false;
+            }
+            if (h == high && l == low) {
+                return true;
+            }
+        }
+    }
+    
+    private void insert(long high, long low) {
+        if (high == 0 && low == 0) {
+            containsZero = true;
+        } else {
+            if ((buffered + 1) * 2 > getTableSlots() && getTableSlots() < maxSlots) {
+                grow();
+            }
+            int slot = slot(high, low);
+            while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot * 2] = high;
+            table[slot * 2 + 1] = low;
+        }
+        buffered++;
+    }
+    
+    /**
+     * Double the table, rehashing the digests into it
+     */
+    private void grow() {
+        long[] old = this.table;
+        allocateTable(getTableSlots() * 2);
+        for (int i = 0; i < old.length; i += 2) {
+            long high = old[i];
+            long low = old[i + 1];
+            if (high != 0 || low != 0) {
+                int slot = slot(high, low);
+                while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot * 2] = high;
+                table[slot * 2 + 1] = low;
+            }
+        }
+    }
+    
+    private int slot(long high, long low) {
+        // the digests are already well distributed
+        return (int) (high ^ low) & mask;
+    }
+    
+    private void spill() throws IOException {
+        long start = System.currentTimeMillis();
+        List<byte[]> sorted = new ArrayList<>(buffered);
+        if (containsZero) {
+            sorted.add(new byte[DIGEST_LENGTH]);
+        }
+        for (int slot = 0; slot <= mask; slot++) {
+            long high = table[slot * 2];
+            long low = table[slot * 2 + 1];
+            if (high != 0 || low != 0) {
+                byte[] digest = new byte[DIGEST_LENGTH];
+                putLong(digest, 0, high);
+                putLong(digest, 8, low);
+                sorted.add(digest);
+            }
+        }
+        sorted.sort(UnsignedByteArrayComparator.INSTANCE);
+        Run run = Run.write(nextFile(), sorted.iterator());
+        runs.add(run);
+        clearBuffer();
+        if (log.isDebugEnabled()) {
+            log.debug("Spilled " + run + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        
+        if (runs.size() > maxRuns) {
+            compact();
+        }
+    }
+    
+    /**
+     * Merge the smallest runs into one, leaving runs which would make the merged run too large to map alone
+     *
+     * @throws IOException
+     */
+    private void compact() throws IOException {
+        List<Run> sorted = new ArrayList<>(runs);
+        sorted.sort((r1, r2) -> Long.compare(r1.entries, r2.entries));
+        List<Run> group = new ArrayList<>();
+        long entries = 0;
+        for (Run run : sorted) {
+            if (entries + run.entries > Run.MAX_ENTRIES) {
+                break;
+            }
+            entries += run.entries;
+            group.add(run);
+        }
+        if (group.size() < 2) {
+            return;
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Merging " + group.size() + " of " + runs.size() + " runs in " + directory);
+        }
+        List<Iterator<byte[]>> iterators = new ArrayList<>(group.size());
+        for (Run run : group) {
+            iterators.add(run.iterator());
+        }
+        Run merged = Run.write(nextFile(), new RawMergeSortIterator(iterators));
+        runs.removeAll(group);
+        runs.add(merged);
+        for (Run run : group) {
+            run.delete();
+        }
+    }
+    
+    private File nextFile() throws IOException {
+        if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        fileCount++;
+        return new File(directory, FILENAME_PREFIX + String.format("%08d", fileCount) + '.' + System.currentTimeMillis());
+    }
+    
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+    
+    private static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = offset + 7; i >= offset; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+    
+    /**
+     * A sorted run of fixed width digests, mapped into memory
+     */
+    private static class Run {
+        private static final long MAX_ENTRIES = Integer.MAX_VALUE / DIGEST_LENGTH;
+        
+        private final File file;
+        private final long entries;
+        private final ByteBuffer buffer;
+        
+        private Run(File file, long entries, ByteBuffer buffer) {
+            this.file = file;
+            this.entries = entries;
+            this.buffer = buffer;
+        }
+        
+        private static Run write(File file, Iterator<byte[]> sorted) throws IOException {
+            long entries = 0;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+                while (sorted.hasNext()) {
+                    out.write(sorted.next());
+                    entries++;
+                }
+            }
+            MappedByteBuffer buffer;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, entries * DIGEST_LENGTH);
+            }
+            return new Run(file, entries, buffer);
+        }
+        
+        private boolean contains(long high, long low) {
+            long lo = 0;
+            long hi = entries - 1;
+            while (lo <= hi) {
+                long mid = (lo + hi) >>> 1;
+                int position = (int) (mid * DIGEST_LENGTH);
+                int comparison = Long.compareUnsigned(buffer.getLong(position), high);
+                if (comparison == 0) {
+                    comparison = Long.compareUnsigned(buffer.getLong(position + 8), low);
+                }
+                if (comparison < 0) {
+                    lo = mid + 1;
+                } else if (comparison > 0) {
+                    hi = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private Iterator<byte[]> iterator() {
+            return new Iterator<byte[]>() {
+                private final ByteBuffer records = buffer.duplicate();
+                
+                @Override
+                public boolean hasNext() {
+                    return records.hasRemaining();
+                }
+                
+                @Override
+                public byte[] next() {
+                    if (!records.hasRemaining()) {
+                        QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                        throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+                    }
+                    byte[] digest = new byte[DIGEST_LENGTH];
+                    records.get(digest);
+                    return digest;
+                }
+                
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("FileBackedDigestSet iterators do not support remove");
+                }
+            };
+        }
+        
+        private void delete() {
+            if (!file.delete()) {
+                log.warn("Failed to delete " + file);
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return file + " (" + entries + " digests)";
+        }
+    }
+}
@@ -17,7 +17,7 @@ import org.apache.log4j.Logger;
 
 public class HdfsBackedSortedSet<E extends Serializable> extends BufferedFileBackedSortedSet<E> implements SortedSet<E> {
     private static final Logger log = Logger.getLogger(HdfsBackedSortedSet.class);
-    private static final String FILENAME_PREFIX = "SortedSetFile.";
+    public static final String FILENAME_PREFIX = "SortedSetFile.";
     
     public HdfsBackedSortedSet(HdfsBackedSortedSet<E> other) throws IOException {
         super(other);
@@ -0,0 +1,90 @@
+package datawave.query.util.sortedset;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.Key;
+
+/**
+ * An {@link OrderPreservingCodec} for {@link KeyValueSerializable}. The row, column family, column qualifier and column visibility are each escaped (0x00
+ * becomes 0x00 0xff) and terminated by 0x00 0x00, followed by the timestamp inverted so that newer entries sort first, the delete flag and finally the raw
+ * value. Comparing two encodings as unsigned bytes gives the same answer as {@link Key#compareTo(Key)}; entries with identical keys are ordered by their
+ * unsigned value bytes.
+ */
+public class KeyValueByteCodec implements OrderPreservingCodec<KeyValueSerializable> {
+    
+    private static final byte ESCAPE = 0x00;
+    private static final byte ESCAPED_NULL = (byte) 0xff;
+    private static final byte TERMINATOR = 0x00;
+    
+    @Override
+    public byte[] encode(KeyValueSerializable entry) {
+        Key key = entry.getKey();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(key.getSize() + 24 + (entry.value == null ? 0 : entry.value.length));
+        writeEscaped(out, key.getRowData().getBackingArray(), key.getRowData().offset(), key.getRowData().length());
+        writeEscaped(out, key.getColumnFamilyData().getBackingArray(), key.getColumnFamilyData().offset(), key.getColumnFamilyData().length());
+        writeEscaped(out, key.getColumnQualifierData().getBackingArray(), key.getColumnQualifierData().offset(), key.getColumnQualifierData().length());
+        writeEscaped(out, key.getColumnVisibilityData().getBackingArray(), key.getColumnVisibilityData().offset(), key.getColumnVisibilityData().length());
+        
+        // invert the timestamp so that it sorts descending, and flip the sign bit so that it sorts correctly as unsigned bytes
+        long timestamp = ~key.getTimestamp() ^ Long.MIN_VALUE;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (timestamp >>> shift));
+        }
+        // deleted keys sort before non-deleted keys
+        out.write(key.isDeleted() ? 0 : 1);
+        
+        if (entry.value != null) {
+            out.write(entry.value, 0, entry.value.length);
+        }
+        return out.toByteArray();
+    }
+    
+    @Override
+    public KeyValueSerializable decode(byte[] bytes) {
+        int[] offset = new int[] {0};
+        byte[] row = readEscaped(bytes, offset);
+        byte[] cf = readEscaped(bytes, offset);
+        byte[] cq = readEscaped(bytes, offset);
+        byte[] cv = readEscaped(bytes, offset);
+        
+        long timestamp = 0;
+        for (int i = 0; i < 8; i++) {
+            timestamp = (timestamp << 8) | (bytes[offset[0]++] & 0xff);
+        }
+        timestamp = ~(timestamp ^ Long.MIN_VALUE);
+        boolean deleted = bytes[offset[0]++] == 0;
+        
+        Key key = new Key(row, cf, cq, cv, timestamp, deleted, false);
+        return new KeyValueSerializable(key, Arrays.copyOfRange(bytes, offset[0], bytes.length));
+    }
+    
+    private static void writeEscaped(ByteArrayOutputStream out, byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            out.write(data[i]);
+            if (data[i] == ESCAPE) {
+                out.write(ESCAPED_NULL);
+            }
+        }
+        out.write(ESCAPE);
+        out.write(TERMINATOR);
+    }
+    
+    private static byte[] readEscaped(byte[] bytes, int[] offset) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int i = offset[0];
+        while (true) {
+            byte b = bytes[i++];
+            if (b == ESCAPE) {
+                if (bytes[i++] == TERMINATOR) {
+                    break;
+                }
+                out.write(ESCAPE);
+            } else {
+                out.write(b);
+            }
+        }
+        offset[0] = i;
+        return out.toByteArray();
+    }
+}
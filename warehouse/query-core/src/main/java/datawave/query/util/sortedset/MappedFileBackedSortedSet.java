@@ -0,0 +1,363 @@
+package datawave.query.util.sortedset;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A sorted set that keeps its in-memory buffer off-heap as encoded byte arrays ({@link DirectByteSetBuffer}) and spills sorted runs to local, block
+ * compressed, memory mapped files ({@link MappedSortedByteFile}). Iteration merges the runs with a {@link RawMergeSortIterator} and only decodes the entries
+ * that are actually returned. Unlike the {@link HdfsBackedSortedSet}, no java serialization is involved and nothing is held on heap per entry while the set is
+ * being filled.
+ *
+ * Entries are only ordered by their encoded form, so the codec must preserve the natural ordering of the entries. The subset operations are not supported.
+ *
+ * The off-heap buffer grows with the entries added, and is freed along with the mappings of any open iterators when the set is closed. Closing the set leaves
+ * its files in place for reuse; clear the set first to remove them.
+ *
+ * @param <E>
+ */
+public class MappedFileBackedSortedSet<E> extends AbstractSet<E> implements PersistableSortedSet<E>, Closeable {
+    private static final Logger log = Logger.getLogger(MappedFileBackedSortedSet.class);
+    
+    public static final String FILENAME_PREFIX = "MappedSortedSetFile.";
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024 * 1024;
+    
+    private final OrderPreservingCodec<E> codec;
+    private final File directory;
+    private final int bufferSize;
+    private final int maxOpenFiles;
+    
+    private DirectByteSetBuffer buffer = null;
+    private final List<MappedSortedByteFile> files = new ArrayList<>();
+    // the file iterators handed out, so that their mappings can be released on close
+    private final List<MappedSortedByteFile.BlockIterator> openIterators = new ArrayList<>();
+    private boolean closed = false;
+    private int fileCount = 0;
+    private boolean sizeModified = false;
+    private int size = 0;
+    
+    /**
+     * Create a set backed by files in the specified local directory. Any complete files previously persisted to that directory are loaded into this set.
+     * 
+     * @param codec
+     *            the order preserving codec for the entries
+     * @param bufferSize
+     *            the number of off-heap bytes to buffer before spilling a sorted run to disk
+     * @param directory
+     *            the local directory for the sorted runs
+     * @param maxOpenFiles
+     *            the maximum number of runs to merge at once
+     * @throws IOException
+     */
+    public MappedFileBackedSortedSet(OrderPreservingCodec<E> codec, int bufferSize, File directory, int maxOpenFiles) throws IOException {
+        this.codec = codec;
+        this.bufferSize = bufferSize;
+        this.directory = directory;
+        this.maxOpenFiles = Math.max(2, maxOpenFiles);
+        
+        if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        
+        File[] existing = directory.listFiles((dir, name) -> name.startsWith(FILENAME_PREFIX));
+        if (existing != null) {
+            Arrays.sort(existing);
+            for (File file : existing) {
+                MappedSortedByteFile sortedFile = MappedSortedByteFile.open(file);
+                if (sortedFile != null) {
+                    files.add(sortedFile);
+                } else {
+                    // most likely a spill that was interrupted, the entries will be recomputed
+                    log.warn("Removing incomplete sorted set file " + file);
+                    if (!file.delete()) {
+                        log.warn("Failed to delete " + file);
+                    }
+                }
+            }
+            fileCount = existing.length;
+            sizeModified = !files.isEmpty();
+        }
+    }
+    
+    public File getDirectory() {
+        return directory;
+    }
+    
+    @Override
+    public void persist() throws IOException {
+        if (buffer != null && !buffer.isEmpty()) {
+            spill();
+        }
+    }
+    
+    @Override
+    public boolean isPersisted() {
+        return buffer == null || buffer.isEmpty();
+    }
+    
+    @Override
+    public boolean hasPersistedData() {
+        return !files.isEmpty();
+    }
+    
+    @Override
+    public boolean add(E e) {
+        if (closed) {
+            throw new IllegalStateException("Cannot add to closed sorted set " + directory);
+        }
+        byte[] bytes = codec.encode(e);
+        if (buffer == null) {
+            buffer = new DirectByteSetBuffer(Math.max(bufferSize, bytes.length + 4));
+        }
+        if (!buffer.add(bytes)) {
+            try {
+                spill();
+            } catch (IOException ioe) {
+                throw new IllegalStateException("Unable to persist sorted set buffer to " + directory, ioe);
+            }
+            if (!buffer.add(bytes)) {
+                // a single entry larger than the buffer; write it out as its own run
+                try {
+                    files.add(MappedSortedByteFile.write(nextFile(), Arrays.asList(bytes).iterator(), MappedSortedByteFile.DEFAULT_BLOCK_SIZE));
+                } catch (IOException ioe) {
+                    throw new IllegalStateException("Unable to persist sorted set entry to " + directory, ioe);
+                }
+            }
+        }
+        // we cannot tell whether this was a duplicate without searching the runs
+        sizeModified = true;
+        return true;
+    }
+    
+    @Override
+    public Iterator<E> iterator() {
+        try {
+            compact(maxOpenFiles);
+        } catch (IOException ioe) {
+            throw new RuntimeException("Unable to compact mapped file backed sorted set", ioe);
+        }
+        final Iterator<byte[]> raw = rawIterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return raw.hasNext();
+            }
+            
+            @Override
+            public E next() {
+                return codec.decode(raw.next());
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("MappedFileBackedSortedSet iterators do not support remove");
+            }
+        };
+    }
+    
+    private Iterator<byte[]> rawIterator() {
+        List<Iterator<byte[]>> iterators = new ArrayList<>(files.size() + 1);
+        openIterators.removeIf(MappedSortedByteFile.BlockIterator::isClosed);
+        for (MappedSortedByteFile file : files) {
+            MappedSortedByteFile.BlockIterator iterator = file.iterator();
+            openIterators.add(iterator);
+            iterators.add(iterator);
+        }
+        if (buffer != null && !buffer.isEmpty()) {
+            iterators.add(buffer.iterator());
+        }
+        return new RawMergeSortIterator(iterators);
+    }
+    
+    @Override
+    public int size() {
+        if (sizeModified) {
+            int count = 0;
+            Iterator<byte[]> it = rawIterator();
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+            size = count;
+            sizeModified = false;
+        }
+        return size;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return (buffer == null || buffer.isEmpty()) && files.isEmpty();
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        byte[] target = codec.encode((E) o);
+        Iterator<byte[]> it = rawIterator();
+        while (it.hasNext()) {
+            int comparison = UnsignedByteArrayComparator.INSTANCE.compare(it.next(), target);
+            if (comparison == 0) {
+                return true;
+            } else if (comparison > 0) {
+                break;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("MappedFileBackedSortedSet does not support remove");
+    }
+    
+    @Override
+    public void clear() {
+        for (MappedSortedByteFile file : files) {
+            if (!file.delete()) {
+                log.warn("Failed to delete " + file);
+            }
+        }
+        files.clear();
+        if (buffer != null) {
+            buffer.clear();
+        }
+        size = 0;
+        sizeModified = false;
+    }
+    
+    /**
+     * Release the off-heap buffer and unmap the files of any iterators still open. Unlike {@link #clear()} the files are left in place. The set, and any
+     * iterator of it, must not be used once closed, and this must not be called while another thread is using the set.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (MappedSortedByteFile.BlockIterator iterator : openIterators) {
+            iterator.close();
+        }
+        openIterators.clear();
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+        // remove the directory if the set was cleared
+        String[] remaining = directory.list();
+        if (remaining != null && remaining.length == 0 && !directory.delete()) {
+            log.warn("Failed to delete " + directory);
+        }
+    }
+    
+    /**
+     * Merge the sorted runs until there are no more than maxFiles of them
+     * 
+     * @param maxFiles
+     * @throws IOException
+     */
+    public void compact(int maxFiles) throws IOException {
+        while (maxFiles > 0 && files.size() > maxFiles) {
+            if (log.isDebugEnabled()) {
+                log.debug("Compacting " + files.size() + " files in " + directory);
+            }
+            List<MappedSortedByteFile> compacted = new ArrayList<>();
+            for (int i = 0; i < files.size(); i += maxOpenFiles) {
+                List<MappedSortedByteFile> group = files.subList(i, Math.min(files.size(), i + maxOpenFiles));
+                if (group.size() == 1) {
+                    compacted.add(group.get(0));
+                    continue;
+                }
+                List<Iterator<byte[]>> iterators = new ArrayList<>(group.size());
+                for (MappedSortedByteFile file : group) {
+                    iterators.add(file.iterator());
+                }
+                compacted.add(MappedSortedByteFile.write(nextFile(), new RawMergeSortIterator(iterators), MappedSortedByteFile.DEFAULT_BLOCK_SIZE));
+                for (MappedSortedByteFile file : group) {
+                    file.delete();
+                }
+            }
+            files.clear();
+            files.addAll(compacted);
+        }
+    }
+    
+    private void spill() throws IOException {
+        long start = System.currentTimeMillis();
+        MappedSortedByteFile file = MappedSortedByteFile.write(nextFile(), buffer.iterator(), MappedSortedByteFile.DEFAULT_BLOCK_SIZE);
+        files.add(file);
+        buffer.clear();
+        if (log.isDebugEnabled()) {
+            log.debug("Spilled " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+    
+    private File nextFile() {
+        fileCount++;
+        return new File(directory, FILENAME_PREFIX + String.format("%08d", fileCount) + '.' + System.currentTimeMillis());
+    }
+    
+    @Override
+    public Comparator<? super E> comparator() {
+        // ordering is defined by the encoded form of the entries
+        return null;
+    }
+    
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        throw new UnsupportedOperationException("MappedFileBackedSortedSet does not support subSet");
+    }
+    
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        throw new UnsupportedOperationException("MappedFileBackedSortedSet does not support headSet");
+    }
+    
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        throw new UnsupportedOperationException("MappedFileBackedSortedSet does not support tailSet");
+    }
+    
+    @Override
+    public E first() {
+        Iterator<byte[]> it = rawIterator();
+        if (!it.hasNext()) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_FIRST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        return codec.decode(it.next());
+    }
+    
+    @Override
+    public E last() {
+        Iterator<byte[]> it = rawIterator();
+        if (!it.hasNext()) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_LAST_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        byte[] last = null;
+        while (it.hasNext()) {
+            last = it.next();
+        }
+        return codec.decode(last);
+    }
+    
+    @Override
+    public String toString() {
+        return directory + " (files=" + files.size() + ", buffered=" + (buffer == null ? 0 : buffer.size()) + ')';
+    }
+}
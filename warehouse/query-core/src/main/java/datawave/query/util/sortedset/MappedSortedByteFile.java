@@ -0,0 +1,317 @@
+package datawave.query.util.sortedset;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A sorted run of byte arrays persisted to a local file. The file is written as a sequence of deflate compressed blocks of length-prefixed entries and is read
+ * back through a memory mapped window, so reading a run never goes through java serialization and only one decompressed block is held on heap at a time.
+ *
+ * File layout: {@code MAGIC, VERSION, (rawLength, compressedLength, entryCount, compressedBytes)*, totalEntryCount, MAGIC}
+ */
+public class MappedSortedByteFile {
+    private static final Logger log = Logger.getLogger(MappedSortedByteFile.class);
+    
+    public static final int MAGIC = 0x44574d53;
+    public static final int VERSION = 1;
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    
+    private static final int HEADER_SIZE = 8;
+    private static final int BLOCK_HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = 12;
+    // the largest region we will map at a time
+    private static final long MAX_WINDOW_SIZE = 256L * 1024 * 1024;
+    
+    private final File file;
+    private final long entryCount;
+    
+    private MappedSortedByteFile(File file, long entryCount) {
+        this.file = file;
+        this.entryCount = entryCount;
+    }
+    
+    /**
+     * Write a sorted run of entries to the specified file.
+     * 
+     * @param file
+     *            the file to create
+     * @param sortedEntries
+     *            the entries, already sorted and de-duplicated
+     * @param blockSize
+     *            the approximate uncompressed size of each block
+     * @return the persisted file
+     * @throws IOException
+     */
+    public static MappedSortedByteFile write(File file, Iterator<byte[]> sortedEntries, int blockSize) throws IOException {
+        long total = 0;
+        byte[] block = new byte[blockSize];
+        byte[] compressed = new byte[blockSize + 64];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            
+            int blockLength = 0;
+            int blockEntries = 0;
+            while (sortedEntries.hasNext()) {
+                byte[] entry = sortedEntries.next();
+                int needed = entry.length + 4;
+                if (blockEntries > 0 && blockLength + needed > block.length) {
+                    compressed = writeBlock(out, deflater, block, blockLength, blockEntries, compressed);
+                    blockLength = 0;
+                    blockEntries = 0;
+                }
+                if (needed > block.length) {
+                    block = new byte[needed];
+                }
+                blockLength = putInt(block, blockLength, entry.length);
+                System.arraycopy(entry, 0, block, blockLength, entry.length);
+                blockLength += entry.length;
+                blockEntries++;
+                total++;
+            }
+            if (blockEntries > 0) {
+                writeBlock(out, deflater, block, blockLength, blockEntries, compressed);
+            }
+            
+            out.writeLong(total);
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Persisted " + total + " entries to " + file + " (" + file.length() + " bytes)");
+        }
+        return new MappedSortedByteFile(file, total);
+    }
+    
+    /**
+     * Open a previously persisted file
+     * 
+     * @param file
+     * @return the file, or null if the file is not a complete sorted byte file
+     */
+    public static MappedSortedByteFile open(File file) {
+        if (file.length() < HEADER_SIZE + TRAILER_SIZE) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                return null;
+            }
+            raf.seek(file.length() - TRAILER_SIZE);
+            long total = raf.readLong();
+            if (raf.readInt() != MAGIC) {
+                return null;
+            }
+            return new MappedSortedByteFile(file, total);
+        } catch (IOException e) {
+            log.warn("Unable to open sorted byte file " + file, e);
+            return null;
+        }
+    }
+    
+    private static byte[] writeBlock(DataOutputStream out, Deflater deflater, byte[] block, int length, int entries, byte[] compressed) throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, compressedLength);
+                compressed = larger;
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        out.writeInt(length);
+        out.writeInt(compressedLength);
+        out.writeInt(entries);
+        out.write(compressed, 0, compressedLength);
+        return compressed;
+    }
+    
+    private static int putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+        return offset + 4;
+    }
+    
+    private static int getInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xff) << 24) | ((buffer[offset + 1] & 0xff) << 16) | ((buffer[offset + 2] & 0xff) << 8) | (buffer[offset + 3] & 0xff);
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public long getEntryCount() {
+        return entryCount;
+    }
+    
+    public long getFileSize() {
+        return file.length();
+    }
+    
+    public boolean delete() {
+        if (log.isDebugEnabled()) {
+            log.debug("Deleting " + file);
+        }
+        return file.delete();
+    }
+    
+    /**
+     * @return an iterator over the entries in sorted order, which unmaps its window once exhausted or closed
+     */
+    public BlockIterator iterator() {
+        return new BlockIterator();
+    }
+    
+    @Override
+    public String toString() {
+        return file + " (" + entryCount + " entries)";
+    }
+    
+    /**
+     * Reads the file one block at a time through a memory mapped window
+     */
+    public class BlockIterator implements Iterator<byte[]>, Closeable {
+        private final long dataEnd = file.length() - TRAILER_SIZE;
+        private final Inflater inflater = new Inflater();
+        private MappedByteBuffer window = null;
+        private long windowStart = 0;
+        private long position = HEADER_SIZE;
+        private byte[] compressed = new byte[0];
+        private byte[] block = new byte[0];
+        private int blockLength = 0;
+        private int blockOffset = 0;
+        private boolean closed = false;
+        
+        @Override
+        public boolean hasNext() {
+            if (blockOffset < blockLength) {
+                return true;
+            }
+            if (position < dataEnd) {
+                return true;
+            }
+            close();
+            return false;
+        }
+        
+        @Override
+        public byte[] next() {
+            if (blockOffset >= blockLength) {
+                if (position >= dataEnd) {
+                    QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+                    throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+                }
+                readBlock();
+            }
+            int length = getInt(block, blockOffset);
+            byte[] entry = new byte[length];
+            System.arraycopy(block, blockOffset + 4, entry, 0, length);
+            blockOffset += 4 + length;
+            return entry;
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("MappedSortedByteFile iterators do not support remove");
+        }
+        
+        private void readBlock() {
+            try {
+                map(position, BLOCK_HEADER_SIZE);
+                int rawLength = window.getInt((int) (position - windowStart));
+                int compressedLength = window.getInt((int) (position - windowStart + 4));
+                position += BLOCK_HEADER_SIZE;
+                
+                map(position, compressedLength);
+                if (compressed.length < compressedLength) {
+                    compressed = new byte[compressedLength];
+                }
+                window.position((int) (position - windowStart));
+                window.get(compressed, 0, compressedLength);
+                position += compressedLength;
+                
+                if (block.length < rawLength) {
+                    block = new byte[rawLength];
+                }
+                inflater.reset();
+                inflater.setInput(compressed, 0, compressedLength);
+                int inflated = 0;
+                while (inflated < rawLength) {
+                    int n = inflater.inflate(block, inflated, rawLength - inflated);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != rawLength) {
+                    throw new IOException("Expected " + rawLength + " bytes but inflated " + inflated + " from " + file);
+                }
+                blockLength = rawLength;
+                blockOffset = 0;
+            } catch (IOException | DataFormatException e) {
+                close();
+                throw new IllegalStateException("Unable to read block from " + file, e);
+            }
+        }
+        
+        /**
+         * Ensure the window covers the region [start, start + length)
+         */
+        private void map(long start, int length) throws IOException {
+            if (window != null && start >= windowStart && start + length <= windowStart + window.capacity()) {
+                return;
+            }
+            long size = Math.min(Math.max(MAX_WINDOW_SIZE, length), file.length() - start);
+            DirectBuffers.free(window);
+            window = null;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                windowStart = start;
+            }
+        }
+        
+        /**
+         * Release the inflater and unmap the window. This must be called from the thread using the iterator.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                inflater.end();
+                DirectBuffers.free(window);
+                window = null;
+                blockOffset = blockLength;
+                position = dataEnd;
+                closed = true;
+            }
+        }
+        
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package datawave.query.util.sortedset;
+
+/**
+ * Converts set entries to and from byte arrays such that the unsigned lexicographic ordering of the encoded bytes matches the natural ordering of the
+ * entries. This allows sorted runs to be merged and de-duplicated without deserializing them.
+ *
+ * @param <E>
+ */
+public interface OrderPreservingCodec<E> {
+    
+    byte[] encode(E entry);
+    
+    E decode(byte[] bytes);
+}
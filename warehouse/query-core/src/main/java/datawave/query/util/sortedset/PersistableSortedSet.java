@@ -0,0 +1,30 @@
+package datawave.query.util.sortedset;
+
+import java.io.IOException;
+import java.util.SortedSet;
+
+/**
+ * A sorted set that buffers entries in memory and can spill them to some persistent store. This is the contract the ivarators rely on, allowing the backing
+ * store to be swapped between the HDFS based {@link HdfsBackedSortedSet} and the local, memory mapped {@link MappedFileBackedSortedSet}.
+ *
+ * @param <E>
+ */
+public interface PersistableSortedSet<E> extends SortedSet<E> {
+    
+    /**
+     * Flush any buffered entries to the persistent store
+     * 
+     * @throws IOException
+     */
+    void persist() throws IOException;
+    
+    /**
+     * @return true if there are no entries buffered in memory
+     */
+    boolean isPersisted();
+    
+    /**
+     * @return true if any entries have been written to the persistent store
+     */
+    boolean hasPersistedData();
+}
@@ -0,0 +1,86 @@
+package datawave.query.util.sortedset;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import datawave.webservice.query.exception.DatawaveErrorCode;
+import datawave.webservice.query.exception.QueryException;
+
+/**
+ * The byte array counterpart of {@link MergeSortIterator}. This merges a set of iterators that each return byte arrays in unsigned lexicographic order into a
+ * single sorted stream with duplicates removed, comparing the raw bytes instead of deserialized objects.
+ */
+public class RawMergeSortIterator implements Iterator<byte[]> {
+    
+    private final PriorityQueue<Head> heads;
+    private byte[] next = null;
+    
+    public RawMergeSortIterator(Collection<Iterator<byte[]>> iterators) {
+        this.heads = new PriorityQueue<>(Math.max(1, iterators.size()));
+        for (Iterator<byte[]> it : iterators) {
+            if (it.hasNext()) {
+                heads.add(new Head(it.next(), it));
+            }
+        }
+        populate();
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+    
+    @Override
+    public byte[] next() {
+        if (next == null) {
+            QueryException qe = new QueryException(DatawaveErrorCode.FETCH_NEXT_ELEMENT_ERROR);
+            throw (NoSuchElementException) (new NoSuchElementException().initCause(qe));
+        }
+        byte[] current = next;
+        populate();
+        return current;
+    }
+    
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("RawMergeSortIterator does not support remove");
+    }
+    
+    private void populate() {
+        Head head = heads.poll();
+        if (head == null) {
+            next = null;
+            return;
+        }
+        next = head.value;
+        advance(head);
+        // drop this value from any other iterators positioned on it
+        while (!heads.isEmpty() && UnsignedByteArrayComparator.INSTANCE.compare(heads.peek().value, next) == 0) {
+            advance(heads.poll());
+        }
+    }
+    
+    private void advance(Head head) {
+        if (head.iterator.hasNext()) {
+            head.value = head.iterator.next();
+            heads.add(head);
+        }
+    }
+    
+    private static class Head implements Comparable<Head> {
+        private byte[] value;
+        private final Iterator<byte[]> iterator;
+        
+        private Head(byte[] value, Iterator<byte[]> iterator) {
+            this.value = value;
+            this.iterator = iterator;
+        }
+        
+        @Override
+        public int compareTo(Head o) {
+            return UnsignedByteArrayComparator.INSTANCE.compare(value, o.value);
+        }
+    }
+}
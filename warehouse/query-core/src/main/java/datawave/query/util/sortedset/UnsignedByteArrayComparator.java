@@ -0,0 +1,30 @@
+package datawave.query.util.sortedset;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * Compares byte arrays lexicographically treating each byte as unsigned, which is the same ordering Accumulo uses for the components of a Key.
+ */
+public class UnsignedByteArrayComparator implements Comparator<byte[]>, Serializable {
+    private static final long serialVersionUID = -3587102447137271154L;
+    
+    public static final UnsignedByteArrayComparator INSTANCE = new UnsignedByteArrayComparator();
+    
+    @Override
+    public int compare(byte[] o1, byte[] o2) {
+        return compare(o1, 0, o1.length, o2, 0, o2.length);
+    }
+    
+    public static int compare(byte[] b1, int off1, int len1, byte[] b2, int off2, int len2) {
+        int minLength = Math.min(len1, len2);
+        for (int i = 0; i < minLength; i++) {
+            int a = b1[off1 + i] & 0xff;
+            int b = b2[off2 + i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return len1 - len2;
+    }
+}
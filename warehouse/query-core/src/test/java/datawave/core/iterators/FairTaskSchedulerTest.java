@@ -0,0 +1,232 @@
+package datawave.core.iterators;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the fair task scheduler
+ */
+public class FairTaskSchedulerTest {
+    
+    private ThreadPoolExecutor pool;
+    
+    @Before
+    public void setup() {
+        pool = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
+    }
+    
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    public void testRoundRobinAcrossGroups() throws Exception {
+        FairTaskScheduler scheduler = new FairTaskScheduler(pool);
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        
+        // occupy the single thread so that everything else queues up
+        Future<?> blocking = scheduler.submit("blocker", 1, 0, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(scheduler.submit("big", 1, 0, () -> order.add("big")));
+        }
+        futures.add(scheduler.submit("small", 1, 0, () -> order.add("small")));
+        Assert.assertEquals(5, scheduler.getQueuedTasks());
+        
+        blocker.countDown();
+        blocking.get();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        
+        // the small query does not wait behind all of the big query's tasks
+        Assert.assertEquals("small", order.get(1));
+        Assert.assertEquals(0, scheduler.getQueuedTasks());
+        Assert.assertEquals(0, scheduler.getActiveGroups());
+        Assert.assertEquals(6, scheduler.getDispatchedTasks());
+    }
+    
+    @Test
+    public void testWeights() throws Exception {
+        FairTaskScheduler scheduler = new FairTaskScheduler(pool);
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        
+        Future<?> blocking = scheduler.submit("blocker", 1, 0, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(scheduler.submit("heavy", 2, 0, () -> order.add("heavy")));
+            futures.add(scheduler.submit("light", 1, 0, () -> order.add("light")));
+        }
+        blocker.countDown();
+        blocking.get();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        Assert.assertEquals(Arrays.asList("heavy", "heavy", "light", "heavy", "heavy", "light", "light", "light"), order);
+    }
+    
+    @Test
+    public void testMaxConcurrent() throws Exception {
+        pool.setMaximumPoolSize(4);
+        pool.setCorePoolSize(4);
+        FairTaskScheduler scheduler = new FairTaskScheduler(pool);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(scheduler.submit("query", 1, 2, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                running.decrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        Assert.assertTrue(maxRunning.get() <= 2);
+        Assert.assertEquals(0, scheduler.getRunningTasks());
+    }
+    
+    @Test
+    public void testCancelledTasksAreSkipped() throws Exception {
+        FairTaskScheduler scheduler = new FairTaskScheduler(pool);
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        
+        Future<?> blocking = scheduler.submit("query", 1, 0, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Future<?> cancelled = scheduler.submit("query", 1, 0, ran::incrementAndGet);
+        Future<?> kept = scheduler.submit("query", 1, 0, ran::incrementAndGet);
+        Assert.assertTrue(cancelled.cancel(false));
+        
+        blocker.countDown();
+        blocking.get();
+        kept.get();
+        Assert.assertEquals(1, ran.get());
+        Assert.assertEquals(0, scheduler.getActiveGroups());
+    }
+    
+    @Test
+    public void testPriority() throws Exception {
+        FairTaskScheduler scheduler = new FairTaskScheduler(pool);
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        
+        Future<?> blocking = scheduler.submit("query", 1, 0, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(scheduler.submit("query", 1, 0, 1.0, () -> order.add("low")));
+        futures.add(scheduler.submit("query", 1, 0, 5.0, () -> order.add("high")));
+        futures.add(scheduler.submit("query", 1, 0, 1.0, () -> order.add("low2")));
+        futures.add(scheduler.submit("query", 1, 0, 3.0, () -> order.add("medium")));
+        
+        blocker.countDown();
+        blocking.get();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        Assert.assertEquals(Arrays.asList("high", "medium", "low", "low2"), order);
+    }
+    
+    @Test
+    public void testCancelGroup() throws Exception {
+        FairTaskScheduler scheduler = new FairTaskScheduler(pool);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        AtomicInteger interrupted = new AtomicInteger();
+        
+        Future<?> running = scheduler.submit("query", 1, 0, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        });
+        Future<?> queued = scheduler.submit("query", 1, 0, ran::incrementAndGet);
+        Future<?> other = scheduler.submit("other", 1, 0, ran::incrementAndGet);
+        started.await();
+        
+        Assert.assertEquals(2, scheduler.cancel("query"));
+        Assert.assertTrue(running.isCancelled());
+        Assert.assertTrue(queued.isCancelled());
+        Assert.assertTrue(scheduler.awaitIdle("query", 1, TimeUnit.MINUTES));
+        
+        other.get();
+        Assert.assertEquals(1, ran.get());
+        Assert.assertEquals(1, interrupted.get());
+        Assert.assertEquals(0, scheduler.getQueuedTasks());
+        Assert.assertEquals(0, scheduler.cancel("query"));
+    }
+    
+    @Test
+    public void testUnscheduledTasksTakeThreads() throws Exception {
+        FairTaskScheduler scheduler = new FairTaskScheduler(pool);
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        
+        // fifo tasks share the pool, so the fair task must wait for them rather than queue up in the pool behind them
+        Future<?> blocking = scheduler.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Future<?> fifo = scheduler.execute(() -> order.add("fifo"));
+        Future<?> fair = scheduler.submit("query", 1, 0, () -> order.add("fair"));
+        Assert.assertEquals(2, scheduler.getRunningTasks());
+        Assert.assertEquals(1, scheduler.getQueuedTasks());
+        
+        blocker.countDown();
+        blocking.get();
+        fifo.get();
+        fair.get();
+        Assert.assertEquals(Arrays.asList("fifo", "fair"), order);
+        Assert.assertEquals(0, scheduler.getRunningTasks());
+        Assert.assertEquals(0, scheduler.getQueuedTasks());
+        Assert.assertEquals(1, scheduler.getDispatchedTasks());
+    }
+}
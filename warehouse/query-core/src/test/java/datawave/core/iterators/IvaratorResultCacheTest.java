@@ -0,0 +1,162 @@
+package datawave.core.iterators;
+
+import datawave.query.util.sortedset.HdfsBackedSortedSet;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+/**
+ * Test the cross query ivarator result cache
+ */
+public class IvaratorResultCacheTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private FileSystem fs;
+    private Path cacheDir;
+    private Path setDir;
+    
+    @Before
+    public void setup() throws IOException {
+        fs = FileSystem.getLocal(new Configuration());
+        cacheDir = new Path(temporaryFolder.newFolder("cache").toURI());
+        setDir = new Path(temporaryFolder.newFolder("set").toURI());
+        // a couple of sorted set files and the control files which must not be published
+        for (String name : new String[] {HdfsBackedSortedSet.FILENAME_PREFIX + "1.0", HdfsBackedSortedSet.FILENAME_PREFIX + "2.0", "ownership", "complete"}) {
+            fs.create(new Path(setDir, name)).close();
+        }
+    }
+    
+    @Test
+    public void testCacheKey() {
+        String key = IvaratorResultCache.getCacheKey("FIELD", "regex=.*foo.*", "false");
+        Assert.assertEquals(key, IvaratorResultCache.getCacheKey("FIELD", "regex=.*foo.*", "false"));
+        Assert.assertNotEquals(key, IvaratorResultCache.getCacheKey("FIELD", "regex=.*foo.*", "true"));
+        Assert.assertNotEquals(IvaratorResultCache.getCacheKey("ab", "c"), IvaratorResultCache.getCacheKey("a", "bc"));
+    }
+    
+    @Test
+    public void testPublishAndReuse() throws IOException {
+        IvaratorResultCache cache = new IvaratorResultCache(fs, cacheDir, 0);
+        String key = IvaratorResultCache.getCacheKey("FIELD", "regex=.*foo.*");
+        Path entryDir = cache.getEntryDir(key, "20190101_0");
+        Assert.assertFalse(cache.isValid(entryDir, "20190101_0"));
+        
+        cache.publish(fs, setDir, key, "20190101_0", System.currentTimeMillis());
+        Assert.assertTrue(cache.isValid(entryDir, "20190101_0"));
+        Assert.assertEquals(2, cache.getFileCount(entryDir));
+        Assert.assertFalse(fs.exists(new Path(entryDir, "ownership")));
+        
+        // another row is a separate entry
+        Assert.assertFalse(cache.isValid(cache.getEntryDir(key, "20190101_1"), "20190101_1"));
+    }
+    
+    @Test
+    public void testInvalidation() throws IOException {
+        IvaratorResultCache cache = new IvaratorResultCache(fs, cacheDir, 0);
+        String key = IvaratorResultCache.getCacheKey("FIELD", "regex=.*foo.*");
+        cache.publish(fs, setDir, key, "20190101_0", System.currentTimeMillis());
+        cache.publish(fs, setDir, key, "20190101_1", System.currentTimeMillis());
+        Path entry0 = cache.getEntryDir(key, "20190101_0");
+        Path entry1 = cache.getEntryDir(key, "20190101_1");
+        long published = fs.getFileStatus(new Path(entry0, IvaratorResultCache.COMPLETE_FILE)).getModificationTime();
+        
+        // invalidating a single row leaves the others alone
+        IvaratorResultCache.invalidate(fs, cacheDir, "20190101_0");
+        Path rowMarker = new Path(new Path(cacheDir, IvaratorResultCache.INVALIDATIONS_DIR), "20190101_0");
+        fs.setTimes(rowMarker, published + 1000, -1);
+        Assert.assertFalse(cache.isValid(entry0, "20190101_0"));
+        Assert.assertFalse(fs.exists(entry0));
+        Assert.assertTrue(cache.isValid(entry1, "20190101_1"));
+        
+        // invalidating the entire table
+        IvaratorResultCache.invalidate(fs, cacheDir, null);
+        Path bulkMarker = new Path(new Path(cacheDir, IvaratorResultCache.INVALIDATIONS_DIR), IvaratorResultCache.BULK_IMPORT_MARKER);
+        fs.setTimes(bulkMarker, published + 1000, -1);
+        Assert.assertFalse(cache.isValid(entry1, "20190101_1"));
+    }
+    
+    @Test
+    public void testInvalidationDuringFill() throws IOException {
+        IvaratorResultCache cache = new IvaratorResultCache(fs, cacheDir, 0);
+        String key = IvaratorResultCache.getCacheKey("FIELD", "regex=.*foo.*");
+        Path invalidations = new Path(cacheDir, IvaratorResultCache.INVALIDATIONS_DIR);
+        long fillStart = System.currentTimeMillis() - 10000;
+        
+        // a row invalidated after its fill started is not published
+        IvaratorResultCache.invalidate(fs, cacheDir, "20190101_0");
+        fs.setTimes(new Path(invalidations, "20190101_0"), fillStart + 1000, -1);
+        cache.publish(fs, setDir, key, "20190101_0", fillStart);
+        Assert.assertFalse(fs.exists(cache.getEntryDir(key, "20190101_0")));
+        
+        // the entry is marked with the fill start, so an invalidation while publishing makes it stale
+        cache.publish(fs, setDir, key, "20190101_1", fillStart);
+        Path entry1 = cache.getEntryDir(key, "20190101_1");
+        Assert.assertEquals(fillStart, fs.getFileStatus(new Path(entry1, IvaratorResultCache.COMPLETE_FILE)).getModificationTime());
+        Assert.assertTrue(cache.isValid(entry1, "20190101_1"));
+        IvaratorResultCache.invalidate(fs, cacheDir, "20190101_1");
+        fs.setTimes(new Path(invalidations, "20190101_1"), fillStart + 1000, -1);
+        Assert.assertFalse(cache.isValid(entry1, "20190101_1"));
+    }
+    
+    @Test
+    public void testPruneInvalidations() throws IOException {
+        IvaratorResultCache cache = new IvaratorResultCache(fs, cacheDir, 0);
+        String key = IvaratorResultCache.getCacheKey("FIELD", "regex=.*foo.*");
+        Path invalidations = new Path(cacheDir, IvaratorResultCache.INVALIDATIONS_DIR);
+        cache.publish(fs, setDir, key, "20190101_0", 5000L);
+        
+        // markers older than the oldest entry can go, a newer one still invalidates that entry
+        IvaratorResultCache.invalidate(fs, cacheDir, "20190101_1");
+        IvaratorResultCache.invalidate(fs, cacheDir, null);
+        IvaratorResultCache.invalidate(fs, cacheDir, "20190101_0");
+        fs.setTimes(new Path(invalidations, "20190101_1"), 1000L, -1);
+        fs.setTimes(new Path(invalidations, IvaratorResultCache.BULK_IMPORT_MARKER), 2000L, -1);
+        fs.setTimes(new Path(invalidations, "20190101_0"), 6000L, -1);
+        
+        cache.pruneInvalidations(10000L);
+        Assert.assertFalse(fs.exists(new Path(invalidations, "20190101_1")));
+        Assert.assertFalse(fs.exists(new Path(invalidations, IvaratorResultCache.BULK_IMPORT_MARKER)));
+        Assert.assertTrue(fs.exists(new Path(invalidations, "20190101_0")));
+        
+        // once the stale entry is gone, the marker is only kept while fills that started before it may still be running
+        Assert.assertFalse(cache.isValid(cache.getEntryDir(key, "20190101_0"), "20190101_0"));
+        cache.pruneInvalidations(6000L);
+        Assert.assertTrue(fs.exists(new Path(invalidations, "20190101_0")));
+        cache.pruneInvalidations(10000L);
+        Assert.assertFalse(fs.exists(new Path(invalidations, "20190101_0")));
+    }
+    
+    @Test
+    public void testEviction() throws IOException {
+        // write some content so that the entries have a size
+        for (int i = 1; i <= 2; i++) {
+            try (FSDataOutputStream out = fs.create(new Path(setDir, HdfsBackedSortedSet.FILENAME_PREFIX + i + ".0"), true)) {
+                out.write(new byte[1024]);
+            }
+        }
+        IvaratorResultCache cache = new IvaratorResultCache(fs, cacheDir, 3 * 1024);
+        String key = IvaratorResultCache.getCacheKey("FIELD", "regex=.*foo.*");
+        cache.publish(fs, setDir, key, "20190101_0", System.currentTimeMillis());
+        cache.publish(fs, setDir, key, "20190101_1", System.currentTimeMillis());
+        Path entry0 = cache.getEntryDir(key, "20190101_0");
+        Path entry1 = cache.getEntryDir(key, "20190101_1");
+        
+        // entry1 was used more recently than entry0
+        fs.setTimes(new Path(entry0, IvaratorResultCache.ACCESSED_FILE), 1000L, -1);
+        fs.setTimes(new Path(entry1, IvaratorResultCache.ACCESSED_FILE), 2000L, -1);
+        
+        cache.evict();
+        Assert.assertFalse(fs.exists(entry0));
+        Assert.assertTrue(fs.exists(entry1));
+    }
+}
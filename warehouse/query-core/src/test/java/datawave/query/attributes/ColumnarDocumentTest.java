@@ -0,0 +1,185 @@
+package datawave.query.attributes;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Maps;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.NumberType;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+public class ColumnarDocumentTest {
+    
+    private static final String ROW = "20190101_0";
+    private static final String CF = "datatype\u0000123.456.789";
+    private static final long TIMESTAMP = 1546300800000L + 1000L;
+    
+    private TypeMetadata typeMetadata;
+    private List<Entry<Key,Value>> data;
+    private Set<Key> docKeys;
+    
+    @Before
+    public void setup() {
+        typeMetadata = new TypeMetadata();
+        typeMetadata.put("NAME", "datatype", LcNoDiacriticsType.class.getName());
+        typeMetadata.put("AGE", "datatype", NumberType.class.getName());
+        
+        data = new ArrayList<>();
+        add("AGE", "12", "A");
+        add("NAME", "Alice", "A");
+        add("NAME", "Bob", "B");
+        add("PLACE", "home", "A");
+        
+        docKeys = Collections.singleton(new Key(ROW, CF));
+    }
+    
+    private void add(String field, String value, String visibility) {
+        add(field, value, visibility, TIMESTAMP);
+    }
+    
+    private void add(String field, String value, String visibility, long timestamp) {
+        data.add(Maps.immutableEntry(new Key(ROW, CF, field + '\u0000' + value, visibility, timestamp), new Value(new byte[0])));
+    }
+    
+    private Document newDocument() {
+        return new Document(new Key(ROW, CF), docKeys, data.iterator(), typeMetadata, null, false, false, null, true, true);
+    }
+    
+    private ColumnarDocument newColumnarDocument() {
+        return new ColumnarDocument(new Key(ROW, CF), docKeys, data.iterator(), typeMetadata, null, false, false, null, true, true);
+    }
+    
+    @Test
+    public void testMatchesDocument() {
+        Document expected = newDocument();
+        ColumnarDocument doc = newColumnarDocument();
+        
+        Assert.assertEquals(expected.size(), doc.size());
+        Assert.assertEquals(4, doc.getPendingCount());
+        
+        Assert.assertEquals(expected.getDictionary(), doc.getDictionary());
+        Assert.assertEquals(0, doc.getPendingCount());
+        Assert.assertEquals(expected.size(), doc.size());
+        Assert.assertEquals(expected.getColumnVisibility(), doc.getColumnVisibility());
+        Assert.assertEquals(expected.getTimestamp(), doc.getTimestamp());
+    }
+    
+    @Test
+    public void testMetadataWithoutMaterialization() {
+        add("PLACE", "work", "C", TIMESTAMP - 500L);
+        add("AGE", "13", "B", TIMESTAMP + 500L);
+        Document expected = newDocument();
+        ColumnarDocument doc = newColumnarDocument();
+        
+        // the visibility and timestamp come from the buffered entries, none of which are materialized
+        Assert.assertEquals(expected.getColumnVisibility(), doc.getColumnVisibility());
+        Assert.assertEquals(expected.getTimestamp(), doc.getTimestamp());
+        Assert.assertEquals(6, doc.getPendingCount());
+    }
+    
+    @Test
+    public void testLazyMaterialization() {
+        ColumnarDocument doc = newColumnarDocument();
+        
+        Assert.assertTrue(doc.containsKey("AGE"));
+        Assert.assertTrue(doc.containsKey(Document.DOCKEY_FIELD_NAME));
+        Assert.assertFalse(doc.containsKey("MISSING"));
+        Assert.assertEquals(4, doc.getPendingCount());
+        
+        Attribute<?> names = doc.get("NAME");
+        Assert.assertTrue(names instanceof Attributes);
+        Assert.assertEquals(2, names.size());
+        Assert.assertEquals(2, doc.getPendingCount());
+        
+        // the metadata is computed without materializing the remaining fields
+        Assert.assertEquals(newDocument().getColumnVisibility(), doc.getColumnVisibility());
+        Assert.assertEquals(2, doc.getPendingCount());
+        
+        Assert.assertNotNull(doc.remove("AGE"));
+        Assert.assertFalse(doc.containsKey("AGE"));
+        Assert.assertEquals(1, doc.getPendingCount());
+        
+        doc.removeAll("PLACE");
+        Assert.assertEquals(0, doc.getPendingCount());
+        Assert.assertEquals(3, doc.size());
+    }
+    
+    @Test
+    public void testKryoSerialization() {
+        Kryo kryo = new Kryo();
+        ColumnarDocument doc = newColumnarDocument();
+        
+        Output output = new Output(1024, -1);
+        doc.write(kryo, output);
+        output.close();
+        
+        // serialization streams the buffered fields
+        Assert.assertEquals(4, doc.getPendingCount());
+        
+        Document read = new Document();
+        read.read(kryo, new Input(output.toBytes()));
+        
+        Document expected = newDocument();
+        Assert.assertEquals(expected.size(), read.size());
+        Assert.assertEquals(expected.getDictionary(), read.getDictionary());
+    }
+    
+    @Test
+    public void testWritableSerialization() throws Exception {
+        ColumnarDocument doc = newColumnarDocument();
+        doc.get("NAME");
+        
+        DataOutputBuffer output = new DataOutputBuffer();
+        doc.write(output);
+        Assert.assertEquals(2, doc.getPendingCount());
+        
+        DataInputBuffer input = new DataInputBuffer();
+        input.reset(output.getData(), output.getLength());
+        Document read = new Document();
+        read.readFields(input);
+        
+        Document expected = newDocument();
+        Assert.assertEquals(expected.size(), read.size());
+        Assert.assertEquals(expected.getDictionary(), read.getDictionary());
+    }
+    
+    @Test
+    public void testReduceToKeep() {
+        ColumnarDocument doc = newColumnarDocument();
+        Document expected = newDocument();
+        
+        // the record id is not to be kept
+        doc.reduceToKeep();
+        expected.reduceToKeep();
+        
+        Assert.assertFalse(doc.containsKey(Document.DOCKEY_FIELD_NAME));
+        Assert.assertEquals(4, doc.getPendingCount());
+        Assert.assertEquals(expected.getDictionary(), doc.getDictionary());
+    }
+    
+    @Test
+    public void testCopy() {
+        ColumnarDocument doc = newColumnarDocument();
+        ColumnarDocument copy = doc.copy();
+        
+        Assert.assertEquals(4, copy.getPendingCount());
+        Assert.assertEquals(doc.size(), copy.size());
+        
+        copy.get("NAME");
+        Assert.assertEquals(4, doc.getPendingCount());
+        Assert.assertEquals(doc.getDictionary(), copy.getDictionary());
+    }
+}
@@ -0,0 +1,141 @@
+package datawave.query.attributes;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Maps;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.NumberType;
+import datawave.query.function.deserializer.StreamingDocumentDeserializer;
+import datawave.query.function.serializer.StreamingDocumentSerializer;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+public class SerializedDocumentTest {
+    
+    private static final String ROW = "20190101_0";
+    private static final String CF = "datatype\u0000123.456.789";
+    private static final long TIMESTAMP = 1546300800000L + 1000L;
+    
+    private Document document;
+    
+    @Before
+    public void setup() {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        typeMetadata.put("NAME", "datatype", LcNoDiacriticsType.class.getName());
+        typeMetadata.put("AGE", "datatype", NumberType.class.getName());
+        
+        List<Entry<Key,Value>> data = new ArrayList<>();
+        data.add(entry("AGE", "12", "A"));
+        data.add(entry("NAME", "Alice", "A"));
+        data.add(entry("NAME", "Bob", "B"));
+        data.add(entry("PLACE", "home", "A"));
+        
+        document = new Document(new Key(ROW, CF), Collections.singleton(new Key(ROW, CF)), data.iterator(), typeMetadata, null, false, false, null, true,
+                        true);
+    }
+    
+    private static Entry<Key,Value> entry(String field, String value, String visibility) {
+        return Maps.immutableEntry(new Key(ROW, CF, field + '\u0000' + value, visibility, TIMESTAMP), new Value(new byte[0]));
+    }
+    
+    private SerializedDocument serialize(Document doc) {
+        Kryo kryo = new Kryo();
+        Output output = new Output(1024, -1);
+        SerializedDocument.write(doc, kryo, output, false);
+        output.close();
+        
+        byte[] bytes = output.toBytes();
+        return new SerializedDocument(bytes, 0, bytes.length, kryo);
+    }
+    
+    @Test
+    public void testMatchesDocument() {
+        SerializedDocument doc = serialize(document);
+        
+        Assert.assertEquals(document.size(), doc.size());
+        Assert.assertEquals(document.sizeInBytes(), doc.sizeInBytes());
+        Assert.assertEquals(5, doc.getPendingCount());
+        
+        Assert.assertEquals(document.getDictionary(), doc.getDictionary());
+        Assert.assertEquals(0, doc.getPendingCount());
+        Assert.assertEquals(document.size(), doc.size());
+        Assert.assertEquals(document.getColumnVisibility(), doc.getColumnVisibility());
+        Assert.assertEquals(document.getTimestamp(), doc.getTimestamp());
+    }
+    
+    @Test
+    public void testLazyFields() {
+        SerializedDocument doc = serialize(document);
+        
+        Assert.assertTrue(doc.containsKey("AGE"));
+        Assert.assertFalse(doc.containsKey("MISSING"));
+        Assert.assertEquals(document.getFieldCount(), doc.getFieldCount());
+        Assert.assertEquals(5, doc.getPendingCount());
+        
+        Attribute<?> names = doc.get("NAME");
+        Assert.assertEquals(document.get("NAME"), names);
+        Assert.assertEquals(document.getFieldCount(), doc.getFieldCount());
+        Assert.assertEquals(3, doc.getPendingCount());
+        
+        Assert.assertNotNull(doc.remove("AGE"));
+        Assert.assertFalse(doc.containsKey("AGE"));
+        Assert.assertEquals(2, doc.getPendingCount());
+    }
+    
+    @Test
+    public void testStreamingIterator() {
+        SerializedDocument doc = serialize(document);
+        
+        List<String> fieldNames = new ArrayList<>();
+        for (Iterator<Entry<String,Attribute<? extends Comparable<?>>>> it = doc.streamingIterator(); it.hasNext();) {
+            Entry<String,Attribute<? extends Comparable<?>>> entry = it.next();
+            fieldNames.add(entry.getKey());
+            
+            // only the values requested are read, and they are not kept by the document
+            if (entry.getKey().equals("PLACE")) {
+                Assert.assertEquals(document.get("PLACE"), entry.getValue());
+            }
+        }
+        
+        Assert.assertEquals(new ArrayList<>(document.getDictionary().keySet()), fieldNames);
+        Assert.assertEquals(5, doc.getPendingCount());
+    }
+    
+    @Test
+    public void testSerializerRoundTrip() {
+        Key key = new Key(ROW, CF);
+        Entry<Key,Value> serialized = new StreamingDocumentSerializer().apply(Maps.immutableEntry(key, document));
+        Entry<Key,Document> deserialized = new StreamingDocumentDeserializer().apply(serialized);
+        
+        Assert.assertEquals(key, deserialized.getKey());
+        Assert.assertTrue(deserialized.getValue() instanceof SerializedDocument);
+        Assert.assertEquals(document.getDictionary(), deserialized.getValue().getDictionary());
+    }
+    
+    @Test
+    public void testColumnarDocumentRoundTrip() {
+        List<Entry<Key,Value>> data = new ArrayList<>();
+        data.add(entry("AGE", "12", "A"));
+        data.add(entry("NAME", "Alice", "A"));
+        TypeMetadata typeMetadata = new TypeMetadata();
+        typeMetadata.put("AGE", "datatype", NumberType.class.getName());
+        
+        ColumnarDocument columnar = new ColumnarDocument(new Key(ROW, CF), Collections.singleton(new Key(ROW, CF)), data.iterator(), typeMetadata, null,
+                        false, false, null, true, true);
+        SerializedDocument doc = serialize(columnar);
+        
+        // the columnar document is written without materializing its fields
+        Assert.assertEquals(2, columnar.getPendingCount());
+        Assert.assertEquals(columnar.getDictionary(), doc.getDictionary());
+    }
+}
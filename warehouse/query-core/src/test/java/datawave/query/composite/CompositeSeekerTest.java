@@ -0,0 +1,129 @@
+package datawave.query.composite;
+
+import com.google.common.collect.HashMultimap;
+import datawave.data.type.DiscreteIndexType;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class CompositeSeekerTest {
+    
+    private static final String SEPARATOR = new String(Character.toChars(Character.MAX_CODE_POINT));
+    private static final List<String> FIELDS = Arrays.asList("MAKE", "COLOR", "WHEELS");
+    
+    private static String composite(String... values) {
+        return String.join(SEPARATOR, values);
+    }
+    
+    private static Key shardIndexKey(String row) {
+        return new Key(new Text(row), new Text("20190101_0"), new Text("datatype"));
+    }
+    
+    private static Range range(String start, String end) {
+        return new Range(new Key(new Text(start)), true, new Key(new Text(end)), true);
+    }
+    
+    @Test
+    public void testSplit() {
+        byte[] separator = SEPARATOR.getBytes(StandardCharsets.UTF_8);
+        CompositeSeeker.Components components = new CompositeSeeker.Components();
+        
+        // splitting matches String.split, which drops trailing empty components
+        for (String value : new String[] {"", "a", composite("a", "b"), composite("a", "", "c"), composite("", "b"), composite("a", "b", "")}) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            components.split(bytes, 0, bytes.length, separator);
+            String[] expected = value.split(SEPARATOR);
+            Assert.assertEquals(value, expected.length, components.size());
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i], components.toString(i));
+            }
+        }
+    }
+    
+    @Test
+    public void testShardIndexKeyInRange() {
+        CompositeSeeker.ShardIndexCompositeSeeker seeker = new CompositeSeeker.ShardIndexCompositeSeeker(FIELDS, SEPARATOR, Collections.emptyMap());
+        Range range = range(composite("FORD", "BLUE", "4"), composite("FORD", "RED", "6"));
+        
+        Assert.assertTrue(seeker.isKeyInRange(shardIndexKey(composite("FORD", "GREEN", "5")), range));
+        Assert.assertTrue(seeker.isKeyInRange(shardIndexKey(composite("FORD", "BLUE")), range));
+        Assert.assertFalse(seeker.isKeyInRange(shardIndexKey(composite("FORD", "GREEN", "8")), range));
+        Assert.assertFalse(seeker.isKeyInRange(shardIndexKey(composite("FORD", "BLACK", "5")), range));
+        Assert.assertFalse(seeker.isKeyInRange(shardIndexKey(composite("FORD", "WHITE", "5")), range));
+    }
+    
+    @Test
+    public void testShardIndexNextSeekKey() {
+        CompositeSeeker.ShardIndexCompositeSeeker seeker = new CompositeSeeker.ShardIndexCompositeSeeker(FIELDS, SEPARATOR, Collections.emptyMap());
+        Range range = range(composite("FORD", "BLUE", "4"), composite("FORD", "RED", "6"));
+        
+        // a component after the end of its range rolls back to the start, and the key seeks past the components before it
+        Key key = shardIndexKey(composite("FORD", "GREEN", "8"));
+        Assert.assertEquals(composite("FORD", "GREEN", "4"), seeker.nextSeekKey(key, range).getRow().toString());
+        
+        // a component before the start of its range moves to the start
+        key = shardIndexKey(composite("FORD", "GREEN", "1"));
+        Assert.assertEquals(composite("FORD", "GREEN", "4"), seeker.nextSeekKey(key, range).getRow().toString());
+        
+        // a component after the end of its range with no component before it to advance restarts at the beginning of the range
+        key = shardIndexKey(composite("FORD", "WHITE", "5"));
+        Assert.assertEquals(composite("FORD", "BLUE", "4"), seeker.nextSeekKey(key, range).getRow().toString());
+    }
+    
+    @Test
+    public void testDiscreteCarryOver() {
+        DiscreteIndexType<Integer> digits = new DiscreteIndexType<Integer>() {
+            @Override
+            public String incrementIndex(String index) {
+                return Integer.toString(Integer.parseInt(index) + 1);
+            }
+            
+            @Override
+            public String decrementIndex(String index) {
+                return Integer.toString(Integer.parseInt(index) - 1);
+            }
+            
+            @Override
+            public List<String> discretizeRange(String beginIndex, String endIndex) {
+                return null;
+            }
+            
+            @Override
+            public boolean producesFixedLengthRanges() {
+                return true;
+            }
+        };
+        Map<String,DiscreteIndexType<?>> discreteTypes = Collections.singletonMap("COLOR", digits);
+        CompositeSeeker.ShardIndexCompositeSeeker seeker = new CompositeSeeker.ShardIndexCompositeSeeker(FIELDS, SEPARATOR, discreteTypes);
+        Range range = range(composite("FORD", "1", "4"), composite("FORD", "5", "6"));
+        
+        // the last component exceeds its range, so the discrete component before it is incremented
+        Key key = shardIndexKey(composite("FORD", "2", "8"));
+        Assert.assertFalse(seeker.isKeyInRange(key, range));
+        Assert.assertEquals(composite("FORD", "3", "4"), seeker.nextSeekKey(key, range).getRow().toString());
+    }
+    
+    @Test
+    public void testFieldIndexNextSeekKey() {
+        CompositeSeeker.FieldIndexCompositeSeeker seeker = new CompositeSeeker.FieldIndexCompositeSeeker(HashMultimap.create());
+        Text row = new Text("20190101_0");
+        Text colf = new Text("fi\0MAKE_COLOR");
+        Range range = new Range(new Key(row, colf, new Text(composite("FORD", "BLUE") + "\0")), true, new Key(row, colf, new Text(composite("FORD", "RED")
+                        + "\0\uFFFF")), true);
+        
+        Key key = new Key(row, colf, new Text(composite("FORD", "ORANGE") + "\0datatype\0uid"));
+        Assert.assertTrue(seeker.isKeyInRange(key, range, SEPARATOR));
+        
+        key = new Key(row, colf, new Text(composite("CHEVY", "GREEN") + "\0datatype\0uid"));
+        Assert.assertFalse(seeker.isKeyInRange(key, range, SEPARATOR));
+        Assert.assertEquals(new Text(composite("FORD", "BLUE") + "\0"), seeker.nextSeekKey(FIELDS, key, range, SEPARATOR).getColumnQualifier());
+    }
+}
@@ -18,6 +18,7 @@ import datawave.query.DocumentSerialization;
 import datawave.query.function.DocumentPermutation;
 import datawave.query.function.DocumentProjection;
 import datawave.query.model.QueryModel;
+import datawave.query.util.sortedset.FileBackedDigestSet;
 import datawave.webservice.query.QueryImpl;
 import org.junit.Assert;
 import org.junit.Before;
@@ -56,6 +57,7 @@ public class ShardQueryConfigurationTest {
         Assert.assertFalse(config.isAllTermsIndexOnly());
         Assert.assertEquals("", config.getAccumuloPassword());
         Assert.assertEquals(Long.MAX_VALUE, config.getMaxIndexScanTimeMillis());
+        Assert.assertEquals(Long.MAX_VALUE, config.getMaxRangeStreamTimeMillis());
         Assert.assertFalse(config.getCollapseUids());
         Assert.assertFalse(config.getSequentialScheduler());
         Assert.assertFalse(config.getCollectTimingDetails());
@@ -122,11 +124,16 @@ public class ShardQueryConfigurationTest {
         Assert.assertNull(config.getLimitFieldsField());
         Assert.assertFalse(config.isHitList());
         Assert.assertFalse(config.isTypeMetadataInHdfs());
+        Assert.assertNull(config.getTypeMetadataSnapshotDir());
         Assert.assertFalse(config.isDateIndexTimeTravel());
         Assert.assertEquals(-1L, config.getBeginDateCap());
         Assert.assertTrue(config.isFailOutsideValidDateRange());
         Assert.assertFalse(config.isRawTypes());
         Assert.assertEquals(-1.0, config.getMinSelectivity(), 0);
+        Assert.assertFalse(config.isCostBasedPlanning());
+        Assert.assertEquals(100.0, config.getCostBasedPlanningRatio(), 0);
+        Assert.assertFalse(config.isTimeSlicedPlanning());
+        Assert.assertEquals(1, config.getTimeSliceDays());
         Assert.assertFalse(config.getIncludeDataTypeAsField());
         Assert.assertTrue(config.getIncludeRecordId());
         Assert.assertFalse(config.getIncludeHierarchyFields());
@@ -138,12 +145,16 @@ public class ShardQueryConfigurationTest {
         Assert.assertTrue(config.getAllowShortcutEvaluation());
         Assert.assertFalse(config.getBypassAccumulo());
         Assert.assertFalse(config.getSpeculativeScanning());
+        Assert.assertFalse(config.isHedgedScans());
+        Assert.assertEquals(0.95, config.getHedgedScanPercentile(), 0);
+        Assert.assertEquals(100, config.getHedgedScanMinDelay());
         Assert.assertFalse(config.isDisableEvaluation());
         Assert.assertFalse(config.isContainsIndexOnlyTerms());
         Assert.assertFalse(config.isContainsCompositeTerms());
         Assert.assertTrue(config.isAllowFieldIndexEvaluation());
         Assert.assertTrue(config.isAllowTermFrequencyLookup());
         Assert.assertEquals(DocumentSerialization.DEFAULT_RETURN_TYPE, config.getReturnType());
+        Assert.assertFalse(config.isColumnarDocuments());
         Assert.assertEquals(10000, config.getEventPerDayThreshold());
         Assert.assertEquals(10, config.getShardsPerDayThreshold());
         Assert.assertEquals(2500, config.getMaxTermThreshold());
@@ -163,8 +174,17 @@ public class ShardQueryConfigurationTest {
         Assert.assertEquals(3600000, config.getIvaratorCacheScanTimeout());
         Assert.assertEquals(11, config.getMaxFieldIndexRangeSplit());
         Assert.assertEquals(100, config.getIvaratorMaxOpenFiles());
+        Assert.assertEquals("hdfs", config.getIvaratorSortedSetBackend());
+        Assert.assertNull(config.getIvaratorLocalCacheDir());
+        Assert.assertEquals(16 * 1024 * 1024, config.getIvaratorOffHeapBufferSize());
+        Assert.assertEquals("fifo", config.getIvaratorScheduler());
+        Assert.assertEquals(1, config.getIvaratorSchedulerWeight());
+        Assert.assertEquals(0, config.getMaxIvaratorConcurrentFills());
+        Assert.assertNull(config.getIvaratorResultCacheBaseURI());
+        Assert.assertEquals(100L * 1024 * 1024 * 1024, config.getIvaratorResultCacheMaxSize());
         Assert.assertEquals(33, config.getMaxIvaratorSources());
         Assert.assertEquals(25, config.getMaxEvaluationPipelines());
+        Assert.assertEquals(-1, config.getMinEvaluationPipelines());
         Assert.assertEquals(25, config.getMaxPipelineCachedResults());
         Assert.assertFalse(config.isExpandAllTerms());
         Assert.assertNull(config.getQueryModel());
@@ -179,6 +199,11 @@ public class ShardQueryConfigurationTest {
         Assert.assertFalse(config.getAccrueStats());
         Assert.assertEquals(Sets.newHashSet(), config.getGroupFields());
         Assert.assertEquals(Sets.newHashSet(), config.getUniqueFields());
+        Assert.assertEquals(FileBackedDigestSet.DEFAULT_BUFFER_SIZE, config.getUniqueCacheBufferSize());
+        Assert.assertNull(config.getUniqueCacheDir());
+        Assert.assertTrue(config.isUniqueOnTservers());
+        Assert.assertEquals(0, config.getTopK());
+        Assert.assertEquals(Sets.newHashSet(), config.getTopKFields());
         Assert.assertFalse(config.getCacheModel());
         Assert.assertTrue(config.isTrackSizes());
         Assert.assertEquals(Lists.newArrayList(), config.getContentFieldNames());
@@ -426,7 +451,7 @@ public class ShardQueryConfigurationTest {
      */
     @Test
     public void testCheckForNewAdditions() throws IOException {
-        int expectedObjectCount = 159;
+        int expectedObjectCount = 184;
         ShardQueryConfiguration config = ShardQueryConfiguration.create();
         ObjectMapper mapper = new ObjectMapper();
         JsonNode root = mapper.readTree(mapper.writeValueAsString(config));
@@ -0,0 +1,99 @@
+package datawave.query.iterator.pipeline;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class PipelineSizerTest {
+    
+    private static final long CHEAP = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long EXPENSIVE = TimeUnit.MILLISECONDS.toNanos(50);
+    
+    private void round(PipelineSizer sizer, boolean waited, long evaluationNanos, boolean backlogged) {
+        int polls = Math.max(PipelineSizer.MIN_ROUND, sizer.getTarget());
+        for (int i = 0; i < polls; i++) {
+            sizer.record(waited, evaluationNanos, backlogged);
+        }
+    }
+    
+    @Test
+    public void testFixed() {
+        PipelineSizer sizer = new PipelineSizer(8, 8);
+        Assert.assertEquals(8, sizer.getTarget());
+        
+        round(sizer, true, EXPENSIVE, false);
+        Assert.assertEquals(8, sizer.getTarget());
+        
+        round(sizer, false, CHEAP, true);
+        Assert.assertEquals(8, sizer.getTarget());
+    }
+    
+    @Test
+    public void testBounds() {
+        PipelineSizer sizer = new PipelineSizer(0, 4);
+        Assert.assertEquals(1, sizer.getMinPipelines());
+        
+        sizer = new PipelineSizer(10, 4);
+        Assert.assertEquals(4, sizer.getMinPipelines());
+        Assert.assertEquals(4, sizer.getTarget());
+    }
+    
+    @Test
+    public void testGrowsWhenWaiting() {
+        PipelineSizer sizer = new PipelineSizer(2, 25);
+        Assert.assertEquals(2, sizer.getTarget());
+        
+        round(sizer, true, CHEAP, false);
+        Assert.assertEquals(3, sizer.getTarget());
+        
+        round(sizer, true, CHEAP, false);
+        Assert.assertEquals(4, sizer.getTarget());
+        
+        // expensive evaluations double the pipelines
+        round(sizer, true, EXPENSIVE, false);
+        round(sizer, true, EXPENSIVE, false);
+        Assert.assertEquals(16, sizer.getTarget());
+        
+        round(sizer, true, EXPENSIVE, false);
+        Assert.assertEquals(25, sizer.getTarget());
+    }
+    
+    @Test
+    public void testShrinksWhenAhead() {
+        PipelineSizer sizer = new PipelineSizer(2, 25);
+        round(sizer, true, EXPENSIVE, false);
+        round(sizer, true, EXPENSIVE, false);
+        Assert.assertEquals(8, sizer.getTarget());
+        
+        // never waiting on an evaluation means there are more pipelines than needed
+        round(sizer, false, CHEAP, false);
+        Assert.assertEquals(7, sizer.getTarget());
+        
+        // some waiting, but the results are backed up
+        for (int i = 0; i < sizer.getTarget(); i++) {
+            sizer.record(i == 0, CHEAP, true);
+        }
+        Assert.assertEquals(6, sizer.getTarget());
+        
+        for (int i = 0; i < 20; i++) {
+            round(sizer, false, CHEAP, false);
+        }
+        Assert.assertEquals(2, sizer.getTarget());
+    }
+    
+    @Test
+    public void testSteady() {
+        PipelineSizer sizer = new PipelineSizer(2, 25);
+        round(sizer, true, CHEAP, false);
+        Assert.assertEquals(3, sizer.getTarget());
+        
+        // waiting on some but not most evaluations leaves the pipelines as they are
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < PipelineSizer.MIN_ROUND; j++) {
+                sizer.record(j == 0, CHEAP, false);
+            }
+        }
+        Assert.assertEquals(3, sizer.getTarget());
+    }
+}
@@ -0,0 +1,95 @@
+package datawave.query.iterator.pipeline;
+
+import datawave.core.iterators.IteratorThreadPoolManager;
+import datawave.query.attributes.Document;
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PipelineTest {
+    
+    /**
+     * An evaluation which finds no document, counting the evaluations and optionally waiting to be let go
+     */
+    private static class Evaluation implements Iterator<Entry<Key,Document>> {
+        private final AtomicInteger evaluations = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch finish;
+        
+        private Evaluation(boolean block) {
+            this.finish = new CountDownLatch(block ? 1 : 0);
+        }
+        
+        @Override
+        public boolean hasNext() {
+            evaluations.incrementAndGet();
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return false;
+        }
+        
+        @Override
+        public Entry<Key,Document> next() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    @Test
+    public void testPermitHeldUntilEvaluationStops() throws Exception {
+        Evaluation evaluation = new Evaluation(true);
+        Pipeline pipeline = new Pipeline(null, null);
+        pipeline.setSourceIterator(evaluation);
+        
+        int inUse = IteratorThreadPoolManager.getEvaluationPipelinesInUse();
+        Assert.assertTrue(IteratorThreadPoolManager.tryAcquireEvaluationPipeline());
+        pipeline.setHoldsPermit(true);
+        Thread thread = new Thread(pipeline);
+        thread.start();
+        evaluation.started.await();
+        
+        // cancelling the running evaluation does not give up its pipeline until it has stopped
+        pipeline.clear();
+        Assert.assertEquals(inUse + 1, IteratorThreadPoolManager.getEvaluationPipelinesInUse());
+        
+        evaluation.finish.countDown();
+        thread.join();
+        Assert.assertEquals(inUse, IteratorThreadPoolManager.getEvaluationPipelinesInUse());
+        
+        pipeline.clear();
+        Assert.assertEquals(inUse, IteratorThreadPoolManager.getEvaluationPipelinesInUse());
+    }
+    
+    @Test
+    public void testEvaluationClearedBeforeStarting() {
+        Evaluation evaluation = new Evaluation(false);
+        Pipeline pipeline = new Pipeline(null, null);
+        pipeline.setSourceIterator(evaluation);
+        
+        int inUse = IteratorThreadPoolManager.getEvaluationPipelinesInUse();
+        Assert.assertTrue(IteratorThreadPoolManager.tryAcquireEvaluationPipeline());
+        pipeline.setHoldsPermit(true);
+        pipeline.clear();
+        Assert.assertEquals(inUse, IteratorThreadPoolManager.getEvaluationPipelinesInUse());
+        
+        // the cancelled evaluation does not run without its pipeline
+        pipeline.run();
+        Assert.assertEquals(0, evaluation.evaluations.get());
+        Assert.assertNull(pipeline.getResult());
+        Assert.assertEquals(inUse, IteratorThreadPoolManager.getEvaluationPipelinesInUse());
+        
+        // the pipeline is reused for an evaluation which needs no permit
+        pipeline.setHoldsPermit(false);
+        pipeline.run();
+        Assert.assertEquals(1, evaluation.evaluations.get());
+        Assert.assertEquals(inUse, IteratorThreadPoolManager.getEvaluationPipelinesInUse());
+    }
+}
@@ -0,0 +1,99 @@
+package datawave.query.jexl.functions;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import datawave.ingest.protobuf.TermWeightPosition;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.TreeMultimap;
+
+public class ContentOrderedEvaluatorTest {
+    
+    private static final String EVENT_ID = "shard\0type\0uid";
+    
+    private Map<String,TermFrequencyList> termOffsetMap;
+    
+    @Before
+    public void setup() {
+        termOffsetMap = new HashMap<>();
+    }
+    
+    private void addTerm(String term, TermWeightPosition... positions) {
+        TreeMultimap<TermFrequencyList.Zone,TermWeightPosition> offsets = TreeMultimap.create();
+        for (TermWeightPosition position : positions) {
+            offsets.put(new TermFrequencyList.Zone("BODY", true, EVENT_ID), position);
+        }
+        termOffsetMap.put(term, new TermFrequencyList(offsets));
+    }
+    
+    private static TermWeightPosition position(int offset) {
+        return new TermWeightPosition.Builder().setOffset(offset).build();
+    }
+    
+    private static TermWeightPosition position(int offset, int prevSkips) {
+        return new TermWeightPosition.Builder().setOffset(offset).setPrevSkips(prevSkips).build();
+    }
+    
+    private static TermWeightPosition position(int offset, boolean zeroOffsetMatch) {
+        return new TermWeightPosition.Builder().setOffset(offset).setZeroOffsetMatch(zeroOffsetMatch).build();
+    }
+    
+    private boolean phrase(String... terms) {
+        return new ContentOrderedEvaluator(Collections.emptySet(), 1, Float.NEGATIVE_INFINITY, termOffsetMap, terms).evaluate();
+    }
+    
+    @Test
+    public void testRepeatedTerms() {
+        // each occurrence of a repeated term must be matched at a different position
+        addTerm("foo", position(3), position(4));
+        Assert.assertTrue(phrase("foo", "foo"));
+        
+        addTerm("foo", position(3));
+        Assert.assertFalse(phrase("foo", "foo"));
+        
+        addTerm("foo", position(3), position(6));
+        Assert.assertFalse(phrase("foo", "foo"));
+        
+        addTerm("a", position(1), position(3));
+        addTerm("b", position(2));
+        Assert.assertTrue(phrase("a", "b", "a"));
+        Assert.assertFalse(phrase("b", "a", "b"));
+        
+        addTerm("a", position(1));
+        Assert.assertFalse(phrase("a", "b", "a"));
+    }
+    
+    @Test
+    public void testSkips() {
+        // the skipped positions between the terms count as adjacent
+        addTerm("quick", position(1));
+        addTerm("fox", position(4, 2));
+        Assert.assertTrue(phrase("quick", "fox"));
+        Assert.assertFalse(phrase("fox", "quick"));
+        
+        addTerm("fox", position(4, 1));
+        Assert.assertFalse(phrase("quick", "fox"));
+        
+        addTerm("foo", position(3), position(5, 1));
+        Assert.assertTrue(phrase("foo", "foo"));
+    }
+    
+    @Test
+    public void testZeroOffsets() {
+        // terms at the same offset, such as synonyms, are adjacent only if both allow a zero offset match
+        addTerm("a", position(5, true));
+        addTerm("b", position(5, true));
+        Assert.assertTrue(phrase("a", "b"));
+        
+        addTerm("b", position(5, false));
+        Assert.assertFalse(phrase("a", "b"));
+        
+        addTerm("b", position(5, false), position(6, false));
+        Assert.assertTrue(phrase("a", "b"));
+    }
+}
@@ -0,0 +1,94 @@
+package datawave.query.jexl.functions;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import datawave.ingest.protobuf.TermWeightPosition;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.TreeMultimap;
+
+public class ContentUnorderedEvaluatorTest {
+    
+    private static final String EVENT_ID = "shard\0type\0uid";
+    
+    private Map<String,TermFrequencyList> termOffsetMap;
+    
+    @Before
+    public void setup() {
+        termOffsetMap = new HashMap<>();
+    }
+    
+    private void addTerm(String term, TermWeightPosition... positions) {
+        TreeMultimap<TermFrequencyList.Zone,TermWeightPosition> offsets = TreeMultimap.create();
+        for (TermWeightPosition position : positions) {
+            offsets.put(new TermFrequencyList.Zone("BODY", true, EVENT_ID), position);
+        }
+        termOffsetMap.put(term, new TermFrequencyList(offsets));
+    }
+    
+    private static TermWeightPosition position(int offset) {
+        return new TermWeightPosition.Builder().setOffset(offset).build();
+    }
+    
+    private static TermWeightPosition position(int offset, int prevSkips) {
+        return new TermWeightPosition.Builder().setOffset(offset).setPrevSkips(prevSkips).build();
+    }
+    
+    private static TermWeightPosition position(int offset, boolean zeroOffsetMatch) {
+        return new TermWeightPosition.Builder().setOffset(offset).setZeroOffsetMatch(zeroOffsetMatch).build();
+    }
+    
+    private boolean within(int distance, String... terms) {
+        return new ContentUnorderedEvaluator(Collections.emptySet(), distance, Float.NEGATIVE_INFINITY, termOffsetMap, terms).evaluate();
+    }
+    
+    @Test
+    public void testRepeatedTerms() {
+        // each occurrence of a repeated term must be matched at a different position
+        addTerm("foo", position(3), position(4));
+        Assert.assertTrue(within(1, "foo", "foo"));
+        
+        addTerm("foo", position(3));
+        Assert.assertFalse(within(1, "foo", "foo"));
+        
+        addTerm("foo", position(3), position(6));
+        Assert.assertFalse(within(1, "foo", "foo"));
+        
+        addTerm("a", position(1), position(3));
+        addTerm("b", position(2));
+        Assert.assertTrue(within(2, "a", "b", "a"));
+        
+        addTerm("a", position(1), position(5));
+        Assert.assertFalse(within(2, "a", "b", "a"));
+    }
+    
+    @Test
+    public void testSkips() {
+        // the distance is taken from the lowest offset of the later term, with its skips, to the offset of the earlier term
+        addTerm("quick", position(1));
+        addTerm("fox", position(4, 2));
+        Assert.assertTrue(within(1, "quick", "fox"));
+        Assert.assertTrue(within(1, "fox", "quick"));
+        
+        addTerm("fox", position(4, 1));
+        Assert.assertFalse(within(1, "quick", "fox"));
+        Assert.assertTrue(within(2, "quick", "fox"));
+    }
+    
+    @Test
+    public void testZeroOffsets() {
+        // the order of the terms does not matter to within, so terms at the same offset match whether or not they allow a zero offset match
+        addTerm("a", position(5, false));
+        addTerm("b", position(5, false));
+        Assert.assertTrue(within(0, "a", "b"));
+        
+        addTerm("b", position(6, false));
+        Assert.assertFalse(within(0, "a", "b"));
+        Assert.assertTrue(within(1, "a", "b"));
+    }
+}
@@ -0,0 +1,61 @@
+package datawave.query.jexl.functions;
+
+import java.util.TreeSet;
+
+import datawave.ingest.protobuf.TermWeightOffsets;
+import datawave.ingest.protobuf.TermWeightPosition;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.TreeMultimap;
+
+public class TermPositionsTest {
+    
+    private static final TermFrequencyList.Zone ZONE = new TermFrequencyList.Zone("BODY", true, "shard\0type\0uid");
+    
+    // offsets 5, 6, 6, 9 with skips 0, 3, 3, 0 and no zero offset match
+    private static final byte[] INFO = new byte[] {24, 5, 24, 6, 24, 6, 24, 9, 32, 0, 32, 3, 32, 3, 32, 0, 48, 0};
+    
+    @Test
+    public void testLoadDecoded() throws Exception {
+        TermWeightOffsets decoded = new TermWeightOffsets();
+        decoded.decode(INFO);
+        
+        // the same positions as a set of the boxed positions
+        TreeSet<TermWeightPosition> boxed = new TreeSet<>();
+        for (int i = 0; i < decoded.size(); i++) {
+            boxed.add(new TermWeightPosition.Builder().setTermWeightOffsets(decoded, i).build());
+        }
+        TermPositions expected = new TermPositions();
+        expected.load(boxed);
+        
+        TermPositions positions = new TermPositions();
+        positions.load(decoded);
+        Assert.assertEquals(expected, positions);
+        Assert.assertEquals("[3-6, 5-5, 9-9]", positions.toString());
+        Assert.assertEquals(3, positions.getMaxSkips());
+        Assert.assertFalse(positions.getZeroOffsetMatch(0));
+        Assert.assertEquals(boxed.first(), positions.getPosition(0));
+    }
+    
+    @Test
+    public void testMergeZones() throws Exception {
+        TermWeightOffsets decoded = new TermWeightOffsets();
+        decoded.decode(TermWeightOffsets.encode(new int[] {2, 7}, 2));
+        TermPositions first = new TermPositions();
+        first.load(decoded);
+        decoded.decode(INFO);
+        TermPositions second = new TermPositions();
+        second.load(decoded);
+        
+        TermFrequencyList merged = TermFrequencyList.merge(new TermFrequencyList(ZONE, first), new TermFrequencyList(ZONE, second));
+        Assert.assertEquals("[2-2, 3-6, 5-5, 7-7, 9-9]", merged.getPositions(ZONE).toString());
+        // the positions of the lists merged are left as they were
+        Assert.assertEquals(2, first.size());
+        
+        TreeMultimap<TermFrequencyList.Zone,TermWeightPosition> offsets = merged.fetchOffsets();
+        Assert.assertEquals(5, offsets.size());
+        Assert.assertEquals(merged, new TermFrequencyList(offsets));
+    }
+}
@@ -0,0 +1,106 @@
+package datawave.query.jexl.visitors;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import datawave.data.MetadataCardinalityCounts;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.nodes.ExceededValueThresholdMarkerJexlNode;
+import datawave.query.util.MockMetadataHelper;
+import org.apache.commons.jexl2.parser.ASTDelayedPredicate;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CostBasedPlanningVisitorTest {
+    
+    private ShardQueryConfiguration config;
+    private MockMetadataHelper helper;
+    
+    @Before
+    public void setup() {
+        config = new ShardQueryConfiguration();
+        config.setBeginDate(new Date(0));
+        config.setEndDate(new Date(86400000L));
+        config.setCostBasedPlanningRatio(100);
+        
+        helper = new MockMetadataHelper();
+        helper.setIndexedFields(Sets.newHashSet("FOO", "BAR", "BAZ", "ONLY"));
+        
+        Map<String,Map<String,MetadataCardinalityCounts>> termCounts = new HashMap<>();
+        addCounts(termCounts, "FOO", "a", 10);
+        addCounts(termCounts, "BAR", "b", 100000);
+        addCounts(termCounts, "BAZ", "c", 50);
+        addCounts(termCounts, "ONLY", "d", 100000);
+        helper.setTermCounts(termCounts);
+    }
+    
+    private static void addCounts(Map<String,Map<String,MetadataCardinalityCounts>> termCounts, String field, String value, long count) {
+        termCounts.put(field, Collections.singletonMap(value, new MetadataCardinalityCounts(field, value, count, count, 1, 1000000, 1000, 100)));
+    }
+    
+    private JexlNode plan(String query) throws Exception {
+        ASTJexlScript script = JexlASTHelper.parseJexlQuery(query);
+        return CostBasedPlanningVisitor.plan(script, config, helper, Collections.singleton("ONLY")).jjtGetChild(0);
+    }
+    
+    @Test
+    public void testOrderAndDelay() throws Exception {
+        JexlNode and = plan("BAR == 'b' && FOO == 'a' && BAZ == 'c'");
+        
+        // ordered by estimate, with the unselective term delayed and moved last
+        Assert.assertEquals(3, and.jjtGetNumChildren());
+        Assert.assertEquals("FOO == 'a'", JexlStringBuildingVisitor.buildQuery(and.jjtGetChild(0)));
+        Assert.assertEquals("BAZ == 'c'", JexlStringBuildingVisitor.buildQuery(and.jjtGetChild(1)));
+        Assert.assertTrue(ASTDelayedPredicate.instanceOf(and.jjtGetChild(2)));
+        
+        Assert.assertEquals(10.0, config.getPlanEstimates().get("Estimated Records"), 0);
+        Assert.assertEquals(1.0, config.getPlanEstimates().get("Delayed Terms"), 0);
+        Assert.assertEquals(100000.0, config.getPlanEstimates().get("Estimated BAR == 'b'"), 0);
+    }
+    
+    @Test
+    public void testIndexOnlyNotDelayed() throws Exception {
+        JexlNode and = plan("ONLY == 'd' && FOO == 'a'");
+        
+        Assert.assertEquals("FOO == 'a'", JexlStringBuildingVisitor.buildQuery(and.jjtGetChild(0)));
+        Assert.assertEquals("ONLY == 'd'", JexlStringBuildingVisitor.buildQuery(and.jjtGetChild(1)));
+        Assert.assertEquals(0.0, config.getPlanEstimates().get("Delayed Terms"), 0);
+    }
+    
+    @Test
+    public void testNoAnchor() throws Exception {
+        // nothing can be estimated for an unindexed field, so the intersection is left alone
+        JexlNode and = plan("BAR == 'b' && UNINDEXED == 'x'");
+        
+        Assert.assertEquals("BAR == 'b'", JexlStringBuildingVisitor.buildQuery(and.jjtGetChild(0)));
+        Assert.assertEquals("UNINDEXED == 'x'", JexlStringBuildingVisitor.buildQuery(and.jjtGetChild(1)));
+        Assert.assertEquals(0.0, config.getPlanEstimates().get("Delayed Terms"), 0);
+    }
+    
+    @Test
+    public void testRegexIvarated() throws Exception {
+        config.setIvaratorCacheBaseURIs("file:///tmp/ivarators");
+        helper.setTermCounts(Collections.<String,Map<String,MetadataCardinalityCounts>> emptyMap());
+        // without term counts the estimates come from the field counts
+        Map<Map.Entry<String,String>,Map<String,Long>> cardinalities = new HashMap<>();
+        for (String date : new String[] {"19691231", "19700101", "19700102"}) {
+            cardinalities.put(Maps.immutableEntry("BAR", date), Collections.singletonMap("datatype", 100000L));
+            cardinalities.put(Maps.immutableEntry("FOO", date), Collections.singletonMap("datatype", 10L));
+        }
+        helper.setCardinalities(cardinalities);
+        
+        JexlNode and = plan("BAR =~ 'b.*' && FOO == 'a'");
+        
+        Assert.assertEquals("FOO == 'a'", JexlStringBuildingVisitor.buildQuery(and.jjtGetChild(0)));
+        Assert.assertTrue(ExceededValueThresholdMarkerJexlNode.instanceOf(and.jjtGetChild(1)));
+        Assert.assertEquals(1.0, config.getPlanEstimates().get("Ivarated Terms"), 0);
+    }
+}
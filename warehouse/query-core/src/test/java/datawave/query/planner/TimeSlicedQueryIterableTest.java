@@ -0,0 +1,103 @@
+package datawave.query.planner;
+
+import datawave.query.CloseableIterable;
+import datawave.query.util.Tuple2;
+import datawave.webservice.query.configuration.QueryData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TimeSlicedQueryIterableTest {
+    
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    
+    @Test
+    public void testSlice() {
+        Date begin = new Date(DAY + 1000);
+        Date end = new Date(4 * DAY - 1);
+        
+        List<Tuple2<Date,Date>> slices = TimeSlicedQueryIterable.slice(begin, end, 1);
+        Assert.assertEquals(3, slices.size());
+        Assert.assertEquals(begin, slices.get(0).first());
+        Assert.assertEquals(new Date(2 * DAY - 1), slices.get(0).second());
+        Assert.assertEquals(new Date(2 * DAY), slices.get(1).first());
+        Assert.assertEquals(new Date(3 * DAY - 1), slices.get(1).second());
+        Assert.assertEquals(new Date(3 * DAY), slices.get(2).first());
+        Assert.assertEquals(end, slices.get(2).second());
+        
+        slices = TimeSlicedQueryIterable.slice(begin, end, 2);
+        Assert.assertEquals(2, slices.size());
+        Assert.assertEquals(new Date(3 * DAY - 1), slices.get(0).second());
+        Assert.assertEquals(new Date(3 * DAY), slices.get(1).first());
+        
+        // a single day, and an empty range
+        Assert.assertEquals(1, TimeSlicedQueryIterable.slice(begin, new Date(DAY + 2000), 1).size());
+        Assert.assertTrue(TimeSlicedQueryIterable.slice(end, begin, 1).isEmpty());
+    }
+    
+    @Test
+    public void testFirstSliceBeforeRemainingArePlanned() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Date> planned = Collections.synchronizedList(new ArrayList<>());
+        
+        List<Tuple2<Date,Date>> slices = TimeSlicedQueryIterable.slice(new Date(DAY), new Date(4 * DAY - 1), 1);
+        TimeSlicedQueryIterable iterable = new TimeSlicedQueryIterable(queries("first"), slices.subList(1, slices.size()), (begin, end) -> {
+            release.await();
+            planned.add(begin);
+            return queries(Long.toString(begin.getTime() / DAY));
+        }, 1, null);
+        
+        Iterator<QueryData> it = iterable.iterator();
+        
+        // the first slice is available while the others are still being planned
+        Assert.assertTrue(it.hasNext());
+        Assert.assertEquals("first", it.next().getQuery());
+        Assert.assertTrue(planned.isEmpty());
+        
+        release.countDown();
+        Assert.assertEquals("2", it.next().getQuery());
+        Assert.assertEquals("3", it.next().getQuery());
+        Assert.assertFalse(it.hasNext());
+        Assert.assertEquals(2, planned.size());
+        
+        iterable.close();
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testPlanningFailure() throws Exception {
+        List<Tuple2<Date,Date>> slices = TimeSlicedQueryIterable.slice(new Date(DAY), new Date(3 * DAY - 1), 1);
+        TimeSlicedQueryIterable iterable = new TimeSlicedQueryIterable(queries("first"), slices.subList(1, slices.size()), (begin, end) -> {
+            throw new IllegalStateException("failed");
+        }, 1, null);
+        
+        Iterator<QueryData> it = iterable.iterator();
+        Assert.assertEquals("first", it.next().getQuery());
+        try {
+            it.hasNext();
+        } finally {
+            iterable.close();
+        }
+    }
+    
+    private static CloseableIterable<QueryData> queries(String query) {
+        final QueryData queryData = new QueryData();
+        queryData.setQuery(query);
+        return new CloseableIterable<QueryData>() {
+            @Override
+            public Iterator<QueryData> iterator() {
+                return Collections.singletonList(queryData).iterator();
+            }
+            
+            @Override
+            public void close() throws IOException {}
+        };
+    }
+}
@@ -0,0 +1,151 @@
+package datawave.query.postprocessing.tf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import datawave.ingest.protobuf.TermWeight;
+import datawave.query.Constants;
+import datawave.query.jexl.functions.TermFrequencyList;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
+public class TermOffsetPopulatorTest {
+    
+    private static final String ROW = "20190101_0";
+    
+    private Multimap<String,String> termFrequencyFieldValues;
+    
+    private TreeMap<Key,Value> data;
+    
+    @Before
+    public void setup() {
+        termFrequencyFieldValues = HashMultimap.create();
+        termFrequencyFieldValues.put("TITLE", "fox");
+        termFrequencyFieldValues.put("BODY", "fox");
+        termFrequencyFieldValues.put("BODY", "brown");
+        
+        data = new TreeMap<>();
+        for (String uid : Arrays.asList("uid1", "uid2", "uid3")) {
+            // the event and field index keys of the document, which sort before the term frequencies
+            data.put(new Key(ROW, "dt\0" + uid, "BODY\0the quick brown fox"), new Value(new byte[0]));
+            data.put(new Key(ROW, "fi\0BODY", "fox\0dt\0" + uid), new Value(new byte[0]));
+            
+            data.put(tfKey(uid, "brown", "BODY"), tfValue(2));
+            data.put(tfKey(uid, "fox", "BODY"), tfValue(3));
+            data.put(tfKey(uid, "fox", "TITLE"), tfValue(1));
+            data.put(tfKey(uid, "quick", "BODY"), tfValue(1));
+            data.put(tfKey(uid, "the", "BODY"), tfValue(0));
+        }
+    }
+    
+    private static Key docKey(String uid) {
+        return new Key(ROW, "dt\0" + uid);
+    }
+    
+    private static Key tfKey(String uid, String value, String field) {
+        return new Key(new Text(ROW), Constants.TERM_FREQUENCY_COLUMN_FAMILY, new Text("dt\0" + uid + '\0' + value + '\0' + field));
+    }
+    
+    private static Value tfValue(int offset) {
+        return new Value(TermWeight.Info.newBuilder().addTermOffset(offset).build().toByteArray());
+    }
+    
+    private static Range tfRange(String uid, String value, String field) {
+        Key start = tfKey(uid, value, field);
+        return new Range(start, true, start.followingKey(PartialKey.ROW_COLFAM_COLQUAL), false);
+    }
+    
+    @Test
+    public void testGetRanges() {
+        TermOffsetPopulator populator = new TermOffsetPopulator(termFrequencyFieldValues, null, null, null);
+        
+        // one range per candidate document and value\0field, sorted by document and then by column qualifier
+        List<Range> expected = Arrays.asList(tfRange("uid1", "brown", "BODY"), tfRange("uid1", "fox", "BODY"), tfRange("uid1", "fox", "TITLE"),
+                        tfRange("uid3", "brown", "BODY"), tfRange("uid3", "fox", "BODY"), tfRange("uid3", "fox", "TITLE"));
+        
+        List<Range> ranges = populator.getRanges(new HashSet<>(Arrays.asList(docKey("uid3"), docKey("uid1"))));
+        Assert.assertEquals(expected, ranges);
+        for (int i = 1; i < ranges.size(); i++) {
+            Assert.assertTrue(ranges.get(i - 1).getEndKey().compareTo(ranges.get(i).getStartKey()) <= 0);
+        }
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetContextMapReadsOnlyCandidates() {
+        RecordingIterator source = new RecordingIterator();
+        source.init(new SortedMapIterator(data), null, null);
+        TermOffsetPopulator populator = new TermOffsetPopulator(termFrequencyFieldValues, null, null, source);
+        
+        Set<Key> keys = new HashSet<>(Arrays.asList(docKey("uid1"), docKey("uid3")));
+        Map<String,Object> context = populator.getContextMap(docKey("uid1"), keys);
+        
+        Map<String,TermFrequencyList> termOffsetMap = (Map<String,TermFrequencyList>) context.get(Constants.TERM_OFFSET_MAP_JEXL_VARIABLE_NAME);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("brown", "fox")), termOffsetMap.keySet());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("BODY", "TITLE")), termOffsetMap.get("fox").fields());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("BODY")), termOffsetMap.get("brown").fields());
+        Set<String> eventIds = new HashSet<>(Arrays.asList(ROW + "\0dt\0uid1", ROW + "\0dt\0uid3"));
+        Assert.assertEquals(eventIds, termOffsetMap.get("fox").eventIds());
+        Assert.assertEquals(eventIds, termOffsetMap.get("brown").eventIds());
+        
+        // only the tf entries of the query terms of the candidate documents are read, never those of the sibling document between them
+        Assert.assertEquals(6, source.seeks);
+        Assert.assertFalse(source.seen.isEmpty());
+        for (Key key : source.seen) {
+            Assert.assertEquals(Constants.TERM_FREQUENCY_COLUMN_FAMILY, key.getColumnFamily());
+            String cq = key.getColumnQualifier().toString();
+            Assert.assertFalse(cq, cq.startsWith("dt\0uid2\0"));
+            Assert.assertFalse(cq, cq.contains("\0quick\0") || cq.contains("\0the\0"));
+        }
+    }
+    
+    /**
+     * Records the keys read from the source
+     */
+    private static class RecordingIterator extends WrappingIterator {
+        
+        private final List<Key> seen = new ArrayList<>();
+        
+        private int seeks = 0;
+        
+        @Override
+        public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) {
+            setSource(source);
+        }
+        
+        @Override
+        public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+            seeks++;
+            super.seek(range, columnFamilies, inclusive);
+        }
+        
+        @Override
+        public Key getTopKey() {
+            Key key = super.getTopKey();
+            seen.add(key);
+            return key;
+        }
+    }
+}
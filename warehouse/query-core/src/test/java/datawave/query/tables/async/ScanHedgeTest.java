@@ -0,0 +1,283 @@
+package datawave.query.tables.async;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.query.tables.AccumuloResource;
+import datawave.query.tables.ResourceQueue;
+import datawave.query.tables.SessionOptions;
+import datawave.query.tables.stats.ScanSessionStats;
+
+public class ScanHedgeTest {
+    
+    private static final String TABLE_NAME = "hedge";
+    private static final Set<Authorizations> AUTHS = Collections.singleton(new Authorizations());
+    private static final int ROWS = 10;
+    
+    private static Connector connector;
+    
+    private ExecutorService caller;
+    
+    @BeforeClass
+    public static void setupClass() throws Exception {
+        InMemoryInstance instance = new InMemoryInstance(ScanHedgeTest.class.getName());
+        connector = instance.getConnector("root", new PasswordToken(""));
+        connector.tableOperations().create(TABLE_NAME);
+        
+        BatchWriter writer = connector.createBatchWriter(TABLE_NAME, new BatchWriterConfig());
+        for (int i = 0; i < ROWS; i++) {
+            Mutation m = new Mutation("row" + i);
+            m.put("cf", "cq", new Value(new byte[0]));
+            writer.addMutation(m);
+        }
+        writer.close();
+    }
+    
+    @Before
+    public void setup() {
+        caller = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void cleanup() {
+        caller.shutdownNow();
+    }
+    
+    private static ScannerChunk chunk() {
+        return new ScannerChunk(new SessionOptions(), Arrays.asList(new Range("row0", "row4"), new Range("row5", "row9")));
+    }
+    
+    private Scan scan(ScannerChunk chunk, ResourceQueue queue, LinkedBlockingQueue<Entry<Key,Value>> results) {
+        Scan scan = new Scan(TABLE_NAME, AUTHS, chunk, queue, AccumuloResource.class, results, caller);
+        scan.disableStats();
+        return scan;
+    }
+    
+    @Test
+    public void testResourcesReturnedOnce() throws Exception {
+        CountingResourceQueue queue = new CountingResourceQueue();
+        LinkedBlockingQueue<Entry<Key,Value>> results = new LinkedBlockingQueue<>();
+        
+        Scan scan = scan(chunk(), queue, results);
+        Assert.assertSame(scan, scan.call());
+        Assert.assertTrue(scan.finished());
+        Assert.assertEquals(ROWS, results.size());
+        
+        // the resources returned early must not be returned to the pool again when the scan exits
+        Assert.assertTrue(queue.borrowed.get() > 1);
+        Assert.assertEquals(queue.borrowed.get(), queue.returned.get());
+    }
+    
+    @Test
+    public void testLosingScanReturnsNothing() throws Exception {
+        CountingResourceQueue queue = new CountingResourceQueue();
+        LinkedBlockingQueue<Entry<Key,Value>> results = new LinkedBlockingQueue<>();
+        ScanSessionStats stats = new ScanSessionStats();
+        AtomicInteger completions = new AtomicInteger();
+        
+        ScannerChunk chunk = chunk();
+        ScanHedge hedge = new ScanHedge(chunk, stats);
+        Scan original = scan(chunk, queue, results);
+        hedge.addScan(original);
+        Scan hedgeScan = scan(hedge.newHedgeChunk(), queue, results);
+        hedge.addHedge(hedgeScan, completions::incrementAndGet);
+        
+        original.call();
+        Assert.assertTrue(hedge.isWinner(original));
+        Assert.assertEquals(1, stats.getResponseTimeCount());
+        Assert.assertEquals(0, completions.get());
+        
+        hedgeScan.call();
+        Assert.assertTrue(hedge.lost(hedgeScan));
+        Assert.assertTrue(hedgeScan.finished());
+        Assert.assertEquals(ROWS, results.size());
+        Assert.assertEquals(1, completions.get());
+        Assert.assertEquals(queue.borrowed.get(), queue.returned.get());
+    }
+    
+    @Test
+    public void testConcurrentScansReturnEachEntryOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 50; i++) {
+                CountingResourceQueue queue = new CountingResourceQueue();
+                LinkedBlockingQueue<Entry<Key,Value>> results = new LinkedBlockingQueue<>();
+                AtomicInteger completions = new AtomicInteger();
+                
+                ScannerChunk chunk = chunk();
+                ScanHedge hedge = new ScanHedge(chunk, null);
+                Scan original = scan(chunk, queue, results);
+                hedge.addScan(original);
+                Scan hedgeScan = scan(hedge.newHedgeChunk(), queue, results);
+                hedge.addHedge(hedgeScan, completions::incrementAndGet);
+                
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Scan> first = pool.submit(() -> {
+                    start.await();
+                    return original.call();
+                });
+                Future<Scan> second = pool.submit(() -> {
+                    start.await();
+                    return hedgeScan.call();
+                });
+                start.countDown();
+                first.get(30, TimeUnit.SECONDS);
+                second.get(30, TimeUnit.SECONDS);
+                
+                // one scan claimed the chunk, and the one closed underneath it stopped quietly without returning anything
+                Assert.assertTrue(hedge.isWinner(original) ^ hedge.isWinner(hedgeScan));
+                List<Key> keys = new ArrayList<>();
+                for (Entry<Key,Value> entry : results) {
+                    keys.add(entry.getKey());
+                }
+                Assert.assertEquals(ROWS, keys.size());
+                Assert.assertEquals(ROWS, new HashSet<>(keys).size());
+                Assert.assertEquals(1, completions.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testClaimRace() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 100; i++) {
+                ScannerChunk chunk = chunk();
+                ScanHedge hedge = new ScanHedge(chunk, null);
+                Scan original = scan(chunk, null, null);
+                hedge.addScan(original);
+                Scan hedgeScan = scan(hedge.newHedgeChunk(), null, null);
+                hedge.addHedge(hedgeScan, null);
+                
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> claims = new ArrayList<>();
+                for (Scan scan : Arrays.asList(original, hedgeScan, original, hedgeScan)) {
+                    claims.add(pool.submit(() -> {
+                        start.await();
+                        return hedge.claim(scan);
+                    }));
+                }
+                start.countDown();
+                
+                Scan winner = hedge.isWinner(original) ? original : hedgeScan;
+                for (int j = 0; j < claims.size(); j++) {
+                    boolean claimed = claims.get(j).get(30, TimeUnit.SECONDS);
+                    Assert.assertEquals(hedge.isWinner(j % 2 == 0 ? original : hedgeScan), claimed);
+                }
+                Assert.assertTrue(hedge.isClaimed());
+                Assert.assertFalse(hedge.lost(winner));
+                Assert.assertTrue(hedge.lost(winner == original ? hedgeScan : original));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testFailedHedgeLeavesChunkToOriginal() throws Exception {
+        CountingResourceQueue queue = new CountingResourceQueue();
+        CountingResourceQueue failingQueue = new CountingResourceQueue();
+        failingQueue.fail = true;
+        LinkedBlockingQueue<Entry<Key,Value>> results = new LinkedBlockingQueue<>();
+        AtomicInteger completions = new AtomicInteger();
+        
+        ScannerChunk chunk = chunk();
+        ScanHedge hedge = new ScanHedge(chunk, null);
+        Scan original = scan(chunk, queue, results);
+        hedge.addScan(original);
+        Scan hedgeScan = scan(hedge.newHedgeChunk(), failingQueue, results);
+        hedge.addHedge(hedgeScan, completions::incrementAndGet);
+        
+        hedgeScan.call();
+        Assert.assertFalse(hedge.isClaimed());
+        Assert.assertEquals(1, completions.get());
+        
+        original.call();
+        Assert.assertTrue(hedge.isWinner(original));
+        Assert.assertEquals(ROWS, results.size());
+        Assert.assertEquals(1, completions.get());
+    }
+    
+    @Test
+    public void testFailedWinningHedgeCompletes() throws Exception {
+        CountingResourceQueue failingQueue = new CountingResourceQueue();
+        failingQueue.fail = true;
+        AtomicInteger completions = new AtomicInteger();
+        
+        ScannerChunk chunk = chunk();
+        ScanHedge hedge = new ScanHedge(chunk, null);
+        hedge.addScan(scan(chunk, null, null));
+        Scan hedgeScan = scan(hedge.newHedgeChunk(), failingQueue, new LinkedBlockingQueue<>());
+        hedge.addHedge(hedgeScan, completions::incrementAndGet);
+        Assert.assertTrue(hedge.claim(hedgeScan));
+        
+        try {
+            hedgeScan.call();
+            Assert.fail("Expected the winning hedge to fail");
+        } catch (IOException e) {
+            // expected
+        }
+        // the hedge is no longer running, even though it failed after winning
+        Assert.assertEquals(1, completions.get());
+    }
+    
+    private static class CountingResourceQueue extends ResourceQueue {
+        
+        private final AtomicInteger borrowed = new AtomicInteger();
+        
+        private final AtomicInteger returned = new AtomicInteger();
+        
+        private volatile boolean fail = false;
+        
+        CountingResourceQueue() throws Exception {
+            super(10, connector);
+        }
+        
+        @Override
+        public AccumuloResource getScannerResource() throws Exception {
+            if (fail) {
+                throw new IOException("No resources available");
+            }
+            AccumuloResource resource = super.getScannerResource();
+            borrowed.incrementAndGet();
+            return resource;
+        }
+        
+        @Override
+        public void close(AccumuloResource resource) throws Exception {
+            returned.incrementAndGet();
+            super.close(resource);
+        }
+    }
+}
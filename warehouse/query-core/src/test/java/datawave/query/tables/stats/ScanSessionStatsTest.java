@@ -0,0 +1,57 @@
+package datawave.query.tables.stats;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScanSessionStatsTest {
+    
+    @Test
+    public void testResponseTimePercentile() {
+        ScanSessionStats stats = new ScanSessionStats();
+        Assert.assertEquals(-1, stats.getResponseTimePercentile(0.95));
+        
+        // recorded out of order
+        for (int i = 100; i > 0; i--) {
+            stats.recordResponseTime(i);
+        }
+        Assert.assertEquals(100, stats.getResponseTimeCount());
+        Assert.assertEquals(95, stats.getResponseTimePercentile(0.95));
+        Assert.assertEquals(50, stats.getResponseTimePercentile(0.5));
+        Assert.assertEquals(100, stats.getResponseTimePercentile(1.0));
+        Assert.assertEquals(1, stats.getResponseTimePercentile(0.0));
+        
+        stats = new ScanSessionStats();
+        stats.recordResponseTime(7);
+        Assert.assertEquals(7, stats.getResponseTimePercentile(0.95));
+        Assert.assertEquals(7, stats.getResponseTimePercentile(0.0));
+    }
+    
+    @Test
+    public void testOnlyRecentResponseTimesKept() {
+        ScanSessionStats stats = new ScanSessionStats();
+        for (int i = 0; i < ScanSessionStats.RESPONSE_TIME_SAMPLES; i++) {
+            stats.recordResponseTime(1000);
+        }
+        Assert.assertEquals(1000, stats.getResponseTimePercentile(0.5));
+        
+        for (int i = 0; i < ScanSessionStats.RESPONSE_TIME_SAMPLES; i++) {
+            stats.recordResponseTime(10);
+        }
+        Assert.assertEquals(2 * ScanSessionStats.RESPONSE_TIME_SAMPLES, stats.getResponseTimeCount());
+        Assert.assertEquals(10, stats.getResponseTimePercentile(1.0));
+    }
+    
+    @Test
+    public void testMergeResponseTimes() {
+        ScanSessionStats stats = new ScanSessionStats();
+        ScanSessionStats other = new ScanSessionStats();
+        for (int i = 1; i <= 10; i++) {
+            stats.recordResponseTime(i);
+            other.recordResponseTime(i + 10);
+        }
+        stats.merge(other);
+        Assert.assertEquals(20, stats.getResponseTimeCount());
+        Assert.assertEquals(19, stats.getResponseTimePercentile(0.95));
+        Assert.assertEquals(10, stats.getResponseTimePercentile(0.5));
+    }
+}
@@ -0,0 +1,120 @@
+package datawave.query.transformer;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import datawave.data.type.LcNoDiacriticsType;
+import datawave.data.type.NumberType;
+import datawave.marking.MarkingFunctions;
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.TypeAttribute;
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+public class GroupingTransformTest {
+    
+    private List<Entry<Key,Document>> documents;
+    
+    @Before
+    public void setup() {
+        documents = new ArrayList<>();
+        addDocument("male", 16);
+        addDocument("male", 16);
+        addDocument("female", 18);
+        addDocument("male", 30);
+        addDocument("male", 16);
+    }
+    
+    private void addDocument(String gender, int age) {
+        Key key = new Key("20200101_0", "datatype\0uid" + documents.size(), "", "A");
+        Document d = new Document(key, true);
+        d.put("GEN", new TypeAttribute<>(new LcNoDiacriticsType(gender), key, true));
+        d.put("AG", new TypeAttribute<>(new NumberType(Integer.toString(age)), key, true));
+        documents.add(Maps.immutableEntry(key, d));
+    }
+    
+    private GroupingTransform newTransform() {
+        GroupingTransform transform = new GroupingTransform(null, Sets.newHashSet("GEN", "AG"));
+        transform.initialize(null, new MarkingFunctions.NoOp());
+        return transform;
+    }
+    
+    private Map<String,Integer> getCounts(GroupingTransform transform) {
+        Map<String,Integer> counts = new HashMap<>();
+        Entry<Key,Document> entry;
+        while ((entry = transform.flush()) != null) {
+            Document d = entry.getValue();
+            String group = d.get("GEN").getData() + "-" + d.get("AG").getData();
+            BigDecimal count = (BigDecimal) ((TypeAttribute<?>) d.get(GroupingTransform.COUNT_FIELD)).getType().getDelegate();
+            counts.put(group, count.intValue());
+        }
+        return counts;
+    }
+    
+    @Test
+    public void testWebServerGrouping() {
+        GroupingTransform transform = newTransform();
+        for (Entry<Key,Document> entry : documents) {
+            Assert.assertNull(transform.apply(entry));
+        }
+        
+        Map<String,Integer> counts = getCounts(transform);
+        Assert.assertEquals(3, counts.size());
+        Assert.assertEquals(3, (int) counts.get("male-16"));
+        Assert.assertEquals(1, (int) counts.get("female-18"));
+        Assert.assertEquals(1, (int) counts.get("male-30"));
+    }
+    
+    @Test
+    public void testMergePartialGroups() {
+        // the tablet server emits a single document of partial counts per batch, keyed by the last document in the batch
+        Iterator<Entry<Key,Document>> partials = newTransform().getGroupingIterator(documents.iterator(), 2);
+        List<Entry<Key,Document>> batches = new ArrayList<>();
+        while (partials.hasNext()) {
+            batches.add(partials.next());
+        }
+        Assert.assertEquals(3, batches.size());
+        Assert.assertEquals(documents.get(1).getKey(), batches.get(0).getKey());
+        Assert.assertEquals(documents.get(3).getKey(), batches.get(1).getKey());
+        Assert.assertEquals(documents.get(4).getKey(), batches.get(2).getKey());
+        
+        Document first = batches.get(0).getValue();
+        Assert.assertTrue(first.containsKey(GroupingTransform.COUNT_FIELD + ".0"));
+        Assert.assertFalse(first.containsKey(GroupingTransform.COUNT_FIELD + ".1"));
+        Assert.assertEquals("datatype", first.get(GroupingTransform.DATATYPES_FIELD + ".0").getData());
+        
+        // the web server merges the partial counts
+        GroupingTransform transform = newTransform();
+        for (Entry<Key,Document> entry : batches) {
+            Assert.assertNull(transform.apply(entry));
+        }
+        
+        Map<String,Integer> counts = getCounts(transform);
+        Assert.assertEquals(3, counts.size());
+        Assert.assertEquals(3, (int) counts.get("male-16"));
+        Assert.assertEquals(1, (int) counts.get("female-18"));
+        Assert.assertEquals(1, (int) counts.get("male-30"));
+    }
+    
+    @Test
+    public void testVisibility() {
+        Iterator<Entry<Key,Document>> partials = newTransform().getGroupingIterator(documents.iterator(), Integer.MAX_VALUE);
+        Document partial = partials.next().getValue();
+        Assert.assertFalse(partials.hasNext());
+        
+        for (int i = 0; i < 3; i++) {
+            Attribute<?> count = partial.get(GroupingTransform.COUNT_FIELD + "." + i);
+            Assert.assertEquals("A", new String(count.getColumnVisibility().getExpression()));
+        }
+    }
+}
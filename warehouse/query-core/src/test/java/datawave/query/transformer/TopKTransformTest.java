@@ -0,0 +1,116 @@
+package datawave.query.transformer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.Numeric;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+public class TopKTransformTest {
+    
+    // 20180101, the attribute timestamps must fall within the day of the shard
+    private static final long SHARD_TIME = 1514764800000L;
+    
+    private static Entry<Key,Document> createDocument(String uid, long timestamp, Integer... sizes) {
+        Key key = new Key("20180101_0", "datatype\u0000" + uid, "", new ColumnVisibility("A"), SHARD_TIME + timestamp);
+        Document d = new Document(key, true);
+        d.put("NAME", new Content(uid, d.getMetadata(), true), true, false);
+        for (int i = 0; i < sizes.length; i++) {
+            d.put("SIZE." + i, new Numeric(sizes[i], d.getMetadata(), true), true, false);
+        }
+        return Maps.immutableEntry(key, d);
+    }
+    
+    private static List<String> flush(TopKTransform transform) {
+        List<String> uids = new ArrayList<>();
+        for (Entry<Key,Document> entry = transform.flush(); entry != null; entry = transform.flush()) {
+            uids.add(getUid(entry));
+        }
+        return uids;
+    }
+    
+    private static String getUid(Entry<Key,Document> entry) {
+        String cf = entry.getKey().getColumnFamily().toString();
+        return cf.substring(cf.indexOf('\u0000') + 1);
+    }
+    
+    @Test
+    public void testTopKByField() {
+        TopKTransform transform = new TopKTransform(null, Sets.newHashSet("SIZE"), 3);
+        Assert.assertNull(transform.apply(createDocument("a", 1, 9)));
+        transform.apply(createDocument("b", 2, 10));
+        transform.apply(createDocument("c", 3, 2, 100));
+        transform.apply(createDocument("d", 4));
+        transform.apply(createDocument("e", 5, -5));
+        transform.apply(createDocument("f", 6, 50));
+        
+        // ordered numerically by the greatest value of the field
+        Assert.assertEquals(Lists.newArrayList("c", "f", "b"), flush(transform));
+    }
+    
+    @Test
+    public void testTopKByTimestamp() {
+        TopKTransform transform = new TopKTransform(null, Collections.emptySet(), 2);
+        transform.apply(createDocument("a", 30));
+        transform.apply(createDocument("b", 10));
+        transform.apply(createDocument("c", 40));
+        transform.apply(createDocument("d", 20));
+        
+        Assert.assertEquals(Lists.newArrayList("c", "a"), flush(transform));
+    }
+    
+    @Test
+    public void testDocumentsWithoutFieldOrderLast() {
+        TopKTransform transform = new TopKTransform(null, Sets.newHashSet("SIZE"), 3);
+        transform.apply(createDocument("a", 1));
+        transform.apply(createDocument("b", 2, 1));
+        transform.apply(createDocument("c", 3));
+        transform.apply(createDocument("d", 4));
+        
+        // ties are kept in key order
+        Assert.assertEquals(Lists.newArrayList("b", "a", "c"), flush(transform));
+    }
+    
+    @Test
+    public void testTopKIteratorReturnsKeyOrder() {
+        List<Entry<Key,Document>> documents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            documents.add(createDocument("uid" + i, i, (i * 7) % 10));
+        }
+        
+        // 9, 8, 7 and 6 are uid7, uid4, uid1 and uid8
+        Iterator<Entry<Key,Document>> topK = new TopKTransform(null, Sets.newHashSet("SIZE"), 4).getTopKIterator(documents.iterator());
+        List<String> uids = new ArrayList<>();
+        while (topK.hasNext()) {
+            uids.add(getUid(topK.next()));
+        }
+        Assert.assertEquals(Lists.newArrayList("uid1", "uid4", "uid7", "uid8"), uids);
+    }
+    
+    @Test
+    public void testMergeScanSessions() {
+        List<Entry<Key,Document>> first = Lists.newArrayList(createDocument("a", 1, 5), createDocument("b", 2, 3), createDocument("c", 3, 8));
+        List<Entry<Key,Document>> second = Lists.newArrayList(createDocument("d", 4, 7), createDocument("e", 5, 1), createDocument("f", 6, 6));
+        
+        // the web server keeps the top k of the top k from each scan session
+        TopKTransform merged = new TopKTransform(null, Sets.newHashSet("SIZE"), 2);
+        for (List<Entry<Key,Document>> session : Lists.newArrayList(first, second)) {
+            Iterator<Entry<Key,Document>> topK = new TopKTransform(null, Sets.newHashSet("SIZE"), 2).getTopKIterator(session.iterator());
+            while (topK.hasNext()) {
+                merged.apply(topK.next());
+            }
+        }
+        Assert.assertEquals(Lists.newArrayList("c", "d"), flush(merged));
+    }
+}
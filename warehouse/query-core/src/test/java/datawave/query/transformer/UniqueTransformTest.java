@@ -19,8 +19,11 @@ import org.apache.commons.collections4.iterators.TransformIterator;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -28,9 +31,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Function;
 
 public class UniqueTransformTest {
     private static final Logger log = Logger.getLogger(UniqueTransformTest.class);
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
     private List<String> values = new ArrayList();
     private List<String> visibilities = new ArrayList();
     
@@ -148,6 +156,34 @@ public class UniqueTransformTest {
     
     @Test
     public void testUniqueness() {
+        assertUniqueness(UniqueTransform::new);
+    }
+    
+    @Test
+    public void testUniquenessSpilled() {
+        // a buffer this small forces the signatures to be spilled and merged
+        final File cacheDir = new File(temporaryFolder.getRoot(), "unique");
+        assertUniqueness(fields -> new UniqueTransform(fields, 3, cacheDir));
+        Assert.assertFalse(cacheDir.exists());
+    }
+    
+    @Test
+    public void testCloseRemovesSpilled() {
+        // a query that is closed, cancelled or expires never flushes the transform
+        File cacheDir = new File(temporaryFolder.getRoot(), "unique");
+        UniqueTransform transform = new UniqueTransform(Sets.newHashSet("Attr0", "Attr1", "Attr2"), 3, cacheDir);
+        Random random = new Random(2000);
+        for (int i = 0; i < 20; i++) {
+            Document d = createDocument(random, false);
+            transform.apply(Maps.immutableEntry(d.getMetadata(), d));
+        }
+        Assert.assertTrue(cacheDir.exists());
+        
+        transform.close();
+        Assert.assertFalse(cacheDir.exists());
+    }
+    
+    private void assertUniqueness(Function<Set<String>,UniqueTransform> newTransform) {
         Random random = new Random(2000);
         List<Document> input = new ArrayList<>();
         for (int i = 0; i < 100; i++) {
@@ -170,7 +206,7 @@ public class UniqueTransformTest {
             return Maps.immutableEntry(d.getMetadata(), d);
         };
         TransformIterator inputIterator = new TransformIterator(input.iterator(), docToEntry);
-        UniqueTransform transform = new UniqueTransform(fields);
+        UniqueTransform transform = newTransform.apply(fields);
         Iterator iter = Iterators.transform(inputIterator, transform);
         
         List<Object> eventList = Lists.newArrayList();
@@ -183,6 +219,7 @@ public class UniqueTransformTest {
         
         Assert.assertEquals(expected, eventList.size());
         Assert.assertNull(transform.apply(null));
+        Assert.assertNull(transform.flush());
     }
     
     /**
@@ -0,0 +1,122 @@
+package datawave.query.util;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.data.ColumnFamilyConstants;
+import datawave.query.composite.CompositeMetadataHelper;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+public class MetadataSnapshotTest {
+    
+    private static final String METADATA_TABLE_NAME = "metadata";
+    private static final Set<Authorizations> AUTHS = Collections.singleton(new Authorizations("A"));
+    
+    private static Connector connector;
+    
+    @BeforeClass
+    public static void setup() throws Exception {
+        InMemoryInstance instance = new InMemoryInstance(MetadataSnapshotTest.class.getName());
+        connector = instance.getConnector("root", new PasswordToken(""));
+        connector.securityOperations().changeUserAuthorizations("root", new Authorizations("A"));
+        connector.tableOperations().create(METADATA_TABLE_NAME);
+        
+        BatchWriter writer = connector.createBatchWriter(METADATA_TABLE_NAME, new BatchWriterConfig());
+        writer.addMutation(mutation("NAME", ColumnFamilyConstants.COLF_E, "csv"));
+        writer.addMutation(mutation("NAME", ColumnFamilyConstants.COLF_I, "csv"));
+        writer.addMutation(mutation("NAME", ColumnFamilyConstants.COLF_RI, "csv"));
+        writer.addMutation(mutation("NAME", ColumnFamilyConstants.COLF_T, "csv\0datawave.data.type.LcNoDiacriticsType"));
+        writer.addMutation(mutation("NAME", ColumnFamilyConstants.COLF_E, "json"));
+        writer.addMutation(mutation("NAME", ColumnFamilyConstants.COLF_T, "json\0datawave.data.type.LcNoDiacriticsType"));
+        writer.addMutation(mutation("BODY", ColumnFamilyConstants.COLF_I, "csv"));
+        writer.addMutation(mutation("BODY", ColumnFamilyConstants.COLF_TF, "csv"));
+        writer.addMutation(mutation("BODY", ColumnFamilyConstants.COLF_CONTENT, "csv"));
+        writer.addMutation(mutation("BODY", ColumnFamilyConstants.COLF_EXP, "csv"));
+        writer.addMutation(mutation("BODY", ColumnFamilyConstants.COLF_T, "csv\0datawave.data.type.LcType"));
+        writer.addMutation(mutation("AGE", ColumnFamilyConstants.COLF_E, "json"));
+        writer.addMutation(mutation("AGE", ColumnFamilyConstants.COLF_I, "json"));
+        writer.addMutation(mutation("AGE", ColumnFamilyConstants.COLF_T, "json\0datawave.data.type.NumberType"));
+        writer.addMutation(mutation("NAME_AGE", ColumnFamilyConstants.COLF_I, "json"));
+        writer.addMutation(mutation("NAME", ColumnFamilyConstants.COLF_CI, "json\0NAME_AGE,NAME,AGE"));
+        writer.addMutation(mutation("AGE", ColumnFamilyConstants.COLF_CI, "json\0NAME_AGE,NAME,AGE"));
+        writer.close();
+    }
+    
+    private static Mutation mutation(String field, Text colf, String colq) {
+        Mutation m = new Mutation(field);
+        m.put(colf, new Text(colq), new Value(new byte[0]));
+        return m;
+    }
+    
+    private static AllFieldMetadataHelper createHelper(boolean useMetadataSnapshot) {
+        AllFieldMetadataHelper helper = new AllFieldMetadataHelper();
+        helper.setTypeMetadataHelper(new TypeMetadataHelper());
+        helper.setCompositeMetadataHelper(new CompositeMetadataHelper());
+        helper.setUseMetadataSnapshot(useMetadataSnapshot);
+        return helper.initialize(connector, METADATA_TABLE_NAME, AUTHS, AUTHS);
+    }
+    
+    @Test
+    public void testSnapshotMatchesScans() throws Exception {
+        AllFieldMetadataHelper scanning = createHelper(false);
+        AllFieldMetadataHelper snapshot = createHelper(true);
+        
+        assertEquals(scanning.loadAllFields(), snapshot.loadAllFields());
+        assertEquals(scanning.getIndexOnlyFields(), snapshot.getIndexOnlyFields());
+        assertEquals(scanning.loadTermFrequencyFields(), snapshot.loadTermFrequencyFields());
+        assertEquals(scanning.loadIndexedFields(), snapshot.loadIndexedFields());
+        assertEquals(scanning.loadReverseIndexedFields(), snapshot.loadReverseIndexedFields());
+        assertEquals(scanning.loadAllIndexedFields(), snapshot.loadAllIndexedFields());
+        assertEquals(scanning.loadExpansionFields(), snapshot.loadExpansionFields());
+        assertEquals(scanning.loadContentFields(), snapshot.loadContentFields());
+        Assert.assertEquals(scanning.loadDatatypes(), snapshot.loadDatatypes());
+        Assert.assertEquals(scanning.getAllDatatypes(), snapshot.getAllDatatypes());
+        
+        for (String field : new String[] {"NAME", "body", "AGE", "NAME_AGE", "MISSING"}) {
+            for (Set<String> datatypes : Sets.<Set<String>> newHashSet(null, Collections.emptySet(), Collections.singleton("csv"),
+                            Collections.singleton("json"))) {
+                Map.Entry<String,Map.Entry<String,Set<String>>> key = Maps.immutableEntry(METADATA_TABLE_NAME, Maps.immutableEntry(field, datatypes));
+                Assert.assertEquals(field + " " + datatypes, scanning.isIndexed(ColumnFamilyConstants.COLF_I, key),
+                                snapshot.isIndexed(ColumnFamilyConstants.COLF_I, key));
+                Assert.assertEquals(field + " " + datatypes, scanning.isIndexed(ColumnFamilyConstants.COLF_RI, key),
+                                snapshot.isIndexed(ColumnFamilyConstants.COLF_RI, key));
+            }
+        }
+    }
+    
+    @Test
+    public void testSnapshotIsShared() throws Exception {
+        AllFieldMetadataHelper helper = createHelper(true);
+        MetadataSnapshot snapshot = helper.getMetadataSnapshot(AUTHS);
+        Assert.assertSame(snapshot, createHelper(true).getMetadataSnapshot(AUTHS));
+        
+        // a snapshot older than the refresh interval is reloaded
+        helper.setMetadataSnapshotRefreshInterval(-1);
+        Assert.assertNotSame(snapshot, helper.getMetadataSnapshot(AUTHS));
+        
+        // as are all of them when the caches are evicted
+        snapshot = createHelper(true).getMetadataSnapshot(AUTHS);
+        helper.evictCaches();
+        Assert.assertNotSame(snapshot, createHelper(true).getMetadataSnapshot(AUTHS));
+    }
+    
+    private static void assertEquals(Multimap<String,String> expected, Multimap<String,String> actual) {
+        Assert.assertEquals(HashMultimap.create(expected), HashMultimap.create(actual));
+    }
+}
@@ -0,0 +1,84 @@
+package datawave.query.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TypeMetadataSnapshotTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private TypeMetadata typeMetadata;
+    
+    @Before
+    public void setup() {
+        typeMetadata = new TypeMetadata();
+        typeMetadata.put("field1", "ingest1", "datawave.data.type.LcType");
+        typeMetadata.put("field1", "ingest2", "datawave.data.type.DateType");
+        typeMetadata.put("field2", "ingest1", "datawave.data.type.NumberType");
+        typeMetadata.put("field2", "ingest1", "datawave.data.type.LcType");
+        typeMetadata.put("field2", "ingest2", "datawave.data.type.LcType");
+    }
+    
+    @Test
+    public void testRoundTrip() throws Exception {
+        TypeMetadataSnapshot snapshot = new TypeMetadataSnapshot(typeMetadata);
+        TypeMetadata fromBytes = TypeMetadataSnapshot.fromBytes(snapshot.toBytes());
+        
+        Assert.assertEquals(typeMetadata, fromBytes);
+        Assert.assertEquals(typeMetadata.getTypeMetadata("field2", "ingest1"), fromBytes.getTypeMetadata("field2", "ingest1"));
+    }
+    
+    @Test
+    public void testVersion() {
+        // the same type metadata built in a different order has the same version
+        TypeMetadata other = new TypeMetadata();
+        other.put("field2", "ingest2", "datawave.data.type.LcType");
+        other.put("field2", "ingest1", "datawave.data.type.LcType");
+        other.put("field2", "ingest1", "datawave.data.type.NumberType");
+        other.put("field1", "ingest2", "datawave.data.type.DateType");
+        other.put("field1", "ingest1", "datawave.data.type.LcType");
+        Assert.assertEquals(new TypeMetadataSnapshot(typeMetadata).getVersion(), new TypeMetadataSnapshot(other).getVersion());
+        
+        other.put("field3", "ingest1", "datawave.data.type.LcType");
+        Assert.assertNotEquals(new TypeMetadataSnapshot(typeMetadata).getVersion(), new TypeMetadataSnapshot(other).getVersion());
+    }
+    
+    @Test
+    public void testWriteAndLoad() throws Exception {
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        Path dir = new Path(temporaryFolder.newFolder().toURI());
+        
+        TypeMetadataSnapshot snapshot = new TypeMetadataSnapshot(typeMetadata);
+        Path file = snapshot.write(fs, dir);
+        Assert.assertEquals(TypeMetadataSnapshot.getPath(dir, snapshot.getVersion()), file);
+        Assert.assertEquals(snapshot.toBytes().length, fs.getFileStatus(file).getLen());
+        
+        // writing the same version again leaves the existing snapshot
+        Assert.assertEquals(file, new TypeMetadataSnapshot(typeMetadata).write(fs, dir));
+        Assert.assertEquals(1, new File(dir.toUri()).list((d, name) -> !name.startsWith(".")).length);
+        
+        TypeMetadata loaded = TypeMetadataSnapshot.load(fs, dir, snapshot.getVersion());
+        Assert.assertEquals(typeMetadata, loaded);
+        Assert.assertSame(loaded, TypeMetadataSnapshot.load(fs, dir, snapshot.getVersion()));
+    }
+    
+    @Test(expected = IOException.class)
+    public void testLoadMismatchedVersion() throws Exception {
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        Path dir = new Path(temporaryFolder.newFolder().toURI());
+        
+        TypeMetadataSnapshot snapshot = new TypeMetadataSnapshot(typeMetadata);
+        fs.rename(snapshot.write(fs, dir), TypeMetadataSnapshot.getPath(dir, "mismatched"));
+        TypeMetadataSnapshot.load(fs, dir, "mismatched");
+    }
+}
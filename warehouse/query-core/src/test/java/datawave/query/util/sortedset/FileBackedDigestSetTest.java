@@ -0,0 +1,102 @@
+package datawave.query.util.sortedset;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileBackedDigestSetTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private static byte[] digest(long high, long low) {
+        return ByteBuffer.allocate(FileBackedDigestSet.DIGEST_LENGTH).putLong(high).putLong(low).array();
+    }
+    
+    @Test
+    public void testSpillAndCompact() throws Exception {
+        File dir = new File(temporaryFolder.getRoot(), "digests");
+        FileBackedDigestSet set = new FileBackedDigestSet(100, dir, 3);
+        
+        // include the zero digest and digests which differ only by sign
+        Random random = new Random(1234);
+        long[] values = new long[2000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i == 0 ? 0 : (i % 2 == 0 ? -1 : 1) * random.nextLong());
+        }
+        for (long value : values) {
+            Assert.assertTrue(set.add(digest(value, value >>> 1)));
+            Assert.assertFalse(set.add(digest(value, value >>> 1)));
+        }
+        Assert.assertEquals(values.length, set.size());
+        Assert.assertTrue(set.getRunCount() > 0);
+        Assert.assertTrue(set.getRunCount() <= 3);
+        
+        for (long value : values) {
+            Assert.assertTrue(set.contains(digest(value, value >>> 1)));
+            Assert.assertFalse(set.contains(digest(value, value >>> 2 ^ 1)));
+            Assert.assertFalse(set.add(digest(value, value >>> 1)));
+        }
+        
+        set.clear();
+        Assert.assertEquals(0, set.getRunCount());
+        File[] files = dir.listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(0, files.length);
+        Assert.assertTrue(set.add(digest(values[1], values[1] >>> 1)));
+        
+        // closing also removes the directory
+        set.close();
+        Assert.assertFalse(dir.exists());
+    }
+    
+    @Test
+    public void testTableGrows() throws Exception {
+        FileBackedDigestSet set = new FileBackedDigestSet(FileBackedDigestSet.DEFAULT_BUFFER_SIZE, null, 3);
+        Assert.assertEquals(FileBackedDigestSet.INITIAL_SLOTS, set.getTableSlots());
+        
+        // the table doubles to stay at most half full, keeping the digests already added
+        Random random = new Random(1234);
+        long[] values = new long[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong();
+            Assert.assertTrue(set.add(digest(values[i], i)));
+            Assert.assertTrue(set.getTableSlots() >= 2 * (i + 1));
+        }
+        Assert.assertEquals(2048, set.getTableSlots());
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertTrue(set.contains(digest(values[i], i)));
+            Assert.assertFalse(set.contains(digest(values[i], i + 1)));
+        }
+        
+        // but no further than needed for the buffer size
+        set = new FileBackedDigestSet(100, null, 3);
+        for (int i = 1; i <= 100; i++) {
+            set.add(digest(i, i));
+        }
+        Assert.assertEquals(256, set.getTableSlots());
+        
+        set.clear();
+        Assert.assertEquals(FileBackedDigestSet.INITIAL_SLOTS, set.getTableSlots());
+    }
+    
+    @Test
+    public void testNoSpill() throws Exception {
+        FileBackedDigestSet set = new FileBackedDigestSet(10, null, 3);
+        for (int i = 1; i <= 10; i++) {
+            Assert.assertTrue(set.add(digest(i, i)));
+        }
+        Assert.assertFalse(set.add(digest(1, 1)));
+        
+        // the buffer is cleared when it fills
+        Assert.assertTrue(set.add(digest(11, 11)));
+        Assert.assertEquals(0, set.getRunCount());
+        Assert.assertTrue(set.add(digest(1, 1)));
+        Assert.assertFalse(set.add(digest(11, 11)));
+    }
+}
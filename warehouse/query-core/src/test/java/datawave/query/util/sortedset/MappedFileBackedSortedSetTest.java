@@ -0,0 +1,158 @@
+package datawave.query.util.sortedset;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileBackedSortedSetTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private static KeyValueSerializable entry(String row, String cf, String cq, long ts) {
+        return new KeyValueSerializable(new Key(row, cf, cq, "PUBLIC", ts), (row + cf).getBytes());
+    }
+    
+    private TreeSet<KeyValueSerializable> fill(MappedFileBackedSortedSet<KeyValueSerializable> set, int count) {
+        TreeSet<KeyValueSerializable> expected = new TreeSet<>();
+        // add in a non-sorted order, including some duplicates
+        for (int i = 0; i < count; i++) {
+            int n = (i * 7919) % count;
+            KeyValueSerializable kv = entry("20190101_" + (n % 3), "datatype\u0000uid" + n, "FIELD\u0000value" + (n % 11), n % 5);
+            set.add(kv);
+            expected.add(kv);
+            if (n % 13 == 0) {
+                set.add(kv);
+            }
+        }
+        return expected;
+    }
+    
+    private static void assertSame(TreeSet<KeyValueSerializable> expected, MappedFileBackedSortedSet<KeyValueSerializable> set) {
+        Assert.assertEquals(expected.size(), set.size());
+        Iterator<KeyValueSerializable> it = set.iterator();
+        for (KeyValueSerializable kv : expected) {
+            Assert.assertTrue(it.hasNext());
+            KeyValueSerializable next = it.next();
+            Assert.assertEquals(kv.getKey(), next.getKey());
+            Assert.assertEquals(kv.getValue(), next.getValue());
+        }
+        Assert.assertFalse(it.hasNext());
+    }
+    
+    @Test
+    public void testCodecPreservesOrder() {
+        KeyValueByteCodec codec = new KeyValueByteCodec();
+        KeyValueSerializable[] entries = new KeyValueSerializable[] {entry("a", "b", "c", 5), entry("a", "b", "c", 3), entry("a", "b\u0000", "c", 10),
+                entry("a", "b\u0000c", "", 10), entry("a\u0000", "", "", 0), entry("ab", "", "", 0)};
+        for (int i = 0; i < entries.length; i++) {
+            byte[] encoded = codec.encode(entries[i]);
+            Assert.assertEquals(entries[i].getKey(), codec.decode(encoded).getKey());
+            for (int j = 0; j < entries.length; j++) {
+                int expected = Integer.signum(entries[i].getKey().compareTo(entries[j].getKey()));
+                int actual = Integer.signum(UnsignedByteArrayComparator.INSTANCE.compare(encoded, codec.encode(entries[j])));
+                Assert.assertEquals(entries[i] + " vs " + entries[j], expected, actual);
+            }
+        }
+    }
+    
+    @Test
+    public void testSpillAndMerge() throws Exception {
+        File dir = temporaryFolder.newFolder();
+        // a small buffer and max open files forces many spills and compactions
+        MappedFileBackedSortedSet<KeyValueSerializable> set = new MappedFileBackedSortedSet<>(new KeyValueByteCodec(), 4096, dir, 3);
+        TreeSet<KeyValueSerializable> expected = fill(set, 2000);
+        Assert.assertTrue(set.hasPersistedData());
+        assertSame(expected, set);
+        Assert.assertEquals(expected.first().getKey(), set.first().getKey());
+        Assert.assertEquals(expected.last().getKey(), set.last().getKey());
+        Assert.assertTrue(set.contains(expected.first()));
+        Assert.assertFalse(set.contains(entry("zzz", "", "", 0)));
+    }
+    
+    @Test
+    public void testPersistAndReuse() throws Exception {
+        File dir = temporaryFolder.newFolder();
+        MappedFileBackedSortedSet<KeyValueSerializable> set = new MappedFileBackedSortedSet<>(new KeyValueByteCodec(), 1024 * 1024, dir, 10);
+        TreeSet<KeyValueSerializable> expected = fill(set, 500);
+        Assert.assertFalse(set.isPersisted());
+        Assert.assertFalse(set.hasPersistedData());
+        set.persist();
+        Assert.assertTrue(set.isPersisted());
+        
+        MappedFileBackedSortedSet<KeyValueSerializable> reused = new MappedFileBackedSortedSet<>(new KeyValueByteCodec(), 1024 * 1024, dir, 10);
+        Assert.assertTrue(reused.hasPersistedData());
+        assertSame(expected, reused);
+        
+        reused.clear();
+        Assert.assertTrue(reused.isEmpty());
+        Assert.assertFalse(new MappedFileBackedSortedSet<>(new KeyValueByteCodec(), 1024 * 1024, dir, 10).hasPersistedData());
+    }
+    
+    @Test
+    public void testBufferGrowsToCapacity() {
+        DirectByteSetBuffer buffer = new DirectByteSetBuffer(256 * 1024);
+        byte[] entry = new byte[1000];
+        int added = 0;
+        for (int i = 0; buffer.add(entry(i, entry)); i++) {
+            added++;
+        }
+        // the buffer grew from its initial size to hold every entry that fits in the capacity
+        Assert.assertEquals(256 * 1024 / 1004, added);
+        Assert.assertFalse(buffer.fits(1000));
+        
+        Iterator<byte[]> it = buffer.iterator();
+        for (int i = 0; i < added; i++) {
+            Assert.assertArrayEquals(entry(i, entry), it.next());
+        }
+        Assert.assertFalse(it.hasNext());
+        buffer.release();
+    }
+    
+    private static byte[] entry(int i, byte[] entry) {
+        byte[] copy = entry.clone();
+        copy[0] = (byte) (i >>> 8);
+        copy[1] = (byte) i;
+        return copy;
+    }
+    
+    @Test
+    public void testCloseDeletesClearedFiles() throws Exception {
+        File dir = new File(temporaryFolder.newFolder(), "row");
+        MappedFileBackedSortedSet<KeyValueSerializable> set = new MappedFileBackedSortedSet<>(new KeyValueByteCodec(), 4096, dir, 10);
+        fill(set, 500);
+        Assert.assertTrue(set.hasPersistedData());
+        
+        // an iterator left open over the mapped files is closed along with the set
+        Iterator<KeyValueSerializable> it = set.iterator();
+        it.next();
+        
+        set.clear();
+        set.close();
+        Assert.assertFalse(dir.exists());
+        
+        try {
+            set.add(entry("a", "b", "c", 0));
+            Assert.fail("Expected a closed set to reject new entries");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+    
+    @Test
+    public void testCloseKeepsPersistedFiles() throws Exception {
+        File dir = temporaryFolder.newFolder();
+        MappedFileBackedSortedSet<KeyValueSerializable> set = new MappedFileBackedSortedSet<>(new KeyValueByteCodec(), 1024 * 1024, dir, 10);
+        TreeSet<KeyValueSerializable> expected = fill(set, 500);
+        set.persist();
+        set.close();
+        
+        assertSame(expected, new MappedFileBackedSortedSet<>(new KeyValueByteCodec(), 1024 * 1024, dir, 10));
+    }
+}
@@ -51,6 +51,8 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
         private long pageNumber = -1;
         @XmlElement
         private long loginTime = -1;
+        @XmlElement
+        private long prefetchWaitTime = -1;
         
         public PageMetric() {
             super();
@@ -86,6 +88,12 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
             this.loginTime = loginTime;
         }
         
+        public PageMetric(long pagesize, long returnTime, long callTime, long serializationTime, long bytesWritten, long pageRequested, long pageReturned,
+                        long loginTime, long prefetchWaitTime) {
+            this(pagesize, returnTime, callTime, serializationTime, bytesWritten, pageRequested, pageReturned, loginTime);
+            this.prefetchWaitTime = prefetchWaitTime;
+        }
+        
         public PageMetric(PageMetric o) {
             super();
             this.pagesize = o.pagesize;
@@ -97,6 +105,7 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
             this.pageReturned = o.pageReturned;
             this.pageNumber = o.pageNumber;
             this.loginTime = o.loginTime;
+            this.prefetchWaitTime = o.prefetchWaitTime;
         }
         
         public PageMetric duplicate() {
@@ -175,10 +184,22 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
             this.loginTime = loginTime;
         }
         
+        /**
+         * @return the time spent waiting on results which were being prefetched in the background, or -1 if the page was not prefetched
+         */
+        public long getPrefetchWaitTime() {
+            return prefetchWaitTime;
+        }
+        
+        public void setPrefetchWaitTime(long prefetchWaitTime) {
+            this.prefetchWaitTime = prefetchWaitTime;
+        }
+        
         @Override
         public int hashCode() {
             return new HashCodeBuilder(17, 37).append(pagesize).append(returnTime).append(callTime).append(serializationTime).append(bytesWritten)
-                            .append(pageRequested).append(pageReturned).append(pageNumber).append(loginTime).toHashCode();
+                            .append(pageRequested).append(pageReturned).append(pageNumber).append(loginTime).append(prefetchWaitTime)
+                            .toHashCode();
         }
         
         @Override
@@ -195,7 +216,7 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
                                 .append(this.callTime, other.callTime).append(this.serializationTime, other.serializationTime)
                                 .append(this.bytesWritten, other.bytesWritten).append(this.pageRequested, other.pageRequested)
                                 .append(this.pageReturned, other.pageReturned).append(this.pageNumber, other.pageNumber)
-                                .append(this.loginTime, other.loginTime).isEquals();
+                                .append(this.loginTime, other.loginTime).append(this.prefetchWaitTime, other.prefetchWaitTime).isEquals();
             } else {
                 return false;
             }
@@ -206,7 +227,8 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
             return new StringBuilder().append("Page number: ").append(this.pageNumber).append(" Requested: ").append(this.pageRequested).append(" Returned: ")
                             .append(this.pageReturned).append(" Pagesize: ").append(this.pagesize).append(" ReturnTime(ms): ").append(this.returnTime)
                             .append(" CallTime(ms): ").append(this.callTime).append(" SerializationTime(ms): ").append(this.serializationTime)
-                            .append(" BytesWritten: ").append(this.bytesWritten).append(" LoginTime(ms): ").append(this.loginTime).toString();
+                            .append(" BytesWritten: ").append(this.bytesWritten).append(" LoginTime(ms): ").append(this.loginTime)
+                            .append(" PrefetchWaitTime(ms): ").append(this.prefetchWaitTime).toString();
         }
         
         public static Schema<PageMetric> getSchema() {
@@ -263,6 +285,9 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
                 if (message.loginTime != -1) {
                     output.writeUInt64(9, message.loginTime, false);
                 }
+                if (message.prefetchWaitTime != -1) {
+                    output.writeUInt64(10, message.prefetchWaitTime, false);
+                }
             }
             
             public void mergeFrom(Input input, PageMetric message) throws IOException {
@@ -296,6 +321,9 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
                         case 9:
                             message.loginTime = input.readUInt64();
                             break;
+                        case 10:
+                            message.prefetchWaitTime = input.readUInt64();
+                            break;
                         default:
                             input.handleUnknownField(number, this);
                             break;
@@ -323,6 +351,8 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
                         return "pageNumber";
                     case 9:
                         return "loginTime";
+                    case 10:
+                        return "prefetchWaitTime";
                     default:
                         return null;
                 }
@@ -345,6 +375,7 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
                 fieldMap.put("pageReturned", 7);
                 fieldMap.put("pageNumber", 8);
                 fieldMap.put("loginTime", 9);
+                fieldMap.put("prefetchWaitTime", 10);
             }
         };
     }
@@ -704,6 +735,11 @@ public abstract class BaseQueryMetric implements HasMarkings, Serializable {
         this.pageTimes.add(pageMetric);
     }
     
+    public void addPageTime(long pagesize, long timeToReturn, long requestedTime, long returnedTime, long prefetchWaitTime) {
+        addPageTime(pagesize, timeToReturn, requestedTime, returnedTime);
+        this.pageTimes.get(this.pageTimes.size() - 1).setPrefetchWaitTime(prefetchWaitTime);
+    }
+    
     public void setQueryName(String queryName) {
         this.queryName = queryName;
     }
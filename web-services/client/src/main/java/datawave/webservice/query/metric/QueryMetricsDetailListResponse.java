@@ -50,7 +50,7 @@ public class QueryMetricsDetailListResponse extends QueryMetricListResponse {
         
         pageTimesBuilder.append("<table>\n");
         pageTimesBuilder.append("<tr><th>Page requested</th><th>Page returned</th><th>Response time (ms)</th><th>Page size</th><th>Call time (ms)</th>");
-        pageTimesBuilder.append("<th>Login time (ms)</th><th>Serialization time (ms)</th>");
+        pageTimesBuilder.append("<th>Login time (ms)</th><th>Prefetch wait time (ms)</th><th>Serialization time (ms)</th>");
         pageTimesBuilder.append("<th>Bytes written (uncompressed)</th></tr>");
         
         TreeMap<Date,QueryMetric> metricMap = new TreeMap<Date,QueryMetric>(Collections.reverseOrder());
@@ -151,7 +151,8 @@ public class QueryMetricsDetailListResponse extends QueryMetricListResponse {
                 
                 pageTimesBuilder.append("<td>").append(pageRequestedStr).append("</td><td>").append(pageReturnedStr).append("</td><td>")
                                 .append(p.getReturnTime()).append("</td><td>").append(p.getPagesize()).append("</td><td>").append(numToString(p.getCallTime()))
-                                .append("</td><td>").append(numToString(p.getLoginTime())).append("</td><td>").append(numToString(p.getSerializationTime()))
+                                .append("</td><td>").append(numToString(p.getLoginTime())).append("</td><td>")
+                                .append(numToString(p.getPrefetchWaitTime())).append("</td><td>").append(numToString(p.getSerializationTime()))
                                 .append("</td><td>").append(numToString(p.getBytesWritten())).append("</td></tr>");
             }
             builder.append("<td>").append(count).append("</td>\n");
@@ -33,6 +33,8 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
     protected Iterator<T> iterator = (Iterator<T>) Collections.emptyList().iterator();
     private int maxPageSize = 0;
     private long pageByteTrigger = 0;
+    private boolean prefetchNextPage = false;
+    private long prefetchMaxBytesPerUser = 0;
     private boolean collectQueryMetrics = true;
     private String _connPoolName;
     protected Principal principal;
@@ -68,6 +70,8 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
         this.iterator = other.iterator;
         setMaxPageSize(other.getMaxPageSize());
         setPageByteTrigger(other.getPageByteTrigger());
+        setPrefetchNextPage(other.getPrefetchNextPage());
+        setPrefetchMaxBytesPerUser(other.getPrefetchMaxBytesPerUser());
         setCollectQueryMetrics(other.getCollectQueryMetrics());
         setConnPoolName(other.getConnPoolName());
         setPrincipal(other.getPrincipal());
@@ -157,6 +161,26 @@ public abstract class BaseQueryLogic<T> implements QueryLogic<T> {
         this.pageByteTrigger = pageByteTrigger;
     }
     
+    @Override
+    public boolean getPrefetchNextPage() {
+        return prefetchNextPage;
+    }
+    
+    @Override
+    public void setPrefetchNextPage(boolean prefetchNextPage) {
+        this.prefetchNextPage = prefetchNextPage;
+    }
+    
+    @Override
+    public long getPrefetchMaxBytesPerUser() {
+        return prefetchMaxBytesPerUser;
+    }
+    
+    @Override
+    public void setPrefetchMaxBytesPerUser(long prefetchMaxBytesPerUser) {
+        this.prefetchMaxBytesPerUser = prefetchMaxBytesPerUser;
+    }
+    
     @Override
     public int getBaseIteratorPriority() {
         return getConfig().getBaseIteratorPriority();
@@ -116,6 +116,16 @@ public interface QueryLogic<T> extends Iterable<T>, Cloneable, ParameterValidato
      */
     long getPageByteTrigger();
     
+    /**
+     * @return true if the next page of results should be collected in the background while the current page is being returned
+     */
+    boolean getPrefetchNextPage();
+    
+    /**
+     * @return the number of bytes of prefetched results which may be held across all of a user's queries, 0 to only limit the prefetch to a page
+     */
+    long getPrefetchMaxBytesPerUser();
+    
     /**
      * Returns the base iterator priority.
      * 
@@ -153,6 +163,18 @@ public interface QueryLogic<T> extends Iterable<T>, Cloneable, ParameterValidato
      */
     void setPageByteTrigger(long pageByteTrigger);
     
+    /**
+     * @param prefetchNextPage
+     *            true if the next page of results should be collected in the background while the current page is being returned
+     */
+    void setPrefetchNextPage(boolean prefetchNextPage);
+    
+    /**
+     * @param prefetchMaxBytesPerUser
+     *            the number of bytes of prefetched results which may be held across all of a user's queries, 0 to only limit the prefetch to a page
+     */
+    void setPrefetchMaxBytesPerUser(long prefetchMaxBytesPerUser);
+    
     /**
      * Sets the base iterator priority
      * 
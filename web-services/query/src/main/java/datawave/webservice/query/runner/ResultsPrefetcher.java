@@ -0,0 +1,217 @@
+package datawave.webservice.query.runner;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import datawave.webservice.query.data.ObjectSizeOf;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Collects the results of a query in the background so that the next page is being filled while the current page is serialized and returned to the caller.
+ * <p>
+ * A fill task runs on the executor until a page of results is buffered, the results are exhausted, or the bytes buffered across all of the user's queries
+ * reach the per user limit, and is restarted as the buffer is consumed. The task is the only thread to touch the results iterator once prefetching starts.
+ * At least one result is always buffered when the buffer is empty, so a user whose other queries have used up the limit still makes progress.
+ */
+public class ResultsPrefetcher {
+    
+    private static final Logger log = Logger.getLogger(ResultsPrefetcher.class);
+    
+    /**
+     * The bytes of prefetched results held for each user, across all of their queries
+     */
+    private static final ConcurrentHashMap<String,Long> bytesPerUser = new ConcurrentHashMap<>();
+    
+    /**
+     * Marks the end of the results, whether they were exhausted, failed, or the prefetch was stopped
+     */
+    private static final Prefetched END = new Prefetched(null, 0);
+    
+    private final Iterator<?> iter;
+    private final ExecutorService executor;
+    private final String user;
+    private final int capacity;
+    private final long maxBytesPerUser;
+    
+    private final LinkedBlockingQueue<Prefetched> buffer = new LinkedBlockingQueue<>();
+    private Future<?> task = null;
+    private boolean running = false;
+    private volatile boolean exhausted = false;
+    private volatile boolean stopped = false;
+    private volatile boolean done = false;
+    private volatile Throwable failure = null;
+    
+    /**
+     * @param iter
+     *            the results
+     * @param executor
+     *            the executor on which the results are collected
+     * @param user
+     *            the user whose prefetched bytes are limited
+     * @param capacity
+     *            the number of results to buffer, normally a page
+     * @param maxBytesPerUser
+     *            the bytes which may be buffered across all of the user's queries, 0 for no limit
+     */
+    public ResultsPrefetcher(Iterator<?> iter, ExecutorService executor, String user, int capacity, long maxBytesPerUser) {
+        this.iter = iter;
+        this.executor = executor;
+        this.user = (user == null ? "" : user);
+        this.capacity = Math.max(1, capacity);
+        this.maxBytesPerUser = maxBytesPerUser;
+    }
+    
+    /**
+     * Start filling the buffer if it is not already being filled
+     */
+    public synchronized void start() {
+        if (running || exhausted || stopped) {
+            return;
+        }
+        running = true;
+        task = executor.submit(this::fill);
+    }
+    
+    /**
+     * @return false once the end of the results has been returned by {@link #poll(long, TimeUnit)}
+     */
+    public boolean hasNext() {
+        return !done;
+    }
+    
+    /**
+     * @return true if the end of the results has been returned by {@link #poll(long, TimeUnit)}
+     */
+    public boolean isDone() {
+        return done;
+    }
+    
+    /**
+     * Get the next result, waiting for it to be collected if need be.
+     *
+     * @param timeout
+     * @param unit
+     * @return the next result, or null if the results are done or the wait timed out, which are told apart with {@link #isDone()}
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     * @throws ExecutionException
+     *             if the results could not be collected
+     */
+    public Object poll(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+        if (done) {
+            return null;
+        }
+        start();
+        Prefetched prefetched = buffer.poll(timeout, unit);
+        if (prefetched == END) {
+            done = true;
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return null;
+        } else if (prefetched == null) {
+            return null;
+        }
+        release(prefetched.size);
+        return prefetched.result;
+    }
+    
+    /**
+     * Stop collecting results and release the buffered results
+     */
+    public void stop() {
+        Future<?> task;
+        synchronized (this) {
+            stopped = true;
+            task = this.task;
+            drain();
+            buffer.offer(END);
+        }
+        if (task != null) {
+            task.cancel(true);
+        }
+    }
+    
+    /**
+     * @return the bytes of prefetched results currently held for the user
+     */
+    public long getUserBytes() {
+        Long bytes = bytesPerUser.get(user);
+        return (bytes == null ? 0 : bytes);
+    }
+    
+    private void fill() {
+        try {
+            while (!stopped) {
+                synchronized (this) {
+                    if (buffer.size() >= capacity || (maxBytesPerUser > 0 && !buffer.isEmpty() && getUserBytes() >= maxBytesPerUser)) {
+                        running = false;
+                        return;
+                    }
+                }
+                Object result = (iter.hasNext() ? iter.next() : null);
+                synchronized (this) {
+                    if (stopped) {
+                        return;
+                    }
+                    if (null == result) {
+                        exhausted = true;
+                        running = false;
+                        buffer.offer(END);
+                        return;
+                    }
+                    long size = (maxBytesPerUser > 0 ? ObjectSizeOf.Sizer.getObjectSize(result) : 0);
+                    reserve(size);
+                    buffer.offer(new Prefetched(result, size));
+                }
+            }
+        } catch (Throwable t) {
+            synchronized (this) {
+                if (!stopped) {
+                    log.error("Failed to prefetch results", t);
+                    failure = t;
+                    exhausted = true;
+                    buffer.offer(END);
+                }
+                running = false;
+            }
+        }
+    }
+    
+    private void drain() {
+        Prefetched prefetched;
+        while ((prefetched = buffer.poll()) != null) {
+            if (prefetched != END) {
+                release(prefetched.size);
+            }
+        }
+    }
+    
+    private void reserve(long size) {
+        if (size > 0) {
+            bytesPerUser.merge(user, size, Long::sum);
+        }
+    }
+    
+    private void release(long size) {
+        if (size > 0) {
+            bytesPerUser.computeIfPresent(user, (u, bytes) -> (bytes - size <= 0 ? null : bytes - size));
+        }
+    }
+    
+    private static class Prefetched {
+        private final Object result;
+        private final long size;
+        
+        private Prefetched(Object result, long size) {
+            this.result = result;
+            this.size = size;
+        }
+    }
+}
@@ -65,6 +65,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     private RunningQueryTiming timing = null;
     private ExecutorService executor = null;
     private volatile Future<Object> future = null;
+    private transient volatile ResultsPrefetcher prefetcher = null;
     private QueryPredictor predictor = null;
     
     public RunningQuery() {
@@ -163,6 +164,10 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             this.iter = this.logic.getTransformIterator(this.settings);
             // the configuration query string should now hold the planned query
             this.getMetric().setPlan(configuration.getQueryString());
+            // record anything learned while planning the query, such as cost estimates
+            if (configuration instanceof WritesQueryMetrics) {
+                ((WritesQueryMetrics) configuration).writeQueryMetrics(this.getMetric());
+            }
             this.getMetric().setSetupTime((System.currentTimeMillis() - start));
             this.getMetric().setLifecycle(QueryMetric.Lifecycle.INITIALIZED);
             testForUncaughtException(0);
@@ -189,6 +194,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
         // update AbstractRunningQuery.lastUsed
         touch();
         long pageStartTime = System.currentTimeMillis();
+        long prefetchWaitTime = 0;
         List<Object> resultList = new ArrayList<>();
         boolean hitPageByteTrigger = false;
         boolean hitPageTimeTrigger = false;
@@ -200,7 +206,10 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             // test for any exceptions prior to loop as hasNext() would likely be false;
             testForUncaughtException(resultList.size());
             
-            while (!this.finished && ((future != null) || this.iter.hasNext())) {
+            // once prefetching, only the prefetch task may touch the iterator
+            ResultsPrefetcher prefetcher = getPrefetcher();
+            
+            while (!this.finished && (prefetcher != null ? prefetcher.hasNext() : ((future != null) || this.iter.hasNext()))) {
                 // if we are canceled, then break out
                 if (this.canceled) {
                     log.info("Query has been cancelled, aborting query.next call");
@@ -256,7 +265,20 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                 scanned++;
                 
                 Object o = null;
-                if (executor != null) {
+                boolean waiting = false;
+                if (prefetcher != null) {
+                    long waitStart = System.currentTimeMillis();
+                    try {
+                        o = prefetcher.poll(1, TimeUnit.MINUTES);
+                        // if the results are not done, then we are still waiting on the prefetch....simply continue
+                        waiting = (o == null && !prefetcher.isDone());
+                    } catch (InterruptedException ie) {
+                        // in this case we were most likely cancelled, no longer waiting
+                        waiting = true;
+                    } finally {
+                        prefetchWaitTime += System.currentTimeMillis() - waitStart;
+                    }
+                } else if (executor != null) {
                     if (future == null) {
                         future = executor.submit(() -> iter.next());
                     }
@@ -276,8 +298,8 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                 } else {
                     o = iter.next();
                 }
-                // if not still waiting on a future, then process the result (or lack thereof)
-                if (future == null) {
+                // if not still waiting on a future or the prefetch, then process the result (or lack thereof)
+                if (future == null && !waiting) {
                     if (null == o) {
                         log.debug("Null result encountered, no more results");
                         this.finished = true;
@@ -299,8 +321,17 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             
             // Update the metric
             long now = System.currentTimeMillis();
-            this.getMetric().addPageTime(currentPageCount, now - pageStartTime, pageStartTime, now);
+            if (prefetcher != null) {
+                this.getMetric().addPageTime(currentPageCount, now - pageStartTime, pageStartTime, now, prefetchWaitTime);
+            } else {
+                this.getMetric().addPageTime(currentPageCount, now - pageStartTime, pageStartTime, now);
+            }
             this.lastPageNumber++;
+            
+            // fill the next page while this one is being returned
+            if (prefetcher != null && !this.finished && !this.canceled) {
+                prefetcher.start();
+            }
             if (!resultList.isEmpty()) {
                 this.getMetric().setLifecycle(QueryMetric.Lifecycle.RESULTS);
             }
@@ -331,8 +362,31 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
         }
     }
     
+    /**
+     * @return the prefetcher for the results if the logic prefetches the next page, created when first needed
+     */
+    private ResultsPrefetcher getPrefetcher() {
+        if (this.prefetcher == null && this.executor != null && this.logic.getPrefetchNextPage()) {
+            int pageSize = this.settings.getPagesize();
+            if (this.logic.getMaxPageSize() > 0) {
+                pageSize = Math.min(pageSize, this.logic.getMaxPageSize());
+            }
+            String user = (this.settings.getUserDN() != null ? this.settings.getUserDN() : this.settings.getOwner());
+            this.prefetcher = new ResultsPrefetcher(this.iter, this.executor, user, pageSize, this.logic.getPrefetchMaxBytesPerUser());
+        }
+        return this.prefetcher;
+    }
+    
+    private void stopPrefetching() {
+        ResultsPrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null) {
+            prefetcher.stop();
+        }
+    }
+    
     public void cancel() {
         this.canceled = true;
+        stopPrefetching();
         // save off the future as it could be removed at any time
         Future<Object> future = this.future;
         // cancel the future if we have one
@@ -405,6 +459,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     
     public void closeConnection(AccumuloConnectionFactory factory) throws Exception {
         this.getMetric().setLifecycle(BaseQueryMetric.Lifecycle.CLOSED);
+        stopPrefetching();
         
         if (iter != null && iter.getTransformer() instanceof WritesResultCardinalities) {
             ((WritesResultCardinalities) iter.getTransformer()).writeResultCardinalities();
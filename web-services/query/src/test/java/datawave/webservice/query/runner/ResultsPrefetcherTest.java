@@ -0,0 +1,111 @@
+package datawave.webservice.query.runner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultsPrefetcherTest {
+    
+    private ExecutorService executor;
+    
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+    
+    private static List<Object> drain(ResultsPrefetcher prefetcher) throws Exception {
+        List<Object> results = new ArrayList<>();
+        while (prefetcher.hasNext()) {
+            Object o = prefetcher.poll(10, TimeUnit.SECONDS);
+            if (o != null) {
+                results.add(o);
+            } else {
+                Assert.assertTrue("Timed out waiting on the prefetch", prefetcher.isDone());
+            }
+        }
+        return results;
+    }
+    
+    @Test
+    public void testPrefetch() throws Exception {
+        List<String> expected = Arrays.asList("a", "b", "c", "d", "e", "f", "g");
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(expected.iterator(), executor, "user1", 3, 0);
+        Assert.assertEquals(expected, drain(prefetcher));
+        Assert.assertTrue(prefetcher.isDone());
+        Assert.assertNull(prefetcher.poll(1, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testUserLimit() throws Exception {
+        List<String> expected = Arrays.asList("a", "b", "c", "d", "e", "f", "g");
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(expected.iterator(), executor, "user2", 5, 1);
+        
+        // only the one result is buffered once the limit has been reached
+        prefetcher.start();
+        long start = System.currentTimeMillis();
+        while (prefetcher.getUserBytes() == 0 && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        long bytes = prefetcher.getUserBytes();
+        Assert.assertTrue(bytes > 0);
+        Assert.assertEquals("a", prefetcher.poll(10, TimeUnit.SECONDS));
+        
+        Assert.assertEquals(expected.subList(1, expected.size()), drain(prefetcher));
+        Assert.assertEquals(0, prefetcher.getUserBytes());
+    }
+    
+    @Test
+    public void testStopReleasesBytes() throws Exception {
+        List<String> expected = Arrays.asList("a", "b", "c");
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(expected.iterator(), executor, "user3", 3, 1024 * 1024);
+        prefetcher.start();
+        long start = System.currentTimeMillis();
+        while (prefetcher.getUserBytes() == 0 && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(prefetcher.getUserBytes() > 0);
+        
+        prefetcher.stop();
+        Assert.assertEquals(0, prefetcher.getUserBytes());
+        Assert.assertNull(prefetcher.poll(10, TimeUnit.SECONDS));
+        Assert.assertFalse(prefetcher.hasNext());
+    }
+    
+    @Test(expected = ExecutionException.class)
+    public void testFailure() throws Exception {
+        Iterator<String> failing = new Iterator<String>() {
+            private int count = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+            
+            @Override
+            public String next() {
+                if (count++ > 1) {
+                    throw new IllegalStateException("Expected failure");
+                }
+                return "a";
+            }
+        };
+        ResultsPrefetcher prefetcher = new ResultsPrefetcher(failing, executor, "user4", 10, 0);
+        drain(prefetcher);
+    }
+}